@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One change of the access control entries of a principal on a resource for
+ * {@link ModifyAce#modifyAces(javax.jcr.Session, Collection, int)}.
+ * <p>
+ * A change either has the complete collection of {@link LocalPrivilege} items
+ * that replace the stored state, like
+ * {@link ModifyAce#modifyAce(javax.jcr.Session, String, String, Collection, String, boolean)},
+ * or a map of privilege values that are merged into the stored state, like
+ * {@link ModifyAce#modifyAce(javax.jcr.Session, String, String, Map, String, boolean)}.
+ * The privilege values may come with a map of restriction values for the allowed
+ * or denied privileges.
+ * </p>
+ */
+public final class AceChange {
+    private final String resourcePath;
+    private final String principalId;
+    private final Collection<LocalPrivilege> localPrivileges;
+    private final Map<String, String> privileges;
+    private final Map<String, String[]> restrictions;
+    private final String order;
+
+    /**
+     * @param resourcePath The absolute path of the resource to apply the ACE to
+     * @param principalId The name of the user/group to provision
+     * @param localPrivileges collection of privileges that replace the stored state
+     * @param order where the access control entry should go in the list, or null
+     *          to leave the ACE at it's current position
+     */
+    public AceChange(
+            @NotNull String resourcePath,
+            @NotNull String principalId,
+            @NotNull Collection<LocalPrivilege> localPrivileges,
+            @Nullable String order) {
+        this.resourcePath = resourcePath;
+        this.principalId = principalId;
+        this.localPrivileges = List.copyOf(localPrivileges);
+        this.privileges = null;
+        this.restrictions = Collections.emptyMap();
+        this.order = order;
+    }
+
+    /**
+     * @param resourcePath The absolute path of the resource to apply the ACE to
+     * @param principalId The name of the user/group to provision
+     * @param privileges Map of privileges to merge into the stored state.  The values
+     *          are the same as for the privilege@[privilege_name] request parameters
+     * @param order where the access control entry should go in the list, or null
+     *          to leave the ACE at it's current position
+     */
+    public AceChange(
+            @NotNull String resourcePath,
+            @NotNull String principalId,
+            @NotNull Map<String, String> privileges,
+            @Nullable String order) {
+        this(resourcePath, principalId, privileges, Collections.emptyMap(), order);
+    }
+
+    /**
+     * @param resourcePath The absolute path of the resource to apply the ACE to
+     * @param principalId The name of the user/group to provision
+     * @param privileges Map of privileges to merge into the stored state.  The values
+     *          are the same as for the privilege@[privilege_name] request parameters
+     * @param restrictions Map of restriction values for the allowed or denied privileges.  The keys
+     *          are the same as the restriction@[restriction_name] and
+     *          restriction@[privilege_name]@[restriction_name]@[Allow|Deny] request parameters
+     *          without the restriction@ prefix
+     * @param order where the access control entry should go in the list, or null
+     *          to leave the ACE at it's current position
+     */
+    public AceChange(
+            @NotNull String resourcePath,
+            @NotNull String principalId,
+            @NotNull Map<String, String> privileges,
+            @NotNull Map<String, String[]> restrictions,
+            @Nullable String order) {
+        this.resourcePath = resourcePath;
+        this.principalId = principalId;
+        this.localPrivileges = null;
+        this.privileges = Collections.unmodifiableMap(new LinkedHashMap<>(privileges));
+        Map<String, String[]> restrictionsCopy = new LinkedHashMap<>();
+        restrictions.forEach((key, values) -> restrictionsCopy.put(key, values.clone()));
+        this.restrictions = Collections.unmodifiableMap(restrictionsCopy);
+        this.order = order;
+    }
+
+    public @NotNull String getResourcePath() {
+        return resourcePath;
+    }
+
+    public @NotNull String getPrincipalId() {
+        return principalId;
+    }
+
+    /**
+     * @return the privileges that replace the stored state, or null if the
+     *          change has privilege values to merge instead
+     */
+    public @Nullable Collection<LocalPrivilege> getLocalPrivileges() {
+        return localPrivileges;
+    }
+
+    /**
+     * @return the privilege values to merge into the stored state, or null if the
+     *          change has the complete privileges instead
+     */
+    public @Nullable Map<String, String> getPrivileges() {
+        return privileges;
+    }
+
+    /**
+     * @return the restriction values for the allowed or denied privileges, or an
+     *          empty map if the change has none
+     */
+    public @NotNull Map<String, String[]> getRestrictions() {
+        return restrictions;
+    }
+
+    public @Nullable String getOrder() {
+        return order;
+    }
+
+    @Override
+    public String toString() {
+        return "AceChange [resourcePath=" + resourcePath + ", principalId=" + principalId + ", order=" + order + "]";
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The result of one {@link AceChange} of a batch.
+ */
+public final class AceChangeResult {
+
+    /**
+     * The outcome of a change
+     */
+    public enum Status {
+        /**
+         * The change was applied
+         */
+        MODIFIED,
+        /**
+         * The submitted state was the same as the stored state, so nothing was stored
+         */
+        UNCHANGED,
+        /**
+         * The change was not applied, see {@link AceChangeResult#getMessage()}
+         */
+        FAILED
+    }
+
+    private final AceChange change;
+    private final Status status;
+    private final String message;
+
+    /**
+     * @param change the change
+     * @param status the outcome of the change
+     * @param message the reason of a failure or null
+     */
+    public AceChangeResult(@NotNull AceChange change, @NotNull Status status, @Nullable String message) {
+        this.change = change;
+        this.status = status;
+        this.message = message;
+    }
+
+    public @NotNull AceChange getChange() {
+        return change;
+    }
+
+    public @NotNull Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the reason of a failure or null
+     */
+    public @Nullable String getMessage() {
+        return message;
+    }
+}
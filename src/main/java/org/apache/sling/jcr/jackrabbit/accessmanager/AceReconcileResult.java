@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The summary of {@link ModifyAce#reconcileAces(javax.jcr.Session, java.util.Iterator, int)}.
+ * <p>
+ * The unchanged, modified and removed counts are the number of principals on a resource
+ * with that outcome.  The failures are the resources that were not reconciled.
+ * </p>
+ */
+public final class AceReconcileResult {
+    private final int unchanged;
+    private final int modified;
+    private final int removed;
+    private final Map<String, String> failures;
+
+    /**
+     * @param unchanged the number of principals whose ACEs were already in the desired state
+     * @param modified the number of principals whose ACEs were added or changed
+     * @param removed the number of principals whose ACEs were removed
+     * @param failures the paths of the resources that were not reconciled mapped to the reason
+     */
+    public AceReconcileResult(int unchanged, int modified, int removed, @NotNull Map<String, String> failures) {
+        this.unchanged = unchanged;
+        this.modified = modified;
+        this.removed = removed;
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public int getModified() {
+        return modified;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return the paths of the resources that were not reconciled mapped to the reason,
+     *          in the order of the desired state
+     */
+    public @NotNull Map<String, String> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return "AceReconcileResult [unchanged=" + unchanged + ", modified=" + modified + ", removed=" + removed
+                + ", failed=" + failures.size() + "]";
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.sling.jcr.jackrabbit.accessmanager;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
 
 import jakarta.json.JsonObject;
 
@@ -42,4 +43,20 @@ public interface GetAce {
      * @throws RepositoryException if any errors reading the information
      */
     JsonObject getAce(Session jcrSession, String resourcePath, String principalId) throws RepositoryException;
+
+    /**
+     * Gets the declared access control entry for a resource and principal as java objects.
+     * This is the same data as {@link #getAce(Session, String, String)} without
+     * building the JSON.
+     *
+     * @param jcrSession the JCR session of the user
+     * @param resourcePath The path of the resource to get the ACE for (required)
+     * @param principalId the principal to get the ACE for (required)
+     * @return the privileges of the principal
+     * @throws RepositoryException if any errors reading the information
+     */
+    default PrincipalPrivileges getAcePrivileges(Session jcrSession, String resourcePath, String principalId)
+            throws RepositoryException {
+        throw new UnsupportedRepositoryOperationException();
+    }
 }
@@ -20,6 +20,10 @@ package org.apache.sling.jcr.jackrabbit.accessmanager;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
+
+import java.security.Principal;
+import java.util.Map;
 
 import jakarta.json.JsonObject;
 
@@ -41,4 +45,20 @@ public interface GetAcl {
      * @throws RepositoryException if any errors reading the information
      */
     JsonObject getAcl(Session jcrSession, String resourcePath) throws RepositoryException;
+
+    /**
+     * Gets the access control list for a resource as java objects.  This
+     * is the same data as {@link #getAcl(Session, String)} without
+     * building the JSON.
+     *
+     * @param jcrSession the JCR session of the user
+     * @param resourcePath The path of the resource to get the ACL for (required)
+     * @return map where the key is the principal and the value is the privileges of the
+     *          principal, in the order of the access control list
+     * @throws RepositoryException if any errors reading the information
+     */
+    default Map<Principal, PrincipalPrivileges> getAclPrivileges(Session jcrSession, String resourcePath)
+            throws RepositoryException {
+        throw new UnsupportedRepositoryOperationException();
+    }
 }
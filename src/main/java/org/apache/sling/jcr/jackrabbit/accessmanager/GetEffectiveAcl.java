@@ -18,10 +18,18 @@
  */
 package org.apache.sling.jcr.jackrabbit.accessmanager;
 
+import javax.jcr.AccessDeniedException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import jakarta.json.JsonObject;
+import org.apache.sling.api.resource.ResourceNotFoundException;
 
 /**
  * The <code>GetAcl</code> service api.
@@ -41,4 +49,45 @@ public interface GetEffectiveAcl {
      * @throws RepositoryException if any errors reading the information
      */
     JsonObject getEffectiveAcl(Session jcrSession, String resourcePath) throws RepositoryException;
+
+    /**
+     * Gets the effective access control list for a resource as java objects.  This
+     * is the same data as {@link #getEffectiveAcl(Session, String)} without
+     * building the JSON.
+     *
+     * @param jcrSession the JCR session of the user
+     * @param resourcePath The path of the resource to get the ACL for (required)
+     * @return map where the key is the principal and the value is the privileges of the
+     *          principal, in the order of the access control list
+     * @throws RepositoryException if any errors reading the information
+     */
+    default Map<Principal, PrincipalPrivileges> getEffectiveAclPrivileges(Session jcrSession, String resourcePath)
+            throws RepositoryException {
+        throw new UnsupportedRepositoryOperationException();
+    }
+
+    /**
+     * Gets the effective access control lists for many resources.  The implementation
+     * shares the work that is the same for the resources, so this is faster than
+     * calling {@link #getEffectiveAcl(Session, String)} for each resource.
+     *
+     * @param jcrSession the JCR session of the user
+     * @param resourcePaths The paths of the resources to get the ACL for (required)
+     * @return map where the key is the resource path and the value is the ACL as a JSON object,
+     *          in the order of the paths.  Resources that do not exist or where the ACL can not be
+     *          read are not included.
+     * @throws RepositoryException if any errors reading the information
+     */
+    default Map<String, JsonObject> getEffectiveAcls(Session jcrSession, Collection<String> resourcePaths)
+            throws RepositoryException {
+        Map<String, JsonObject> map = new LinkedHashMap<>();
+        for (String resourcePath : resourcePaths) {
+            try {
+                map.put(resourcePath, getEffectiveAcl(jcrSession, resourcePath));
+            } catch (AccessDeniedException | ResourceNotFoundException e) {
+                // not included
+            }
+        }
+        return map;
+    }
 }
@@ -29,6 +29,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
 
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.LocalRestrictionSet;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -38,8 +39,9 @@ public class LocalPrivilege {
     private Privilege privilege;
     private boolean allow;
     private boolean deny;
-    private Set<LocalRestriction> allowRestrictions = Collections.emptySet();
-    private Set<LocalRestriction> denyRestrictions = Collections.emptySet();
+    // the restriction sets are immutable so they can be shared
+    private Set<LocalRestriction> allowRestrictions = LocalRestrictionSet.EMPTY;
+    private Set<LocalRestriction> denyRestrictions = LocalRestrictionSet.EMPTY;
 
     public LocalPrivilege(@NotNull Privilege privilege) {
         this.privilege = privilege;
@@ -74,11 +76,19 @@ public class LocalPrivilege {
     }
 
     public Set<LocalRestriction> getAllowRestrictions() {
-        return Collections.unmodifiableSet(allowRestrictions);
+        return unmodifiable(allowRestrictions);
     }
 
     public Set<LocalRestriction> getDenyRestrictions() {
-        return Collections.unmodifiableSet(denyRestrictions);
+        return unmodifiable(denyRestrictions);
+    }
+
+    private static Set<LocalRestriction> unmodifiable(Set<LocalRestriction> restrictions) {
+        if (restrictions instanceof LocalRestrictionSet) {
+            // already immutable, so return the same instance to allow a fast compare
+            return restrictions;
+        }
+        return Collections.unmodifiableSet(restrictions);
     }
 
     protected Set<LocalRestriction> mergeRestrictions(
@@ -86,6 +96,12 @@ public class LocalPrivilege {
         Set<LocalRestriction> mergedRestrictons;
         if (newRestrictions == null) {
             mergedRestrictons = null;
+        } else if (currentRestrictions.isEmpty()) {
+            // nothing to merge with
+            mergedRestrictons = LocalRestrictionSet.copyOf(newRestrictions);
+        } else if (newRestrictions.isEmpty()) {
+            // nothing to merge in
+            mergedRestrictons = LocalRestrictionSet.copyOf(currentRestrictions);
         } else {
             mergedRestrictons = new HashSet<>(currentRestrictions);
             for (LocalRestriction lr : newRestrictions) {
@@ -112,6 +128,7 @@ public class LocalPrivilege {
                 // add to the set
                 mergedRestrictons.add(lr);
             }
+            mergedRestrictons = LocalRestrictionSet.copyOf(mergedRestrictons);
         }
         return mergedRestrictons;
     }
@@ -125,19 +142,30 @@ public class LocalPrivilege {
     }
 
     public void unsetAllowRestrictions(Collection<String> restrictionNames) {
-        this.allowRestrictions.removeIf(k -> restrictionNames.contains(k.getName()));
+        this.allowRestrictions = unsetRestrictions(this.allowRestrictions, restrictionNames);
     }
 
     public void unsetDenyRestrictions(Collection<String> restrictionNames) {
-        this.denyRestrictions.removeIf(k -> restrictionNames.contains(k.getName()));
+        this.denyRestrictions = unsetRestrictions(this.denyRestrictions, restrictionNames);
+    }
+
+    private static Set<LocalRestriction> unsetRestrictions(
+            Set<LocalRestriction> currentRestrictions, Collection<String> restrictionNames) {
+        // copy on write since the current set may be shared
+        if (currentRestrictions.stream().anyMatch(k -> restrictionNames.contains(k.getName()))) {
+            Set<LocalRestriction> remaining = new HashSet<>(currentRestrictions);
+            remaining.removeIf(k -> restrictionNames.contains(k.getName()));
+            currentRestrictions = LocalRestrictionSet.copyOf(remaining);
+        }
+        return currentRestrictions;
     }
 
     public void clearAllowRestrictions() {
-        this.allowRestrictions.clear();
+        this.allowRestrictions = LocalRestrictionSet.EMPTY;
     }
 
     public void clearDenyRestrictions() {
-        this.denyRestrictions.clear();
+        this.denyRestrictions = LocalRestrictionSet.EMPTY;
     }
 
     /**
@@ -148,6 +176,10 @@ public class LocalPrivilege {
      * @return true or false
      */
     public boolean sameAllowRestrictions(Set<LocalRestriction> otherAllowRestrictions) {
+        if (allowRestrictions == otherAllowRestrictions) {
+            // same immutable instance
+            return true;
+        }
         boolean same = false;
         // total (multivalue and simple)  number of restrictions should be same
         if (allowRestrictions.size() == otherAllowRestrictions.size()
@@ -166,6 +198,10 @@ public class LocalPrivilege {
      * @return true or false
      */
     public boolean sameDenyRestrictions(Set<LocalRestriction> otherDenyRestrictions) {
+        if (denyRestrictions == otherDenyRestrictions) {
+            // same immutable instance
+            return true;
+        }
         boolean same = false;
         // total (multivalue and simple)  number of restrictions should be same
         if (denyRestrictions.size() == otherDenyRestrictions.size()
@@ -182,6 +218,10 @@ public class LocalPrivilege {
      * @return true or false
      */
     public boolean sameAllowAndDenyRestrictions() {
+        if (allowRestrictions == denyRestrictions) {
+            // same immutable instance
+            return true;
+        }
         boolean same = false;
         // total (multivalue and simple)  number of restrictions should be same
         if (allowRestrictions.size() == denyRestrictions.size() && allowRestrictions.containsAll(denyRestrictions)) {
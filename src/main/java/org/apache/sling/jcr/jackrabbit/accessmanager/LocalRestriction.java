@@ -28,11 +28,17 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * Use to holds details of a restriction
+ *
+ * The instances are not interned, since the values belong to the session that
+ * created them. Only the hash code is cached, so the values are copied on the
+ * way in and on the way out.
  */
 public class LocalRestriction {
 
     private RestrictionDefinition rd;
     private Value[] values;
+    // cached since the Value hash codes are calculated each time
+    private int hash;
 
     public LocalRestriction(@NotNull RestrictionDefinition rd, @Nullable Value value) {
         super();
@@ -43,7 +49,8 @@ public class LocalRestriction {
     public LocalRestriction(@NotNull RestrictionDefinition rd, @Nullable Value[] values) {
         super();
         this.rd = rd;
-        this.values = values;
+        // copied since the hash code of the values is cached
+        this.values = values == null ? null : values.clone();
     }
 
     public String getName() {
@@ -62,8 +69,13 @@ public class LocalRestriction {
         return v;
     }
 
+    /**
+     * Returns the values of the restriction
+     *
+     * @return a copy of the values, or null if there are none
+     */
     public Value[] getValues() {
-        return values;
+        return values == null ? null : values.clone();
     }
 
     @Override
@@ -72,17 +84,21 @@ public class LocalRestriction {
         builder.append("LocalRestriction [name=");
         builder.append(rd == null ? null : rd.getName());
         builder.append(", value=");
-        builder.append(Arrays.toString(getValues()));
+        builder.append(Arrays.toString(values));
         builder.append("]");
         return builder.toString();
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((rd == null) ? 0 : rd.getName().hashCode());
-        result = prime * result + Arrays.hashCode(values);
+        int result = hash;
+        if (result == 0) {
+            final int prime = 31;
+            result = 1;
+            result = prime * result + ((rd == null) ? 0 : rd.getName().hashCode());
+            result = prime * result + Arrays.hashCode(values);
+            hash = result;
+        }
         return result;
     }
 
@@ -92,6 +108,7 @@ public class LocalRestriction {
         if (obj == null) return false;
         if (getClass() != obj.getClass()) return false;
         LocalRestriction other = (LocalRestriction) obj;
+        if (hashCode() != other.hashCode()) return false;
         if (rd == null) {
             if (other.rd != null) return false;
         } else if (other.rd == null) {
@@ -24,6 +24,8 @@ import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.Value;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -222,4 +224,113 @@ public interface ModifyAce {
             throws RepositoryException {
         throw new UnsupportedRepositoryOperationException();
     }
+
+    /**
+     * Add or modify the access control entries of many principals on many resources.
+     * <p>
+     * The changes are grouped by resource path, so the access control list of each
+     * resource is loaded and stored once.  A change that fails does not stop the
+     * batch, but none of the changes for the same resource are applied.
+     * </p>
+     *
+     * @param jcrSession the JCR session of the user updating the user
+     * @param changes the changes to apply
+     * @param saveThreshold the number of applied changes after which the session
+     *          is saved, or 0 to leave saving the session to the caller.  Changes for the
+     *          same resource are always saved together.
+     * @return the result of each change in the order of the changes
+     * @throws RepositoryException if any errors that are not specific to a change
+     */
+    default List<AceChangeResult> modifyAces(Session jcrSession, Collection<AceChange> changes, int saveThreshold)
+            throws RepositoryException {
+        throw new UnsupportedRepositoryOperationException();
+    }
+
+    /**
+     * Reconcile the access control lists of many resources with a desired state.
+     * <p>
+     * The desired ACEs must be grouped by resource path, and each group is the complete
+     * desired state of the resource.  The ACEs of a principal are replaced by the desired
+     * ones only if they differ, and the ACEs of the principals that are not in the desired
+     * state of the resource are removed.  A desired ACE with no privileges removes the ACEs
+     * of the principal, so it can be used for a resource that should have no ACEs.  Privilege
+     * and restriction values are applied to an empty state instead of being merged into the
+     * stored state, so a desired ACE without restrictions replaces an ACE with restrictions.
+     * </p>
+     * <p>
+     * When the stored state is the same as the desired state nothing is written, so a second
+     * run with the same desired state does not change any content.  A resource that fails does
+     * not stop the reconciliation.  When the next desired ACE can not be read, the resource that
+     * was being read is reported as failed and the rest of the desired ACEs are not read.
+     * </p>
+     *
+     * @param jcrSession the JCR session of the user updating the user
+     * @param desiredAces the desired ACEs grouped by resource path, which are consumed one at a time
+     * @param saveThreshold the number of changed principals after which the session
+     *          is saved, or 0 to leave saving the session to the caller.  Changes for the
+     *          same resource are always saved together.
+     * @return the summary of the reconciliation
+     * @throws RepositoryException if any errors that are not specific to a resource
+     */
+    default AceReconcileResult reconcileAces(Session jcrSession, Iterator<AceChange> desiredAces, int saveThreshold)
+            throws RepositoryException {
+        throw new UnsupportedRepositoryOperationException();
+    }
+
+    /**
+     * Move the existing access control entries for the specified user or group
+     * without changing their privileges.
+     *
+     * This is equivalent to {@link #orderAce(Session, String, String, String, boolean)} with
+     * the autoSave parameter value equal to true.
+     *
+     * @param jcrSession the JCR session of the user updating the user
+     * @param resourcePath The absolute path of the resource of the ACEs (required)
+     * @param principalId The name of the user/group of the ACEs (required)
+     * @param order where the access control entries should go in the list (required).
+     *         <table style='margin-left: 30px;' border="1">
+     *          <caption>The value should be one of these:</caption>
+     *          <tbody>
+     *               <tr><td>first</td><td>Place the target ACE as the first amongst its siblings</td></tr>
+     *              <tr><td>last</td><td>Place the target ACE as the last amongst its siblings</td></tr>
+     *               <tr><td>before xyz</td><td>Place the target ACE immediately before the sibling whose name is xyz</td></tr>
+     *               <tr><td>after xyz</td><td>Place the target ACE immediately after the sibling whose name is xyz</td></tr>
+     *               <tr><td>numeric</td><td>Place the target ACE at the specified numeric index</td></tr>
+     *          </tbody>
+     *         </table>
+     * @throws RepositoryException if any errors applying the changes
+     */
+    default void orderAce(Session jcrSession, String resourcePath, String principalId, String order)
+            throws RepositoryException {
+        orderAce(jcrSession, resourcePath, principalId, order, true);
+    }
+
+    /**
+     * Move the existing access control entries for the specified user or group
+     * without changing their privileges.  The entries end up at the same position
+     * as a {@link #modifyAce(Session, String, String, Map, String, boolean)} call with
+     * the same order and no privileges, and only the entries that are out of place
+     * are moved.
+     *
+     * @param jcrSession the JCR session of the user updating the user
+     * @param resourcePath The absolute path of the resource of the ACEs (required)
+     * @param principalId The name of the user/group of the ACEs (required)
+     * @param order where the access control entries should go in the list (required).
+     *         <table style='margin-left: 30px;' border="1">
+     *          <caption>The value should be one of these:</caption>
+     *          <tbody>
+     *               <tr><td>first</td><td>Place the target ACE as the first amongst its siblings</td></tr>
+     *              <tr><td>last</td><td>Place the target ACE as the last amongst its siblings</td></tr>
+     *               <tr><td>before xyz</td><td>Place the target ACE immediately before the sibling whose name is xyz</td></tr>
+     *               <tr><td>after xyz</td><td>Place the target ACE immediately after the sibling whose name is xyz</td></tr>
+     *               <tr><td>numeric</td><td>Place the target ACE at the specified numeric index</td></tr>
+     *          </tbody>
+     *         </table>
+     * @param autoSave true to automatically save changes to the JCR session, false otherwise
+     * @throws RepositoryException if any errors applying the changes
+     */
+    default void orderAce(Session jcrSession, String resourcePath, String principalId, String order, boolean autoSave)
+            throws RepositoryException {
+        throw new UnsupportedRepositoryOperationException();
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager;
+
+import javax.jcr.security.Privilege;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The privileges of a principal in the access control of a resource.  This
+ * is the same data as the JSON object of the principal, so java callers can
+ * use it without building and parsing the JSON.
+ * <p>
+ * The aggregate privileges are already combined like in the JSON.  The
+ * {@link LocalPrivilege} objects belong to this object and must not be changed.
+ * </p>
+ */
+public final class PrincipalPrivileges {
+    private final Principal principal;
+    private final int order;
+    private final Map<Privilege, LocalPrivilege> privileges;
+    private final Set<String> declaredAtNodes;
+    private final Set<String> declaredAtPrincipals;
+
+    /**
+     * @param principal the principal
+     * @param order the position of the principal in the access control list or -1 if there is none
+     * @param privileges the privileges of the principal
+     * @param declaredAtNodes the paths of the nodes where the entries of the principal are declared,
+     *          or an empty set if they are not reported
+     * @param declaredAtPrincipals the paths of the principals where the principal based entries of the
+     *          principal are declared, or an empty set if they are not reported
+     */
+    public PrincipalPrivileges(
+            @NotNull Principal principal,
+            int order,
+            @NotNull Map<Privilege, LocalPrivilege> privileges,
+            @NotNull Set<String> declaredAtNodes,
+            @NotNull Set<String> declaredAtPrincipals) {
+        this.principal = principal;
+        this.order = order;
+        this.privileges = Collections.unmodifiableMap(privileges);
+        this.declaredAtNodes = Collections.unmodifiableSet(declaredAtNodes);
+        this.declaredAtPrincipals = Collections.unmodifiableSet(declaredAtPrincipals);
+    }
+
+    public @NotNull Principal getPrincipal() {
+        return principal;
+    }
+
+    /**
+     * @return the position of the principal in the access control list or -1 if there is none
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * @return map where the key is the privilege and the value is the state of the privilege.
+     *          Privileges that are neither allowed nor denied may be included.
+     */
+    public @NotNull Map<Privilege, LocalPrivilege> getPrivileges() {
+        return privileges;
+    }
+
+    /**
+     * @return the paths of the nodes where the entries of the principal are declared.
+     *          Empty if the paths are not reported.
+     */
+    public @NotNull Set<String> getDeclaredAtNodes() {
+        return declaredAtNodes;
+    }
+
+    /**
+     * @return the paths of the principals where the principal based entries of the principal
+     *          are declared.  Empty if the paths are not reported.
+     */
+    public @NotNull Set<String> getDeclaredAtPrincipals() {
+        return declaredAtPrincipals;
+    }
+}
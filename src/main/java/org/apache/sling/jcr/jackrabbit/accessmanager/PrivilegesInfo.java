@@ -25,13 +25,15 @@ import javax.jcr.security.AccessControlManager;
 import javax.jcr.security.Privilege;
 
 import java.security.Principal;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -40,6 +42,9 @@ import jakarta.json.JsonValue;
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.principal.PrincipalManager;
 import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.sling.api.resource.ResourceNotFoundException;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.AccessManagerServices;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.CapabilityChecker;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -52,6 +57,36 @@ import org.slf4j.LoggerFactory;
  * Helper class to assist in the usage of access control from scripts.
  */
 public class PrivilegesInfo {
+    /**
+     * Capability bit set when the user can add children to the resource
+     */
+    public static final int CAN_ADD_CHILDREN = 1;
+
+    /**
+     * Capability bit set when the user can delete children of the resource
+     */
+    public static final int CAN_DELETE_CHILDREN = 1 << 1;
+
+    /**
+     * Capability bit set when the user can delete the resource
+     */
+    public static final int CAN_DELETE = 1 << 2;
+
+    /**
+     * Capability bit set when the user can modify the properties of the resource
+     */
+    public static final int CAN_MODIFY_PROPERTIES = 1 << 3;
+
+    /**
+     * Capability bit set when the user can read the access control of the resource
+     */
+    public static final int CAN_READ_ACCESS_CONTROL = 1 << 4;
+
+    /**
+     * Capability bit set when the user can modify the access control of the resource
+     */
+    public static final int CAN_MODIFY_ACCESS_CONTROL = 1 << 5;
+
     private Logger logger = LoggerFactory.getLogger(getClass());
 
     /**
@@ -83,17 +118,34 @@ public class PrivilegesInfo {
      * and/or denied for a specific principal.
      */
     public static class AccessRights {
+        private static final String RESOURCES_NAME = PrivilegesInfo.class.getPackage().getName() + ".PrivilegesResources";
+
+        /**
+         * The resource bundles shared by all the instances, by the requested locale
+         */
+        private static final Map<Locale, ResourceBundle> RESOURCE_BUNDLES = new ConcurrentHashMap<>();
+
+        private static final int BIT_READ = 1;
+        private static final int BIT_WRITE = 1 << 1;
+        private static final int BIT_ALL = 1 << 2;
+
+        private static final String KEY_CUSTOM = "privilegeset.custom";
+
+        /**
+         * The resource key of the display name of the common privilege sets, by the
+         * bits of the granted privileges
+         */
+        private static final Map<Integer, String> COMMON_SETS = Map.of(
+                0, "privilegeset.none",
+                BIT_ALL, "privilegeset.all",
+                BIT_READ, "privilegeset.readonly",
+                BIT_READ | BIT_WRITE, "privilegeset.readwrite");
+
         private Set<Privilege> granted = new HashSet<>();
         private Set<Privilege> denied = new HashSet<>();
 
-        private ResourceBundle resBundle = null;
-
-        private ResourceBundle getResourceBundle(Locale locale) {
-            if (resBundle == null || !resBundle.getLocale().equals(locale)) {
-                resBundle =
-                        ResourceBundle.getBundle(getClass().getPackage().getName() + ".PrivilegesResources", locale);
-            }
-            return resBundle;
+        private static ResourceBundle getResourceBundle(Locale locale) {
+            return RESOURCE_BUNDLES.computeIfAbsent(locale, l -> ResourceBundle.getBundle(RESOURCES_NAME, l));
         }
 
         public Set<Privilege> getGranted() {
@@ -105,42 +157,38 @@ public class PrivilegesInfo {
         }
 
         public String getPrivilegeSetDisplayName(Locale locale) {
-            String displayName = null;
-            ResourceBundle rb = getResourceBundle(locale);
-            if (!denied.isEmpty()) {
+            return getResourceBundle(locale).getString(getPrivilegeSetKey());
+        }
+
+        /**
+         * @return the resource key of the display name of the privilege set
+         */
+        private String getPrivilegeSetKey() {
+            if (!denied.isEmpty() || granted.size() > 2) {
                 // if there are any denied privileges, then this is a custom privilege set
-                displayName = rb.getString("privilegeset.custom");
-            } else {
-                if (granted.isEmpty()) {
-                    // appears to have an empty privilege set
-                    displayName = rb.getString("privilegeset.none");
-                } else if (granted.size() == 1) {
-                    // check if the single privilege is jcr:all or jcr:read
-                    Iterator<Privilege> iterator = granted.iterator();
-                    Privilege next = iterator.next();
-                    if (PrivilegeConstants.JCR_ALL.equals(next.getName())) {
-                        // full control privilege set
-                        displayName = rb.getString("privilegeset.all");
-                    } else if (PrivilegeConstants.JCR_READ.equals(next.getName())) {
-                        // readonly privilege set
-                        displayName = rb.getString("privilegeset.readonly");
-                    }
-                } else if (granted.size() == 2) {
-                    // check if the two privileges are jcr:read and jcr:write
-                    boolean hasRead = granted.stream().anyMatch(p -> PrivilegeConstants.JCR_READ.equals(p.getName()));
-                    boolean hasWrite = granted.stream().anyMatch(p -> PrivilegeConstants.JCR_WRITE.equals(p.getName()));
-                    if (hasRead && hasWrite) {
-                        // read/write privileges
-                        displayName = rb.getString("privilegeset.readwrite");
-                    }
+                return KEY_CUSTOM;
+            }
+            int bits = 0;
+            for (Privilege privilege : granted) {
+                int bit = toBit(privilege.getName());
+                if (bit == 0 || (bits & bit) != 0) {
+                    // some other set of privileges
+                    return KEY_CUSTOM;
                 }
+                bits |= bit;
+            }
+            return COMMON_SETS.getOrDefault(bits, KEY_CUSTOM);
+        }
 
-                // some other set of privileges
-                if (displayName == null) {
-                    displayName = rb.getString("privilegeset.custom");
-                }
+        private static int toBit(String privilegeName) {
+            if (PrivilegeConstants.JCR_READ.equals(privilegeName)) {
+                return BIT_READ;
+            } else if (PrivilegeConstants.JCR_WRITE.equals(privilegeName)) {
+                return BIT_WRITE;
+            } else if (PrivilegeConstants.JCR_ALL.equals(privilegeName)) {
+                return BIT_ALL;
             }
-            return displayName;
+            return 0;
         }
     }
 
@@ -167,9 +215,9 @@ public class PrivilegesInfo {
      */
     public Map<Principal, AccessRights> getDeclaredAccessRights(Session session, String absPath)
             throws RepositoryException {
-        return toMap(session, useGetAcl(json -> {
+        return toMap(useGetAcl(svc -> {
             try {
-                return json.getAcl(session, absPath);
+                return svc.getAclPrivileges(session, absPath);
             } catch (RepositoryException e) {
                 logger.warn("Failed to load Acl", e);
             }
@@ -177,6 +225,41 @@ public class PrivilegesInfo {
         }));
     }
 
+    /**
+     * Convert the privileges of each principal to AccessRights
+     * @param principalPrivileges the privileges of each principal
+     * @return map of Principal to AccessRights
+     */
+    private static Map<Principal, AccessRights> toMap(Map<Principal, PrincipalPrivileges> principalPrivileges) {
+        if (principalPrivileges == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<Principal, AccessRights> map = new LinkedHashMap<>();
+        for (PrincipalPrivileges pp : principalPrivileges.values()) {
+            map.put(pp.getPrincipal(), toAccessRights(pp));
+        }
+        return map;
+    }
+
+    /**
+     * Convert the privileges of a principal to AccessRights
+     * @param principalPrivileges the privileges of the principal
+     * @return the AccessRights
+     */
+    private static AccessRights toAccessRights(PrincipalPrivileges principalPrivileges) {
+        AccessRights rights = new AccessRights();
+        for (LocalPrivilege lp : principalPrivileges.getPrivileges().values()) {
+            if (lp.isAllow()) {
+                rights.granted.add(lp.getPrivilege());
+            }
+            if (lp.isDeny()) {
+                rights.denied.add(lp.getPrivilege());
+            }
+        }
+        return rights;
+    }
+
     /**
      * Convert the JSON acl to a map of Principal to AccessRights
      * @param session the jcr session
@@ -250,10 +333,22 @@ public class PrivilegesInfo {
      */
     public AccessRights getDeclaredAccessRightsForPrincipal(Session session, String absPath, String principalId)
             throws RepositoryException {
-        Map<Principal, AccessRights> declaredAccessRights = getDeclaredAccessRights(session, absPath);
         PrincipalManager principalManager = ((JackrabbitSession) session).getPrincipalManager();
-        Principal principal = principalManager.getPrincipal(principalId);
-        return declaredAccessRights.get(principal);
+        if (principalManager.getPrincipal(principalId) == null) {
+            return null;
+        }
+        // only the entries of the one principal are processed
+        PrincipalPrivileges principalPrivileges = useGetAce(svc -> {
+            try {
+                return svc.getAcePrivileges(session, absPath, principalId);
+            } catch (ResourceNotFoundException e) {
+                // no entries for the principal
+            } catch (RepositoryException e) {
+                logger.warn("Failed to load Ace", e);
+            }
+            return null;
+        });
+        return principalPrivileges == null ? null : toAccessRights(principalPrivileges);
     }
 
     /**
@@ -279,9 +374,9 @@ public class PrivilegesInfo {
      */
     public Map<Principal, AccessRights> getEffectiveAccessRights(Session session, String absPath)
             throws RepositoryException {
-        return toMap(session, useGetEffectiveAcl(json -> {
+        return toMap(useGetEffectiveAcl(svc -> {
             try {
-                return json.getEffectiveAcl(session, absPath);
+                return svc.getEffectiveAclPrivileges(session, absPath);
             } catch (RepositoryException e) {
                 logger.warn("Failed to load EffectiveAcl", e);
             }
@@ -314,10 +409,22 @@ public class PrivilegesInfo {
      */
     public AccessRights getEffectiveAccessRightsForPrincipal(Session session, String absPath, String principalId)
             throws RepositoryException {
-        Map<Principal, AccessRights> effectiveAccessRights = getEffectiveAccessRights(session, absPath);
         PrincipalManager principalManager = ((JackrabbitSession) session).getPrincipalManager();
-        Principal principal = principalManager.getPrincipal(principalId);
-        return effectiveAccessRights.get(principal);
+        if (principalManager.getPrincipal(principalId) == null) {
+            return null;
+        }
+        // only the entries of the one principal are processed
+        PrincipalPrivileges principalPrivileges = useGetEffectiveAce(svc -> {
+            try {
+                return svc.getEffectiveAcePrivileges(session, absPath, principalId);
+            } catch (ResourceNotFoundException e) {
+                // no entries for the principal
+            } catch (RepositoryException e) {
+                logger.warn("Failed to load EffectiveAce", e);
+            }
+            return null;
+        });
+        return principalPrivileges == null ? null : toAccessRights(principalPrivileges);
     }
 
     /**
@@ -534,7 +641,38 @@ public class PrivilegesInfo {
     }
 
     /**
-     * Utility to lookup a service and then run a function
+     * Checks the capabilities of the current user for many paths at once.  This
+     * is the same as calling {@link #canAddChildren(Session, String)},
+     * {@link #canDeleteChildren(Session, String)}, {@link #canDelete(Session, String)},
+     * {@link #canModifyProperties(Session, String)}, {@link #canReadAccessControl(Session, String)}
+     * and {@link #canModifyAccessControl(Session, String)} for each path, but the
+     * privileges of each path and parent path are only read once.
+     *
+     * @param session the JCR session of the current user
+     * @param absPaths the paths of the resources to check
+     * @return map where the key is the path and the value is the combination of the
+     *          <code>CAN_*</code> bits of the capabilities the user has, in the order of the paths
+     */
+    public Map<String, Integer> getCapabilities(Session session, Collection<String> absPaths) {
+        Map<String, Integer> capabilities = new LinkedHashMap<>();
+        CapabilityChecker checker = null;
+        try {
+            checker = new CapabilityChecker(session);
+        } catch (RepositoryException e) {
+            logger.warn("Failed to prepare the capability check", e);
+        }
+        for (String absPath : absPaths) {
+            if (!capabilities.containsKey(absPath)) {
+                capabilities.put(absPath, checker == null ? 0 : checker.getCapabilities(absPath));
+            }
+        }
+        return capabilities;
+    }
+
+    /**
+     * Utility to lookup a service and then run a function.  The services
+     * tracked by {@link AccessManagerServices} are used when it is active,
+     * otherwise the service is looked up in the service registry.
      *
      * @param <S> the service interface type
      * @param <T> the return type of the fun
@@ -543,6 +681,12 @@ public class PrivilegesInfo {
      * @return the value of invoking the fn
      */
     private static <S, T> T useSvc(Class<S> svc, Function<S, T> fn) {
+        AccessManagerServices services = AccessManagerServices.getInstance();
+        if (services != null) {
+            S service = services.getService(svc);
+            return service == null ? null : fn.apply(service);
+        }
+
         T value = null;
         Bundle bundle = FrameworkUtil.getBundle(PrivilegesInfo.class);
         if (bundle != null) {
@@ -574,4 +718,12 @@ public class PrivilegesInfo {
     private static <T> T useGetEffectiveAcl(Function<GetEffectiveAcl, T> fn) {
         return useSvc(GetEffectiveAcl.class, fn);
     }
+
+    private static <T> T useGetAce(Function<GetAce, T> fn) {
+        return useSvc(GetAce.class, fn);
+    }
+
+    private static <T> T useGetEffectiveAce(Function<GetEffectiveAce, T> fn) {
+        return useSvc(GetEffectiveAce.class, fn);
+    }
 }
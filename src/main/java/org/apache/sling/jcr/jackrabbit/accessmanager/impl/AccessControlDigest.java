@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+import javax.jcr.security.AccessControlEntry;
+import javax.jcr.security.Privilege;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlEntry;
+import org.apache.jackrabbit.api.security.authorization.PrincipalAccessControlList;
+import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionDefinition;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Calculates a digest over the raw access control entries that a JSON
+ * response is generated from.  The digest is cheap compared to generating
+ * the response so it can be used as the validator for conditional requests.
+ */
+public final class AccessControlDigest {
+
+    private final MessageDigest digest;
+
+    public AccessControlDigest() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // should never get here, every java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Add the entries to the digest
+     *
+     * @param effectivePathToEntriesMap map where the key is the effective path and the value is the
+     *          entries for that path in the order they are declared
+     * @return this digest
+     */
+    public @NotNull AccessControlDigest update(@NotNull Map<String, List<AccessControlEntry>> effectivePathToEntriesMap)
+            throws RepositoryException {
+        update(effectivePathToEntriesMap.size());
+        for (Entry<String, List<AccessControlEntry>> entry : effectivePathToEntriesMap.entrySet()) {
+            update(entry.getKey());
+            List<AccessControlEntry> accessControlEntries = entry.getValue();
+            update(accessControlEntries.size());
+            for (AccessControlEntry accessControlEntry : accessControlEntries) {
+                update(accessControlEntry);
+            }
+        }
+        return this;
+    }
+
+    private void update(@NotNull AccessControlEntry accessControlEntry) throws RepositoryException {
+        update(accessControlEntry.getPrincipal().getName());
+        update(accessControlEntry instanceof PrincipalAccessControlList.Entry ? 1 : 0);
+        Privilege[] privileges = accessControlEntry.getPrivileges();
+        if (privileges == null) {
+            update(-1);
+        } else {
+            update(privileges.length);
+            for (Privilege privilege : privileges) {
+                update(privilege.getName());
+            }
+        }
+        if (accessControlEntry instanceof JackrabbitAccessControlEntry jrAccessControlEntry) {
+            update(jrAccessControlEntry.isAllow() ? 1 : 0);
+            String[] restrictionNames = jrAccessControlEntry.getRestrictionNames();
+            update(restrictionNames.length);
+            for (String restrictionName : restrictionNames) {
+                update(restrictionName);
+                Value[] values = jrAccessControlEntry.getRestrictions(restrictionName);
+                update(values.length);
+                for (Value value : values) {
+                    update(value.getType());
+                    update(value.getString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the restriction definitions to the digest
+     *
+     * @param restrictionDefinitions the definitions of the supported restrictions
+     * @return this digest
+     */
+    public @NotNull AccessControlDigest update(@NotNull Collection<RestrictionDefinition> restrictionDefinitions) {
+        // sorted since the definitions are not in a defined order
+        List<RestrictionDefinition> sorted = new ArrayList<>(restrictionDefinitions);
+        sorted.sort(Comparator.comparing(RestrictionDefinition::getName));
+        update(sorted.size());
+        for (RestrictionDefinition restrictionDefinition : sorted) {
+            update(restrictionDefinition.getName());
+            update(restrictionDefinition.getRequiredType().tag());
+            update(restrictionDefinition.getRequiredType().isArray() ? 1 : 0);
+            update(restrictionDefinition.isMandatory() ? 1 : 0);
+        }
+        return this;
+    }
+
+    /**
+     * Add the bits to the digest
+     *
+     * @param bits the bits to add
+     * @return this digest
+     */
+    public @NotNull AccessControlDigest update(@NotNull long[] bits) {
+        update(bits.length);
+        for (long word : bits) {
+            update((int) (word >>> 32));
+            update((int) word);
+        }
+        return this;
+    }
+
+    /**
+     * Add the number to the digest
+     *
+     * @param value the value to add
+     * @return this digest
+     */
+    public @NotNull AccessControlDigest update(int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+        return this;
+    }
+
+    /**
+     * Add the string to the digest
+     *
+     * @param value the value to add
+     * @return this digest
+     */
+    public @NotNull AccessControlDigest update(@Nullable String value) {
+        if (value == null) {
+            update(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            update(bytes.length);
+            digest.update(bytes);
+        }
+        return this;
+    }
+
+    /**
+     * Completes the digest
+     *
+     * @return the digest encoded to be usable as an entity tag value
+     */
+    public @NotNull String digest() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+}
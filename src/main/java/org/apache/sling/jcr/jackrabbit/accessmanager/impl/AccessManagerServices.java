@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import org.apache.sling.jcr.jackrabbit.accessmanager.GetAce;
+import org.apache.sling.jcr.jackrabbit.accessmanager.GetAcl;
+import org.apache.sling.jcr.jackrabbit.accessmanager.GetEffectiveAce;
+import org.apache.sling.jcr.jackrabbit.accessmanager.GetEffectiveAcl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+
+/**
+ * Tracks the services that are used by the helpers that are not components
+ * themselves, like {@link org.apache.sling.jcr.jackrabbit.accessmanager.PrivilegesInfo},
+ * so they do not have to look the services up in the service registry for
+ * every call.  The services are read without locking.
+ */
+@Component(service = {}, immediate = true)
+public final class AccessManagerServices {
+
+    private static volatile AccessManagerServices instance;
+
+    @Reference(
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    private volatile GetAcl getAcl;
+
+    @Reference(
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    private volatile GetEffectiveAcl getEffectiveAcl;
+
+    @Reference(
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    private volatile GetAce getAce;
+
+    @Reference(
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    private volatile GetEffectiveAce getEffectiveAce;
+
+    @Activate
+    void activate() {
+        instance = this;
+    }
+
+    @Deactivate
+    void deactivate() {
+        if (instance == this) {
+            instance = null;
+        }
+    }
+
+    /**
+     * @return the active instance or null if the component is not active, for
+     *          example when running outside of an OSGi framework
+     */
+    public static @Nullable AccessManagerServices getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the tracked service of the type
+     *
+     * @param <S> the service type
+     * @param svc the service class
+     * @return the service or null if it is not available
+     * @throws IllegalArgumentException if the services of the type are not tracked
+     */
+    public <S> @Nullable S getService(@NotNull Class<S> svc) {
+        Object service;
+        if (GetAcl.class.equals(svc)) {
+            service = getAcl;
+        } else if (GetEffectiveAcl.class.equals(svc)) {
+            service = getEffectiveAcl;
+        } else if (GetAce.class.equals(svc)) {
+            service = getAce;
+        } else if (GetEffectiveAce.class.equals(svc)) {
+            service = getEffectiveAce;
+        } else {
+            throw new IllegalArgumentException("Service is not tracked: " + svc.getName());
+        }
+        return svc.cast(service);
+    }
+}
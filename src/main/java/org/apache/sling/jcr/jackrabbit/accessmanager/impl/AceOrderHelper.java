@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.security.AccessControlEntry;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Contains utility methods related to the order of the entries of an access control list.
+ * <p>
+ * The target order of the entries is calculated once on a copy of the entries, and then
+ * applied with the fewest {@link JackrabbitAccessControlList#orderBefore(AccessControlEntry, AccessControlEntry)}
+ * calls, since each call is linear in the size of the list.
+ * </p>
+ */
+public final class AceOrderHelper {
+
+    private AceOrderHelper() {}
+
+    /**
+     * Calculate the position of the ACE(s) for the specified principal specified by the 'order'
+     * parameter. This has the same semantics as the private AccessControlUtil.reorderAccessControlEntries
+     * method, but the entries are not moved.
+     *
+     * @param entries the entries of the acl of the node containing the ACE to position
+     * @param principal the user or group of the ACE to position
+     * @param order where the access control entry should go in the list.
+     *         Value should be one of these:
+     *         <table>
+     *          <caption>Values</caption>
+     *          <tr><td>first</td><td>Place the target ACE as the first amongst its siblings</td></tr>
+     *          <tr><td>last</td><td>Place the target ACE as the last amongst its siblings</td></tr>
+     *          <tr><td>before xyz</td><td>Place the target ACE immediately before the sibling whose name is xyz</td></tr>
+     *          <tr><td>after xyz</td><td>Place the target ACE immediately after the sibling whose name is xyz</td></tr>
+     *          <tr><td>numeric</td><td>Place the target ACE at the specified index</td></tr>
+     *         </table>
+     * @return the entries in the requested order
+     */
+    public static @NotNull List<AccessControlEntry> reorderedEntries(
+            @NotNull List<AccessControlEntry> entries, @NotNull Principal principal, @Nullable String order) {
+        if (order == null || order.length() == 0 || entries.size() <= 1) {
+            return entries; // nothing to do
+        }
+
+        AccessControlEntry beforeEntry = null;
+        if ("first".equals(order)) {
+            beforeEntry = entries.get(0);
+        } else if ("last".equals(order)) {
+            // add to the end is the same as default
+        } else if (order.startsWith("before ")) {
+            String beforePrincipalName = order.substring(7);
+
+            // find the index of the ACE of the 'before' principal
+            for (AccessControlEntry ace : entries) {
+                if (beforePrincipalName.equals(ace.getPrincipal().getName())) {
+                    // found it!
+                    beforeEntry = ace;
+                    break;
+                }
+            }
+
+            if (beforeEntry == null) {
+                // didn't find an ACE that matched the 'before' principal
+                throw new IllegalArgumentException(
+                        "No ACE was found for the specified principal: " + beforePrincipalName);
+            }
+        } else if (order.startsWith("after ")) {
+            String afterPrincipalName = order.substring(6);
+
+            // find the index of the ACE of the 'after' principal
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                if (afterPrincipalName.equals(entries.get(i).getPrincipal().getName())) {
+                    // found it!
+
+                    // the 'before' ACE is the next one after the 'after' ACE
+                    if (i < entries.size() - 1) {
+                        beforeEntry = entries.get(i + 1);
+                    }
+                    break;
+                }
+            }
+
+            if (beforeEntry == null) {
+                // didn't find an ACE that matched the 'after' principal
+                throw new IllegalArgumentException(
+                        "No ACE was found for the specified principal: " + afterPrincipalName);
+            }
+        } else {
+            int index = -1;
+            try {
+                index = Integer.parseInt(order);
+            } catch (NumberFormatException nfe) {
+                // not a number.
+                throw new IllegalArgumentException("Illegal value for the order parameter: " + order);
+            }
+            if (index > entries.size()) {
+                // invalid index
+                throw new IndexOutOfBoundsException("Index value is too large: " + index);
+            }
+
+            // the index value is the index of the principal.  A principal may have more
+            // than one ACEs (deny + grant), so we need to compensate.
+            Set<Principal> processedPrincipals = new HashSet<>();
+            List<Integer> firstIndexes = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                if (processedPrincipals.add(entries.get(i).getPrincipal())) {
+                    firstIndexes.add(i);
+                }
+            }
+            if (index >= 0 && index < firstIndexes.size() - 1) {
+                beforeEntry = entries.get(firstIndexes.get(index));
+            }
+        }
+
+        if (beforeEntry == null) {
+            return entries;
+        }
+        // the ACEs for the specified principal go immediately before the 'before' ACE
+        List<AccessControlEntry> moved = new ArrayList<>();
+        List<AccessControlEntry> remaining = new ArrayList<>(entries.size());
+        for (AccessControlEntry ace : entries) {
+            if (ace != beforeEntry && principal.equals(ace.getPrincipal())) {
+                moved.add(ace);
+            } else {
+                remaining.add(ace);
+            }
+        }
+        if (moved.isEmpty()) {
+            return entries;
+        }
+        List<AccessControlEntry> reordered = new ArrayList<>(entries.size());
+        for (AccessControlEntry ace : remaining) {
+            if (ace == beforeEntry) {
+                reordered.addAll(moved);
+            }
+            reordered.add(ace);
+        }
+        return reordered;
+    }
+
+    /**
+     * Move the entries of the ACL to the target order.  The entries that are in the longest
+     * sequence that already has the target order stay in place, so only the fewest entries
+     * are moved.
+     *
+     * @param acl the acl to update
+     * @param currentEntries the current entries of the acl
+     * @param targetOrder the same entries in the target order
+     * @return the number of entries that were moved
+     * @throws RepositoryException if the entries could not be moved
+     */
+    public static int orderEntries(
+            @NotNull JackrabbitAccessControlList acl,
+            @NotNull AccessControlEntry[] currentEntries,
+            @NotNull List<AccessControlEntry> targetOrder)
+            throws RepositoryException {
+        int size = targetOrder.size();
+        if (size != currentEntries.length) {
+            throw new IllegalArgumentException("The target order must contain the current entries");
+        }
+
+        // the entries at the start and the end that are already in place
+        int start = 0;
+        while (start < size && currentEntries[start].equals(targetOrder.get(start))) {
+            start++;
+        }
+        if (start == size) {
+            return 0; // nothing to do
+        }
+        int end = size;
+        while (end > start && currentEntries[end - 1].equals(targetOrder.get(end - 1))) {
+            end--;
+        }
+
+        int count = end - start;
+        Map<AccessControlEntry, Integer> currentIndexes = new HashMap<>(count * 2);
+        for (int i = start; i < end; i++) {
+            currentIndexes.put(currentEntries[i], i);
+        }
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            Integer position = currentIndexes.get(targetOrder.get(start + i));
+            if (position == null) {
+                throw new IllegalArgumentException("The target order must contain the current entries");
+            }
+            positions[i] = position;
+        }
+
+        // the longest increasing sequence of the current positions
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (positions[tails[mid]] < positions[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        boolean[] inPlace = new boolean[count];
+        for (int i = tails[length - 1]; i >= 0; i = previous[i]) {
+            inPlace[i] = true;
+        }
+
+        // move the others from the end, so each one goes before an entry that is already in place
+        int moved = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            if (!inPlace[i]) {
+                int next = start + i + 1;
+                acl.orderBefore(targetOrder.get(start + i), next < size ? targetOrder.get(next) : null);
+                moved++;
+            }
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrivilegesInfo;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Calculates the capabilities from the privileges of each path.  The privileges
+ * are resolved once and the privileges of each path are read once, so the
+ * siblings share the check of the parent.
+ */
+public final class CapabilityChecker {
+    private final AccessControlManager acm;
+    private final PrivilegesIndex index;
+    private final PrivilegesIndex.Resolver resolver;
+    private final Privilege addChildNodes;
+    private final Privilege removeChildNodes;
+    private final Privilege removeNode;
+    private final Privilege modifyProperties;
+    private final Privilege readAccessControl;
+    private final Privilege modifyAccessControl;
+    private final Map<String, long[]> pathToPrivilegeBits = new HashMap<>();
+
+    /**
+     * @param session the JCR session of the user to check the capabilities of
+     */
+    public CapabilityChecker(@NotNull Session session) throws RepositoryException {
+        this.acm = session.getAccessControlManager();
+        this.index = PrivilegesIndex.getInstance(session);
+        this.resolver = index.resolver(acm);
+        this.addChildNodes = acm.privilegeFromName(Privilege.JCR_ADD_CHILD_NODES);
+        this.removeChildNodes = acm.privilegeFromName(Privilege.JCR_REMOVE_CHILD_NODES);
+        this.removeNode = acm.privilegeFromName(Privilege.JCR_REMOVE_NODE);
+        this.modifyProperties = acm.privilegeFromName(Privilege.JCR_MODIFY_PROPERTIES);
+        this.readAccessControl = acm.privilegeFromName(Privilege.JCR_READ_ACCESS_CONTROL);
+        this.modifyAccessControl = acm.privilegeFromName(Privilege.JCR_MODIFY_ACCESS_CONTROL);
+    }
+
+    /**
+     * @param absPath the path to check
+     * @return the combination of the <code>CAN_*</code> bits of {@link PrivilegesInfo} for the path
+     */
+    public int getCapabilities(@NotNull String absPath) {
+        int capabilities = 0;
+        if (has(absPath, addChildNodes)) {
+            capabilities |= PrivilegesInfo.CAN_ADD_CHILDREN;
+        }
+        if (has(absPath, removeChildNodes)) {
+            capabilities |= PrivilegesInfo.CAN_DELETE_CHILDREN;
+        }
+        if (has(absPath, removeNode) && has(parentOf(absPath), removeChildNodes)) {
+            capabilities |= PrivilegesInfo.CAN_DELETE;
+        }
+        if (has(absPath, modifyProperties)) {
+            capabilities |= PrivilegesInfo.CAN_MODIFY_PROPERTIES;
+        }
+        if (has(absPath, readAccessControl)) {
+            capabilities |= PrivilegesInfo.CAN_READ_ACCESS_CONTROL;
+        }
+        if (has(absPath, modifyAccessControl)) {
+            capabilities |= PrivilegesInfo.CAN_MODIFY_ACCESS_CONTROL;
+        }
+        return capabilities;
+    }
+
+    private static String parentOf(String absPath) {
+        int lastSlash = absPath.lastIndexOf('/');
+        // the parent of a child of the root folder is the root folder
+        return lastSlash <= 0 ? "/" : absPath.substring(0, lastSlash);
+    }
+
+    private boolean has(String absPath, Privilege privilege) {
+        int idx = resolver.indexOf(privilege);
+        if (idx == -1) {
+            // not expected for the built-in privileges
+            try {
+                return acm.hasPrivileges(absPath, new Privilege[] {privilege});
+            } catch (RepositoryException e) {
+                return false;
+            }
+        }
+        return PrivilegeBits.containsAll(getPrivilegeBits(absPath), index.getLeafBits(idx));
+    }
+
+    /**
+     * @return the leaf privileges the user has at the path, or none if they can not be read
+     */
+    private long[] getPrivilegeBits(String absPath) {
+        long[] bits = pathToPrivilegeBits.get(absPath);
+        if (bits == null) {
+            bits = index.newBits();
+            try {
+                for (Privilege privilege : acm.getPrivileges(absPath)) {
+                    int idx = resolver.indexOf(privilege);
+                    if (idx != -1) {
+                        PrivilegeBits.or(bits, index.getLeafBits(idx));
+                    }
+                }
+            } catch (RepositoryException e) {
+                // no privileges
+            }
+            pathToPrivilegeBits.put(absPath, bits);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,590 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.AccessDeniedException;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+import javax.jcr.ValueFormatException;
+import javax.jcr.security.AccessControlEntry;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.AccessControlPolicy;
+import javax.jcr.security.Privilege;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlEntry;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlManager;
+import org.apache.jackrabbit.api.security.authorization.PrincipalAccessControlList;
+import org.apache.jackrabbit.api.security.authorization.PrivilegeCollection;
+import org.apache.jackrabbit.api.security.principal.PrincipalManager;
+import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfiguration;
+import org.apache.jackrabbit.oak.spi.security.principal.PrincipalImpl;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Trie of the entries declared in the access control list of each node.  The
+ * effective entries of a path are the entries of the ancestors that were already
+ * read plus the entries of the path itself, so the siblings of a folder only read
+ * the access control list of the folder and its ancestors once.  The trie is only
+ * active when it is configured.
+ *
+ * The entries are kept without references to the session that read them: the
+ * principals, privileges and restriction values are kept by name and resolved for
+ * each request with the session of the reader.  They are only returned to a session
+ * that is allowed to read the access control of the node where they are declared,
+ * and a node is invalidated with all the nodes below it when the access control
+ * policy of the node is changed.  The invalidation happens when the change is
+ * observed, which is asynchronous, so for a short time after a change of another
+ * session the entries may still be the ones from before the change.
+ *
+ * Only the access control lists of nodes are covered, so the trie is not used when
+ * principal-based authorization is configured: when the principal-based authorization
+ * configuration is registered, when the node types of the principal-based policies are
+ * registered in the repository of the reader, or when a change of a principal-based
+ * policy is observed.  The callers then read the effective policies of the path instead.
+ */
+@Component(
+        service = {DeclaredAclTrie.class, ResourceChangeListener.class},
+        configurationPolicy = ConfigurationPolicy.REQUIRE,
+        property = {
+            ResourceChangeListener.PATHS + "=glob:**/" + EffectiveAclCache.REP_POLICY,
+            ResourceChangeListener.PATHS + "=glob:**/" + EffectiveAclCache.REP_POLICY + "/**",
+            ResourceChangeListener.PATHS + "=glob:**/" + EffectiveAclCache.REP_PRINCIPAL_POLICY,
+            ResourceChangeListener.PATHS + "=glob:**/" + EffectiveAclCache.REP_PRINCIPAL_POLICY + "/**",
+            ResourceChangeListener.CHANGES + "=ADDED",
+            ResourceChangeListener.CHANGES + "=CHANGED",
+            ResourceChangeListener.CHANGES + "=REMOVED"
+        })
+@Designate(ocd = DeclaredAclTrie.Config.class)
+public final class DeclaredAclTrie implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    @ObjectClassDefinition(
+            name = "Apache Sling Access Manager Declared ACL Trie",
+            description = "Keeps the access control entries declared at each node so the effective entries of "
+                    + "a path reuse the entries of the ancestors that were already read. The trie is not used "
+                    + "when principal-based authorization is configured. The trie is only used when this "
+                    + "configuration exists.")
+    public @interface Config {
+        @AttributeDefinition(name = "Maximum Nodes", description = "The maximum number of nodes to keep")
+        int maxNodes() default 10000;
+    }
+
+    private static final Comparator<String> PATH_COMPARATOR = Comparator.naturalOrder();
+
+    /**
+     * A level of the trie
+     */
+    private static final class TrieNode {
+        private final String path;
+        private final Map<String, TrieNode> children = new HashMap<>();
+        private final List<DeclaredEntry> entries;
+        /**
+         * The nodes from the root to this node that have entries
+         */
+        private final List<TrieNode> declaringNodes;
+
+        private TrieNode(TrieNode parent, String path, List<DeclaredEntry> entries) {
+            this.path = path;
+            this.entries = entries;
+            List<TrieNode> parentNodes = parent == null ? List.of() : parent.declaringNodes;
+            if (entries.isEmpty()) {
+                this.declaringNodes = parentNodes;
+            } else {
+                List<TrieNode> list = new ArrayList<>(parentNodes.size() + 1);
+                list.addAll(parentNodes);
+                list.add(this);
+                this.declaringNodes = Collections.unmodifiableList(list);
+            }
+        }
+    }
+
+    /**
+     * The data of an entry that does not depend on the session that read it
+     */
+    private static record DeclaredEntry(
+            String principalName,
+            String[] privilegeNames,
+            boolean allow,
+            Map<String, DeclaredRestriction> restrictions) {
+
+        static DeclaredEntry of(JackrabbitAccessControlEntry entry) throws RepositoryException {
+            Privilege[] privileges = entry.getPrivileges();
+            String[] privilegeNames = new String[privileges.length];
+            for (int i = 0; i < privileges.length; i++) {
+                privilegeNames[i] = privileges[i].getName();
+            }
+            Map<String, DeclaredRestriction> restrictions = new LinkedHashMap<>();
+            for (String restrictionName : entry.getRestrictionNames()) {
+                Value[] values = entry.getRestrictions(restrictionName);
+                int[] types = new int[values.length];
+                String[] strings = new String[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    types[i] = values[i].getType();
+                    strings[i] = values[i].getString();
+                }
+                restrictions.put(restrictionName, new DeclaredRestriction(types, strings));
+            }
+            return new DeclaredEntry(entry.getPrincipal().getName(), privilegeNames, entry.isAllow(), restrictions);
+        }
+    }
+
+    private static record DeclaredRestriction(int[] types, String[] values) {}
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private Map<String, TrieNode> nodesByPath = new LinkedHashMap<>();
+    private TrieNode root;
+    private int maxNodes;
+    private long generation;
+    private boolean disabled;
+    private int principalBasedConfigurations;
+    private boolean principalBasedNodeTypes;
+
+    @Activate
+    @Modified
+    void activate(Config config) {
+        configure(config.maxNodes());
+    }
+
+    @Deactivate
+    void deactivate() {
+        invalidateAll();
+    }
+
+    @Reference(
+            service = AuthorizationConfiguration.class,
+            cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC,
+            target = PrincipalAceHelper.PRINCIPAL_BASED_CONFIGURATION_TARGET)
+    synchronized void bindPrincipalBasedConfiguration(AuthorizationConfiguration configuration) {
+        principalBasedConfigurations++;
+        invalidateAll();
+    }
+
+    synchronized void unbindPrincipalBasedConfiguration(AuthorizationConfiguration configuration) {
+        principalBasedConfigurations--;
+    }
+
+    /**
+     * Apply the settings and clear the trie
+     *
+     * @param maxNodes the maximum number of nodes
+     */
+    synchronized void configure(int maxNodes) {
+        this.maxNodes = Math.max(1, maxNodes);
+        // least recently used first
+        this.nodesByPath = new LinkedHashMap<>(16, 0.75f, true);
+        this.root = null;
+        this.disabled = false;
+        generation++;
+    }
+
+    /**
+     * Returns the effective entries of the access control lists of the path and the ancestors
+     * in the same form as the effective policies of the path.
+     *
+     * @param session the session of the reader
+     * @param absPath the path to get the entries for
+     * @param accessControlEntryFilter a filter to find entries to include
+     * @return map of sorted entries where the key is the effective path and the value is the
+     *          entries for that path, or null if the trie can not be used for the session or
+     *          principal-based authorization is configured
+     * @throws AccessDeniedException if the session can not read the access control of the path
+     */
+    public @Nullable Map<String, List<AccessControlEntry>> getEffectiveEntries(
+            @NotNull Session session,
+            @NotNull String absPath,
+            @NotNull Predicate<? super AccessControlEntry> accessControlEntryFilter)
+            throws RepositoryException {
+        if (isPrincipalBased(session)) {
+            return null;
+        }
+        if (session.hasPendingChanges()) {
+            // the access control lists of the session may not be saved yet
+            return null;
+        }
+        AccessControlManager acm = session.getAccessControlManager();
+        if (!acm.hasPrivileges(absPath, new Privilege[] {acm.privilegeFromName(Privilege.JCR_READ_ACCESS_CONTROL)})) {
+            throw new AccessDeniedException("Access denied at " + absPath);
+        }
+
+        TrieNode node = lookup(acm, absPath);
+        if (node == null) {
+            return null;
+        }
+
+        PrivilegesIndex.Resolver resolver = PrivilegesIndex.getInstance(session).resolver(acm);
+        PrincipalManager principalManager =
+                session instanceof JackrabbitSession jrSession ? jrSession.getPrincipalManager() : null;
+        Map<String, Principal> principals = new HashMap<>();
+        Function<String, Principal> principalResolver =
+                name -> principals.computeIfAbsent(name, key -> resolvePrincipal(principalManager, key));
+        Map<String, List<AccessControlEntry>> effectivePathToEntriesMap = new TreeMap<>(PATH_COMPARATOR);
+        for (TrieNode declaringNode : node.declaringNodes) {
+            // false when the session can not read the policy or the policy is gone
+            if (!session.nodeExists(concat(declaringNode.path, EffectiveAclCache.REP_POLICY))) {
+                return null;
+            }
+            for (DeclaredEntry declaredEntry : declaringNode.entries) {
+                AccessControlEntry entry = new TrieEntry(session, acm, resolver, principalResolver, declaredEntry);
+                if (accessControlEntryFilter.test(entry)) {
+                    effectivePathToEntriesMap
+                            .computeIfAbsent(declaringNode.path, key -> new ArrayList<>())
+                            .add(entry);
+                }
+            }
+        }
+        return effectivePathToEntriesMap;
+    }
+
+    /**
+     * Resolve the principal of an entry like the access control list does
+     *
+     * @param principalManager the principal manager of the reader or null if there is none
+     * @param principalName the name of the principal
+     * @return the principal, or a principal with only the name if it is not known to the reader
+     */
+    private static @NotNull Principal resolvePrincipal(
+            @Nullable PrincipalManager principalManager, @NotNull String principalName) {
+        Principal principal = principalManager == null ? null : principalManager.getPrincipal(principalName);
+        return principal == null ? new PrincipalImpl(principalName) : principal;
+    }
+
+    private boolean isPrincipalBased(Session session) throws RepositoryException {
+        synchronized (this) {
+            if (disabled || principalBasedConfigurations > 0 || principalBasedNodeTypes) {
+                return true;
+            }
+        }
+        if (PrincipalAceHelper.isPrincipalBasedAuthorizationConfigured(session)) {
+            synchronized (this) {
+                if (!principalBasedNodeTypes) {
+                    logger.info("Principal based authorization is configured, not using the declared ACL trie");
+                    principalBasedNodeTypes = true;
+                }
+                invalidateAll();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Find the node of the path and read the levels that are missing
+     *
+     * @return the node or null if a level could not be read by the session
+     */
+    private @Nullable TrieNode lookup(AccessControlManager acm, String absPath) throws RepositoryException {
+        List<String> paths = new ArrayList<>();
+        for (String current = absPath; current != null; current = parentOf(current)) {
+            paths.add(current);
+        }
+        Collections.reverse(paths);
+
+        TrieNode node;
+        int level = 0;
+        long stamp;
+        // false when the node was evicted, then the levels below it are only read for this lookup
+        boolean inTrie = true;
+        synchronized (this) {
+            stamp = generation;
+            node = root;
+            if (node != null) {
+                nodesByPath.get(node.path);
+                for (level = 1; level < paths.size(); level++) {
+                    TrieNode child = node.children.get(paths.get(level));
+                    if (child == null) {
+                        break;
+                    }
+                    nodesByPath.get(child.path);
+                    node = child;
+                }
+            }
+        }
+
+        // read the levels that are missing
+        for (; level < paths.size(); level++) {
+            String path = paths.get(level);
+            List<DeclaredEntry> entries = readDeclaredEntries(acm, path);
+            if (entries == null) {
+                return null;
+            }
+            if (!inTrie) {
+                node = new TrieNode(node, path, entries);
+                continue;
+            }
+            synchronized (this) {
+                if (stamp != generation) {
+                    // changed while the entries were read
+                    return null;
+                }
+                TrieNode child = new TrieNode(node, path, entries);
+                if (node == null) {
+                    root = child;
+                } else {
+                    node.children.put(path, child);
+                }
+                nodesByPath.put(path, child);
+                node = child;
+                if (nodesByPath.size() > maxNodes) {
+                    while (nodesByPath.size() > maxNodes) {
+                        remove(nodesByPath.keySet().iterator().next());
+                    }
+                    // the other lookups may have read a node that was evicted
+                    generation++;
+                    inTrie = nodesByPath.get(path) == child;
+                }
+                stamp = generation;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @return the entries or null if the session can not read the access control of the path
+     */
+    private static @Nullable List<DeclaredEntry> readDeclaredEntries(AccessControlManager acm, String path)
+            throws RepositoryException {
+        AccessControlPolicy[] policies;
+        try {
+            policies = acm.getPolicies(path);
+        } catch (AccessDeniedException | PathNotFoundException e) {
+            return null;
+        }
+        List<DeclaredEntry> entries = new ArrayList<>();
+        for (AccessControlPolicy policy : policies) {
+            if (policy instanceof JackrabbitAccessControlList acl
+                    && !(policy instanceof PrincipalAccessControlList)
+                    && path.equals(acl.getPath())) {
+                for (AccessControlEntry entry : acl.getAccessControlEntries()) {
+                    if (entry instanceof JackrabbitAccessControlEntry jrEntry) {
+                        entries.add(DeclaredEntry.of(jrEntry));
+                    }
+                }
+            }
+        }
+        return entries.isEmpty() ? List.of() : Collections.unmodifiableList(entries);
+    }
+
+    private static @Nullable String parentOf(@NotNull String path) {
+        if ("/".equals(path)) {
+            return null;
+        }
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash <= 0 ? "/" : path.substring(0, lastSlash);
+    }
+
+    private static String concat(String path, String name) {
+        return "/".equals(path) ? "/" + name : path + "/" + name;
+    }
+
+    /**
+     * @return the number of nodes in the trie
+     */
+    public synchronized int size() {
+        return nodesByPath.size();
+    }
+
+    /**
+     * Remove all the nodes
+     */
+    public synchronized void invalidateAll() {
+        nodesByPath.clear();
+        root = null;
+        generation++;
+    }
+
+    /**
+     * Remove the node of the path and all the nodes below it
+     *
+     * @param path the path that the access control was changed for
+     */
+    public synchronized void invalidate(@NotNull String path) {
+        remove(path);
+        generation++;
+    }
+
+    private void remove(String path) {
+        TrieNode node = nodesByPath.get(path);
+        if (node == null) {
+            return;
+        }
+        if (node == root) {
+            nodesByPath.clear();
+            root = null;
+            return;
+        }
+        TrieNode parent = nodesByPath.get(parentOf(path));
+        if (parent != null) {
+            parent.children.remove(path);
+        }
+        List<TrieNode> stack = new ArrayList<>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            TrieNode current = stack.remove(stack.size() - 1);
+            nodesByPath.remove(current.path);
+            stack.addAll(current.children.values());
+        }
+    }
+
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            String path = change.getPath();
+            if (path.contains(EffectiveAclCache.REP_PRINCIPAL_POLICY)) {
+                synchronized (this) {
+                    if (!disabled) {
+                        logger.warn("Principal based access control is used, disabling the declared ACL trie");
+                        disabled = true;
+                    }
+                }
+                invalidateAll();
+                return;
+            }
+            int idx = path.indexOf("/" + EffectiveAclCache.REP_POLICY);
+            int end = idx + EffectiveAclCache.REP_POLICY.length() + 1;
+            if (idx != -1 && (end == path.length() || path.charAt(end) == '/')) {
+                invalidate(idx == 0 ? "/" : path.substring(0, idx));
+            }
+        }
+    }
+
+    /**
+     * An entry of the trie for the session that reads it
+     */
+    private static final class TrieEntry implements JackrabbitAccessControlEntry {
+        private final Session session;
+        private final AccessControlManager acm;
+        private final PrivilegesIndex.Resolver resolver;
+        private final Function<String, Principal> principalResolver;
+        private final DeclaredEntry entry;
+
+        private TrieEntry(
+                Session session,
+                AccessControlManager acm,
+                PrivilegesIndex.Resolver resolver,
+                Function<String, Principal> principalResolver,
+                DeclaredEntry entry) {
+            this.session = session;
+            this.acm = acm;
+            this.resolver = resolver;
+            this.principalResolver = principalResolver;
+            this.entry = entry;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return principalResolver.apply(entry.principalName());
+        }
+
+        @Override
+        public Privilege[] getPrivileges() {
+            String[] privilegeNames = entry.privilegeNames();
+            Privilege[] privileges = new Privilege[privilegeNames.length];
+            try {
+                for (int i = 0; i < privilegeNames.length; i++) {
+                    int idx = resolver.getIndex().indexOf(privilegeNames[i]);
+                    privileges[i] =
+                            idx == -1 ? acm.privilegeFromName(privilegeNames[i]) : resolver.getPrivilege(idx);
+                }
+            } catch (RepositoryException e) {
+                throw new IllegalStateException("Failed to resolve the privileges", e);
+            }
+            return privileges;
+        }
+
+        @Override
+        public PrivilegeCollection getPrivilegeCollection() throws RepositoryException {
+            if (acm instanceof JackrabbitAccessControlManager jacm) {
+                return jacm.privilegeCollectionFromNames(entry.privilegeNames());
+            }
+            throw new UnsupportedRepositoryOperationException("Privilege collections are not supported");
+        }
+
+        @Override
+        public boolean isAllow() {
+            return entry.allow();
+        }
+
+        @Override
+        public String[] getRestrictionNames() {
+            return entry.restrictions().keySet().toArray(new String[0]);
+        }
+
+        @Override
+        public Value getRestriction(String restrictionName) throws RepositoryException {
+            Value[] values = getRestrictions(restrictionName);
+            if (values == null) {
+                return null;
+            }
+            if (values.length != 1) {
+                throw new ValueFormatException("Attempt to retrieve single value from multivalued restriction");
+            }
+            return values[0];
+        }
+
+        @Override
+        public Value[] getRestrictions(String restrictionName) throws RepositoryException {
+            DeclaredRestriction restriction = entry.restrictions().get(restrictionName);
+            if (restriction == null) {
+                return null;
+            }
+            ValueFactory valueFactory = session.getValueFactory();
+            Value[] values = new Value[restriction.values().length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = valueFactory.createValue(restriction.values()[i], restriction.types()[i]);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.json.JsonObject;
+import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfiguration;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.osgi.service.metatype.annotations.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the effective ACL of a path.  The cache is only active when it
+ * is configured.
+ *
+ * The entries are invalidated when an access control policy is changed at the
+ * cached path or any of its ancestors.  The changes are observed asynchronously,
+ * so a read right after a change of a policy may still return the previous
+ * effective ACL for a short time.
+ *
+ * A cached entry is only returned to a session that is allowed to read the access
+ * control of the path and of every path where the entries were declared.  Results
+ * that may not be complete are never cached, so the cached entry is the same as
+ * what the session would have calculated.  The principal based entries of a path
+ * that a session can see do not depend on the read access to the path, so nothing
+ * is cached when principal based authorization is configured.
+ */
+@Component(
+        service = {EffectiveAclCache.class, ResourceChangeListener.class},
+        configurationPolicy = ConfigurationPolicy.REQUIRE,
+        property = {
+            ResourceChangeListener.PATHS + "=glob:**/" + EffectiveAclCache.REP_POLICY,
+            ResourceChangeListener.PATHS + "=glob:**/" + EffectiveAclCache.REP_POLICY + "/**",
+            ResourceChangeListener.PATHS + "=glob:**/" + EffectiveAclCache.REP_PRINCIPAL_POLICY,
+            ResourceChangeListener.PATHS + "=glob:**/" + EffectiveAclCache.REP_PRINCIPAL_POLICY + "/**",
+            ResourceChangeListener.CHANGES + "=ADDED",
+            ResourceChangeListener.CHANGES + "=CHANGED",
+            ResourceChangeListener.CHANGES + "=REMOVED"
+        })
+@Designate(ocd = EffectiveAclCache.Config.class)
+public final class EffectiveAclCache implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    static final String REP_POLICY = "rep:policy";
+    static final String REP_PRINCIPAL_POLICY = "rep:principalPolicy";
+
+    public static final String EVICTION_LRU = "LRU";
+    public static final String EVICTION_FIFO = "FIFO";
+
+    @ObjectClassDefinition(
+            name = "Apache Sling Access Manager Effective ACL Cache",
+            description = "Caches the effective ACL of paths for the .eacl.json requests. "
+                    + "Changes of the policies are observed asynchronously, so a request right after a change "
+                    + "may return the previous ACL. Nothing is cached with principal-based authorization. "
+                    + "The cache is only used when this configuration exists.")
+    public @interface Config {
+        @AttributeDefinition(name = "Maximum Entries", description = "The maximum number of paths to cache")
+        int maxEntries() default 1000;
+
+        @AttributeDefinition(
+                name = "Time To Live",
+                description = "The number of seconds an entry is kept or 0 to keep it until it is invalidated")
+        long timeToLive() default 0;
+
+        @AttributeDefinition(
+                name = "Eviction Policy",
+                description = "Which entry is removed when the cache is full",
+                options = {
+                    @Option(label = "Least recently used", value = EVICTION_LRU),
+                    @Option(label = "First in first out", value = EVICTION_FIFO)
+                })
+        String evictionPolicy() default EVICTION_LRU;
+    }
+
+    /**
+     * The cached data for a path
+     *
+     * @param json the effective ACL
+     * @param validator the validator of the JSON
+     * @param declaredAtPaths the paths where the entries were declared
+     */
+    public static record CachedAcl(
+            @NotNull JsonObject json, @NotNull String validator, @NotNull Set<String> declaredAtPaths) {}
+
+    private static final class Timestamped {
+        private final CachedAcl value;
+        private final long created;
+
+        private Timestamped(CachedAcl value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private Map<String, Timestamped> cache = new LinkedHashMap<>();
+    private int maxEntries;
+    private long timeToLiveMillis;
+    private long generation;
+    private int principalBasedConfigurations;
+    private boolean principalBasedNodeTypes;
+
+    @Activate
+    @Modified
+    void activate(Config config) {
+        configure(config.maxEntries(), config.timeToLive() * 1000, !EVICTION_FIFO.equals(config.evictionPolicy()));
+    }
+
+    @Deactivate
+    void deactivate() {
+        invalidateAll();
+    }
+
+    @Reference(
+            service = AuthorizationConfiguration.class,
+            cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC,
+            target = PrincipalAceHelper.PRINCIPAL_BASED_CONFIGURATION_TARGET)
+    synchronized void bindPrincipalBasedConfiguration(AuthorizationConfiguration configuration) {
+        principalBasedConfigurations++;
+        invalidateAll();
+    }
+
+    synchronized void unbindPrincipalBasedConfiguration(AuthorizationConfiguration configuration) {
+        principalBasedConfigurations--;
+    }
+
+    /**
+     * Apply the settings and clear the cache
+     *
+     * @param maxEntries the maximum number of entries
+     * @param timeToLiveMillis the milliseconds to keep an entry or 0 to not expire them
+     * @param accessOrder true to evict the least recently used entry, false to evict the oldest entry
+     */
+    synchronized void configure(int maxEntries, long timeToLiveMillis, boolean accessOrder) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.timeToLiveMillis = Math.max(0, timeToLiveMillis);
+        this.cache = new LinkedHashMap<>(16, 0.75f, accessOrder) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Timestamped> eldest) {
+                return size() > EffectiveAclCache.this.maxEntries;
+            }
+        };
+        generation++;
+    }
+
+    /**
+     * Returns a value that changes whenever entries are invalidated.  Take the
+     * stamp before reading the data to cache so data that was changed while it
+     * was calculated is not cached.
+     *
+     * @return the current stamp
+     */
+    public synchronized long stamp() {
+        return generation;
+    }
+
+    /**
+     * Returns the cached effective ACL if the session may see all of it
+     *
+     * @param session the session of the reader
+     * @param path the path of the ACL
+     * @return the cached data or null if there is none that can be used
+     */
+    public @Nullable CachedAcl get(@NotNull Session session, @NotNull String path) throws RepositoryException {
+        CachedAcl cachedAcl;
+        synchronized (this) {
+            Timestamped entry = cache.get(path);
+            if (entry == null) {
+                return null;
+            }
+            if (timeToLiveMillis > 0 && System.currentTimeMillis() - entry.created > timeToLiveMillis) {
+                cache.remove(path);
+                return null;
+            }
+            cachedAcl = entry.value;
+        }
+
+        AccessControlManager acm = session.getAccessControlManager();
+        Privilege[] readAccessControl = new Privilege[] {acm.privilegeFromName(Privilege.JCR_READ_ACCESS_CONTROL)};
+        if (!canReadAccessControl(session, acm, path, readAccessControl)) {
+            return null;
+        }
+        for (String declaredAt : cachedAcl.declaredAtPaths()) {
+            if (!canReadAccessControl(session, acm, declaredAt, readAccessControl)) {
+                return null;
+            }
+        }
+        return cachedAcl;
+    }
+
+    /**
+     * Cache the effective ACL that was calculated by the session.  Nothing is cached
+     * if the session may not have seen all of the entries or the cache was invalidated
+     * after the stamp was taken.  The principal based entries of the path that were
+     * seen depend on the session, so nothing is cached when principal based
+     * authorization is configured.
+     *
+     * @param session the session that calculated the data
+     * @param path the path of the ACL
+     * @param cachedAcl the data to cache
+     * @param stamp the value of {@link #stamp()} before the data was read
+     */
+    public void put(@NotNull Session session, @NotNull String path, @NotNull CachedAcl cachedAcl, long stamp)
+            throws RepositoryException {
+        if (isPrincipalBased(session)) {
+            logger.debug("Not caching the effective ACL of {} with principal based authorization", path);
+            return;
+        }
+
+        // the session must have seen the policies of the path and all the ancestors
+        AccessControlManager acm = session.getAccessControlManager();
+        Privilege[] readAccessControl = new Privilege[] {acm.privilegeFromName(Privilege.JCR_READ_ACCESS_CONTROL)};
+        String current = path;
+        while (current != null) {
+            if (!canReadAccessControl(session, acm, current, readAccessControl)) {
+                logger.debug("Not caching the effective ACL of {} that may be incomplete", path);
+                return;
+            }
+            current = parentOf(current);
+        }
+
+        synchronized (this) {
+            if (stamp == generation) {
+                cache.put(path, new Timestamped(cachedAcl, System.currentTimeMillis()));
+            }
+        }
+    }
+
+    private boolean isPrincipalBased(Session session) throws RepositoryException {
+        synchronized (this) {
+            if (principalBasedConfigurations > 0 || principalBasedNodeTypes) {
+                return true;
+            }
+        }
+        if (PrincipalAceHelper.isPrincipalBasedAuthorizationConfigured(session)) {
+            synchronized (this) {
+                principalBasedNodeTypes = true;
+                invalidateAll();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean canReadAccessControl(
+            Session session, AccessControlManager acm, String path, Privilege[] readAccessControl) {
+        try {
+            return session.nodeExists(path) && acm.hasPrivileges(path, readAccessControl);
+        } catch (RepositoryException e) {
+            return false;
+        }
+    }
+
+    private static @Nullable String parentOf(@NotNull String path) {
+        if ("/".equals(path)) {
+            return null;
+        }
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash <= 0 ? "/" : path.substring(0, lastSlash);
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all the cached entries
+     */
+    public synchronized void invalidateAll() {
+        cache.clear();
+        generation++;
+    }
+
+    /**
+     * Remove the cached entries of the path and all the descendants
+     *
+     * @param path the path that the access control was changed for
+     */
+    public synchronized void invalidate(@NotNull String path) {
+        if ("/".equals(path)) {
+            invalidateAll();
+            return;
+        }
+        String prefix = path + "/";
+        Iterator<String> it = cache.keySet().iterator();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (key.equals(path) || key.startsWith(prefix)) {
+                it.remove();
+            }
+        }
+        generation++;
+    }
+
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            String path = change.getPath();
+            if (path.contains(REP_PRINCIPAL_POLICY)) {
+                // principal based entries can apply anywhere
+                invalidateAll();
+                return;
+            }
+            int idx = path.indexOf("/" + REP_POLICY);
+            int end = idx + REP_POLICY.length() + 1;
+            if (idx != -1 && (end == path.length() || path.charAt(end) == '/')) {
+                invalidate(idx == 0 ? "/" : path.substring(0, idx));
+            }
+        }
+    }
+}
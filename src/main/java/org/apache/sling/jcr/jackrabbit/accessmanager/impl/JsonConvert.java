@@ -34,6 +34,7 @@ import java.util.Set;
 import jakarta.json.Json;
 import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonObjectBuilder;
+import jakarta.json.stream.JsonGenerator;
 import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
 import org.apache.sling.jcr.jackrabbit.accessmanager.LocalRestriction;
 import org.apache.sling.jcr.jackrabbit.accessmanager.post.DeclarationType;
@@ -82,6 +83,42 @@ public class JsonConvert {
         return principalObj;
     }
 
+    /**
+     * Write the principal data to the current object of the generator.  The
+     * generated fields are the same as the object from
+     * {@link #convertToJson(Principal, Map, int)} but nothing is buffered.
+     *
+     * @param generator the generator to write to
+     * @param principal the principal
+     * @param entry the privileges of the principal
+     * @param order the order of the principal or -1 to not write it
+     */
+    public static void writePrincipal(
+            JsonGenerator generator, Principal principal, Map<Privilege, LocalPrivilege> entry, int order) {
+        generator.write(JsonConvert.KEY_PRINCIPAL, principal.getName());
+        if (order != -1) {
+            generator.write(JsonConvert.KEY_ORDER, order);
+        }
+        Collection<LocalPrivilege> privileges = entry.values();
+        if (!privileges.isEmpty()) {
+            generator.writeStartObject(JsonConvert.KEY_PRIVILEGES);
+            for (LocalPrivilege pi : privileges) {
+                if (pi.isNone()) {
+                    continue;
+                }
+                generator.writeStartObject(pi.getName());
+                if (pi.isAllow()) {
+                    JsonConvert.writeRestrictions(generator, JsonConvert.KEY_ALLOW, pi.getAllowRestrictions());
+                }
+                if (pi.isDeny()) {
+                    JsonConvert.writeRestrictions(generator, JsonConvert.KEY_DENY, pi.getDenyRestrictions());
+                }
+                generator.writeEnd();
+            }
+            generator.writeEnd();
+        }
+    }
+
     /**
      * Add details about where the privileges were declared, usually
      * for viewing the effective access list or entry
@@ -106,6 +143,30 @@ public class JsonConvert {
         principalObj.add(JsonConvert.KEY_DECLARED_AT, declaredAtBuilder);
     }
 
+    /**
+     * Write details about where the privileges were declared to the current
+     * object of the generator
+     */
+    public static void writeDeclaredAt(JsonGenerator generator, Map<DeclarationType, Set<String>> declaredAt) {
+        generator.writeStartObject(JsonConvert.KEY_DECLARED_AT);
+        for (Entry<DeclarationType, Set<String>> daentry : declaredAt.entrySet()) {
+            DeclarationType type = daentry.getKey();
+            if (type != null) {
+                Set<String> value = daentry.getValue();
+                if (value.size() == 1) {
+                    generator.write(type.getJsonKey(), value.iterator().next());
+                } else {
+                    generator.writeStartArray(type.getJsonKey());
+                    for (String at : value) {
+                        generator.write(at);
+                    }
+                    generator.writeEnd();
+                }
+            }
+        }
+        generator.writeEnd();
+    }
+
     public static void addRestrictions(JsonObjectBuilder privilegeObj, String key, Set<LocalRestriction> restrictions) {
         if (restrictions.isEmpty()) {
             privilegeObj.add(key, true);
@@ -126,6 +187,26 @@ public class JsonConvert {
         }
     }
 
+    public static void writeRestrictions(JsonGenerator generator, String key, Set<LocalRestriction> restrictions) {
+        if (restrictions.isEmpty()) {
+            generator.write(key, true);
+        } else {
+            generator.writeStartObject(key);
+            for (LocalRestriction ri : restrictions) {
+                if (ri.isMultiValue()) {
+                    generator.writeStartArray(ri.getName());
+                    for (Value value : ri.getValues()) {
+                        writeTo(generator, value);
+                    }
+                    generator.writeEnd();
+                } else {
+                    writeTo(generator, ri.getName(), ri.getValue());
+                }
+            }
+            generator.writeEnd();
+        }
+    }
+
     public static JsonObjectBuilder addTo(JsonObjectBuilder builder, String key, Object value) {
         value = convertJcrValue(value);
         if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
@@ -170,6 +251,50 @@ public class JsonConvert {
         return builder;
     }
 
+    public static JsonGenerator writeTo(JsonGenerator generator, String key, Object value) {
+        value = convertJcrValue(value);
+        if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+            generator.write(key, ((Number) value).longValue());
+        } else if (value instanceof BigDecimal) {
+            generator.write(key, (BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.write(key, (BigInteger) value);
+        } else if (value instanceof Boolean) {
+            generator.write(key, (Boolean) value);
+        } else if (value instanceof Float || value instanceof Double) {
+            generator.write(key, ((Number) value).doubleValue());
+        } else if (value instanceof Privilege) {
+            generator.writeStartObject(key);
+            generator.write("name", ((Privilege) value).getName());
+            generator.writeEnd();
+        } else if (value instanceof String) {
+            generator.write(key, (String) value);
+        } else {
+            generator.write(key, value.toString());
+        }
+        return generator;
+    }
+
+    public static JsonGenerator writeTo(JsonGenerator generator, Object value) {
+        value = convertJcrValue(value);
+        if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+            generator.write(((Number) value).longValue());
+        } else if (value instanceof BigDecimal) {
+            generator.write((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.write((BigInteger) value);
+        } else if (value instanceof Boolean) {
+            generator.write((Boolean) value);
+        } else if (value instanceof Float || value instanceof Double) {
+            generator.write(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            generator.write((String) value);
+        } else {
+            generator.write(value.toString());
+        }
+        return generator;
+    }
+
     private static Object convertJcrValue(Object value) {
         if (value instanceof Value) {
             try {
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.security.Privilege;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Map of privileges to the {@link LocalPrivilege} state that is backed by an
+ * array with a slot for each position of the {@link PrivilegesIndex}, so a
+ * lookup is an array access instead of hashing the privilege.  Privileges that
+ * are not in the index are kept in a separate map so the behavior matches any
+ * other map.
+ *
+ * Iteration is in the order of the positions in the index followed by any
+ * privileges that are not in the index.
+ */
+public final class LocalPrivilegeMap extends AbstractMap<Privilege, LocalPrivilege> {
+
+    private final PrivilegesIndex.Resolver resolver;
+    private final PrivilegesIndex index;
+    private final LocalPrivilege[] slots;
+    private final long[] present;
+    private int count;
+    private int modCount;
+    private Map<Privilege, LocalPrivilege> overflow;
+
+    public LocalPrivilegeMap(@NotNull PrivilegesIndex.Resolver resolver) {
+        this.resolver = resolver;
+        this.index = resolver.getIndex();
+        this.slots = new LocalPrivilege[index.size()];
+        this.present = index.newBits();
+    }
+
+    /**
+     * @return the resolver for the positions of the privileges
+     */
+    public @NotNull PrivilegesIndex.Resolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * @return the index that the positions are from
+     */
+    public @NotNull PrivilegesIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @param idx the position of the privilege
+     * @return the state of the privilege at the position or null if there is none
+     */
+    public @Nullable LocalPrivilege get(int idx) {
+        return slots[idx];
+    }
+
+    private int indexOf(Object key) {
+        return key instanceof Privilege privilege ? resolver.indexOf(privilege) : -1;
+    }
+
+    @Override
+    public int size() {
+        return count + (overflow == null ? 0 : overflow.size());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public LocalPrivilege get(Object key) {
+        int idx = indexOf(key);
+        if (idx != -1) {
+            return slots[idx];
+        }
+        return overflow == null ? null : overflow.get(key);
+    }
+
+    @Override
+    public LocalPrivilege put(Privilege key, LocalPrivilege value) {
+        if (value == null) {
+            throw new NullPointerException("null values are not supported");
+        }
+        int idx = indexOf(key);
+        if (idx == -1) {
+            if (overflow == null) {
+                overflow = new HashMap<>();
+            }
+            modCount++;
+            return overflow.put(key, value);
+        }
+        LocalPrivilege old = slots[idx];
+        slots[idx] = value;
+        if (old == null) {
+            PrivilegeBits.set(present, idx);
+            count++;
+            modCount++;
+        }
+        return old;
+    }
+
+    @Override
+    public LocalPrivilege computeIfAbsent(
+            Privilege key, Function<? super Privilege, ? extends LocalPrivilege> mappingFunction) {
+        int idx = indexOf(key);
+        if (idx != -1 && slots[idx] != null) {
+            return slots[idx];
+        }
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public LocalPrivilege remove(Object key) {
+        int idx = indexOf(key);
+        if (idx == -1) {
+            if (overflow == null) {
+                return null;
+            }
+            LocalPrivilege old = overflow.remove(key);
+            if (old != null) {
+                modCount++;
+            }
+            return old;
+        }
+        LocalPrivilege old = slots[idx];
+        if (old != null) {
+            removeSlot(idx);
+        }
+        return old;
+    }
+
+    private void removeSlot(int idx) {
+        slots[idx] = null;
+        PrivilegeBits.clear(present, idx);
+        count--;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = PrivilegeBits.nextSetBit(present, 0); i >= 0; i = PrivilegeBits.nextSetBit(present, i + 1)) {
+            slots[i] = null;
+        }
+        PrivilegeBits.andNot(present, present);
+        count = 0;
+        overflow = null;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<Privilege, LocalPrivilege>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Privilege, LocalPrivilege>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return LocalPrivilegeMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                LocalPrivilegeMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Iterates the slots in the order of the index and then the overflow entries
+     */
+    private final class EntryIterator implements Iterator<Entry<Privilege, LocalPrivilege>> {
+        private int expectedModCount = modCount;
+        private int nextIdx = PrivilegeBits.nextSetBit(present, 0);
+        private int lastIdx = -1;
+        private Iterator<Entry<Privilege, LocalPrivilege>> overflowIt;
+        private boolean lastFromOverflow;
+
+        @Override
+        public boolean hasNext() {
+            if (nextIdx >= 0) {
+                return true;
+            }
+            if (overflowIt == null && overflow != null) {
+                overflowIt = overflow.entrySet().iterator();
+            }
+            return overflowIt != null && overflowIt.hasNext();
+        }
+
+        @Override
+        public Entry<Privilege, LocalPrivilege> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextIdx >= 0) {
+                int idx = nextIdx;
+                lastIdx = idx;
+                lastFromOverflow = false;
+                nextIdx = PrivilegeBits.nextSetBit(present, idx + 1);
+                return new SlotEntry(idx);
+            }
+            lastIdx = -1;
+            lastFromOverflow = true;
+            return overflowIt.next();
+        }
+
+        @Override
+        public void remove() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (lastFromOverflow) {
+                overflowIt.remove();
+                lastFromOverflow = false;
+                modCount++;
+            } else if (lastIdx >= 0) {
+                removeSlot(lastIdx);
+                lastIdx = -1;
+            } else {
+                throw new IllegalStateException();
+            }
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Entry that reads and writes through to a slot
+     */
+    private final class SlotEntry implements Entry<Privilege, LocalPrivilege> {
+        private final int idx;
+        private final LocalPrivilege value;
+
+        private SlotEntry(int idx) {
+            this.idx = idx;
+            this.value = slots[idx];
+        }
+
+        @Override
+        public Privilege getKey() {
+            return value.getPrivilege();
+        }
+
+        @Override
+        public LocalPrivilege getValue() {
+            LocalPrivilege current = slots[idx];
+            return current == null ? value : current;
+        }
+
+        @Override
+        public LocalPrivilege setValue(LocalPrivilege newValue) {
+            if (newValue == null) {
+                throw new NullPointerException("null values are not supported");
+            }
+            LocalPrivilege old = getValue();
+            if (slots[idx] == null) {
+                throw new IllegalStateException("Entry was removed");
+            }
+            slots[idx] = newValue;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Entry<?, ?> e
+                    && getKey().equals(e.getKey())
+                    && getValue().equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ getValue().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.sling.jcr.jackrabbit.accessmanager.LocalRestriction;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Immutable set of restrictions with a precomputed hash code.
+ *
+ * The privileges that are updated with the same restrictions share the same
+ * instance, so they can usually be compared by reference.  The instances are
+ * not shared beyond that, since the values of the restrictions belong to the
+ * session that created them.
+ */
+public final class LocalRestrictionSet extends AbstractSet<LocalRestriction> {
+
+    /**
+     * The canonical empty set
+     */
+    public static final LocalRestrictionSet EMPTY = new LocalRestrictionSet(new LocalRestriction[0]);
+
+    private final LocalRestriction[] items;
+    private final int hash;
+
+    private LocalRestrictionSet(LocalRestriction[] items) {
+        this.items = items;
+        int h = 0;
+        for (LocalRestriction item : items) {
+            h += item.hashCode();
+        }
+        this.hash = h;
+    }
+
+    /**
+     * Returns an immutable set of the supplied restrictions
+     *
+     * @param restrictions the restrictions
+     * @return the supplied set if it is already immutable, otherwise an immutable copy of it
+     */
+    public static @NotNull LocalRestrictionSet copyOf(@NotNull Collection<LocalRestriction> restrictions) {
+        if (restrictions instanceof LocalRestrictionSet lrs) {
+            return lrs;
+        }
+        if (restrictions.isEmpty()) {
+            return EMPTY;
+        }
+        // iterate in the same order as a HashSet of the same items would
+        return new LocalRestrictionSet(new HashSet<>(restrictions).toArray(new LocalRestriction[0]));
+    }
+
+    @Override
+    public Iterator<LocalRestriction> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < items.length;
+            }
+
+            @Override
+            public LocalRestriction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return items[next++];
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return items.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        for (LocalRestriction item : items) {
+            if (item.equals(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof LocalRestrictionSet other && (hash != other.hash || items.length != other.items.length)) {
+            return false;
+        }
+        return super.equals(o);
+    }
+}
@@ -18,6 +18,8 @@
  */
 package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
 
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
 import javax.jcr.security.AccessControlEntry;
 
 import org.apache.jackrabbit.api.security.authorization.PrincipalAccessControlList;
@@ -34,6 +36,20 @@ public class PrincipalAceHelper {
 
     public static final String RESOURCE_PATH_REPOSITORY = "/:repository";
 
+    /**
+     * The node type of the principal based policies, which is only registered when
+     * principal based authorization is configured
+     */
+    public static final String NT_REP_PRINCIPAL_POLICY = "rep:PrincipalPolicy";
+
+    /**
+     * The target of a reference to the principal based authorization configuration
+     * of the repository
+     */
+    public static final String PRINCIPAL_BASED_CONFIGURATION_TARGET = "(oak.security.name="
+            + "org.apache.jackrabbit.oak.spi.security.authorization.principalbased.impl."
+            + "PrincipalBasedAuthorizationConfiguration)";
+
     private PrincipalAceHelper() {
         // no-op
     }
@@ -90,4 +106,16 @@ public class PrincipalAceHelper {
         }
         return matches;
     }
+
+    /**
+     * Checks if principal based authorization is configured for the repository
+     * of the session
+     *
+     * @param session the session to check
+     * @return true if the node types of the principal based policies are registered
+     * @throws RepositoryException if the node types can not be read
+     */
+    public static boolean isPrincipalBasedAuthorizationConfigured(Session session) throws RepositoryException {
+        return session.getWorkspace().getNodeTypeManager().hasNodeType(NT_REP_PRINCIPAL_POLICY);
+    }
 }
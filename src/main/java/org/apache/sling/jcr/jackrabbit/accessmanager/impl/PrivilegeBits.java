@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Utility methods for privilege sets that are encoded as bitsets.  Each bit
+ * is the position of the privilege in the {@link PrivilegesIndex}.
+ */
+public final class PrivilegeBits {
+
+    private PrivilegeBits() {
+        // no-op
+    }
+
+    /**
+     * @param size the number of privileges
+     * @return a new empty bitset large enough for the number of privileges
+     */
+    public static @NotNull long[] newBits(int size) {
+        return new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * @param size the number of privileges
+     * @param positions the positions to set
+     * @return a new bitset with the positions set
+     */
+    public static @NotNull long[] of(int size, @NotNull int... positions) {
+        long[] bits = newBits(size);
+        for (int idx : positions) {
+            set(bits, idx);
+        }
+        return bits;
+    }
+
+    public static void set(@NotNull long[] bits, int idx) {
+        bits[idx >>> 6] |= 1L << idx;
+    }
+
+    public static void clear(@NotNull long[] bits, int idx) {
+        bits[idx >>> 6] &= ~(1L << idx);
+    }
+
+    public static boolean get(@NotNull long[] bits, int idx) {
+        return (bits[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    public static boolean isEmpty(@NotNull long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if every bit of the other bitset is also set in the bits
+     */
+    public static boolean containsAll(@NotNull long[] bits, @NotNull long[] other) {
+        for (int i = 0; i < other.length; i++) {
+            if ((other[i] & ~bits[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if any bit is set in both bitsets
+     */
+    public static boolean intersects(@NotNull long[] bits, @NotNull long[] other) {
+        for (int i = 0; i < other.length; i++) {
+            if ((other[i] & bits[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets each bit in the target that is set in the other bitset
+     */
+    public static void or(@NotNull long[] target, @NotNull long[] other) {
+        for (int i = 0; i < other.length; i++) {
+            target[i] |= other[i];
+        }
+    }
+
+    /**
+     * Clears each bit in the target that is set in the other bitset
+     */
+    public static void andNot(@NotNull long[] target, @NotNull long[] other) {
+        for (int i = 0; i < other.length; i++) {
+            target[i] &= ~other[i];
+        }
+    }
+
+    /**
+     * @return the number of bits that are set
+     */
+    public static int cardinality(@NotNull long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @param bits the bitset to check
+     * @param fromIdx the position to start from (inclusive)
+     * @return the position of the next set bit or -1 if there are no more
+     */
+    public static int nextSetBit(@NotNull long[] bits, int fromIdx) {
+        int wordIdx = fromIdx >>> 6;
+        if (wordIdx >= bits.length) {
+            return -1;
+        }
+        long word = bits[wordIdx] & (-1L << fromIdx);
+        while (true) {
+            if (word != 0) {
+                return (wordIdx << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIdx == bits.length) {
+                return -1;
+            }
+            word = bits[wordIdx];
+        }
+    }
+}
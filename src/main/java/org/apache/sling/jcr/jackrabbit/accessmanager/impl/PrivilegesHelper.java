@@ -178,6 +178,34 @@ public final class PrivilegesHelper {
         return localPrivilege;
     }
 
+    /**
+     * Returns the non-aggregate privileges that are contained in the supplied privilege, or the
+     * privilege itself if it is not an aggregate.  When the map is a {@link LocalPrivilegeMap}
+     * the expansion table of the privileges index is used, so no walk of the privilege
+     * hierarchy is required.
+     *
+     * @param privilegeToLocalPrivilegesMap the map containing the declared LocalPrivilege items
+     * @param p the privilege to expand
+     * @return the leaf privileges
+     */
+    private static @NotNull Privilege[] getLeafPrivileges(
+            @NotNull Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap, @NotNull Privilege p)
+            throws RepositoryException {
+        if (privilegeToLocalPrivilegesMap instanceof LocalPrivilegeMap lpm) {
+            PrivilegesIndex.Resolver resolver = lpm.getResolver();
+            int idx = resolver.indexOf(p);
+            if (idx != -1) {
+                return resolver.getLeafPrivileges(idx);
+            }
+        }
+        if (p.isAggregate()) {
+            return Stream.of(p.getAggregatePrivileges())
+                    .filter(ap -> !ap.isAggregate())
+                    .toArray(Privilege[]::new);
+        }
+        return new Privilege[] {p};
+    }
+
     /**
      * Populates each of the local allow and/or deny privilege in the privilegeToLocalPrivilegesMap.  If the supplied
      * privilege is an aggregate then the data is populated for each of non-aggregate privileges contained in
@@ -198,29 +226,9 @@ public final class PrivilegesHelper {
             boolean deny,
             @NotNull Set<LocalRestriction> denyRestrictions)
             throws RepositoryException {
-        if (p.isAggregate()) {
-            Privilege[] aggregatePrivileges = p.getDeclaredAggregatePrivileges();
-            for (Privilege aggregatePrivilege : aggregatePrivileges) {
-                if (aggregatePrivilege.isAggregate()) {
-                    expandAllowAndDenyPrivWithoutAggregates(
-                            privilegeToLocalPrivilegesMap,
-                            aggregatePrivilege,
-                            allow,
-                            allowRestrictions,
-                            deny,
-                            denyRestrictions);
-                } else {
-                    localAllowAndDenyPriv(
-                            privilegeToLocalPrivilegesMap,
-                            aggregatePrivilege,
-                            allow,
-                            allowRestrictions,
-                            deny,
-                            denyRestrictions);
-                }
-            }
-        } else {
-            localAllowAndDenyPriv(privilegeToLocalPrivilegesMap, p, allow, allowRestrictions, deny, denyRestrictions);
+        for (Privilege leaf : getLeafPrivileges(privilegeToLocalPrivilegesMap, p)) {
+            localAllowAndDenyPriv(
+                    privilegeToLocalPrivilegesMap, leaf, allow, allowRestrictions, deny, denyRestrictions);
         }
     }
 
@@ -240,18 +248,8 @@ public final class PrivilegesHelper {
             boolean isAllow,
             Set<LocalRestriction> restrictions)
             throws RepositoryException {
-        if (p.isAggregate()) {
-            Privilege[] aggregatePrivileges = p.getDeclaredAggregatePrivileges();
-            for (Privilege aggregatePrivilege : aggregatePrivileges) {
-                if (aggregatePrivilege.isAggregate()) {
-                    expandAllowPrivWithoutAggregates(
-                            privilegeToLocalPrivilegesMap, aggregatePrivilege, isAllow, restrictions);
-                } else {
-                    localAllowPriv(privilegeToLocalPrivilegesMap, aggregatePrivilege, isAllow, restrictions);
-                }
-            }
-        } else {
-            localAllowPriv(privilegeToLocalPrivilegesMap, p, isAllow, restrictions);
+        for (Privilege leaf : getLeafPrivileges(privilegeToLocalPrivilegesMap, p)) {
+            localAllowPriv(privilegeToLocalPrivilegesMap, leaf, isAllow, restrictions);
         }
     }
 
@@ -271,18 +269,8 @@ public final class PrivilegesHelper {
             boolean isDeny,
             Set<LocalRestriction> restrictions)
             throws RepositoryException {
-        if (p.isAggregate()) {
-            Privilege[] aggregatePrivileges = p.getDeclaredAggregatePrivileges();
-            for (Privilege aggregatePrivilege : aggregatePrivileges) {
-                if (aggregatePrivilege.isAggregate()) {
-                    expandDenyPrivWithoutAggregates(
-                            privilegeToLocalPrivilegesMap, aggregatePrivilege, isDeny, restrictions);
-                } else {
-                    localDenyPriv(privilegeToLocalPrivilegesMap, aggregatePrivilege, isDeny, restrictions);
-                }
-            }
-        } else {
-            localDenyPriv(privilegeToLocalPrivilegesMap, p, isDeny, restrictions);
+        for (Privilege leaf : getLeafPrivileges(privilegeToLocalPrivilegesMap, p)) {
+            localDenyPriv(privilegeToLocalPrivilegesMap, leaf, isDeny, restrictions);
         }
     }
 
@@ -306,6 +294,9 @@ public final class PrivilegesHelper {
             @NotNull Set<LocalRestriction> denyRestrictions,
             @NotNull Collection<Privilege> privileges)
             throws RepositoryException {
+        // copy once so each of the privileges shares the same restrictions instance
+        allowRestrictions = LocalRestrictionSet.copyOf(allowRestrictions);
+        denyRestrictions = LocalRestrictionSet.copyOf(denyRestrictions);
         for (Privilege privilege : privileges) {
             expandAllowAndDenyPrivWithoutAggregates(
                     privilegeToLocalPrivilegesMap, privilege, allow, allowRestrictions, deny, denyRestrictions);
@@ -324,6 +315,8 @@ public final class PrivilegesHelper {
             @NotNull Set<LocalRestriction> restrictions,
             @NotNull Collection<Privilege> privileges)
             throws RepositoryException {
+        // copy once so each of the privileges shares the same restrictions instance
+        restrictions = LocalRestrictionSet.copyOf(restrictions);
         for (Privilege privilege : privileges) {
             expandAllowPrivWithoutAggregates(privilegeToLocalPrivilegesMap, privilege, true, restrictions);
         }
@@ -356,6 +349,8 @@ public final class PrivilegesHelper {
             @NotNull Set<LocalRestriction> restrictions,
             @NotNull Collection<Privilege> privileges)
             throws RepositoryException {
+        // copy once so each of the privileges shares the same restrictions instance
+        restrictions = LocalRestrictionSet.copyOf(restrictions);
         for (Privilege privilege : privileges) {
             expandDenyPrivWithoutAggregates(privilegeToLocalPrivilegesMap, privilege, true, restrictions);
         }
@@ -452,19 +447,8 @@ public final class PrivilegesHelper {
             boolean forDeny,
             @NotNull Collection<String> restrictionNames)
             throws RepositoryException {
-        if (p.isAggregate()) {
-            Privilege[] aggregatePrivileges = p.getDeclaredAggregatePrivileges();
-            for (Privilege aggregatePrivilege : aggregatePrivileges) {
-                if (aggregatePrivilege.isAggregate()) {
-                    removeRestrictionsWithoutAggregates(
-                            privilegeToLocalPrivilegesMap, aggregatePrivilege, forAllow, forDeny, restrictionNames);
-                } else {
-                    localPrivRemoveRestrictions(
-                            privilegeToLocalPrivilegesMap, aggregatePrivilege, forAllow, forDeny, restrictionNames);
-                }
-            }
-        } else {
-            localPrivRemoveRestrictions(privilegeToLocalPrivilegesMap, p, forAllow, forDeny, restrictionNames);
+        for (Privilege leaf : getLeafPrivileges(privilegeToLocalPrivilegesMap, p)) {
+            localPrivRemoveRestrictions(privilegeToLocalPrivilegesMap, leaf, forAllow, forDeny, restrictionNames);
         }
     }
 
@@ -540,30 +524,9 @@ public final class PrivilegesHelper {
             LocalRestriction restriction,
             boolean requireAllowOrDenyAlreadySet)
             throws RepositoryException {
-        if (p.isAggregate()) {
-            Privilege[] aggregatePrivileges = p.getDeclaredAggregatePrivileges();
-            for (Privilege aggregatePrivilege : aggregatePrivileges) {
-                if (aggregatePrivilege.isAggregate()) {
-                    addRestrictionWithoutAggregates(
-                            privilegeToLocalPrivilegesMap,
-                            aggregatePrivilege,
-                            forAllow,
-                            forDeny,
-                            restriction,
-                            requireAllowOrDenyAlreadySet);
-                } else {
-                    localPrivAddRestriction(
-                            privilegeToLocalPrivilegesMap,
-                            aggregatePrivilege,
-                            forAllow,
-                            forDeny,
-                            restriction,
-                            requireAllowOrDenyAlreadySet);
-                }
-            }
-        } else {
+        for (Privilege leaf : getLeafPrivileges(privilegeToLocalPrivilegesMap, p)) {
             localPrivAddRestriction(
-                    privilegeToLocalPrivilegesMap, p, forAllow, forDeny, restriction, requireAllowOrDenyAlreadySet);
+                    privilegeToLocalPrivilegesMap, leaf, forAllow, forDeny, restriction, requireAllowOrDenyAlreadySet);
         }
     }
 
@@ -760,6 +723,10 @@ public final class PrivilegesHelper {
             Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap,
             Map<Privilege, Integer> privilegeLongestDepthMap)
             throws RepositoryException {
+        if (privilegeToLocalPrivilegesMap instanceof LocalPrivilegeMap lpm) {
+            consolidateAggregates(lpm, getSupportedPrivilegeBits(jcrSession, resourcePath, lpm.getIndex()));
+            return;
+        }
         Privilege[] supportedPrivileges = getSupportedOrRegisteredPrivileges(jcrSession, resourcePath);
         // sort the aggregates to process the deepest first
         Privilege[] supportedAggregatePrivileges = Stream.of(supportedPrivileges)
@@ -838,4 +805,139 @@ public final class PrivilegesHelper {
         privilegeToLocalPrivilegesMap.entrySet().removeIf(entry -> entry.getValue()
                 .isNone());
     }
+
+    /**
+     * Calculate the bitset of the privileges that are supported at the resource path.  The
+     * result is cached by the node types of the node at the path, so the supported privileges
+     * are only read from the repository the first time each combination is encountered.
+     *
+     * @param jcrSession the current session
+     * @param resourcePath the path of the resource
+     * @param index the privileges index that the positions are from
+     * @return bitset of the positions of the supported privileges. The returned array must not be modified.
+     */
+    public static @NotNull long[] getSupportedPrivilegeBits(
+            @NotNull Session jcrSession, @Nullable String resourcePath, @NotNull PrivilegesIndex index)
+            throws RepositoryException {
+        String nodeTypesKey;
+        if (resourcePath != null && jcrSession.nodeExists(resourcePath)) {
+            nodeTypesKey = PrivilegesIndex.toSupportedKey(jcrSession.getNode(resourcePath));
+        } else {
+            // non-existing path or the repository level
+            nodeTypesKey = PrivilegesIndex.SUPPORTED_KEY_NOT_A_NODE;
+        }
+        long[] supportedBits = index.getCachedSupportedBits(nodeTypesKey);
+        if (supportedBits == null) {
+            supportedBits = index.newBits();
+            for (Privilege privilege : getSupportedOrRegisteredPrivileges(jcrSession, resourcePath)) {
+                int idx = index.indexOf(privilege);
+                if (idx != -1) {
+                    PrivilegeBits.set(supportedBits, idx);
+                }
+            }
+            index.cacheSupportedBits(nodeTypesKey, supportedBits);
+        }
+        return supportedBits;
+    }
+
+    /**
+     * Process the supplied privileges and consolidate each aggregate whenever the state of all the
+     * aggregated direct child privileges are allow or deny.  This walks the aggregates of the index
+     * once with the deepest first, so the supported privileges can be calculated once and reused
+     * for many maps.
+     *
+     * @param privilegeToLocalPrivilegesMap map of privileges to process
+     * @param supportedPrivilegeBits the supported privileges.  See {@link #getSupportedPrivilegeBits(Session, String, PrivilegesIndex)}
+     */
+    public static void consolidateAggregates(
+            @NotNull LocalPrivilegeMap privilegeToLocalPrivilegesMap, @NotNull long[] supportedPrivilegeBits)
+            throws RepositoryException {
+        PrivilegesIndex index = privilegeToLocalPrivilegesMap.getIndex();
+        for (int aggregateIdx : index.getAggregatesDeepestFirst()) {
+            if (!PrivilegeBits.get(supportedPrivilegeBits, aggregateIdx)) {
+                continue;
+            }
+            int[] children = index.getDirectChildren(aggregateIdx);
+            if (children.length == 0) {
+                continue;
+            }
+
+            // all the children must have a LocalPrivilege to be considered
+            LocalPrivilege first = privilegeToLocalPrivilegesMap.get(children[0]);
+            if (first == null) {
+                continue;
+            }
+            Set<LocalRestriction> firstAllowRestrictions = first.getAllowRestrictions();
+            Set<LocalRestriction> firstDenyRestrictions = first.getDenyRestrictions();
+            boolean allAllow = first.isAllow();
+            boolean allDeny = first.isDeny();
+            boolean allPresent = true;
+            for (int i = 1; i < children.length; i++) {
+                LocalPrivilege lp = privilegeToLocalPrivilegesMap.get(children[i]);
+                if (lp == null) {
+                    allPresent = false;
+                    break;
+                }
+                allAllow =
+                        allAllow && lp.isAllow() && sameRestrictions(firstAllowRestrictions, lp.getAllowRestrictions());
+                allDeny = allDeny && lp.isDeny() && sameRestrictions(firstDenyRestrictions, lp.getDenyRestrictions());
+            }
+            if (!allPresent || !(allAllow || allDeny)) {
+                continue;
+            }
+
+            LocalPrivilege alp = privilegeToLocalPrivilegesMap.get(aggregateIdx);
+            if (alp == null) {
+                alp = new LocalPrivilege(
+                        privilegeToLocalPrivilegesMap.getResolver().getPrivilege(aggregateIdx));
+                privilegeToLocalPrivilegesMap.put(alp.getPrivilege(), alp);
+            }
+            if (allAllow) {
+                // all the child privileges are allow so we can mark the parent as allow
+                alp.setAllow(true);
+                alp.setAllowRestrictions(firstAllowRestrictions);
+
+                // each child with the same restrictions can be unset
+                for (int childIdx : children) {
+                    LocalPrivilege lp = privilegeToLocalPrivilegesMap.get(childIdx);
+                    if (lp.sameAllowRestrictions(alp.getAllowRestrictions())) {
+                        lp.setAllow(false);
+                        lp.setAllowRestrictions(Collections.emptySet());
+                    }
+                }
+            }
+            if (allDeny) {
+                // all the child privileges are deny so we can mark the parent as deny
+                alp.setDeny(true);
+                alp.setDenyRestrictions(firstDenyRestrictions);
+
+                // each child with the same restrictions can be unset
+                for (int childIdx : children) {
+                    LocalPrivilege lp = privilegeToLocalPrivilegesMap.get(childIdx);
+                    if (lp.sameDenyRestrictions(alp.getDenyRestrictions())) {
+                        lp.setDeny(false);
+                        lp.setDenyRestrictions(Collections.emptySet());
+                    }
+                }
+            }
+        }
+
+        // remove any entries that are neither allow nor deny
+        privilegeToLocalPrivilegesMap.entrySet().removeIf(entry -> entry.getValue()
+                .isNone());
+    }
+
+    /**
+     * Compare two restriction sets, checking for the same instance or the
+     * common case of no restrictions before comparing the items
+     */
+    private static boolean sameRestrictions(Set<LocalRestriction> first, Set<LocalRestriction> second) {
+        if (first == second) {
+            return true;
+        }
+        if (first.size() != second.size()) {
+            return false;
+        }
+        return first.isEmpty() || first.equals(second);
+    }
 }
@@ -0,0 +1,579 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.nodetype.NodeType;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.apache.jackrabbit.api.JackrabbitWorkspace;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable index of the privilege hierarchy below jcr:all.
+ *
+ * The index is calculated once per repository and shared by all the servlets. It
+ * holds the longest depth, the direct children, the non-aggregate leaves and a
+ * topological order for each of the privileges. Each privilege is assigned a
+ * position in the index that is stable for the life of the index.
+ *
+ * Only the privilege names are retained so the index does not keep any
+ * session state alive. Use {@link #resolver(AccessControlManager)} to map
+ * the positions back to the privileges of the current session.
+ */
+public final class PrivilegesIndex {
+
+    /**
+     * Cache of the index for each repository
+     */
+    private static final Map<Repository, PrivilegesIndex> INDEX_BY_REPOSITORY =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * Key of the supported privileges for a path that is not a node,
+     * which is a non-existing path or the repository level
+     */
+    public static final String SUPPORTED_KEY_NOT_A_NODE = "";
+
+    /**
+     * Upper bound of the number of node type combinations that are remembered
+     */
+    private static final int MAX_SUPPORTED_CACHE_SIZE = 1024;
+
+    /**
+     * The names of the declared aggregate privileges of the jcr:all privilege that the
+     * index was built from.  The jcr:all privilege aggregates every registered privilege,
+     * so this changes whenever a new privilege is registered through the PrivilegeManager.
+     */
+    private final Set<String> jcrAllAggregateNames;
+
+    private final String[] names;
+    private final Map<String, Integer> nameToIndex;
+    private final boolean[] aggregate;
+    private final int[] longestDepth;
+    private final int[][] directChildren;
+    private final int[][] leaves;
+    private final long[][] leafBits;
+    private final int[] aggregatesDeepestFirst;
+
+    /**
+     * Supported privileges keyed by the node types. Since it belongs to the
+     * index this is discarded whenever a privilege is registered.
+     */
+    private final Map<String, long[]> supportedBitsCache = new ConcurrentHashMap<>();
+
+    private PrivilegesIndex(
+            Set<String> jcrAllAggregateNames,
+            List<String> orderedNames,
+            Map<String, Integer> depthMap,
+            Map<String, String[]> declaredAggregatesMap) {
+        this.jcrAllAggregateNames = jcrAllAggregateNames;
+        int size = orderedNames.size();
+        this.names = orderedNames.toArray(new String[size]);
+        this.nameToIndex = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            nameToIndex.put(names[i], i);
+        }
+        this.aggregate = new boolean[size];
+        this.longestDepth = new int[size];
+        this.directChildren = new int[size][];
+        for (int i = 0; i < size; i++) {
+            String[] declared = declaredAggregatesMap.get(names[i]);
+            aggregate[i] = declared.length > 0;
+            longestDepth[i] = depthMap.get(names[i]);
+
+            // filter the declared aggregate privileges in case some are not a
+            //   direct child.  For example, the jcr:all aggregate privileges list
+            //   contains too many for the consolidation use case.
+            int childDepth = longestDepth[i] + 1;
+            directChildren[i] = Arrays.stream(declared)
+                    .filter(name -> depthMap.get(name) == childDepth)
+                    .mapToInt(nameToIndex::get)
+                    .toArray();
+        }
+
+        this.leaves = new int[size][];
+        for (int i = 0; i < size; i++) {
+            if (aggregate[i]) {
+                Set<Integer> leafSet = new LinkedHashSet<>();
+                collectLeaves(names[i], declaredAggregatesMap, leafSet);
+                leaves[i] = leafSet.stream().mapToInt(Integer::intValue).toArray();
+            } else {
+                leaves[i] = new int[] {i};
+            }
+        }
+
+        this.leafBits = new long[size][];
+        for (int i = 0; i < size; i++) {
+            leafBits[i] = PrivilegeBits.of(size, leaves[i]);
+        }
+
+        // deepest first, and aggregates with the same depth keep the registration order
+        List<Integer> aggregatesList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (aggregate[i]) {
+                aggregatesList.add(i);
+            }
+        }
+        aggregatesList.sort((i1, i2) -> Integer.compare(longestDepth[i2], longestDepth[i1]));
+        this.aggregatesDeepestFirst =
+                aggregatesList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void collectLeaves(String name, Map<String, String[]> declaredAggregatesMap, Set<Integer> leafSet) {
+        for (String childName : declaredAggregatesMap.get(name)) {
+            if (declaredAggregatesMap.get(childName).length > 0) {
+                collectLeaves(childName, declaredAggregatesMap, leafSet);
+            } else {
+                leafSet.add(nameToIndex.get(childName));
+            }
+        }
+    }
+
+    /**
+     * Returns the shared index for the repository of the supplied session.  The index
+     * is rebuilt only when the privilege hierarchy has changed since it was last
+     * calculated.
+     *
+     * @param jcrSession the current session
+     * @return the privileges index
+     */
+    public static @NotNull PrivilegesIndex getInstance(@NotNull Session jcrSession) throws RepositoryException {
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        Privilege jcrAll = acm.privilegeFromName(PrivilegeConstants.JCR_ALL);
+        Repository repository = jcrSession.getRepository();
+        PrivilegesIndex index = repository == null ? null : INDEX_BY_REPOSITORY.get(repository);
+        if (index == null || !index.jcrAllAggregateNames.equals(declaredAggregateNames(jcrAll))) {
+            Privilege[] registeredPrivileges = null;
+            Workspace workspace = jcrSession.getWorkspace();
+            if (workspace instanceof JackrabbitWorkspace jackrabbitWorkspace) {
+                registeredPrivileges = jackrabbitWorkspace.getPrivilegeManager().getRegisteredPrivileges();
+            }
+            index = build(jcrAll, registeredPrivileges);
+            if (repository != null) {
+                INDEX_BY_REPOSITORY.put(repository, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Calculate a new index for the hierarchy below the supplied jcr:all privilege.
+     *
+     * @param jcrAll the jcr:all privilege
+     * @param registeredPrivileges the registered privileges that define the order
+     *          of privileges with the same depth (may be null)
+     * @return the privileges index
+     */
+    public static @NotNull PrivilegesIndex build(
+            @NotNull Privilege jcrAll, @Nullable Privilege[] registeredPrivileges) {
+        // read the declared aggregates of each privilege only once
+        Map<String, String[]> declaredAggregatesMap = new LinkedHashMap<>();
+        collectDeclaredAggregates(jcrAll, declaredAggregatesMap);
+
+        Map<String, Integer> depthMap = new HashMap<>();
+        depthMap.put(jcrAll.getName(), 1);
+        toLongestDepth(1, jcrAll.getName(), declaredAggregatesMap, depthMap);
+
+        // order by the depth so each aggregate is before all of its children.  Ties
+        //  are broken by the registration order and then by discovery order
+        Set<String> candidates = new LinkedHashSet<>();
+        if (registeredPrivileges != null) {
+            for (Privilege privilege : registeredPrivileges) {
+                if (declaredAggregatesMap.containsKey(privilege.getName())) {
+                    candidates.add(privilege.getName());
+                }
+            }
+        }
+        candidates.addAll(declaredAggregatesMap.keySet());
+        List<String> orderedNames = new ArrayList<>(candidates);
+        orderedNames.sort((n1, n2) -> Integer.compare(depthMap.get(n1), depthMap.get(n2)));
+
+        Set<String> jcrAllAggregateNames = new HashSet<>(Arrays.asList(declaredAggregatesMap.get(jcrAll.getName())));
+        return new PrivilegesIndex(jcrAllAggregateNames, orderedNames, depthMap, declaredAggregatesMap);
+    }
+
+    private static Set<String> declaredAggregateNames(Privilege privilege) {
+        Privilege[] declared = privilege.getDeclaredAggregatePrivileges();
+        Set<String> names = new HashSet<>(declared.length * 2);
+        for (Privilege child : declared) {
+            names.add(child.getName());
+        }
+        return names;
+    }
+
+    private static void collectDeclaredAggregates(Privilege privilege, Map<String, String[]> declaredAggregatesMap) {
+        if (!declaredAggregatesMap.containsKey(privilege.getName())) {
+            Privilege[] declared = privilege.getDeclaredAggregatePrivileges();
+            declaredAggregatesMap.put(
+                    privilege.getName(),
+                    Arrays.stream(declared).map(Privilege::getName).toArray(String[]::new));
+            for (Privilege child : declared) {
+                collectDeclaredAggregates(child, declaredAggregatesMap);
+            }
+        }
+    }
+
+    /**
+     * If the privilege is contained in multiple aggregate privileges, then
+     * calculate the instance with the greatest depth.
+     */
+    private static void toLongestDepth(
+            int parentDepth,
+            String parentName,
+            Map<String, String[]> declaredAggregatesMap,
+            Map<String, Integer> depthMap) {
+        for (String name : declaredAggregatesMap.get(parentName)) {
+            Integer oldValue = depthMap.get(name);
+            int candidateDepth = parentDepth + 1;
+            if (oldValue == null || oldValue.intValue() < candidateDepth) {
+                depthMap.put(name, candidateDepth);
+
+                // continue drilling down to the leaf privileges
+                toLongestDepth(candidateDepth, name, declaredAggregatesMap, depthMap);
+            }
+        }
+    }
+
+    /**
+     * @return the number of privileges in the index
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param privilegeName the privilege name to lookup
+     * @return the position of the privilege or -1 if it is not in the index
+     */
+    public int indexOf(@NotNull String privilegeName) {
+        Integer idx = nameToIndex.get(privilegeName);
+        return idx == null ? -1 : idx.intValue();
+    }
+
+    /**
+     * @param privilege the privilege to lookup
+     * @return the position of the privilege or -1 if it is not in the index
+     */
+    public int indexOf(@NotNull Privilege privilege) {
+        return indexOf(privilege.getName());
+    }
+
+    /**
+     * @param idx the position of the privilege
+     * @return the name of the privilege
+     */
+    public @NotNull String getName(int idx) {
+        return names[idx];
+    }
+
+    /**
+     * @param idx the position of the privilege
+     * @return true if the privilege is an aggregate
+     */
+    public boolean isAggregate(int idx) {
+        return aggregate[idx];
+    }
+
+    /**
+     * @param idx the position of the privilege
+     * @return the longest depth of the privilege where jcr:all has depth 1
+     */
+    public int getLongestDepth(int idx) {
+        return longestDepth[idx];
+    }
+
+    /**
+     * The direct children are the declared aggregates whose longest depth is one more
+     * than the longest depth of the parent. The returned array must not be modified.
+     *
+     * @param idx the position of the privilege
+     * @return the positions of the direct children
+     */
+    public @NotNull int[] getDirectChildren(int idx) {
+        return aggregate[idx] ? directChildren[idx] : EMPTY;
+    }
+
+    /**
+     * The non-aggregate privileges that are contained in the privilege, or the privilege
+     * itself if it is not an aggregate. The returned array must not be modified.
+     *
+     * @param idx the position of the privilege
+     * @return the positions of the leaf privileges
+     */
+    public @NotNull int[] getLeaves(int idx) {
+        return leaves[idx];
+    }
+
+    /**
+     * Bitset variant of {@link #getLeaves(int)}. The returned array must not be modified.
+     *
+     * @param idx the position of the privilege
+     * @return bitset of the positions of the leaf privileges
+     */
+    public @NotNull long[] getLeafBits(int idx) {
+        return leafBits[idx];
+    }
+
+    /**
+     * Returns the previously cached bitset of the privileges that are supported for
+     * nodes of the node types.  The returned array must not be modified.
+     *
+     * @param nodeTypesKey the key calculated by {@link #toSupportedKey(Node)} or {@link #SUPPORTED_KEY_NOT_A_NODE}
+     * @return bitset of the supported privileges or null if it is not cached
+     */
+    public @Nullable long[] getCachedSupportedBits(@NotNull String nodeTypesKey) {
+        return supportedBitsCache.get(nodeTypesKey);
+    }
+
+    /**
+     * Remember the bitset of the privileges that are supported for nodes of the node types
+     *
+     * @param nodeTypesKey the key calculated by {@link #toSupportedKey(Node)} or {@link #SUPPORTED_KEY_NOT_A_NODE}
+     * @param supportedBits bitset of the supported privileges
+     */
+    public void cacheSupportedBits(@NotNull String nodeTypesKey, @NotNull long[] supportedBits) {
+        if (supportedBitsCache.size() >= MAX_SUPPORTED_CACHE_SIZE) {
+            // unusual to have this many combinations, so just start over
+            supportedBitsCache.clear();
+        }
+        supportedBitsCache.put(nodeTypesKey, supportedBits);
+    }
+
+    /**
+     * The supported privileges depend on the node type and mixins of the node and not
+     * on the path, so calculate a key from those
+     *
+     * @param node the node to calculate the key for
+     * @return the key for the node types of the node
+     */
+    public static @NotNull String toSupportedKey(@NotNull Node node) throws RepositoryException {
+        StringBuilder key = new StringBuilder(node.getPrimaryNodeType().getName());
+        NodeType[] mixinNodeTypes = node.getMixinNodeTypes();
+        if (mixinNodeTypes.length > 0) {
+            String[] mixinNames =
+                    Stream.of(mixinNodeTypes).map(NodeType::getName).sorted().toArray(String[]::new);
+            for (String mixinName : mixinNames) {
+                key.append('|').append(mixinName);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return a new empty bitset that is large enough for every position in the index
+     */
+    public @NotNull long[] newBits() {
+        return PrivilegeBits.newBits(names.length);
+    }
+
+    /**
+     * The positions of the aggregate privileges in reverse topological order, so each
+     * aggregate comes after all of the aggregates that it contains. Aggregates with
+     * the same depth are in the registration order. The returned array
+     * must not be modified.
+     *
+     * @return the positions of the aggregates ordered by the deepest first
+     */
+    public @NotNull int[] getAggregatesDeepestFirst() {
+        return aggregatesDeepestFirst;
+    }
+
+    /**
+     * Creates a resolver that maps the positions of the index to the privileges
+     * of the session that the access control manager belongs to.  The resolver
+     * is intended to be used for the duration of a single request.
+     *
+     * @param acm the access control manager of the current session
+     * @return the resolver
+     */
+    public @NotNull Resolver resolver(@NotNull AccessControlManager acm) {
+        return new Resolver(acm);
+    }
+
+    /**
+     * Maps the positions of the index to the privileges of the current session
+     */
+    public final class Resolver {
+        private final AccessControlManager acm;
+        private final Privilege[] privileges = new Privilege[names.length];
+        private final Privilege[][] leafPrivilegesCache = new Privilege[names.length][];
+        private Map<Privilege, Integer> longestDepthMap;
+
+        private Resolver(AccessControlManager acm) {
+            this.acm = acm;
+        }
+
+        /**
+         * @return the index that this resolver is for
+         */
+        public @NotNull PrivilegesIndex getIndex() {
+            return PrivilegesIndex.this;
+        }
+
+        /**
+         * @param privilege the privilege to lookup
+         * @return the position of the privilege or -1 if it is not in the index
+         */
+        public int indexOf(@NotNull Privilege privilege) {
+            int idx = PrivilegesIndex.this.indexOf(privilege.getName());
+            if (idx != -1 && privileges[idx] == null) {
+                // remember it to save a lookup later
+                privileges[idx] = privilege;
+            }
+            return idx;
+        }
+
+        /**
+         * @param idx the position of the privilege
+         * @return the privilege at the position
+         */
+        public @NotNull Privilege getPrivilege(int idx) throws RepositoryException {
+            Privilege privilege = privileges[idx];
+            if (privilege == null) {
+                privilege = acm.privilegeFromName(names[idx]);
+                privileges[idx] = privilege;
+            }
+            return privilege;
+        }
+
+        /**
+         * Expands the privilege at the position to the non-aggregate privileges
+         * that it contains. The returned array must not be modified.
+         *
+         * @param idx the position of the privilege
+         * @return the leaf privileges, or the privilege itself if it is not an aggregate
+         */
+        public @NotNull Privilege[] getLeafPrivileges(int idx) throws RepositoryException {
+            Privilege[] leafPrivileges = leafPrivilegesCache[idx];
+            if (leafPrivileges == null) {
+                int[] leafPositions = leaves[idx];
+                leafPrivileges = new Privilege[leafPositions.length];
+                for (int i = 0; i < leafPositions.length; i++) {
+                    leafPrivileges[i] = getPrivilege(leafPositions[i]);
+                }
+                leafPrivilegesCache[idx] = leafPrivileges;
+            }
+            return leafPrivileges;
+        }
+
+        /**
+         * Returns a read-only map of the privileges to the longest depth.  This is
+         * equivalent to {@link PrivilegesHelper#buildPrivilegeLongestDepthMap(Privilege)}
+         * without walking the privilege hierarchy again.
+         *
+         * @return map where the key is the privilege and the value is the longest depth
+         */
+        public @NotNull Map<Privilege, Integer> getLongestDepthMap() {
+            if (longestDepthMap == null) {
+                longestDepthMap = new LongestDepthMap();
+            }
+            return longestDepthMap;
+        }
+
+        /**
+         * Read-only view of the longest depth of each privilege
+         */
+        private final class LongestDepthMap extends AbstractMap<Privilege, Integer> {
+
+            @Override
+            public Integer get(Object key) {
+                if (key instanceof Privilege privilege) {
+                    int idx = PrivilegesIndex.this.indexOf(privilege.getName());
+                    if (idx != -1) {
+                        return longestDepth[idx];
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return names.length;
+            }
+
+            @Override
+            public Set<Entry<Privilege, Integer>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<Privilege, Integer>> iterator() {
+                        return new Iterator<>() {
+                            private int next = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < names.length;
+                            }
+
+                            @Override
+                            public Entry<Privilege, Integer> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                int idx = next++;
+                                try {
+                                    return new SimpleImmutableEntry<>(getPrivilege(idx), longestDepth[idx]);
+                                } catch (RepositoryException e) {
+                                    throw new IllegalStateException("Failed to resolve privilege: " + names[idx], e);
+                                }
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return names.length;
+                    }
+                };
+            }
+        }
+    }
+}
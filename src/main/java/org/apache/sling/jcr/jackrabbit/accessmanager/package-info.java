@@ -17,5 +17,5 @@
  * under the License.
  */
 
-@org.osgi.annotation.versioning.Version("5.0.0")
+@org.osgi.annotation.versioning.Version("5.1.0")
 package org.apache.sling.jcr.jackrabbit.accessmanager;
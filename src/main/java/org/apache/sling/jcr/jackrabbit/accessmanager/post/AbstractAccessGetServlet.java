@@ -44,6 +44,7 @@ import java.util.stream.Stream;
 
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
 import jakarta.json.stream.JsonGenerator;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletResponse;
@@ -58,6 +59,7 @@ import org.apache.sling.api.SlingJakartaHttpServletResponse;
 import org.apache.sling.api.resource.ResourceNotFoundException;
 import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
 import org.apache.sling.jcr.jackrabbit.accessmanager.LocalRestriction;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.DeclaredAclTrie;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrincipalAceHelper;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrivilegesHelper;
 import org.jetbrains.annotations.NotNull;
@@ -66,6 +68,9 @@ import org.jetbrains.annotations.Nullable;
 @SuppressWarnings("serial")
 public abstract class AbstractAccessGetServlet extends AbstractAccessServlet {
 
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
     /* (non-Javadoc)
      * @see org.apache.sling.api.servlets.SlingJakartaSafeMethodsServlet#doGet(org.apache.sling.api.SlingJakartaHttpServletRequest, org.apache.sling.api.SlingJakartaHttpServletResponse)
      */
@@ -78,10 +83,6 @@ public abstract class AbstractAccessGetServlet extends AbstractAccessServlet {
             String resourcePath = getItemPath(request);
             String principalId = request.getParameter("pid");
 
-            JsonObject jsonObj = internalJson(session, resourcePath, principalId);
-            response.setContentType("application/json");
-            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
-
             boolean isTidy = false;
             final String[] selectors = request.getRequestPathInfo().getSelectors();
             if (selectors.length > 0) {
@@ -93,11 +94,30 @@ public abstract class AbstractAccessGetServlet extends AbstractAccessServlet {
                 }
             }
 
+            // calculate the data before anything is written so errors can still change the status
+            JsonWriter jsonWriter = prepareJson(request, session, resourcePath, principalId);
+            jsonWriter.getHeaders().forEach(response::setHeader);
+            String validator = jsonWriter.getValidator();
+            if (validator != null) {
+                // the pretty printed output is a different representation
+                String etag = String.format("\"%s%s\"", validator, isTidy ? "-tidy" : "");
+                response.setHeader(HEADER_ETAG, etag);
+                if (matchesETag(request.getHeader(HEADER_IF_NONE_MATCH), etag)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+            response.setContentType("application/json");
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
             Map<String, Object> options = new HashMap<>();
             options.put(JsonGenerator.PRETTY_PRINTING, isTidy);
             try (JsonGenerator generator = Json.createGeneratorFactory(options).createGenerator(response.getWriter())) {
-                generator.write(jsonObj).flush();
+                jsonWriter.write(generator);
+                generator.flush();
             }
+        } catch (InvalidParameterException ipe) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ipe.getMessage());
         } catch (AccessDeniedException ade) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
         } catch (ResourceNotFoundException rnfe) {
@@ -111,6 +131,30 @@ public abstract class AbstractAccessGetServlet extends AbstractAccessServlet {
         }
     }
 
+    /**
+     * Checks if the value of an If-None-Match header matches the entity tag
+     *
+     * @param ifNoneMatch the header value or null
+     * @param etag the quoted entity tag of the current representation
+     * @return true if the client already has the current representation
+     */
+    static boolean matchesETag(@Nullable String ifNoneMatch, @NotNull String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            // If-None-Match uses the weak comparison
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || etag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Return the path where the action should be applied
      */
@@ -121,6 +165,140 @@ public abstract class AbstractAccessGetServlet extends AbstractAccessServlet {
     protected abstract JsonObject internalJson(Session session, String resourcePath, String principalId)
             throws RepositoryException;
 
+    /**
+     * Validate the request and calculate what is needed to write the JSON response.
+     * The returned writer is invoked after the response headers have been set
+     * so subclasses can stream the output instead of building the whole object
+     * in memory first.  The default implementation writes the object from
+     * {@link #internalJson(Session, String, String)}.
+     *
+     * @param session the JCR session
+     * @param resourcePath the resource path
+     * @param principalId the principal id
+     * @return the writer for the JSON response
+     */
+    protected @NotNull JsonWriter prepareJson(Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        JsonObject jsonObj = internalJson(session, resourcePath, principalId);
+        return generator -> generator.write(jsonObj);
+    }
+
+    /**
+     * Override to return false when a subclass customizes how the JSON object is built, for
+     * example by overriding {@link #internalJson(Session, String, String)}.  The streaming
+     * variants of {@link #prepareJson(Session, String, String)} then write the JSON object
+     * that {@link #internalJson(Session, String, String)} builds instead of writing the
+     * JSON directly.
+     *
+     * @return true if the JSON may be written without building the JSON object first
+     */
+    protected boolean isStreamingSupported() {
+        return true;
+    }
+
+    /**
+     * Override to add additional data to the principal object
+     *
+     * @param principalJson the current principal JSON builder
+     * @param principal the current principal
+     * @param principalToDeclaredAtPaths a map of principal the paths where ACEs are declared
+     */
+    protected void addExtraInfo(
+            JsonObjectBuilder principalJson,
+            Principal principal,
+            Map<Principal, Map<DeclarationType, Set<String>>> principalToDeclaredAtPaths) {
+        // no-op
+    }
+
+    /**
+     * Override to write additional data to the principal object when the
+     * JSON is streamed.  The default implementation writes whatever
+     * {@link #addExtraInfo(JsonObjectBuilder, Principal, Map)} adds.
+     *
+     * @param generator the generator positioned in the principal object
+     * @param principal the current principal
+     * @param principalToDeclaredAtPaths a map of principal the paths where ACEs are declared
+     */
+    protected void writeExtraInfo(
+            JsonGenerator generator,
+            Principal principal,
+            Map<Principal, Map<DeclarationType, Set<String>>> principalToDeclaredAtPaths) {
+        JsonObjectBuilder extraInfo = Json.createObjectBuilder();
+        addExtraInfo(extraInfo, principal, principalToDeclaredAtPaths);
+        extraInfo.build().forEach(generator::write);
+    }
+
+    /**
+     * Variant of {@link #prepareJson(Session, String, String)} for responses that
+     * depend on other parameters of the request.  The default implementation
+     * calls {@link #prepareJson(Session, String, String)}.
+     *
+     * @param request the current request
+     * @param session the JCR session
+     * @param resourcePath the resource path
+     * @param principalId the principal id
+     * @return the writer for the JSON response
+     */
+    protected @NotNull JsonWriter prepareJson(
+            SlingJakartaHttpServletRequest request, Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        return prepareJson(session, resourcePath, principalId);
+    }
+
+    /**
+     * Writes the JSON response of a request
+     */
+    @FunctionalInterface
+    protected interface JsonWriter {
+        /**
+         * Write the JSON to the generator
+         *
+         * @param generator the generator to write to
+         */
+        void write(@NotNull JsonGenerator generator) throws RepositoryException;
+
+        /**
+         * Returns a value that changes whenever the written JSON would change.  When
+         * available it is sent as the entity tag of the response and conditional
+         * requests are answered without calling {@link #write(JsonGenerator)}.
+         *
+         * @return the validator or null if there is none
+         */
+        default @Nullable String getValidator() {
+            return null;
+        }
+
+        /**
+         * Returns additional headers to set on the response
+         *
+         * @return map where the key is the header name and the value is the header value
+         */
+        default @NotNull Map<String, String> getHeaders() {
+            return Map.of();
+        }
+
+        /**
+         * Creates a writer that has a validator
+         *
+         * @param validator the validator of the JSON
+         * @param writer the writer to delegate to
+         * @return the writer with the validator
+         */
+        static @NotNull JsonWriter withValidator(@NotNull String validator, @NotNull JsonWriter writer) {
+            return new JsonWriter() {
+                @Override
+                public void write(@NotNull JsonGenerator generator) throws RepositoryException {
+                    writer.write(generator);
+                }
+
+                @Override
+                public @NotNull String getValidator() {
+                    return validator;
+                }
+            };
+        }
+    }
+
     /**
      * Verify that the user supplied arguments are valid
      *
@@ -201,6 +379,46 @@ public abstract class AbstractAccessGetServlet extends AbstractAccessServlet {
         }
     }
 
+    /**
+     * Builds a map of the effective entries of the path ordered by the effective path.
+     * The entries come from the trie of the declared entries when it is available and
+     * can be used for the session, and from the effective policies of the path otherwise.
+     *
+     * @param trie the trie of the declared entries or null
+     * @param session the session of the reader
+     * @param absPath the path to get the entries for
+     * @param accessControlEntryFilter a filter to find entries to include
+     * @param declaredAtPaths populated with details about where privileges are defined for the principal
+     * @return map of sorted entries, key is the effectivePath and value is the list of entries for that path
+     */
+    @NotNull
+    Map<String, List<AccessControlEntry>> effectiveEntriesSortedByEffectivePath(
+            @Nullable DeclaredAclTrie trie,
+            @NotNull Session session,
+            @NotNull String absPath,
+            @NotNull Predicate<? super AccessControlEntry> accessControlEntryFilter,
+            Map<Principal, Map<DeclarationType, Set<String>>> declaredAtPaths)
+            throws RepositoryException {
+        if (trie != null) {
+            Map<String, List<AccessControlEntry>> effectivePathToEntriesMap =
+                    trie.getEffectiveEntries(session, absPath, accessControlEntryFilter);
+            if (effectivePathToEntriesMap != null) {
+                // the trie only has the entries of the access control lists of nodes
+                for (Map.Entry<String, List<AccessControlEntry>> entry : effectivePathToEntriesMap.entrySet()) {
+                    for (AccessControlEntry accessControlEntry : entry.getValue()) {
+                        declaredAtPaths
+                                .computeIfAbsent(accessControlEntry.getPrincipal(), k -> new HashMap<>())
+                                .computeIfAbsent(DeclarationType.NODE, k -> new HashSet<>())
+                                .add(entry.getKey());
+                    }
+                }
+                return effectivePathToEntriesMap;
+            }
+        }
+        AccessControlPolicy[] policies = session.getAccessControlManager().getEffectivePolicies(absPath);
+        return entriesSortedByEffectivePath(policies, accessControlEntryFilter, declaredAtPaths);
+    }
+
     /**
      * Builds a map by merging all the entries for the supplied
      * policies and ordering them by the effective path
@@ -34,11 +34,13 @@ import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
 import org.apache.jackrabbit.api.security.JackrabbitAccessControlEntry;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionDefinition;
-import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
 import org.apache.sling.api.resource.ResourceNotFoundException;
-import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrincipalPrivileges;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.LocalPrivilegeMap;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrivilegesHelper;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrivilegesIndex;
+import org.jetbrains.annotations.NotNull;
 
 @SuppressWarnings({"serial", "java:S110"})
 public abstract class AbstractGetAceServlet extends AbstractAccessGetServlet {
@@ -51,6 +53,91 @@ public abstract class AbstractGetAceServlet extends AbstractAccessGetServlet {
 
     protected JsonObject internalGetAce(Session jcrSession, String resourcePath, String principalId)
             throws RepositoryException {
+        AceEntries aceEntries = collectAceEntries(jcrSession, resourcePath, principalId);
+        PrincipalPrivileges principalPrivileges = toPrincipalPrivileges(aceEntries);
+
+        // convert the data to JSON
+        Principal principal = principalPrivileges.getPrincipal();
+        JsonObjectBuilder principalObj = JsonConvert.convertToJson(
+                principal, principalPrivileges.getPrivileges(), principalPrivileges.getOrder());
+        addExtraInfo(principalObj, principal, aceEntries.declaredAtPaths());
+        return principalObj.build();
+    }
+
+    /**
+     * Read the access control entry of the resource and principal as java objects
+     *
+     * @param jcrSession the JCR session
+     * @param resourcePath the resource path
+     * @param principalId the principal id
+     * @return the privileges of the principal
+     */
+    protected PrincipalPrivileges internalGetAcePrivileges(
+            Session jcrSession, String resourcePath, String principalId) throws RepositoryException {
+        return toPrincipalPrivileges(collectAceEntries(jcrSession, resourcePath, principalId));
+    }
+
+    /**
+     * Combine the aggregates of the collected privileges and convert them to the java objects
+     */
+    private PrincipalPrivileges toPrincipalPrivileges(AceEntries aceEntries) throws RepositoryException {
+        // combine any aggregates that are still valid
+        PrivilegesHelper.consolidateAggregates(aceEntries.privileges(), aceEntries.supportedPrivilegeBits());
+
+        Principal principal = aceEntries.principal();
+        Map<DeclarationType, Set<String>> declaredAt = isDeclaredAtReported()
+                ? aceEntries.declaredAtPaths().getOrDefault(principal, Map.of())
+                : Map.of();
+        return new PrincipalPrivileges(
+                principal,
+                -1,
+                aceEntries.privileges(),
+                declaredAt.getOrDefault(DeclarationType.NODE, Set.of()),
+                declaredAt.getOrDefault(DeclarationType.PRINCIPAL, Set.of()));
+    }
+
+    /**
+     * Override to report where the entries of the principal are declared
+     * in the java objects
+     *
+     * @return true if the declaredAt paths are reported
+     */
+    protected boolean isDeclaredAtReported() {
+        return false;
+    }
+
+    /**
+     * Overridden to write the principal to the response without building
+     * the JSON object first.  When {@link #isStreamingSupported()} is false the
+     * object that {@link #internalJson(Session, String, String)} builds is
+     * written instead, so subclasses that override it or
+     * {@link #internalGetAce(Session, String, String)} must also override
+     * {@link #isStreamingSupported()}.
+     */
+    @Override
+    protected @NotNull JsonWriter prepareJson(Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        if (!isStreamingSupported()) {
+            return super.prepareJson(session, resourcePath, principalId);
+        }
+        AceEntries aceEntries = collectAceEntries(session, resourcePath, principalId);
+        return generator -> {
+            // combine any aggregates that are still valid
+            PrivilegesHelper.consolidateAggregates(aceEntries.privileges(), aceEntries.supportedPrivilegeBits());
+
+            Principal principal = aceEntries.principal();
+            generator.writeStartObject();
+            JsonConvert.writePrincipal(generator, principal, aceEntries.privileges(), -1);
+            writeExtraInfo(generator, principal, aceEntries.declaredAtPaths());
+            generator.writeEnd();
+        };
+    }
+
+    /**
+     * Collect the privileges of the principal without combining the aggregates
+     */
+    private AceEntries collectAceEntries(Session jcrSession, String resourcePath, String principalId)
+            throws RepositoryException {
         Principal principal = validateArgs(jcrSession, resourcePath, principalId);
 
         Map<Principal, Map<DeclarationType, Set<String>>> principalToDeclaredAtPaths = new HashMap<>();
@@ -68,7 +155,10 @@ public abstract class AbstractGetAceServlet extends AbstractAccessGetServlet {
             srMap.put(restrictionDefinition.getName(), restrictionDefinition);
         }
 
-        Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap = new HashMap<>();
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        PrivilegesIndex.Resolver resolver =
+                PrivilegesIndex.getInstance(jcrSession).resolver(acm);
+        LocalPrivilegeMap privilegeToLocalPrivilegesMap = new LocalPrivilegeMap(resolver);
         for (List<AccessControlEntry> accessControlEntries : effectivePathToEntriesMap.values()) {
             for (AccessControlEntry accessControlEntry : accessControlEntries) {
                 if (accessControlEntry instanceof JackrabbitAccessControlEntry jrAccessControlEntry) {
@@ -80,32 +170,20 @@ public abstract class AbstractGetAceServlet extends AbstractAccessGetServlet {
             }
         }
 
-        // combine any aggregates that are still valid
-        AccessControlManager acm = jcrSession.getAccessControlManager();
-        Map<Privilege, Integer> privilegeLongestDepthMap =
-                PrivilegesHelper.buildPrivilegeLongestDepthMap(acm.privilegeFromName(PrivilegeConstants.JCR_ALL));
-        PrivilegesHelper.consolidateAggregates(
-                jcrSession, resourcePath, privilegeToLocalPrivilegesMap, privilegeLongestDepthMap);
-
-        // convert the data to JSON
-        JsonObjectBuilder principalObj = JsonConvert.convertToJson(principal, privilegeToLocalPrivilegesMap, -1);
-        addExtraInfo(principalObj, principal, principalToDeclaredAtPaths);
-        return principalObj.build();
+        long[] supportedPrivilegeBits =
+                PrivilegesHelper.getSupportedPrivilegeBits(jcrSession, resourcePath, resolver.getIndex());
+        return new AceEntries(
+                principal, privilegeToLocalPrivilegesMap, principalToDeclaredAtPaths, supportedPrivilegeBits);
     }
 
     /**
-     * Override to add additional data to the principal object
-     *
-     * @param principalJson the current principal JSON builder
-     * @param principal the current principal
-     * @param principalToDeclaredAtPaths a map of principal the paths where ACEs are declared
+     * The collected privileges of the principal
      */
-    protected void addExtraInfo(
-            JsonObjectBuilder principalJson,
+    private static record AceEntries(
             Principal principal,
-            Map<Principal, Map<DeclarationType, Set<String>>> principalToDeclaredAtPaths) {
-        // no-op
-    }
+            LocalPrivilegeMap privileges,
+            Map<Principal, Map<DeclarationType, Set<String>>> declaredAtPaths,
+            long[] supportedPrivilegeBits) {}
 
     protected abstract Map<String, List<AccessControlEntry>> getAccessControlEntriesMap(
             Session session,
@@ -21,31 +21,74 @@ package org.apache.sling.jcr.jackrabbit.accessmanager.post;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.security.AccessControlEntry;
+import javax.jcr.security.AccessControlException;
 import javax.jcr.security.AccessControlManager;
 import javax.jcr.security.Privilege;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
+import jakarta.json.stream.JsonGenerator;
 import org.apache.jackrabbit.api.security.JackrabbitAccessControlEntry;
+import org.apache.jackrabbit.api.security.authorization.PrincipalAccessControlList;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionDefinition;
-import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
 import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrincipalPrivileges;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.AccessControlDigest;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.LocalPrivilegeMap;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrivilegeBits;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrivilegesHelper;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrivilegesIndex;
+import org.jetbrains.annotations.NotNull;
 
 @SuppressWarnings({"serial", "java:S110"})
 public abstract class AbstractGetAclServlet extends AbstractAccessGetServlet {
 
+    /**
+     * The request parameter for the prefix of the principal names to include
+     */
+    public static final String PARAM_PRINCIPAL_PREFIX = "principalPrefix";
+
+    /**
+     * The request parameter for the privileges that the entries of a principal
+     * must allow or deny at least one of for the principal to be included
+     */
+    public static final String PARAM_PRIVILEGE = "privilege";
+
+    /**
+     * The request parameter for the number of matching principals to skip
+     */
+    public static final String PARAM_OFFSET = "offset";
+
+    /**
+     * The request parameter for the maximum number of principals to include
+     */
+    public static final String PARAM_LIMIT = "limit";
+
+    /**
+     * The request parameter for the continuation token of the next page
+     */
+    public static final String PARAM_CONTINUATION = "continuation";
+
+    /**
+     * The response header with the continuation token when there are more principals
+     */
+    public static final String HEADER_CONTINUATION = "X-Continuation-Token";
+
     @Override
     protected JsonObject internalJson(Session session, String resourcePath, String principalId)
             throws RepositoryException {
@@ -53,61 +96,472 @@ public abstract class AbstractGetAclServlet extends AbstractAccessGetServlet {
     }
 
     protected JsonObject internalGetAcl(Session jcrSession, String resourcePath) throws RepositoryException {
+        return toJson(resourcePath, readAcl(jcrSession, resourcePath));
+    }
+
+    /**
+     * Overridden to write each principal to the response as soon as its
+     * privileges have been consolidated instead of building the whole
+     * JSON object first.  The validator of the JSON is a digest of the raw
+     * entries so conditional requests skip the processing of the entries.
+     * When {@link #isStreamingSupported()} is false the object that
+     * {@link #internalJson(Session, String, String)} builds is written instead,
+     * so subclasses that override it, {@link #internalGetAcl(Session, String)} or
+     * {@link #convertToJson(List, Map)} must also override {@link #isStreamingSupported()}.
+     */
+    @Override
+    protected @NotNull JsonWriter prepareJson(Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        if (!isStreamingSupported()) {
+            return super.prepareJson(session, resourcePath, principalId);
+        }
+        RawAcl rawAcl = readAcl(session, resourcePath);
+        Map<String, RestrictionDefinition> srMap = toRestrictionMap(resourcePath);
+        return JsonWriter.withValidator(
+                toValidator(srMap, rawAcl, AclFilter.ALL),
+                generator -> writeJson(generator, collectAclEntries(srMap, rawAcl, AclFilter.ALL)));
+    }
+
+    /**
+     * Overridden to only write the principals that were selected by the filter
+     * and paging parameters when any of them were supplied.
+     */
+    @Override
+    protected @NotNull JsonWriter prepareJson(
+            SlingJakartaHttpServletRequest request, Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        if (Stream.of(PARAM_PRINCIPAL_PREFIX, PARAM_PRIVILEGE, PARAM_OFFSET, PARAM_LIMIT, PARAM_CONTINUATION)
+                .allMatch(name -> request.getParameter(name) == null)) {
+            return prepareJson(session, resourcePath, principalId);
+        }
+
+        RawAcl rawAcl = readAcl(session, resourcePath);
+        AclFilter filter = toFilter(request, session.getAccessControlManager(), rawAcl.resolver());
+        Map<String, RestrictionDefinition> srMap = toRestrictionMap(resourcePath);
+        AclEntries aclEntries = collectAclEntries(srMap, rawAcl, filter);
+        String validator = toValidator(srMap, rawAcl, filter);
+        Map<String, String> headers = aclEntries.hasMore()
+                ? Map.of(
+                        HEADER_CONTINUATION,
+                        toContinuation(
+                                filter,
+                                aclEntries.offset() + aclEntries.entries().size()))
+                : Map.of();
+        return new JsonWriter() {
+            @Override
+            public void write(@NotNull JsonGenerator generator) throws RepositoryException {
+                writeJson(generator, aclEntries);
+            }
+
+            @Override
+            public @NotNull String getValidator() {
+                return validator;
+            }
+
+            @Override
+            public @NotNull Map<String, String> getHeaders() {
+                return headers;
+            }
+        };
+    }
+
+    /**
+     * Create the filter from the request parameters
+     */
+    private static AclFilter toFilter(
+            SlingJakartaHttpServletRequest request, AccessControlManager acm, PrivilegesIndex.Resolver resolver)
+            throws RepositoryException {
+        String principalPrefix = request.getParameter(PARAM_PRINCIPAL_PREFIX);
+        long[] privilegeBits = null;
+        String[] privilegeNames = request.getParameterValues(PARAM_PRIVILEGE);
+        if (privilegeNames != null) {
+            PrivilegesIndex index = resolver.getIndex();
+            privilegeBits = index.newBits();
+            for (String privilegeName : privilegeNames) {
+                int idx;
+                try {
+                    idx = resolver.indexOf(acm.privilegeFromName(privilegeName));
+                } catch (AccessControlException e) {
+                    idx = -1;
+                }
+                if (idx == -1) {
+                    throw new InvalidParameterException("Invalid privilege: " + privilegeName);
+                }
+                PrivilegeBits.or(privilegeBits, index.getLeafBits(idx));
+            }
+        }
+        int limit = parseInt(PARAM_LIMIT, request.getParameter(PARAM_LIMIT), -1);
+        AclFilter filter = new AclFilter(principalPrefix, privilegeBits, 0, limit);
+
+        String continuation = request.getParameter(PARAM_CONTINUATION);
+        int offset;
+        if (continuation != null) {
+            // the token is only valid for the same filter
+            offset = fromContinuation(filter, continuation);
+        } else {
+            offset = parseInt(PARAM_OFFSET, request.getParameter(PARAM_OFFSET), 0);
+        }
+        return new AclFilter(principalPrefix, privilegeBits, offset, limit);
+    }
+
+    private static int parseInt(String name, String value, int defaultValue) throws RepositoryException {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        int intValue;
+        try {
+            intValue = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidParameterException(String.format("Invalid %s: %s", name, value));
+        }
+        if (intValue < 0) {
+            throw new InvalidParameterException(String.format("Invalid %s: %s", name, value));
+        }
+        return intValue;
+    }
+
+    /**
+     * The continuation token is the offset of the next page and a digest of the filter
+     */
+    private static String toContinuation(AclFilter filter, int offset) {
+        String token = offset + ":" + filter.digest();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int fromContinuation(AclFilter filter, String continuation) throws RepositoryException {
+        try {
+            String token = new String(Base64.getUrlDecoder().decode(continuation), StandardCharsets.UTF_8);
+            int separator = token.indexOf(':');
+            if (separator != -1 && token.substring(separator + 1).equals(filter.digest())) {
+                int offset = Integer.parseInt(token.substring(0, separator));
+                if (offset >= 0) {
+                    return offset;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through to the failure
+        }
+        throw new InvalidParameterException("Invalid continuation token for the supplied parameters");
+    }
+
+    /**
+     * Convert the entries that were read to the JSON object
+     */
+    JsonObject toJson(String resourcePath, RawAcl rawAcl) throws RepositoryException {
+        return toJson(toRestrictionMap(resourcePath), rawAcl);
+    }
+
+    /**
+     * Convert the entries that were read to the JSON object
+     */
+    JsonObject toJson(Map<String, RestrictionDefinition> srMap, RawAcl rawAcl) throws RepositoryException {
+        Map<Principal, PrincipalPrivileges> principalPrivileges =
+                toPrincipalPrivileges(collectAclEntries(srMap, rawAcl, AclFilter.ALL));
+
+        // convert the data to JSON
+        List<Entry<Principal, Map<Privilege, LocalPrivilege>>> entrySetList = new ArrayList<>();
+        for (PrincipalPrivileges pp : principalPrivileges.values()) {
+            entrySetList.add(Map.entry(pp.getPrincipal(), pp.getPrivileges()));
+        }
+        JsonObjectBuilder jsonObj = convertToJson(entrySetList, rawAcl.declaredAtPaths());
+        return jsonObj.build();
+    }
+
+    /**
+     * Read the access control list of the resource as java objects
+     *
+     * @param jcrSession the JCR session
+     * @param resourcePath the resource path
+     * @return map where the key is the principal and the value is the privileges of the principal
+     */
+    protected Map<Principal, PrincipalPrivileges> internalGetAclPrivileges(Session jcrSession, String resourcePath)
+            throws RepositoryException {
+        return toPrincipalPrivileges(collectAclEntries(resourcePath, readAcl(jcrSession, resourcePath)));
+    }
+
+    /**
+     * Combine the aggregates of the collected privileges and convert them to the
+     * java objects in the order of the entries
+     */
+    Map<Principal, PrincipalPrivileges> toPrincipalPrivileges(AclEntries aclEntries) throws RepositoryException {
+        Map<Principal, PrincipalPrivileges> map = new LinkedHashMap<>();
+        List<Entry<Principal, Map<Privilege, LocalPrivilege>>> entrySetList = aclEntries.entries();
+        for (int i = 0; i < entrySetList.size(); i++) {
+            Entry<Principal, Map<Privilege, LocalPrivilege>> entry = entrySetList.get(i);
+            Principal principal = entry.getKey();
+            // combine any aggregates that are still valid
+            PrivilegesHelper.consolidateAggregates(
+                    (LocalPrivilegeMap) entry.getValue(), aclEntries.supportedPrivilegeBits());
+
+            Map<DeclarationType, Set<String>> declaredAt = isDeclaredAtReported()
+                    ? aclEntries.declaredAtPaths().getOrDefault(principal, Map.of())
+                    : Map.of();
+            map.put(
+                    principal,
+                    new PrincipalPrivileges(
+                            principal,
+                            aclEntries.offset() + i,
+                            entry.getValue(),
+                            declaredAt.getOrDefault(DeclarationType.NODE, Set.of()),
+                            declaredAt.getOrDefault(DeclarationType.PRINCIPAL, Set.of())));
+        }
+        return map;
+    }
+
+    /**
+     * Override to report where the entries of each principal are declared
+     * in the java objects
+     *
+     * @return true if the declaredAt paths are reported
+     */
+    protected boolean isDeclaredAtReported() {
+        return false;
+    }
+
+    /**
+     * Calculate the validator of the JSON from the entries that were read, the
+     * restriction definitions they are converted with and the principals that
+     * the filter selects, so each filter and page has its own validator
+     */
+    String toValidator(Map<String, RestrictionDefinition> srMap, RawAcl rawAcl, AclFilter filter)
+            throws RepositoryException {
+        return new AccessControlDigest()
+                .update(rawAcl.resolver().getIndex().size())
+                .update(rawAcl.supportedPrivilegeBits())
+                .update(srMap.values())
+                .update(filter.digest())
+                .update(filter.offset())
+                .update(rawAcl.effectivePathToEntriesMap())
+                .digest();
+    }
+
+    private void writeJson(JsonGenerator generator, AclEntries aclEntries) throws RepositoryException {
+        generator.writeStartObject();
+        writePrincipals(generator, aclEntries);
+        generator.writeEnd();
+    }
+
+    /**
+     * Write an object for each principal to the current object of the generator
+     */
+    void writePrincipals(JsonGenerator generator, AclEntries aclEntries) throws RepositoryException {
+        List<Entry<Principal, Map<Privilege, LocalPrivilege>>> entrySetList = aclEntries.entries();
+        for (int i = 0; i < entrySetList.size(); i++) {
+            Entry<Principal, Map<Privilege, LocalPrivilege>> entry = entrySetList.get(i);
+            Principal principal = entry.getKey();
+            // combine any aggregates that are still valid
+            PrivilegesHelper.consolidateAggregates(
+                    (LocalPrivilegeMap) entry.getValue(), aclEntries.supportedPrivilegeBits());
+
+            generator.writeStartObject(principal.getName());
+            JsonConvert.writePrincipal(generator, principal, entry.getValue(), aclEntries.offset() + i);
+            writeExtraInfo(generator, principal, aclEntries.declaredAtPaths());
+            generator.writeEnd();
+        }
+    }
+
+    /**
+     * Read the access control entries without processing them
+     */
+    RawAcl readAcl(Session jcrSession, String resourcePath) throws RepositoryException {
         validateArgs(jcrSession, resourcePath);
 
-        // make a temp map for quick lookup below
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        PrivilegesIndex.Resolver resolver =
+                PrivilegesIndex.getInstance(jcrSession).resolver(acm);
+        return readAcl(jcrSession, resourcePath, resolver);
+    }
+
+    /**
+     * Read the access control entries without processing them
+     *
+     * @param resolver the resolver of the privileges of the session
+     */
+    RawAcl readAcl(Session jcrSession, String resourcePath, PrivilegesIndex.Resolver resolver)
+            throws RepositoryException {
+        Map<Principal, Map<DeclarationType, Set<String>>> principalToDeclaredAtPaths = new HashMap<>();
+        Map<String, List<AccessControlEntry>> effectivePathToEntriesMap =
+                getAccessControlEntriesMap(jcrSession, resourcePath, principalToDeclaredAtPaths);
+        long[] supportedPrivilegeBits =
+                PrivilegesHelper.getSupportedPrivilegeBits(jcrSession, resourcePath, resolver.getIndex());
+        return new RawAcl(resolver, effectivePathToEntriesMap, principalToDeclaredAtPaths, supportedPrivilegeBits);
+    }
+
+    /**
+     * Collect the privileges of each principal without combining the aggregates
+     */
+    AclEntries collectAclEntries(String resourcePath, RawAcl rawAcl) throws RepositoryException {
+        return collectAclEntries(resourcePath, rawAcl, AclFilter.ALL);
+    }
+
+    /**
+     * Collect the privileges of each principal selected by the filter without combining
+     * the aggregates.  The principals are selected before any entry is processed so the
+     * entries of the other principals are only looked at once.
+     */
+    AclEntries collectAclEntries(String resourcePath, RawAcl rawAcl, AclFilter filter) throws RepositoryException {
+        return collectAclEntries(toRestrictionMap(resourcePath), rawAcl, filter);
+    }
+
+    /**
+     * Map the name of each supported restriction to the definition
+     */
+    Map<String, RestrictionDefinition> toRestrictionMap(String resourcePath) {
         Set<RestrictionDefinition> supportedRestrictions =
                 getRestrictionProvider().getSupportedRestrictions(resourcePath);
+        return toRestrictionMap(supportedRestrictions);
+    }
+
+    static Map<String, RestrictionDefinition> toRestrictionMap(Set<RestrictionDefinition> supportedRestrictions) {
         Map<String, RestrictionDefinition> srMap = new HashMap<>();
         for (RestrictionDefinition restrictionDefinition : supportedRestrictions) {
             srMap.put(restrictionDefinition.getName(), restrictionDefinition);
         }
+        return srMap;
+    }
 
-        Map<Principal, Map<DeclarationType, Set<String>>> principalToDeclaredAtPaths = new HashMap<>();
-        Map<String, List<AccessControlEntry>> effectivePathToEntriesMap =
-                getAccessControlEntriesMap(jcrSession, resourcePath, principalToDeclaredAtPaths);
-        Map<Principal, Integer> principalToOrderMap = new HashMap<>();
-        Map<Principal, Map<Privilege, LocalPrivilege>> principalToPrivilegesMap = new HashMap<>();
-        for (Entry<String, List<AccessControlEntry>> entry : effectivePathToEntriesMap.entrySet()) {
-            List<AccessControlEntry> accessControlEntries = entry.getValue();
+    /**
+     * Variant of {@link #collectAclEntries(String, RawAcl, AclFilter)} with the
+     * restriction definitions that were already looked up
+     */
+    AclEntries collectAclEntries(Map<String, RestrictionDefinition> srMap, RawAcl rawAcl, AclFilter filter)
+            throws RepositoryException {
+        // find the matching principals in the order they are first declared
+        Map<Principal, Boolean> principalToMatchMap = new LinkedHashMap<>();
+        for (List<AccessControlEntry> accessControlEntries :
+                rawAcl.effectivePathToEntriesMap().values()) {
             for (AccessControlEntry accessControlEntry : accessControlEntries) {
                 if (accessControlEntry instanceof JackrabbitAccessControlEntry jrAccessControlEntry) {
                     Privilege[] privileges = jrAccessControlEntry.getPrivileges();
-                    if (privileges != null) {
-                        Principal principal = accessControlEntry.getPrincipal();
-                        if (!principalToPrivilegesMap.containsKey(principal)) {
-                            principalToOrderMap.put(principal, principalToPrivilegesMap.size());
-                        }
+                    Principal principal = accessControlEntry.getPrincipal();
+                    if (privileges != null
+                            && filter.matchesPrincipal(principal)
+                            && !Boolean.TRUE.equals(principalToMatchMap.get(principal))) {
+                        principalToMatchMap.put(principal, filter.matchesPrivileges(rawAcl.resolver(), privileges));
+                    }
+                }
+            }
+        }
+
+        // select the page of the matching principals
+        Map<Principal, Map<Privilege, LocalPrivilege>> principalToPrivilegesMap = new LinkedHashMap<>();
+        int matchCount = 0;
+        for (Entry<Principal, Boolean> entry : principalToMatchMap.entrySet()) {
+            if (Boolean.TRUE.equals(entry.getValue())) {
+                if (matchCount >= filter.offset()
+                        && (filter.limit() < 0 || principalToPrivilegesMap.size() < filter.limit())) {
+                    principalToPrivilegesMap.put(entry.getKey(), new LocalPrivilegeMap(rawAcl.resolver()));
+                }
+                matchCount++;
+            }
+        }
+        boolean hasMore = filter.limit() >= 0 && matchCount > (long) filter.offset() + filter.limit();
+
+        if (!principalToPrivilegesMap.isEmpty()) {
+            for (List<AccessControlEntry> accessControlEntries :
+                    rawAcl.effectivePathToEntriesMap().values()) {
+                for (AccessControlEntry accessControlEntry : accessControlEntries) {
+                    if (accessControlEntry instanceof JackrabbitAccessControlEntry jrAccessControlEntry) {
+                        Privilege[] privileges = jrAccessControlEntry.getPrivileges();
                         Map<Privilege, LocalPrivilege> map =
-                                principalToPrivilegesMap.computeIfAbsent(principal, k -> new HashMap<>());
+                                principalToPrivilegesMap.get(accessControlEntry.getPrincipal());
+                        if (privileges != null && map != null) {
+                            processACE(srMap, jrAccessControlEntry, privileges, map);
+                        }
+                    }
+                }
+            }
+        }
+
+        // the entries are already in the order the principals were first declared
+        return new AclEntries(
+                new ArrayList<>(principalToPrivilegesMap.entrySet()),
+                rawAcl.declaredAtPaths(),
+                rawAcl.supportedPrivilegeBits(),
+                filter.offset(),
+                hasMore);
+    }
+
+    /**
+     * The access control entries as they were read from the repository
+     */
+    static record RawAcl(
+            PrivilegesIndex.Resolver resolver,
+            Map<String, List<AccessControlEntry>> effectivePathToEntriesMap,
+            Map<Principal, Map<DeclarationType, Set<String>>> declaredAtPaths,
+            long[] supportedPrivilegeBits) {
 
-                        processACE(srMap, jrAccessControlEntry, privileges, map);
+        /**
+         * @return true if all the entries are declared in the access control list of a node
+         */
+        boolean isNodeBased() {
+            for (Entry<String, List<AccessControlEntry>> entry : effectivePathToEntriesMap.entrySet()) {
+                if (entry.getKey() == null) {
+                    return false;
+                }
+                for (AccessControlEntry accessControlEntry : entry.getValue()) {
+                    if (accessControlEntry instanceof PrincipalAccessControlList.Entry) {
+                        return false;
                     }
                 }
             }
+            return true;
         }
+    }
 
-        // combine any aggregates that are still valid
-        AccessControlManager acm = jcrSession.getAccessControlManager();
-        Map<Privilege, Integer> privilegeLongestDepthMap =
-                PrivilegesHelper.buildPrivilegeLongestDepthMap(acm.privilegeFromName(PrivilegeConstants.JCR_ALL));
-        for (Entry<Principal, Map<Privilege, LocalPrivilege>> entry : principalToPrivilegesMap.entrySet()) {
-            Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap = entry.getValue();
+    /**
+     * The collected privileges of each principal in the order to output them
+     *
+     * @param offset the position of the first entry in all the matching principals
+     * @param hasMore true if there are more matching principals after the entries
+     */
+    static record AclEntries(
+            List<Entry<Principal, Map<Privilege, LocalPrivilege>>> entries,
+            Map<Principal, Map<DeclarationType, Set<String>>> declaredAtPaths,
+            long[] supportedPrivilegeBits,
+            int offset,
+            boolean hasMore) {}
 
-            PrivilegesHelper.consolidateAggregates(
-                    jcrSession, resourcePath, privilegeToLocalPrivilegesMap, privilegeLongestDepthMap);
+    /**
+     * Selects the principals to collect the privileges of
+     *
+     * @param principalPrefix the prefix of the principal names to include or null for all
+     * @param privilegeBits the leaf privileges where an entry of the principal must allow or
+     *          deny at least one of them or null for all
+     * @param offset the number of matching principals to skip
+     * @param limit the maximum number of principals to include or -1 for no limit
+     */
+    static record AclFilter(String principalPrefix, long[] privilegeBits, int offset, int limit) {
+
+        static final AclFilter ALL = new AclFilter(null, null, 0, -1);
+
+        boolean matchesPrincipal(Principal principal) {
+            return principalPrefix == null || principal.getName().startsWith(principalPrefix);
         }
 
-        // sort the entries by the order value for readability
-        List<Entry<Principal, Map<Privilege, LocalPrivilege>>> entrySetList =
-                new ArrayList<>(principalToPrivilegesMap.entrySet());
-        Collections.sort(
-                entrySetList,
-                (e1, e2) -> principalToOrderMap.get(e1.getKey()).compareTo(principalToOrderMap.get(e2.getKey())));
+        boolean matchesPrivileges(PrivilegesIndex.Resolver resolver, Privilege[] privileges) {
+            if (privilegeBits == null) {
+                return true;
+            }
+            for (Privilege privilege : privileges) {
+                int idx = resolver.indexOf(privilege);
+                if (idx != -1 && PrivilegeBits.intersects(resolver.getIndex().getLeafBits(idx), privilegeBits)) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-        // convert the data to JSON
-        JsonObjectBuilder jsonObj = convertToJson(entrySetList, principalToDeclaredAtPaths);
-        return jsonObj.build();
+        /**
+         * @return a digest of the selection without the offset
+         */
+        String digest() {
+            return new AccessControlDigest()
+                    .update(principalPrefix)
+                    .update(privilegeBits == null ? new long[0] : privilegeBits)
+                    .update(limit)
+                    .digest();
+        }
     }
 
     protected JsonObjectBuilder convertToJson(
@@ -124,20 +578,6 @@ public abstract class AbstractGetAclServlet extends AbstractAccessGetServlet {
         return jsonObj;
     }
 
-    /**
-     * Override to add additional data to the principal object
-     *
-     * @param principalJson the current principal JSON builder
-     * @param principal the current principal
-     * @param principalToDeclaredAtPaths a map of principal the paths where ACEs are declared
-     */
-    protected void addExtraInfo(
-            JsonObjectBuilder principalJson,
-            Principal principal,
-            Map<Principal, Map<DeclarationType, Set<String>>> principalToDeclaredAtPaths) {
-        // no-op
-    }
-
     protected abstract Map<String, List<AccessControlEntry>> getAccessControlEntriesMap(
             Session session, String absPath, Map<Principal, Map<DeclarationType, Set<String>>> declaredAtPaths)
             throws RepositoryException;
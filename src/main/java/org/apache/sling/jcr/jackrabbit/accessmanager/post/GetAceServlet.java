@@ -33,6 +33,7 @@ import jakarta.json.JsonObject;
 import jakarta.servlet.Servlet;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
 import org.apache.sling.jcr.jackrabbit.accessmanager.GetAce;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrincipalPrivileges;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
@@ -96,6 +97,12 @@ public class GetAceServlet extends AbstractGetAceServlet implements GetAce {
         return internalGetAce(jcrSession, resourcePath, principalId);
     }
 
+    @Override
+    public PrincipalPrivileges getAcePrivileges(Session jcrSession, String resourcePath, String principalId)
+            throws RepositoryException {
+        return internalGetAcePrivileges(jcrSession, resourcePath, principalId);
+    }
+
     @Override
     protected Map<String, List<AccessControlEntry>> getAccessControlEntriesMap(
             Session session,
@@ -33,6 +33,7 @@ import jakarta.json.JsonObject;
 import jakarta.servlet.Servlet;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
 import org.apache.sling.jcr.jackrabbit.accessmanager.GetAcl;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrincipalPrivileges;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
@@ -53,15 +54,38 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
  * <ul>
  * <li>GET</li>
  * </ul>
+ * <h4>Request Parameters</h4>
+ * <dl>
+ * <dt>principalPrefix</dt>
+ * <dd>Only include the principals where the name starts with the value.</dd>
+ * <dt>privilege</dt>
+ * <dd>Only include the principals that have an entry that allows or denies the privilege,
+ * or a privilege that aggregates it. May be repeated to match any of the privileges.</dd>
+ * <dt>offset</dt>
+ * <dd>The number of matching principals to skip.</dd>
+ * <dt>limit</dt>
+ * <dd>The maximum number of principals to include.</dd>
+ * <dt>continuation</dt>
+ * <dd>The value of the X-Continuation-Token header of the previous page. Used instead of the
+ * offset together with the same principalPrefix, privilege and limit values.</dd>
+ * </dl>
  * <h4>Response</h4>
  * <dl>
  * <dt>200</dt>
- * <dd>Success.</dd>
+ * <dd>Success. When there are more matching principals after the limit, the
+ * X-Continuation-Token header has the token of the next page.</dd>
+ * <dt>400</dt>
+ * <dd>The privilege, offset, limit or continuation parameter is not valid.</dd>
  * <dt>404</dt>
  * <dd>The resource was not found.</dd>
  * <dt>500</dt>
  * <dd>Failure. HTML explains the failure.</dd>
  * </dl>
+ * <p>
+ * The privileges of each principal are in the order of the privilege hierarchy, so an
+ * aggregate privilege is before the privileges that it aggregates. Privileges at the same
+ * depth are in the order they were registered in the repository.
+ * </p>
  * <h4>Example Response</h4>
  * <code style='white-space: pre'>
  * {
@@ -127,6 +151,15 @@ public class GetAclServlet extends AbstractGetAclServlet implements GetAcl {
         return internalGetAcl(jcrSession, resourcePath);
     }
 
+    /* (non-Javadoc)
+     * @see org.apache.sling.jcr.jackrabbit.accessmanager.GetAcl#getAclPrivileges(javax.jcr.Session, java.lang.String)
+     */
+    @Override
+    public Map<Principal, PrincipalPrivileges> getAclPrivileges(Session jcrSession, String resourcePath)
+            throws RepositoryException {
+        return internalGetAclPrivileges(jcrSession, resourcePath);
+    }
+
     @Override
     protected Map<String, List<AccessControlEntry>> getAccessControlEntriesMap(
             Session session, String absPath, Map<Principal, Map<DeclarationType, Set<String>>> declaredAtPaths)
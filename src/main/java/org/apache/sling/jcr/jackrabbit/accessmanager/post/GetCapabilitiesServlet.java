@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.post;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import java.util.function.ObjIntConsumer;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.servlet.Servlet;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrivilegesInfo;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.CapabilityChecker;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+
+/**
+ * <p>
+ * Sling GET servlet implementation for the capabilities of the current user for
+ * a resource and its children.
+ * </p>
+ * <h2>Rest Service Description</h2>
+ * <p>
+ * Mapped to the default resourceType. Gets the capabilities of the current user for a
+ * resource and each of its direct children. Get of the form &gt;resource&lt;.caps.json
+ * The key of the JSON is the path of the node and the value is the combination of these bits:
+ * </p>
+ * <dl>
+ * <dt>1</dt>
+ * <dd>The user can add children</dd>
+ * <dt>2</dt>
+ * <dd>The user can delete children</dd>
+ * <dt>4</dt>
+ * <dd>The user can delete the node</dd>
+ * <dt>8</dt>
+ * <dd>The user can modify properties</dd>
+ * <dt>16</dt>
+ * <dd>The user can read the access control</dd>
+ * <dt>32</dt>
+ * <dd>The user can modify the access control</dd>
+ * </dl>
+ * <h3>Transport Details:</h3>
+ * <h4>Methods</h4>
+ * <ul>
+ * <li>GET</li>
+ * </ul>
+ * <h4>Response</h4>
+ * <dl>
+ * <dt>200</dt>
+ * <dd>Success.</dd>
+ * <dt>404</dt>
+ * <dd>The resource was not found.</dd>
+ * <dt>500</dt>
+ * <dd>Failure. HTML explains the failure.</dd>
+ * </dl>
+ * <h4>Example Response</h4>
+ * <code style='white-space: pre'>
+ * {
+ * &quot;/content/site&quot;:11,
+ * &quot;/content/site/page1&quot;:15,
+ * &quot;/content/site/page2&quot;:8
+ * }
+ * </code>
+ */
+@Component(
+        service = {Servlet.class},
+        property = {
+            "sling.servlet.resourceTypes=sling/servlet/default",
+            "sling.servlet.methods=GET",
+            "sling.servlet.selectors=caps",
+            "sling.servlet.selectors=tidy.caps",
+            "sling.servlet.extensions=json",
+            "sling.servlet.prefix:Integer=-1"
+        })
+@SuppressWarnings("java:S110")
+public class GetCapabilitiesServlet extends AbstractAccessGetServlet {
+    private static final long serialVersionUID = 4815913853937404725L;
+
+    @Override
+    protected JsonObject internalJson(Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        validateArgs(session, resourcePath);
+        JsonObjectBuilder jsonObj = Json.createObjectBuilder();
+        forEachCapabilities(session, resourcePath, jsonObj::add);
+        return jsonObj.build();
+    }
+
+    /**
+     * Overridden to write each child as soon as its capabilities are known
+     */
+    @Override
+    protected @NotNull JsonWriter prepareJson(Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        validateArgs(session, resourcePath);
+        return generator -> {
+            generator.writeStartObject();
+            forEachCapabilities(session, resourcePath, generator::write);
+            generator.writeEnd();
+        };
+    }
+
+    /**
+     * Calculate the capabilities of the resource and then of each child.  The
+     * privileges of the resource are only read once and shared by all the children.
+     *
+     * @param session the JCR session
+     * @param resourcePath the resource path
+     * @param consumer called with the path and the <code>CAN_*</code> bits of
+     *          {@link PrivilegesInfo} of each node
+     */
+    private static void forEachCapabilities(Session session, String resourcePath, ObjIntConsumer<String> consumer)
+            throws RepositoryException {
+        CapabilityChecker checker = new CapabilityChecker(session);
+        consumer.accept(resourcePath, checker.getCapabilities(resourcePath));
+        NodeIterator children = session.getNode(resourcePath).getNodes();
+        while (children.hasNext()) {
+            Node child = children.nextNode();
+            if (!GetSubtreeAclServlet.isAccessControlContent(child)) {
+                String path = child.getPath();
+                consumer.accept(path, checker.getCapabilities(path));
+            }
+        }
+    }
+}
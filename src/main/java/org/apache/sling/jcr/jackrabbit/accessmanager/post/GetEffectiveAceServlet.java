@@ -21,8 +21,6 @@ package org.apache.sling.jcr.jackrabbit.accessmanager.post;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.security.AccessControlEntry;
-import javax.jcr.security.AccessControlManager;
-import javax.jcr.security.AccessControlPolicy;
 
 import java.security.Principal;
 import java.util.List;
@@ -31,13 +29,17 @@ import java.util.Set;
 
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
+import jakarta.json.stream.JsonGenerator;
 import jakarta.servlet.Servlet;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
 import org.apache.sling.jcr.jackrabbit.accessmanager.GetEffectiveAce;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrincipalPrivileges;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.DeclaredAclTrie;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.component.annotations.ReferencePolicyOption;
 
 /**
@@ -93,12 +95,29 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
 public class GetEffectiveAceServlet extends AbstractGetAceServlet implements GetEffectiveAce {
     private static final long serialVersionUID = 1654062732084983394L;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private transient volatile DeclaredAclTrie declaredAclTrie;
+
     @Override
     public JsonObject getEffectiveAce(Session jcrSession, String resourcePath, String principalId)
             throws RepositoryException {
         return internalGetAce(jcrSession, resourcePath, principalId);
     }
 
+    @Override
+    public PrincipalPrivileges getEffectiveAcePrivileges(Session jcrSession, String resourcePath, String principalId)
+            throws RepositoryException {
+        return internalGetAcePrivileges(jcrSession, resourcePath, principalId);
+    }
+
+    /**
+     * Overridden to report the declaredAt data like in the json
+     */
+    @Override
+    protected boolean isDeclaredAtReported() {
+        return true;
+    }
+
     /**
      * Overridden to add the declaredAt data to the json
      */
@@ -111,6 +130,18 @@ public class GetEffectiveAceServlet extends AbstractGetAceServlet implements Get
         JsonConvert.addDeclaredAt(principalJson, map);
     }
 
+    /**
+     * Overridden to write the declaredAt data to the json
+     */
+    @Override
+    protected void writeExtraInfo(
+            JsonGenerator generator,
+            Principal principal,
+            Map<Principal, Map<DeclarationType, Set<String>>> principalToDeclaredAtPaths) {
+        Map<DeclarationType, Set<String>> map = principalToDeclaredAtPaths.get(principal);
+        JsonConvert.writeDeclaredAt(generator, map);
+    }
+
     @Override
     protected Map<String, List<AccessControlEntry>> getAccessControlEntriesMap(
             Session session,
@@ -118,8 +149,7 @@ public class GetEffectiveAceServlet extends AbstractGetAceServlet implements Get
             Principal principal,
             Map<Principal, Map<DeclarationType, Set<String>>> declaredAtPaths)
             throws RepositoryException {
-        AccessControlManager acMgr = session.getAccessControlManager();
-        AccessControlPolicy[] policies = acMgr.getEffectivePolicies(absPath);
-        return entriesSortedByEffectivePath(policies, ace -> principal.equals(ace.getPrincipal()), declaredAtPaths);
+        return effectiveEntriesSortedByEffectivePath(
+                declaredAclTrie, session, absPath, ace -> principal.equals(ace.getPrincipal()), declaredAtPaths);
     }
 }
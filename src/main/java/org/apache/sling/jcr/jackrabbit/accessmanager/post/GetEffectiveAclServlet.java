@@ -18,27 +18,51 @@
  */
 package org.apache.sling.jcr.jackrabbit.accessmanager.post;
 
+import javax.jcr.AccessDeniedException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.security.AccessControlEntry;
-import javax.jcr.security.AccessControlManager;
-import javax.jcr.security.AccessControlPolicy;
 
+import java.io.IOException;
 import java.security.Principal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
+import jakarta.json.stream.JsonGenerator;
 import jakarta.servlet.Servlet;
+import jakarta.servlet.ServletException;
+import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionDefinition;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.ResourceNotFoundException;
 import org.apache.sling.jcr.jackrabbit.accessmanager.GetEffectiveAcl;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrincipalPrivileges;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.DeclaredAclTrie;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.EffectiveAclCache;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.EffectiveAclCache.CachedAcl;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrivilegesIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 
 /**
  * <p>
@@ -50,17 +74,39 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
  * &gt;resource&lt;.acl.json Provided the user has access to the ACL, they get a chunk of
  * JSON of the form.
  * </p>
+ * <p>
+ * The effective ACLs of many resources are returned by a request of the form
+ * &gt;resource&lt;.eacls.json with a path parameter for each resource. The JSON has
+ * the path of each resource as the key and the effective ACL of the resource as the value.
+ * Resources that do not exist or where the user can not read the ACL are not included.
+ * </p>
  * <h3>Transport Details:</h3>
  * <h4>Methods</h4>
  * <ul>
  * <li>GET</li>
+ * <li>POST (only for the eacls selector)</li>
  * </ul>
+ * <h4>Request Parameters</h4>
+ * <p>
+ * The same principalPrefix, privilege, offset, limit and continuation parameters as the
+ * &gt;resource&lt;.acl.json request. The cache of the effective ACL is not used when any of
+ * them are supplied.
+ * </p>
+ * <dl>
+ * <dt>path</dt>
+ * <dd>For the eacls selector, the path of a resource to include. May be repeated up to the
+ * configured maximum number of paths. Relative paths are relative to the resource of the request.</dd>
+ * </dl>
  * <h4>Response</h4>
  * <dl>
  * <dt>200</dt>
  * <dd>Success.</dd>
+ * <dt>400</dt>
+ * <dd>An eacls request has more paths than the configured maximum.</dd>
  * <dt>404</dt>
  * <dd>The resource was not found.</dd>
+ * <dt>405</dt>
+ * <dd>A POST request with a selector other than eacls.</dd>
  * <dt>500</dt>
  * <dd>Failure. HTML explains the failure.</dd>
  * </dl>
@@ -105,8 +151,11 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
         property = {
             "sling.servlet.resourceTypes=sling/servlet/default",
             "sling.servlet.methods=GET",
+            "sling.servlet.methods=POST",
             "sling.servlet.selectors=eacl",
             "sling.servlet.selectors=tidy.eacl",
+            "sling.servlet.selectors=" + GetEffectiveAclServlet.SELECTOR_BATCH,
+            "sling.servlet.selectors=tidy." + GetEffectiveAclServlet.SELECTOR_BATCH,
             "sling.servlet.extensions=json",
             "sling.servlet.prefix:Integer=-1"
         },
@@ -118,15 +167,264 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
                     policyOption = ReferencePolicyOption.GREEDY,
                     service = RestrictionProvider.class)
         })
+@Designate(ocd = GetEffectiveAclServlet.Config.class)
 @SuppressWarnings("java:S110")
 public class GetEffectiveAclServlet extends AbstractGetAclServlet implements GetEffectiveAcl {
     private static final long serialVersionUID = 1929547523002363145L;
 
+    /**
+     * The selector of the requests for the effective ACL of many resources
+     */
+    public static final String SELECTOR_BATCH = "eacls";
+
+    /**
+     * The request parameter for the paths of the resources in a batch request
+     */
+    public static final String PARAM_PATH = "path";
+
+    /**
+     * The maximum number of paths of a batch request when it is not configured
+     */
+    public static final int DEFAULT_MAX_BATCH_PATHS = 1000;
+
+    @ObjectClassDefinition(
+            name = "Apache Sling Access Manager Get Effective ACL Servlet",
+            description = "Returns the effective ACL of a resource or, for the eacls selector, of many resources")
+    public @interface Config {
+        @AttributeDefinition(
+                name = "Maximum Batch Paths",
+                description = "The maximum number of path parameters of an eacls request. Requests with more "
+                        + "paths are rejected with a 400 response.")
+        int maxBatchPaths() default DEFAULT_MAX_BATCH_PATHS;
+    }
+
+    private int maxBatchPaths = DEFAULT_MAX_BATCH_PATHS;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private transient volatile EffectiveAclCache effectiveAclCache;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private transient volatile DeclaredAclTrie declaredAclTrie;
+
+    @Activate
+    @Modified
+    void activate(Config config) {
+        configure(config.maxBatchPaths());
+    }
+
+    /**
+     * Apply the settings
+     *
+     * @param maxBatchPaths the maximum number of paths of a batch request
+     */
+    void configure(int maxBatchPaths) {
+        this.maxBatchPaths = Math.max(1, maxBatchPaths);
+    }
+
     /* (non-Javadoc)
      * @see org.apache.sling.jcr.jackrabbit.accessmanager.GetEffectiveAcl#getEffectiveAcl(javax.jcr.Session, java.lang.String)
      */
     public JsonObject getEffectiveAcl(Session jcrSession, String resourcePath) throws RepositoryException {
-        return internalGetAcl(jcrSession, resourcePath);
+        EffectiveAclCache cache = effectiveAclCache;
+        if (cache == null) {
+            return internalGetAcl(jcrSession, resourcePath);
+        }
+        return getCachedAcl(cache, jcrSession, resourcePath).json();
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.sling.jcr.jackrabbit.accessmanager.GetEffectiveAcl#getEffectiveAclPrivileges(javax.jcr.Session, java.lang.String)
+     */
+    @Override
+    public Map<Principal, PrincipalPrivileges> getEffectiveAclPrivileges(Session jcrSession, String resourcePath)
+            throws RepositoryException {
+        return internalGetAclPrivileges(jcrSession, resourcePath);
+    }
+
+    /**
+     * Overridden to report the declaredAt data like in the json
+     */
+    @Override
+    protected boolean isDeclaredAtReported() {
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.sling.jcr.jackrabbit.accessmanager.GetEffectiveAcl#getEffectiveAcls(javax.jcr.Session, java.util.Collection)
+     */
+    @Override
+    public Map<String, JsonObject> getEffectiveAcls(Session jcrSession, Collection<String> resourcePaths)
+            throws RepositoryException {
+        EffectiveAclBatch batch = new EffectiveAclBatch(jcrSession);
+        Map<String, JsonObject> map = new LinkedHashMap<>();
+        for (String resourcePath : resourcePaths) {
+            JsonObject json = batch.get(resourcePath);
+            if (json != null) {
+                map.put(resourcePath, json);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Overridden to reject the batch requests with more paths than the
+     * configured maximum before any of them is processed
+     */
+    @Override
+    protected void doGet(SlingJakartaHttpServletRequest request, SlingJakartaHttpServletResponse response)
+            throws ServletException, IOException {
+        if (isBatch(request)) {
+            String[] pathValues = request.getParameterValues(PARAM_PATH);
+            if (pathValues != null && pathValues.length > maxBatchPaths) {
+                response.sendError(
+                        SlingJakartaHttpServletResponse.SC_BAD_REQUEST,
+                        String.format(
+                                "At most %d paths are allowed but %d were supplied", maxBatchPaths, pathValues.length));
+                return;
+            }
+        }
+        super.doGet(request, response);
+    }
+
+    /**
+     * Overridden so the batch requests can be a POST where the number of
+     * paths is not limited by the length of the URL. A POST with any other
+     * selector is rejected with a 405 response.
+     */
+    @Override
+    protected void doPost(SlingJakartaHttpServletRequest request, SlingJakartaHttpServletResponse response)
+            throws ServletException, IOException {
+        if (isBatch(request)) {
+            doGet(request, response);
+        } else {
+            response.setHeader("Allow", "GET");
+            response.sendError(
+                    SlingJakartaHttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                    String.format("POST is only allowed for the %s selector", SELECTOR_BATCH));
+        }
+    }
+
+    private static boolean isBatch(SlingJakartaHttpServletRequest request) {
+        return Arrays.asList(request.getRequestPathInfo().getSelectors()).contains(SELECTOR_BATCH);
+    }
+
+    /**
+     * Overridden to write the effective ACL of each path of a batch request
+     */
+    @Override
+    protected @NotNull JsonWriter prepareJson(
+            SlingJakartaHttpServletRequest request, Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        if (!isBatch(request)) {
+            return super.prepareJson(request, session, resourcePath, principalId);
+        }
+        validateArgs(session, resourcePath);
+        Set<String> paths = new LinkedHashSet<>();
+        String[] pathValues = request.getParameterValues(PARAM_PATH);
+        if (pathValues != null) {
+            for (String path : pathValues) {
+                // relative paths are relative to the resource
+                if (!path.startsWith("/")) {
+                    path = "/".equals(resourcePath) ? "/" + path : resourcePath + "/" + path;
+                }
+                paths.add(path);
+            }
+        }
+        EffectiveAclBatch batch = new EffectiveAclBatch(session);
+        return generator -> {
+            generator.writeStartObject();
+            for (String path : paths) {
+                JsonObject json = batch.get(path);
+                if (json != null) {
+                    generator.write(path, json);
+                }
+            }
+            generator.writeEnd();
+        };
+    }
+
+    /**
+     * Calculates the effective ACL of many paths.  The privileges resolver and the
+     * restriction definitions are shared by all the paths, and paths that have the
+     * same effective entries, like siblings that inherit all their entries, share the
+     * processed JSON.
+     */
+    private final class EffectiveAclBatch {
+        private final Session session;
+        private final PrivilegesIndex.Resolver resolver;
+        private final EffectiveAclCache cache = effectiveAclCache;
+        private final Map<Set<RestrictionDefinition>, Restrictions> restrictionsMap = new HashMap<>();
+
+        private EffectiveAclBatch(Session session) throws RepositoryException {
+            this.session = session;
+            this.resolver = PrivilegesIndex.getInstance(session).resolver(session.getAccessControlManager());
+        }
+
+        /**
+         * @return the effective ACL or null if the path does not exist or the ACL can not be read
+         */
+        @Nullable
+        JsonObject get(String resourcePath) throws RepositoryException {
+            try {
+                if (cache != null) {
+                    return getCachedAcl(cache, session, resourcePath).json();
+                }
+                validateArgs(session, resourcePath);
+                RawAcl rawAcl = readAcl(session, resourcePath, resolver);
+                Restrictions restrictions = restrictionsMap.computeIfAbsent(
+                        getRestrictionProvider().getSupportedRestrictions(resourcePath),
+                        supported -> new Restrictions(toRestrictionMap(supported), new HashMap<>()));
+                // the same entries and supported privileges produce the same JSON
+                String validator = toValidator(restrictions.srMap(), rawAcl, AclFilter.ALL);
+                JsonObject json = restrictions.validatorToJsonMap().get(validator);
+                if (json == null) {
+                    json = toJson(restrictions.srMap(), rawAcl);
+                    restrictions.validatorToJsonMap().put(validator, json);
+                }
+                return json;
+            } catch (AccessDeniedException | ResourceNotFoundException e) {
+                return null;
+            }
+        }
+    }
+
+    private static record Restrictions(
+            Map<String, RestrictionDefinition> srMap, Map<String, JsonObject> validatorToJsonMap) {}
+
+    /**
+     * Overridden to use the cached effective ACL when the cache is configured
+     */
+    @Override
+    protected @NotNull JsonWriter prepareJson(Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        EffectiveAclCache cache = effectiveAclCache;
+        if (cache == null) {
+            return super.prepareJson(session, resourcePath, principalId);
+        }
+        CachedAcl cachedAcl = getCachedAcl(cache, session, resourcePath);
+        return JsonWriter.withValidator(cachedAcl.validator(), generator -> generator.write(cachedAcl.json()));
+    }
+
+    private CachedAcl getCachedAcl(EffectiveAclCache cache, Session jcrSession, String resourcePath)
+            throws RepositoryException {
+        validateArgs(jcrSession, resourcePath);
+        CachedAcl cachedAcl = cache.get(jcrSession, resourcePath);
+        if (cachedAcl == null) {
+            long stamp = cache.stamp();
+            RawAcl rawAcl = readAcl(jcrSession, resourcePath);
+            Map<String, List<AccessControlEntry>> effectivePathToEntriesMap = rawAcl.effectivePathToEntriesMap();
+            Map<String, RestrictionDefinition> srMap = toRestrictionMap(resourcePath);
+            JsonObject json = toJson(srMap, rawAcl);
+            String validator = toValidator(srMap, rawAcl, AclFilter.ALL);
+            if (rawAcl.isNodeBased()) {
+                cachedAcl = new CachedAcl(json, validator, Set.copyOf(effectivePathToEntriesMap.keySet()));
+                cache.put(jcrSession, resourcePath, cachedAcl, stamp);
+            } else {
+                // principal based entries are not cached
+                cachedAcl = new CachedAcl(json, validator, Set.of());
+            }
+        }
+        return cachedAcl;
     }
 
     /**
@@ -141,12 +439,22 @@ public class GetEffectiveAclServlet extends AbstractGetAclServlet implements Get
         JsonConvert.addDeclaredAt(principalJson, map);
     }
 
+    /**
+     * Overridden to write the declaredAt data to the json
+     */
+    @Override
+    protected void writeExtraInfo(
+            JsonGenerator generator,
+            Principal principal,
+            Map<Principal, Map<DeclarationType, Set<String>>> principalToDeclaredAtPaths) {
+        Map<DeclarationType, Set<String>> map = principalToDeclaredAtPaths.get(principal);
+        JsonConvert.writeDeclaredAt(generator, map);
+    }
+
     @Override
     protected Map<String, List<AccessControlEntry>> getAccessControlEntriesMap(
             Session session, String absPath, Map<Principal, Map<DeclarationType, Set<String>>> declaredAtPaths)
             throws RepositoryException {
-        AccessControlManager accessControlManager = session.getAccessControlManager();
-        AccessControlPolicy[] policies = accessControlManager.getEffectivePolicies(absPath);
-        return entriesSortedByEffectivePath(policies, ace -> true, declaredAtPaths);
+        return effectiveEntriesSortedByEffectivePath(declaredAclTrie, session, absPath, ace -> true, declaredAtPaths);
     }
 }
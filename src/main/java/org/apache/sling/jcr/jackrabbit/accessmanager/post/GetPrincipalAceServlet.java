@@ -38,6 +38,7 @@ import org.apache.jackrabbit.api.security.authorization.PrincipalAccessControlLi
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
 import org.apache.sling.api.SlingJakartaHttpServletRequest;
 import org.apache.sling.jcr.jackrabbit.accessmanager.GetPrincipalAce;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrincipalPrivileges;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrincipalAceHelper;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -115,6 +116,12 @@ public class GetPrincipalAceServlet extends AbstractGetAceServlet implements Get
         return internalGetAce(jcrSession, resourcePath, principalId);
     }
 
+    @Override
+    public PrincipalPrivileges getPrincipalAcePrivileges(Session jcrSession, String resourcePath, String principalId)
+            throws RepositoryException {
+        return internalGetAcePrivileges(jcrSession, resourcePath, principalId);
+    }
+
     @Override
     protected Map<String, List<AccessControlEntry>> getAccessControlEntriesMap(
             Session session,
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.post;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import jakarta.json.stream.JsonGenerator;
+import jakarta.servlet.Servlet;
+import org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants;
+import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+
+/**
+ * <p>
+ * Sling GET servlet implementation for dumping the declared ACLs of a resource and
+ * its descendants to JSON.
+ * </p>
+ * <h2>Rest Service Description</h2>
+ * <p>
+ * Mapped to the default resourceType. Gets the Acl of each node in the subtree of a resource
+ * that has an access control policy. Get of the form &gt;resource&lt;.tacl.json Provided the
+ * user has access to the ACLs, they get a chunk of JSON where the key is the path of the node
+ * and the value is the same as the JSON from the &gt;resource&lt;.acl.json request of that node.
+ * Nodes where the user cannot read the ACL are skipped.
+ * </p>
+ * <h3>Transport Details:</h3>
+ * <h4>Methods</h4>
+ * <ul>
+ * <li>GET</li>
+ * </ul>
+ * <h4>Request Parameters</h4>
+ * <dl>
+ * <dt>depth</dt>
+ * <dd>The number of levels below the resource to include. 0 is only the resource itself.
+ * Use "infinity" to include the whole subtree. When omitted only the resource and its
+ * children are included.</dd>
+ * </dl>
+ * <h4>Response</h4>
+ * <dl>
+ * <dt>200</dt>
+ * <dd>Success.</dd>
+ * <dt>400</dt>
+ * <dd>The depth parameter is not valid.</dd>
+ * <dt>404</dt>
+ * <dd>The resource was not found.</dd>
+ * <dt>500</dt>
+ * <dd>Failure. HTML explains the failure.</dd>
+ * </dl>
+ * <h4>Example Response</h4>
+ * <code style='white-space: pre'>
+ * {
+ * &quot;/content/site&quot;:{
+ *   &quot;principalNameA&quot;:{
+ *      &quot;privileges&quot;: {
+ *        &quot;permission1&quot;:{
+ *             &quot;allow&quot;:true
+ *        }
+ *      }
+ *   }
+ * },
+ * &quot;/content/site/folder&quot;:{
+ *   &quot;principalNameB&quot;:{
+ *      &quot;privileges&quot;: {
+ *        &quot;permission5&quot;:{
+ *             &quot;deny&quot;:true
+ *        }
+ *      }
+ *   }
+ * }
+ * }
+ * </code>
+ */
+@Component(
+        service = {Servlet.class},
+        property = {
+            "sling.servlet.resourceTypes=sling/servlet/default",
+            "sling.servlet.methods=GET",
+            "sling.servlet.selectors=tacl",
+            "sling.servlet.selectors=tidy.tacl",
+            "sling.servlet.extensions=json",
+            "sling.servlet.prefix:Integer=-1"
+        },
+        reference = {
+            @Reference(
+                    name = "RestrictionProvider",
+                    bind = "bindRestrictionProvider",
+                    cardinality = ReferenceCardinality.MULTIPLE,
+                    policyOption = ReferencePolicyOption.GREEDY,
+                    service = RestrictionProvider.class)
+        })
+@SuppressWarnings("java:S110")
+public class GetSubtreeAclServlet extends GetAclServlet {
+    private static final long serialVersionUID = -2419727093475125768L;
+
+    /**
+     * The request parameter for the number of levels to include
+     */
+    public static final String PARAM_DEPTH = "depth";
+
+    /**
+     * The value of the depth parameter to include the whole subtree
+     */
+    public static final String DEPTH_INFINITY = "infinity";
+
+    /**
+     * The number of levels to include when the request does not supply a depth
+     */
+    public static final int DEFAULT_DEPTH = 1;
+
+    /**
+     * Overridden to write the ACL of each node with a policy.  The nodes are
+     * visited one at a time so only the ACL of the current node is in memory.
+     */
+    @Override
+    protected @NotNull JsonWriter prepareJson(
+            SlingJakartaHttpServletRequest request, Session session, String resourcePath, String principalId)
+            throws RepositoryException {
+        validateArgs(session, resourcePath);
+        int maxDepth = parseDepth(request.getParameter(PARAM_DEPTH));
+        Node root = session.getNode(resourcePath);
+        return generator -> writeSubtree(generator, root, maxDepth);
+    }
+
+    /**
+     * @param depth the value of the depth parameter
+     * @return the number of levels or -1 for no limit
+     */
+    private static int parseDepth(String depth) throws RepositoryException {
+        if (depth == null || depth.isEmpty()) {
+            return DEFAULT_DEPTH;
+        }
+        if (DEPTH_INFINITY.equals(depth)) {
+            return -1;
+        }
+        int value;
+        try {
+            value = Integer.parseInt(depth);
+        } catch (NumberFormatException e) {
+            throw new InvalidParameterException("Invalid depth: " + depth);
+        }
+        if (value < 0) {
+            throw new InvalidParameterException("Invalid depth: " + depth);
+        }
+        return value;
+    }
+
+    private void writeSubtree(JsonGenerator generator, Node root, int maxDepth) throws RepositoryException {
+        generator.writeStartObject();
+        writeNode(generator, root);
+
+        // depth first without recursion, the size of the stack is the depth of the next child
+        Deque<NodeIterator> stack = new ArrayDeque<>();
+        if (maxDepth != 0) {
+            stack.push(root.getNodes());
+        }
+        while (!stack.isEmpty()) {
+            NodeIterator it = stack.peek();
+            if (!it.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            Node child = it.nextNode();
+            if (isAccessControlContent(child)) {
+                continue;
+            }
+            writeNode(generator, child);
+            if (maxDepth < 0 || stack.size() < maxDepth) {
+                stack.push(child.getNodes());
+            }
+        }
+        generator.writeEnd();
+    }
+
+    private void writeNode(JsonGenerator generator, Node node) throws RepositoryException {
+        // nodes without a policy, or where the policy can't be read, are skipped
+        if (node.hasNode(AccessControlConstants.REP_POLICY)) {
+            String path = node.getPath();
+            AclEntries aclEntries = collectAclEntries(path, readAcl(node.getSession(), path));
+            generator.writeStartObject(path);
+            writePrincipals(generator, aclEntries);
+            generator.writeEnd();
+        }
+    }
+
+    static boolean isAccessControlContent(Node node) throws RepositoryException {
+        String name = node.getName();
+        return AccessControlConstants.REP_POLICY.equals(name) || AccessControlConstants.REP_REPO_POLICY.equals(name);
+    }
+}
@@ -20,17 +20,16 @@ package org.apache.sling.jcr.jackrabbit.accessmanager.post;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
-import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.Value;
 import javax.jcr.ValueFactory;
 import javax.jcr.security.AccessControlEntry;
 import javax.jcr.security.AccessControlException;
-import javax.jcr.security.AccessControlList;
 import javax.jcr.security.AccessControlManager;
 import javax.jcr.security.AccessControlPolicy;
 import javax.jcr.security.AccessControlPolicyIterator;
 import javax.jcr.security.Privilege;
 
+import java.io.IOException;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -40,7 +39,10 @@ import java.util.EnumMap;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -49,6 +51,13 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
 import jakarta.servlet.Servlet;
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.JackrabbitAccessControlEntry;
@@ -57,12 +66,18 @@ import org.apache.jackrabbit.api.security.authorization.PrincipalAccessControlLi
 import org.apache.jackrabbit.api.security.principal.PrincipalManager;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionDefinition;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
-import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
 import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.jcr.jackrabbit.accessmanager.AceChange;
+import org.apache.sling.jcr.jackrabbit.accessmanager.AceChangeResult;
+import org.apache.sling.jcr.jackrabbit.accessmanager.AceReconcileResult;
 import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
 import org.apache.sling.jcr.jackrabbit.accessmanager.LocalRestriction;
 import org.apache.sling.jcr.jackrabbit.accessmanager.ModifyAce;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.AceOrderHelper;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.LocalPrivilegeMap;
 import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrivilegesHelper;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.PrivilegesIndex;
+import org.apache.sling.servlets.post.JakartaJSONResponse;
 import org.apache.sling.servlets.post.JakartaPostResponse;
 import org.apache.sling.servlets.post.JakartaPostResponseCreator;
 import org.apache.sling.servlets.post.Modification;
@@ -110,11 +125,45 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
  * <dt>restriction@[privilege_name]@[restriction_name]@Delete</dt>
  * <dd>One param for each restriction to delete. The parameter value must be either 'allow', 'deny' or 'all' to specify which state to delete from.</dd>
  * </dl>
+ * <h4>Batch Requests</h4>
+ * <p>
+ * A POST to &gt;resource&lt;.modifyAces.json applies many changes at once.  The request body
+ * is a JSON array with one object for each change, for example
+ * <code>[{"path": "child", "principalId": "everyone", "privileges": {"jcr:read": "allow"}, "order": "first"}]</code>.
+ * The path is optional and relative paths are relative to the resource of the request.  The
+ * privilege values are the same as for the privilege@[privilege_name] parameters.
+ * The optional restrictions object has the restrictions for the allowed or denied privileges, for example
+ * <code>{"restrictions": {"rep:glob": "/*.txt", "jcr:write@rep:glob@Deny": ["/secret"]}}</code>.
+ * The keys are the names of the restriction@ parameters without the prefix, and the values
+ * are a string or an array of strings that are handled like the values of those parameters.
+ * The saveThreshold parameter is the number of changes after which the session is saved.
+ * The response reports a "modified", "unchanged" or "failed" change for each item.  The
+ * request fails without applying any change when an item or the saveThreshold is not valid.
+ * </p>
+ * <h4>Reconcile Requests</h4>
+ * <p>
+ * A POST to &gt;resource&lt;.reconcileAces.json reconciles the ACLs of many resources with the
+ * desired state in the request body.  The body is a JSON array with the same items as a batch
+ * request, grouped by path, and is read one item at a time.  Each group is the complete desired
+ * state of the resource, including the restrictions: only the ACEs that differ are written and the
+ * ACEs of the principals that are not in the group are removed.  The saveThreshold parameter is the number of changed principals
+ * after which the session is saved.  The JSON response has the number of "unchanged", "modified" and
+ * "removed" principals and of "failed" resources as properties, and a "failed" change for each
+ * resource that was not reconciled.  When an item can not be read, the resource of the items before
+ * it is reported as failed and the rest of the body is not read.
+ * </p>
+ * <h4>Order Requests</h4>
+ * <p>
+ * A POST to &gt;resource&lt;.orderAce.html with the principalId and order parameters only moves
+ * the existing ACEs for the principal.  The privileges and restrictions of the ACEs are not changed,
+ * and only the ACEs that are out of place are moved.
+ * </p>
  *
  * <h4>Response</h4>
  * <dl>
  * <dt>200</dt>
- * <dd>Success.</dd>
+ * <dd>Success.  When the submitted state is the same as the stored state, nothing is stored and an
+ * "unchanged" change is reported instead of a "modified" change.</dd>
  * <dt>404</dt>
  * <dd>The resource was not found.</dd>
  * <dt>500</dt>
@@ -134,6 +183,9 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
             "sling.servlet.resourceTypes=sling/servlet/default",
             "sling.servlet.methods=POST",
             "sling.servlet.selectors=modifyAce",
+            "sling.servlet.selectors=" + ModifyAceServlet.SELECTOR_BATCH,
+            "sling.servlet.selectors=" + ModifyAceServlet.SELECTOR_ORDER,
+            "sling.servlet.selectors=" + ModifyAceServlet.SELECTOR_RECONCILE,
             "sling.servlet.prefix:Integer=-1"
         },
         reference = {
@@ -153,6 +205,64 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
 @SuppressWarnings("java:S110")
 public class ModifyAceServlet extends AbstractAccessPostServlet implements ModifyAce {
     private static final long serialVersionUID = -9182485466670280437L;
+
+    /**
+     * The selector of the requests with the changes of many ACEs in the request body
+     */
+    public static final String SELECTOR_BATCH = "modifyAces";
+
+    /**
+     * The selector of the requests that only move the ACEs of a principal
+     */
+    public static final String SELECTOR_ORDER = "orderAce";
+
+    /**
+     * The selector of the requests with the desired state of many ACLs in the request body
+     */
+    public static final String SELECTOR_RECONCILE = "reconcileAces";
+
+    /**
+     * The request parameter for the number of changes of a batch request after
+     * which the session is saved
+     */
+    public static final String PARAM_SAVE_THRESHOLD = "saveThreshold";
+
+    /**
+     * The number of changes of a batch request after which the session is saved
+     * when the request does not supply a value
+     */
+    public static final int DEFAULT_SAVE_THRESHOLD = 1000;
+
+    /**
+     * The type of the change that is reported when the submitted state is the
+     * same as the stored state
+     */
+    public static final String CHANGE_UNCHANGED = "unchanged";
+
+    /**
+     * The property of the JSON response of a reconcile request with the number of
+     * principals whose ACEs were already in the desired state
+     */
+    public static final String PROP_UNCHANGED = "unchanged";
+
+    /**
+     * The property of the JSON response of a reconcile request with the number of
+     * principals whose ACEs were added or changed
+     */
+    public static final String PROP_MODIFIED = "modified";
+
+    /**
+     * The property of the JSON response of a reconcile request with the number of
+     * principals whose ACEs were removed
+     */
+    public static final String PROP_REMOVED = "removed";
+
+    /**
+     * The property of the JSON response of a reconcile request with the number of
+     * resources that were not reconciled
+     */
+    public static final String PROP_FAILED = "failed";
+
     private static final String INVALID_OR_NOT_SUPPORTED_RESTRICTION_NAME_WAS_SUPPLIED =
             "Invalid restriction name was supplied";
 
@@ -212,6 +322,7 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
             Pattern.compile(String.format("^privilege@(.+)(?<!%s)$", SlingPostConstants.SUFFIX_DELETE));
     private static final Pattern PRIVILEGE_PATTERN_DELETE =
             Pattern.compile(String.format("^privilege@(.+)%s$", SlingPostConstants.SUFFIX_DELETE));
+    private static final String RESTRICTION_PREFIX = "restriction@";
     private static final Pattern RESTRICTION_PATTERN = Pattern.compile("^restriction@([^@]+)(@([^@]+)@(Allow|Deny))?$");
     private static final Pattern RESTRICTION_PATTERN_DELETE =
             Pattern.compile(String.format("^restriction@([^@]+)(@([^@]+))?%s$", SlingPostConstants.SUFFIX_DELETE));
@@ -223,6 +334,18 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
     protected void handleOperation(
             SlingJakartaHttpServletRequest request, JakartaPostResponse response, List<Modification> changes)
             throws RepositoryException {
+        if (hasSelector(request, SELECTOR_BATCH)) {
+            handleBatchOperation(request, response);
+            return;
+        }
+        if (hasSelector(request, SELECTOR_RECONCILE)) {
+            handleReconcileOperation(request, response);
+            return;
+        }
+        if (hasSelector(request, SELECTOR_ORDER)) {
+            handleOrderOperation(request, response, changes);
+            return;
+        }
         Session session = request.getResourceResolver().adaptTo(Session.class);
         String resourcePath = getItemPath(request);
         String principalId = request.getParameter("principalId");
@@ -234,12 +357,12 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
         // Use for fast lookup during the calls below.
         Map<String, RestrictionDefinition> srMap = buildRestrictionNameToDefinitionMap(resourcePath);
         AccessControlManager acm = session.getAccessControlManager();
-        Map<Privilege, Integer> privilegeLongestDepthMap =
-                PrivilegesHelper.buildPrivilegeLongestDepthMap(acm.privilegeFromName(PrivilegeConstants.JCR_ALL));
+        PrivilegesIndex.Resolver resolver = PrivilegesIndex.getInstance(session).resolver(acm);
+        Map<Privilege, Integer> privilegeLongestDepthMap = resolver.getLongestDepthMap();
 
         // first calculate what is currently stored in the ace
-        Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap =
-                loadStoredAce(acm, resourcePath, principal, srMap);
+        Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap = new LocalPrivilegeMap(resolver);
+        loadStoredAce(acm, resourcePath, principal, srMap, privilegeToLocalPrivilegesMap);
 
         // and now merge the changes from the request parameters
         processPostedPrivilegeDeleteParams(acm, request, privilegeToLocalPrivilegesMap);
@@ -252,7 +375,226 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
                 session, resourcePath, privilegeToLocalPrivilegesMap, privilegeLongestDepthMap);
 
         // and then store it
+        int changesCount = changes.size();
         modifyAce(session, resourcePath, principalId, privilegeToLocalPrivilegesMap.values(), order, false, changes);
+        if (changes.size() == changesCount) {
+            // the submitted state is the same as the stored state, so nothing was stored
+            response.onChange(CHANGE_UNCHANGED, principal.getName());
+        }
+    }
+
+    private static boolean hasSelector(SlingJakartaHttpServletRequest request, String selector) {
+        return Arrays.asList(request.getRequestPathInfo().getSelectors()).contains(selector);
+    }
+
+    /**
+     * Move the ACEs for the principal of the request
+     *
+     * @param request the current request
+     * @param response the response to report an unchanged position to
+     * @param changes the list of changes to add to
+     */
+    private void handleOrderOperation(
+            SlingJakartaHttpServletRequest request, JakartaPostResponse response, List<Modification> changes)
+            throws RepositoryException {
+        Session session = request.getResourceResolver().adaptTo(Session.class);
+        String resourcePath = getItemPath(request);
+        String principalId = request.getParameter("principalId");
+        String order = request.getParameter("order");
+
+        int changesCount = changes.size();
+        orderAce(session, resourcePath, principalId, order, false, changes);
+        if (changes.size() == changesCount) {
+            // the ACEs are already at the requested position, so nothing was stored
+            response.onChange(CHANGE_UNCHANGED, principalId);
+        }
+    }
+
+    /**
+     * Apply the changes in the JSON array of the request body and report the
+     * result of each change
+     *
+     * @param request the current request
+     * @param response the response to report the results to
+     */
+    private void handleBatchOperation(SlingJakartaHttpServletRequest request, JakartaPostResponse response)
+            throws RepositoryException {
+        Session session = request.getResourceResolver().adaptTo(Session.class);
+        String resourcePath = getItemPath(request);
+        validateResourcePath(session, resourcePath);
+        int saveThreshold = getSaveThreshold(request);
+
+        // all the changes are validated before any of them is applied
+        List<AceChange> aceChanges = new ArrayList<>();
+        try (JsonReader reader = Json.createReader(request.getReader())) {
+            for (JsonValue value : reader.readArray()) {
+                aceChanges.add(toAceChange(resourcePath, value));
+            }
+        } catch (IOException | JsonException e) {
+            throw new RepositoryException("Failed to read the changes", e);
+        } catch (IllegalArgumentException e) {
+            throw new RepositoryException("Invalid change: " + e.getMessage(), e);
+        }
+
+        for (AceChangeResult result : modifyAces(session, aceChanges, saveThreshold)) {
+            AceChange change = result.getChange();
+            String type = result.getStatus().name().toLowerCase(Locale.ROOT);
+            if (result.getMessage() == null) {
+                response.onChange(type, change.getResourcePath(), change.getPrincipalId());
+            } else {
+                response.onChange(type, change.getResourcePath(), change.getPrincipalId(), result.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the value of the save threshold parameter
+     * @throws RepositoryException if the value is not a number that is zero or greater
+     */
+    private static int getSaveThreshold(SlingJakartaHttpServletRequest request) throws RepositoryException {
+        String saveThresholdParam = request.getParameter(PARAM_SAVE_THRESHOLD);
+        if (saveThresholdParam == null || saveThresholdParam.isEmpty()) {
+            return DEFAULT_SAVE_THRESHOLD;
+        }
+        int saveThreshold;
+        try {
+            saveThreshold = Integer.parseInt(saveThresholdParam);
+        } catch (NumberFormatException e) {
+            throw new RepositoryException("Invalid " + PARAM_SAVE_THRESHOLD + ": " + saveThresholdParam);
+        }
+        if (saveThreshold < 0) {
+            throw new RepositoryException("Invalid " + PARAM_SAVE_THRESHOLD + ": " + saveThresholdParam);
+        }
+        return saveThreshold;
+    }
+
+    /**
+     * Reconcile the ACLs with the desired state in the JSON array of the request body
+     * and report the summary
+     *
+     * @param request the current request
+     * @param response the response to report the summary to
+     */
+    private void handleReconcileOperation(SlingJakartaHttpServletRequest request, JakartaPostResponse response)
+            throws RepositoryException {
+        Session session = request.getResourceResolver().adaptTo(Session.class);
+        String resourcePath = getItemPath(request);
+        validateResourcePath(session, resourcePath);
+        int saveThreshold = getSaveThreshold(request);
+
+        AceReconcileResult result;
+        try (JsonParser parser = Json.createParser(request.getReader())) {
+            if (!parser.hasNext() || parser.next() != JsonParser.Event.START_ARRAY) {
+                throw new RepositoryException("The desired state must be a JSON array");
+            }
+            // read the items one at a time
+            Iterator<AceChange> desiredAces = parser.getArrayStream()
+                    .map(value -> toAceChange(resourcePath, value))
+                    .iterator();
+            result = reconcileAces(session, desiredAces, saveThreshold);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to read the desired state", e);
+        }
+
+        String failed = AceChangeResult.Status.FAILED.name().toLowerCase(Locale.ROOT);
+        for (Entry<String, String> failure : result.getFailures().entrySet()) {
+            response.onChange(failed, failure.getKey(), failure.getValue());
+        }
+        if (response instanceof JakartaJSONResponse jsonResponse) {
+            jsonResponse.setProperty(PROP_UNCHANGED, result.getUnchanged());
+            jsonResponse.setProperty(PROP_MODIFIED, result.getModified());
+            jsonResponse.setProperty(PROP_REMOVED, result.getRemoved());
+            jsonResponse.setProperty(PROP_FAILED, result.getFailures().size());
+        } else {
+            response.setTitle(String.format(
+                    "Reconciled: %d unchanged, %d modified, %d removed, %d failed",
+                    result.getUnchanged(),
+                    result.getModified(),
+                    result.getRemoved(),
+                    result.getFailures().size()));
+        }
+    }
+
+    /**
+     * Convert one item of the JSON array of a batch request
+     *
+     * @param resourcePath the path of the resource of the request
+     * @param value the item, for example <code>{"path": "child", "principalId": "everyone",
+     *          "privileges": {"jcr:read": "allow"}, "order": "first"}</code>
+     * @return the change
+     * @throws IllegalArgumentException if the item or one of its values is not of the expected type
+     */
+    private static @NotNull AceChange toAceChange(@NotNull String resourcePath, @NotNull JsonValue value) {
+        if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+            throw new IllegalArgumentException("Expected a JSON object but was: " + value);
+        }
+        JsonObject json = value.asJsonObject();
+        String path = json.getString("path", resourcePath);
+        // relative paths are relative to the resource
+        if (!path.startsWith("/")) {
+            path = "/".equals(resourcePath) ? "/" + path : resourcePath + "/" + path;
+        }
+        Map<String, String> privileges = new LinkedHashMap<>();
+        JsonValue privilegesValue = json.get("privileges");
+        if (privilegesValue != null && privilegesValue.getValueType() != JsonValue.ValueType.NULL) {
+            if (privilegesValue.getValueType() != JsonValue.ValueType.OBJECT) {
+                throw new IllegalArgumentException("Expected a JSON object for the privileges of " + path);
+            }
+            for (Entry<String, JsonValue> entry : privilegesValue.asJsonObject().entrySet()) {
+                if (!(entry.getValue() instanceof JsonString privilegeValue)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Expected a string for the privilege %s of %s but was: %s",
+                            entry.getKey(), path, entry.getValue()));
+                }
+                privileges.put(entry.getKey(), privilegeValue.getString());
+            }
+        }
+        Map<String, String[]> restrictions = new LinkedHashMap<>();
+        JsonValue restrictionsValue = json.get("restrictions");
+        if (restrictionsValue != null && restrictionsValue.getValueType() != JsonValue.ValueType.NULL) {
+            if (restrictionsValue.getValueType() != JsonValue.ValueType.OBJECT) {
+                throw new IllegalArgumentException("Expected a JSON object for the restrictions of " + path);
+            }
+            for (Entry<String, JsonValue> entry : restrictionsValue.asJsonObject().entrySet()) {
+                if (!RESTRICTION_PATTERN.matcher(RESTRICTION_PREFIX + entry.getKey()).matches()) {
+                    throw new IllegalArgumentException(
+                            String.format("Invalid restriction %s of %s", entry.getKey(), path));
+                }
+                restrictions.put(entry.getKey(), toRestrictionValues(path, entry.getKey(), entry.getValue()));
+            }
+        }
+        return new AceChange(
+                path, json.getString("principalId", ""), privileges, restrictions, json.getString("order", null));
+    }
+
+    /**
+     * Convert the value of a restriction of an item of the JSON array of a batch request
+     *
+     * @param path the path of the item
+     * @param key the key of the restriction
+     * @param value the value, either a string or an array of strings
+     * @return the restriction values
+     * @throws IllegalArgumentException if the value is not a string or an array of strings
+     */
+    private static @NotNull String[] toRestrictionValues(
+            @NotNull String path, @NotNull String key, @NotNull JsonValue value) {
+        if (value instanceof JsonString restrictionValue) {
+            return new String[] {restrictionValue.getString()};
+        }
+        if (value.getValueType() == JsonValue.ValueType.ARRAY) {
+            List<String> values = new ArrayList<>();
+            for (JsonValue item : value.asJsonArray()) {
+                if (!(item instanceof JsonString itemValue)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Expected a string for the restriction %s of %s but was: %s", key, path, item));
+                }
+                values.add(itemValue.getString());
+            }
+            return values.toArray(new String[0]);
+        }
+        throw new IllegalArgumentException(String.format(
+                "Expected a string or an array of strings for the restriction %s of %s but was: %s",
+                key, path, value));
     }
 
     /**
@@ -331,7 +673,48 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
             @NotNull Map<String, RestrictionDefinition> srMap)
             throws RepositoryException {
         Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap = new HashMap<>();
+        loadStoredAce(acm, resourcePath, forPrincipal, srMap, privilegeToLocalPrivilegesMap);
+        return privilegeToLocalPrivilegesMap;
+    }
+
+    /**
+     * Loads the state for the currently stored ACE for the specified principal into
+     * the supplied map.
+     *
+     * @param acm the access control manager
+     * @param resourcePath the resource path
+     * @param forPrincipal the principal to load the ace for
+     * @param srMap map of restriction names to the restriction definition
+     * @param privilegeToLocalPrivilegesMap the map to populate
+     */
+    private void loadStoredAce(
+            @NotNull AccessControlManager acm,
+            @NotNull String resourcePath,
+            @NotNull Principal forPrincipal,
+            @NotNull Map<String, RestrictionDefinition> srMap,
+            @NotNull Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap)
+            throws RepositoryException {
         JackrabbitAccessControlList acl = getAcl(acm, resourcePath, forPrincipal);
+        loadStoredAce(acl, resourcePath, forPrincipal, srMap, privilegeToLocalPrivilegesMap);
+    }
+
+    /**
+     * Loads the state for the ACE for the specified principal in the supplied
+     * access control list into the supplied map.
+     *
+     * @param acl the access control list
+     * @param resourcePath the resource path
+     * @param forPrincipal the principal to load the ace for
+     * @param srMap map of restriction names to the restriction definition
+     * @param privilegeToLocalPrivilegesMap the map to populate
+     */
+    private void loadStoredAce(
+            @NotNull JackrabbitAccessControlList acl,
+            @NotNull String resourcePath,
+            @NotNull Principal forPrincipal,
+            @NotNull Map<String, RestrictionDefinition> srMap,
+            @NotNull Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap)
+            throws RepositoryException {
         AccessControlEntry[] accessControlEntries = acl.getAccessControlEntries();
         for (AccessControlEntry accessControlEntry : accessControlEntries) {
             JackrabbitAccessControlEntry jrAccessControlEntry =
@@ -367,7 +750,6 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
                 }
             }
         }
-        return privilegeToLocalPrivilegesMap;
     }
 
     protected @Nullable JackrabbitAccessControlEntry getJackrabbitAccessControlEntry(
@@ -759,6 +1141,18 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
         }
     }
 
+    /**
+     * Returns the key of the ACL that {@link #getAcl(AccessControlManager, String, Principal)}
+     * returns, so a batch loads and stores each ACL once
+     *
+     * @param resourcePath the resource path
+     * @param principal the principal of the ACE
+     * @return the key of the ACL
+     */
+    protected @NotNull String getAclKey(@NotNull String resourcePath, @NotNull Principal principal) {
+        return resourcePath;
+    }
+
     /**
      * Lookup the ACL for the given resource
      *
@@ -790,6 +1184,29 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
         return acl;
     }
 
+    /**
+     * Returns the order that keeps the ACEs for the specified principal at their
+     * current position
+     *
+     * @param resourcePath the path of the resource
+     * @param principal the principal of the aces
+     * @param entries the entries of the access control list
+     * @return the index of the principal amongst the principals of the entries, or null
+     *          if there are no ACEs for the principal
+     */
+    protected @Nullable String getCurrentOrder(
+            @NotNull String resourcePath, @NotNull Principal principal, @NotNull AccessControlEntry[] entries) {
+        Set<Principal> processedPrincipals = new HashSet<>();
+        for (AccessControlEntry ace : entries) {
+            Principal principal2 = ace.getPrincipal();
+            if (principal2.equals(principal)) {
+                return String.valueOf(processedPrincipals.size());
+            }
+            processedPrincipals.add(principal2);
+        }
+        return null;
+    }
+
     /**
      * Remove all of the ACEs for the specified principal from the ACL
      *
@@ -808,16 +1225,9 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
 
         if (order == null || order.length() == 0) {
             // order not specified, so keep track of the original ACE position.
-            Set<Principal> processedPrincipals = new HashSet<>();
-            for (int j = 0; j < existingAccessControlEntries.length; j++) {
-                AccessControlEntry ace = existingAccessControlEntries[j];
-                Principal principal2 = ace.getPrincipal();
-                if (principal2.equals(principal)) {
-                    order = String.valueOf(processedPrincipals.size());
-                    break;
-                } else {
-                    processedPrincipals.add(principal2);
-                }
+            String currentOrder = getCurrentOrder(resourcePath, principal, existingAccessControlEntries);
+            if (currentOrder != null) {
+                order = currentOrder;
             }
         }
 
@@ -850,25 +1260,7 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
             throws RepositoryException {
 
         List<Entry<Set<LocalRestriction>, List<LocalPrivilege>>> sortedEntries =
-                new ArrayList<>(restrictionsToLocalPrivilegesMap.entrySet());
-        // sort the entries by the most shallow depth of the contained privileges
-        Collections.sort(sortedEntries, (e1, e2) -> {
-            int shallowestDepth1 = Integer.MAX_VALUE;
-            for (LocalPrivilege lp : e1.getValue()) {
-                Integer depth = privilegeLongestDepthMap.get(lp.getPrivilege());
-                if (depth != null && depth.intValue() < shallowestDepth1) {
-                    shallowestDepth1 = depth.intValue();
-                }
-            }
-            int shallowestDepth2 = Integer.MAX_VALUE;
-            for (LocalPrivilege lp : e2.getValue()) {
-                Integer depth = privilegeLongestDepthMap.get(lp.getPrivilege());
-                if (depth != null && depth.intValue() < shallowestDepth2) {
-                    shallowestDepth2 = depth.intValue();
-                }
-            }
-            return Integer.compare(shallowestDepth1, shallowestDepth2);
-        });
+                sortByShallowestDepth(restrictionsToLocalPrivilegesMap, privilegeLongestDepthMap);
 
         for (Entry<Set<LocalRestriction>, List<LocalPrivilege>> entry : sortedEntries) {
             Set<Privilege> privilegesSet = new HashSet<>();
@@ -908,126 +1300,35 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
     }
 
     /**
-     * Move the ACE(s) for the specified principal to the position specified by the 'order'
-     * parameter. This is a copy of the private AccessControlUtil.reorderAccessControlEntries method.
+     * Sort the entries by the most shallow depth of the contained privileges
      *
-     * @param acl the acl of the node containing the ACE to position
-     * @param principal the user or group of the ACE to position
-     * @param order where the access control entry should go in the list.
-     *         Value should be one of these:
-     *         <table>
-     *          <caption>Values</caption>
-     *          <tr><td>first</td><td>Place the target ACE as the first amongst its siblings</td></tr>
-     *          <tr><td>last</td><td>Place the target ACE as the last amongst its siblings</td></tr>
-     *          <tr><td>before xyz</td><td>Place the target ACE immediately before the sibling whose name is xyz</td></tr>
-     *          <tr><td>after xyz</td><td>Place the target ACE immediately after the sibling whose name is xyz</td></tr>
-     *          <tr><td>numeric</td><td>Place the target ACE at the specified index</td></tr>
-     *         </table>
-     * @throws RepositoryException
-     * @throws UnsupportedRepositoryOperationException
-     * @throws AccessControlException
+     * @param restrictionsToLocalPrivilegesMap the map containing the restrictions mapped to the LocalPrivlege items with those resrictions
+     * @param privilegeLongestDepthMap the map of privileges to their longest depth
+     * @return the sorted entries
      */
-    private static void reorderAccessControlEntries(AccessControlList acl, Principal principal, String order)
-            throws RepositoryException {
-        if (order == null || order.length() == 0) {
-            return; // nothing to do
-        }
-        if (acl instanceof JackrabbitAccessControlList jacl) {
-            AccessControlEntry[] accessControlEntries = jacl.getAccessControlEntries();
-            if (accessControlEntries.length <= 1) {
-                return; // only one ACE, so nothing to reorder.
-            }
-
-            AccessControlEntry beforeEntry = null;
-            if ("first".equals(order)) {
-                beforeEntry = accessControlEntries[0];
-            } else if ("last".equals(order)) {
-                // add to the end is the same as default
-            } else if (order.startsWith("before ")) {
-                String beforePrincipalName = order.substring(7);
-
-                // find the index of the ACE of the 'before' principal
-                for (int i = 0; i < accessControlEntries.length; i++) {
-                    if (beforePrincipalName.equals(
-                            accessControlEntries[i].getPrincipal().getName())) {
-                        // found it!
-                        beforeEntry = accessControlEntries[i];
-                        break;
-                    }
-                }
-
-                if (beforeEntry == null) {
-                    // didn't find an ACE that matched the 'before' principal
-                    throw new IllegalArgumentException(
-                            "No ACE was found for the specified principal: " + beforePrincipalName);
-                }
-            } else if (order.startsWith("after ")) {
-                String afterPrincipalName = order.substring(6);
-
-                // find the index of the ACE of the 'after' principal
-                for (int i = accessControlEntries.length - 1; i >= 0; i--) {
-                    if (afterPrincipalName.equals(
-                            accessControlEntries[i].getPrincipal().getName())) {
-                        // found it!
-
-                        // the 'before' ACE is the next one after the 'after' ACE
-                        if (i >= accessControlEntries.length - 1) {
-                            // the after is the last one in the list
-                            beforeEntry = null;
-                        } else {
-                            beforeEntry = accessControlEntries[i + 1];
-                        }
-                        break;
-                    }
-                }
-
-                if (beforeEntry == null) {
-                    // didn't find an ACE that matched the 'after' principal
-                    throw new IllegalArgumentException(
-                            "No ACE was found for the specified principal: " + afterPrincipalName);
-                }
-            } else {
-                int index = -1;
-                try {
-                    index = Integer.parseInt(order);
-                } catch (NumberFormatException nfe) {
-                    // not a number.
-                    throw new IllegalArgumentException("Illegal value for the order parameter: " + order);
-                }
-                if (index > accessControlEntries.length) {
-                    // invalid index
-                    throw new IndexOutOfBoundsException("Index value is too large: " + index);
-                }
-
-                // the index value is the index of the principal.  A principal may have more
-                // than one ACEs (deny + grant), so we need to compensate.
-                Map<Principal, Integer> principalToIndex = new HashMap<>();
-                for (int i = 0; i < accessControlEntries.length; i++) {
-                    Principal principal2 = accessControlEntries[i].getPrincipal();
-                    Integer idx = i;
-                    principalToIndex.computeIfAbsent(principal2, key -> idx);
-                }
-                Integer[] sortedIndexes =
-                        principalToIndex.values().stream().sorted().toArray(size -> new Integer[size]);
-                if (index >= 0 && index < sortedIndexes.length - 1) {
-                    int idx = sortedIndexes[index];
-                    beforeEntry = accessControlEntries[idx];
+    private static List<Entry<Set<LocalRestriction>, List<LocalPrivilege>>> sortByShallowestDepth(
+            @NotNull Map<Set<LocalRestriction>, List<LocalPrivilege>> restrictionsToLocalPrivilegesMap,
+            Map<Privilege, Integer> privilegeLongestDepthMap) {
+        List<Entry<Set<LocalRestriction>, List<LocalPrivilege>>> sortedEntries =
+                new ArrayList<>(restrictionsToLocalPrivilegesMap.entrySet());
+        Collections.sort(sortedEntries, (e1, e2) -> {
+            int shallowestDepth1 = Integer.MAX_VALUE;
+            for (LocalPrivilege lp : e1.getValue()) {
+                Integer depth = privilegeLongestDepthMap.get(lp.getPrivilege());
+                if (depth != null && depth.intValue() < shallowestDepth1) {
+                    shallowestDepth1 = depth.intValue();
                 }
             }
-
-            if (beforeEntry != null) {
-                // now loop through the entries to move the affected ACEs to the specified
-                // position.
-                for (AccessControlEntry ace : accessControlEntries) {
-                    if (principal.equals(ace.getPrincipal())) {
-                        // this ACE is for the specified principal.
-                        jacl.orderBefore(ace, beforeEntry);
-                    }
+            int shallowestDepth2 = Integer.MAX_VALUE;
+            for (LocalPrivilege lp : e2.getValue()) {
+                Integer depth = privilegeLongestDepthMap.get(lp.getPrivilege());
+                if (depth != null && depth.intValue() < shallowestDepth2) {
+                    shallowestDepth2 = depth.intValue();
                 }
             }
-        } else {
-            throw new IllegalArgumentException("The acl must be an instance of JackrabbitAccessControlList");
-        }
+            return Integer.compare(shallowestDepth1, shallowestDepth2);
+        });
+        return sortedEntries;
     }
 
     /* (non-Javadoc)
@@ -1127,12 +1428,13 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
         // Use for fast lookup during the calls below.
         AccessControlManager acm = jcrSession.getAccessControlManager();
         Map<String, RestrictionDefinition> srMap = buildRestrictionNameToDefinitionMap(resourcePath);
-        Map<Privilege, Integer> privilegeLongestDepthMap =
-                PrivilegesHelper.buildPrivilegeLongestDepthMap(acm.privilegeFromName(PrivilegeConstants.JCR_ALL));
+        PrivilegesIndex.Resolver resolver =
+                PrivilegesIndex.getInstance(jcrSession).resolver(acm);
+        Map<Privilege, Integer> privilegeLongestDepthMap = resolver.getLongestDepthMap();
 
         // first calculate what is currently stored in the ace
-        Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap =
-                loadStoredAce(acm, resourcePath, principal, srMap);
+        Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap = new LocalPrivilegeMap(resolver);
+        loadStoredAce(acm, resourcePath, principal, srMap, privilegeToLocalPrivilegesMap);
 
         // process the restrictions to remove
         for (LocalPrivilege lp : privilegeToLocalPrivilegesMap.values()) {
@@ -1173,36 +1475,7 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
             }
         }
 
-        // map the values to the privileges with that value
-        Map<PrivilegeValues, Set<Privilege>> privilegeValueToPrivilegesMap = new EnumMap<>(PrivilegeValues.class);
-        for (Entry<String, String> entry : privileges.entrySet()) {
-            String privilegeName = entry.getKey();
-            // for backward compatibility, deal with a prefixed value
-            if (privilegeName.startsWith("privilege@")) {
-                privilegeName = privilegeName.substring(10);
-            }
-            Privilege privilege = acm.privilegeFromName(privilegeName);
-            PrivilegeValues value = PrivilegeValues.valueOfParam(entry.getValue());
-            Set<Privilege> privilegesSet = privilegeValueToPrivilegesMap.computeIfAbsent(value, k -> new HashSet<>());
-            privilegesSet.add(privilege);
-        }
-
-        // process the new privileges
-        for (Entry<PrivilegeValues, Set<Privilege>> entry : privilegeValueToPrivilegesMap.entrySet()) {
-            switch (entry.getKey()) {
-                case GRANTED, ALLOW:
-                    PrivilegesHelper.allow(privilegeToLocalPrivilegesMap, localRestrictions, entry.getValue());
-                    break;
-                case DENIED, DENY:
-                    PrivilegesHelper.deny(privilegeToLocalPrivilegesMap, localRestrictions, entry.getValue());
-                    break;
-                case NONE:
-                    PrivilegesHelper.none(privilegeToLocalPrivilegesMap, entry.getValue());
-                    break;
-                default:
-                    break;
-            }
-        }
+        applyPrivilegeValues(acm, privileges, localRestrictions, privilegeToLocalPrivilegesMap);
 
         // combine any aggregates that are still valid
         PrivilegesHelper.consolidateAggregates(
@@ -1218,13 +1491,178 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
                 changes);
     }
 
-    /* (non-Javadoc)
-     * @see org.apache.sling.jcr.jackrabbit.accessmanager.ModifyAce#modifyAce(javax.jcr.Session, java.lang.String, java.lang.String, java.util.Collection, java.lang.String, boolean)
+    /**
+     * Merge into the privilegeToLocalPrivilegesMap the supplied privilege values.
+     *
+     * @param acm the access control manager
+     * @param privileges map of privilege names to the privilege value
+     * @param localRestrictions the restrictions for the allowed or denied privileges
+     * @param privilegeToLocalPrivilegesMap the map containing the declared LocalPrivilege items
      */
-    @Override
-    public void modifyAce(
-            Session jcrSession,
-            String resourcePath,
+    private void applyPrivilegeValues(
+            @NotNull AccessControlManager acm,
+            @NotNull Map<String, String> privileges,
+            @NotNull Set<LocalRestriction> localRestrictions,
+            @NotNull Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap)
+            throws RepositoryException {
+        applyPrivilegeValues(
+                acm,
+                null,
+                Collections.emptyMap(),
+                privileges,
+                localRestrictions,
+                Collections.emptyMap(),
+                privilegeToLocalPrivilegesMap);
+    }
+
+    /**
+     * Merge into the privilegeToLocalPrivilegesMap the supplied privilege and restriction values.
+     * The restriction values are handled with the same rules as the restriction request parameters.
+     *
+     * @param acm the access control manager
+     * @param vf the value factory to create the restriction values with
+     * @param srMap map of restriction names to the restriction definition
+     * @param privileges map of privilege names to the privilege value
+     * @param localRestrictions the restrictions for the allowed or denied privileges
+     * @param restrictions map of restriction keys, without the restriction@ prefix, to the restriction values
+     * @param privilegeToLocalPrivilegesMap the map containing the declared LocalPrivilege items
+     */
+    private void applyPrivilegeValues(
+            @NotNull AccessControlManager acm,
+            @Nullable ValueFactory vf,
+            @NotNull Map<String, RestrictionDefinition> srMap,
+            @NotNull Map<String, String> privileges,
+            @NotNull Set<LocalRestriction> localRestrictions,
+            @NotNull Map<String, String[]> restrictions,
+            @NotNull Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap)
+            throws RepositoryException {
+        // map the privileges to their value
+        Map<Privilege, PrivilegeValues> privilegeToValueMap = new LinkedHashMap<>();
+        for (Entry<String, String> entry : privileges.entrySet()) {
+            String privilegeName = entry.getKey();
+            // for backward compatibility, deal with a prefixed value
+            if (privilegeName.startsWith("privilege@")) {
+                privilegeName = privilegeName.substring(10);
+            }
+            Privilege privilege = acm.privilegeFromName(privilegeName);
+            privilegeToValueMap.put(privilege, PrivilegeValues.valueOfParam(entry.getValue()));
+        }
+
+        // collect the general restrictions and the restrictions for a specific privilege
+        Set<LocalRestriction> generalRestrictions = new HashSet<>(localRestrictions);
+        Map<PrivilegeValues, Map<Privilege, Set<LocalRestriction>>> privilegeRestrictions =
+                new EnumMap<>(PrivilegeValues.class);
+        for (Entry<String, String[]> entry : restrictions.entrySet()) {
+            Matcher matcher = RESTRICTION_PATTERN.matcher(RESTRICTION_PREFIX + entry.getKey());
+            if (!matcher.matches()) {
+                throw new AccessControlException(INVALID_OR_NOT_SUPPORTED_RESTRICTION_NAME_WAS_SUPPLIED);
+            }
+            if (matcher.group(2) != null) {
+                Privilege privilege = acm.privilegeFromName(matcher.group(1));
+                PrivilegeValues allowOrDeny = PrivilegeValues.valueOfParam(matcher.group(4));
+                LocalRestriction localRestriction = toLocalRestriction(vf, srMap, matcher.group(3), entry.getValue());
+                privilegeRestrictions
+                        .computeIfAbsent(allowOrDeny, k -> new HashMap<>())
+                        .computeIfAbsent(privilege, k -> new HashSet<>())
+                        .add(localRestriction);
+                // like the request parameters, a restriction for a privilege implies the privilege
+                privilegeToValueMap.putIfAbsent(privilege, allowOrDeny);
+            } else {
+                LocalRestriction localRestriction = toLocalRestriction(vf, srMap, matcher.group(1), entry.getValue());
+                generalRestrictions.removeIf(r -> r.getName().equals(localRestriction.getName()));
+                generalRestrictions.add(localRestriction);
+            }
+        }
+
+        // map the values to the privileges with that value and the same restrictions
+        Map<PrivilegeValues, Map<Set<LocalRestriction>, Set<Privilege>>> privilegeValueToPrivilegesMap =
+                new EnumMap<>(PrivilegeValues.class);
+        for (Entry<Privilege, PrivilegeValues> entry : privilegeToValueMap.entrySet()) {
+            Privilege privilege = entry.getKey();
+            PrivilegeValues value = entry.getValue();
+            Set<LocalRestriction> privilegeLocalRestrictions = new HashSet<>(generalRestrictions);
+            PrivilegeValues allowOrDeny = switch (value) {
+                case ALLOW, GRANTED -> PrivilegeValues.ALLOW;
+                case DENY, DENIED -> PrivilegeValues.DENY;
+                default -> null;
+            };
+            if (allowOrDeny != null) {
+                for (LocalRestriction localRestriction : privilegeRestrictions
+                        .getOrDefault(allowOrDeny, Collections.emptyMap())
+                        .getOrDefault(privilege, Collections.emptySet())) {
+                    privilegeLocalRestrictions.removeIf(r -> r.getName().equals(localRestriction.getName()));
+                    privilegeLocalRestrictions.add(localRestriction);
+                }
+            }
+            privilegeValueToPrivilegesMap
+                    .computeIfAbsent(value, k -> new HashMap<>())
+                    .computeIfAbsent(privilegeLocalRestrictions, k -> new HashSet<>())
+                    .add(privilege);
+        }
+
+        // process the new privileges
+        for (Entry<PrivilegeValues, Map<Set<LocalRestriction>, Set<Privilege>>> entry :
+                privilegeValueToPrivilegesMap.entrySet()) {
+            for (Entry<Set<LocalRestriction>, Set<Privilege>> group : entry.getValue().entrySet()) {
+                switch (entry.getKey()) {
+                    case GRANTED, ALLOW:
+                        PrivilegesHelper.allow(privilegeToLocalPrivilegesMap, group.getKey(), group.getValue());
+                        break;
+                    case DENIED, DENY:
+                        PrivilegesHelper.deny(privilegeToLocalPrivilegesMap, group.getKey(), group.getValue());
+                        break;
+                    case NONE:
+                        PrivilegesHelper.none(privilegeToLocalPrivilegesMap, group.getValue());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Construct a LocalRestriction from the values of a restriction of a batch item
+     *
+     * @param vf the value factory to create the restriction values with
+     * @param srMap map of restriction names to the restriction definition
+     * @param restrictionName the name of the restriction
+     * @param values the restriction values
+     */
+    private static @NotNull LocalRestriction toLocalRestriction(
+            @Nullable ValueFactory vf,
+            @NotNull Map<String, RestrictionDefinition> srMap,
+            @NotNull String restrictionName,
+            @NotNull String[] values)
+            throws RepositoryException {
+        RestrictionDefinition rd = srMap.get(restrictionName);
+        if (rd == null || vf == null) {
+            // illegal restriction name?
+            throw new AccessControlException(INVALID_OR_NOT_SUPPORTED_RESTRICTION_NAME_WAS_SUPPLIED);
+        }
+        int restrictionType = rd.getRequiredType().tag();
+        if (rd.getRequiredType().isArray()) {
+            // multi-value
+            Value[] restrictionValue = new Value[values.length];
+            for (int i = 0; i < values.length; i++) {
+                restrictionValue[i] = vf.createValue(values[i], restrictionType);
+            }
+            return new LocalRestriction(rd, restrictionValue);
+        }
+        // single value
+        if (values.length != 1) {
+            throw new AccessControlException("Expected one value for the restriction: " + restrictionName);
+        }
+        return new LocalRestriction(rd, vf.createValue(values[0], restrictionType));
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.sling.jcr.jackrabbit.accessmanager.ModifyAce#modifyAce(javax.jcr.Session, java.lang.String, java.lang.String, java.util.Collection, java.lang.String, boolean)
+     */
+    @Override
+    public void modifyAce(
+            Session jcrSession,
+            String resourcePath,
             String principalId,
             Collection<LocalPrivilege> localPrivileges,
             String order,
@@ -1244,6 +1682,536 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
             throws RepositoryException {
         @NotNull Principal principal = validateArgs(jcrSession, resourcePath, principalId);
 
+        try {
+            // Get or create the ACL for the node.
+            AccessControlManager acm = jcrSession.getAccessControlManager();
+            JackrabbitAccessControlList acl = getAcl(acm, resourcePath, principal);
+
+            Map<Privilege, Integer> privilegeLongestDepthMap =
+                    PrivilegesIndex.getInstance(jcrSession).resolver(acm).getLongestDepthMap();
+            if (applyAce(resourcePath, principal, localPrivileges, order, acl, privilegeLongestDepthMap)) {
+                // Store the actual changes.
+                acm.setPolicy(acl.getPath(), acl);
+
+                if (changes != null) {
+                    changes.add(Modification.onModified(principal.getName()));
+                }
+
+                if (autoSave && jcrSession.hasPendingChanges()) {
+                    jcrSession.save();
+                }
+            }
+        } catch (RepositoryException re) {
+            throw new RepositoryException("Failed to create ace.", re);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.sling.jcr.jackrabbit.accessmanager.ModifyAce#orderAce(javax.jcr.Session, java.lang.String, java.lang.String, java.lang.String, boolean)
+     */
+    @Override
+    public void orderAce(Session jcrSession, String resourcePath, String principalId, String order, boolean autoSave)
+            throws RepositoryException {
+        orderAce(jcrSession, resourcePath, principalId, order, autoSave, null);
+    }
+
+    protected void orderAce(
+            Session jcrSession,
+            String resourcePath,
+            String principalId,
+            String order,
+            boolean autoSave,
+            List<Modification> changes)
+            throws RepositoryException {
+        @NotNull Principal principal = validateArgs(jcrSession, resourcePath, principalId);
+        if (order == null || order.length() == 0) {
+            throw new RepositoryException("order was not submitted.");
+        }
+
+        try {
+            AccessControlManager acm = jcrSession.getAccessControlManager();
+            JackrabbitAccessControlList acl = getAcl(acm, resourcePath, principal);
+            if (acl == null) {
+                throw new IllegalStateException("No access control list is available so unable to process");
+            }
+
+            // the same position as replacing the ACEs, where the ACEs for the principal are at the end
+            AccessControlEntry[] entries = acl.getAccessControlEntries();
+            List<AccessControlEntry> targetOrder = new ArrayList<>(entries.length);
+            List<AccessControlEntry> principalEntries = new ArrayList<>();
+            for (AccessControlEntry ace : entries) {
+                if (getJackrabbitAccessControlEntry(ace, resourcePath, principal) == null) {
+                    targetOrder.add(ace);
+                } else {
+                    principalEntries.add(ace);
+                }
+            }
+            if (principalEntries.isEmpty()) {
+                return; // nothing to move
+            }
+            targetOrder.addAll(principalEntries);
+            targetOrder = AceOrderHelper.reorderedEntries(targetOrder, principal, order);
+
+            if (AceOrderHelper.orderEntries(acl, entries, targetOrder) > 0) {
+                // Store the actual changes.
+                acm.setPolicy(acl.getPath(), acl);
+
+                if (changes != null) {
+                    changes.add(Modification.onModified(principal.getName()));
+                }
+
+                if (autoSave && jcrSession.hasPendingChanges()) {
+                    jcrSession.save();
+                }
+            }
+        } catch (RepositoryException re) {
+            throw new RepositoryException("Failed to order ace.", re);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.sling.jcr.jackrabbit.accessmanager.ModifyAce#modifyAces(javax.jcr.Session, java.util.Collection, int)
+     */
+    @Override
+    public List<AceChangeResult> modifyAces(Session jcrSession, Collection<AceChange> changes, int saveThreshold)
+            throws RepositoryException {
+        if (jcrSession == null) {
+            throw new RepositoryException("JCR Session not found");
+        }
+
+        if (RestrictionProvider.EMPTY.equals(getRestrictionProvider())) {
+            throw new IllegalStateException(
+                    "No restriction provider is available so unable to process POSTed restriction values");
+        }
+
+        // group the changes by resource path in the order each path is first seen
+        List<AceChange> changesList = new ArrayList<>(changes);
+        Map<String, List<Integer>> pathToIndexesMap = new LinkedHashMap<>();
+        for (int i = 0; i < changesList.size(); i++) {
+            pathToIndexesMap
+                    .computeIfAbsent(changesList.get(i).getResourcePath(), k -> new ArrayList<>())
+                    .add(i);
+        }
+
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        PrivilegesIndex.Resolver resolver = PrivilegesIndex.getInstance(jcrSession).resolver(acm);
+        AceChangeResult[] results = new AceChangeResult[changesList.size()];
+        List<Integer> unsavedIndexes = new ArrayList<>();
+        for (Entry<String, List<Integer>> entry : pathToIndexesMap.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            try {
+                boolean[] modified = applyChanges(
+                        jcrSession,
+                        acm,
+                        resolver,
+                        entry.getKey(),
+                        indexes.stream().map(changesList::get).toList());
+                for (int j = 0; j < modified.length; j++) {
+                    int i = indexes.get(j);
+                    if (modified[j]) {
+                        results[i] = new AceChangeResult(changesList.get(i), AceChangeResult.Status.MODIFIED, null);
+                        unsavedIndexes.add(i);
+                    } else {
+                        results[i] = new AceChangeResult(changesList.get(i), AceChangeResult.Status.UNCHANGED, null);
+                    }
+                }
+            } catch (RepositoryException | RuntimeException e) {
+                // the ACL was not stored, so none of the changes for the path were applied
+                for (int i : indexes) {
+                    results[i] = new AceChangeResult(changesList.get(i), AceChangeResult.Status.FAILED, e.getMessage());
+                }
+            }
+
+            if (saveThreshold > 0 && unsavedIndexes.size() >= saveThreshold) {
+                saveChanges(jcrSession, changesList, results, unsavedIndexes);
+            }
+        }
+        if (saveThreshold > 0 && !unsavedIndexes.isEmpty()) {
+            saveChanges(jcrSession, changesList, results, unsavedIndexes);
+        }
+        return Arrays.asList(results);
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.sling.jcr.jackrabbit.accessmanager.ModifyAce#reconcileAces(javax.jcr.Session, java.util.Iterator, int)
+     */
+    @Override
+    public AceReconcileResult reconcileAces(Session jcrSession, Iterator<AceChange> desiredAces, int saveThreshold)
+            throws RepositoryException {
+        if (jcrSession == null) {
+            throw new RepositoryException("JCR Session not found");
+        }
+
+        if (RestrictionProvider.EMPTY.equals(getRestrictionProvider())) {
+            throw new IllegalStateException(
+                    "No restriction provider is available so unable to process POSTed restriction values");
+        }
+
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        PrivilegesIndex.Resolver resolver = PrivilegesIndex.getInstance(jcrSession).resolver(acm);
+        ReconcileCounts totals = new ReconcileCounts();
+        Map<String, String> failures = new LinkedHashMap<>();
+        Map<String, ReconcileCounts> unsaved = new LinkedHashMap<>();
+        Set<String> reconciledPaths = new HashSet<>();
+        int unsavedChanges = 0;
+
+        // consume the desired ACEs one resource at a time
+        List<AceChange> group = new ArrayList<>();
+        boolean hasNext = true;
+        while (hasNext || !group.isEmpty()) {
+            AceChange desiredAce = null;
+            if (hasNext) {
+                try {
+                    hasNext = desiredAces.hasNext();
+                    desiredAce = hasNext ? desiredAces.next() : null;
+                } catch (RuntimeException e) {
+                    if (group.isEmpty()) {
+                        // nothing was reconciled yet
+                        throw new RepositoryException("Failed to read the desired ACEs: " + e.getMessage(), e);
+                    }
+                    // the group may not be complete, so the resource is not reconciled
+                    failures.put(
+                            group.get(0).getResourcePath(), "Failed to read the desired ACEs: " + e.getMessage());
+                    group.clear();
+                    hasNext = false;
+                    continue;
+                }
+            }
+            if (desiredAce != null
+                    && (group.isEmpty() || group.get(0).getResourcePath().equals(desiredAce.getResourcePath()))) {
+                group.add(desiredAce);
+                continue;
+            }
+
+            String resourcePath = group.get(0).getResourcePath();
+            try {
+                if (!reconciledPaths.add(resourcePath)) {
+                    throw new IllegalArgumentException("The desired ACEs of the resource are not grouped together");
+                }
+                ReconcileCounts counts = reconcileAcl(jcrSession, acm, resolver, resourcePath, group);
+                if (counts.modified > 0 || counts.removed > 0) {
+                    // counted when the changes are saved
+                    unsaved.put(resourcePath, counts);
+                    unsavedChanges += counts.modified + counts.removed;
+                } else {
+                    totals.add(counts);
+                }
+            } catch (RepositoryException | RuntimeException e) {
+                // the ACL was not stored, so the resource was not reconciled
+                failures.put(resourcePath, e.getMessage());
+            }
+            group.clear();
+            if (desiredAce != null) {
+                group.add(desiredAce);
+            }
+
+            if (saveThreshold > 0 && unsavedChanges >= saveThreshold) {
+                saveReconciled(jcrSession, unsaved, totals, failures);
+                unsavedChanges = 0;
+            }
+        }
+        if (saveThreshold > 0) {
+            saveReconciled(jcrSession, unsaved, totals, failures);
+        } else {
+            // saving the session is left to the caller
+            unsaved.values().forEach(totals::add);
+        }
+        return new AceReconcileResult(totals.unchanged, totals.modified, totals.removed, failures);
+    }
+
+    /**
+     * The number of principals with each outcome of a reconciliation
+     */
+    private static final class ReconcileCounts {
+        private int unchanged;
+        private int modified;
+        private int removed;
+
+        private void add(ReconcileCounts other) {
+            unchanged += other.unchanged;
+            modified += other.modified;
+            removed += other.removed;
+        }
+    }
+
+    /**
+     * Reconcile the ACL of one resource with the desired state.  Each ACL is loaded once and
+     * stored once, or not at all if it already has the desired state.
+     *
+     * @param jcrSession the JCR session
+     * @param acm the access control manager
+     * @param resolver the privileges resolver
+     * @param resourcePath the resource path
+     * @param desiredAces the complete desired state of the resource
+     * @return the number of principals with each outcome
+     */
+    private @NotNull ReconcileCounts reconcileAcl(
+            @NotNull Session jcrSession,
+            @NotNull AccessControlManager acm,
+            @NotNull PrivilegesIndex.Resolver resolver,
+            @NotNull String resourcePath,
+            @NotNull List<AceChange> desiredAces)
+            throws RepositoryException {
+        validateResourcePath(jcrSession, resourcePath);
+
+        Map<String, RestrictionDefinition> srMap = buildRestrictionNameToDefinitionMap(resourcePath);
+        ValueFactory vf = jcrSession.getValueFactory();
+        Map<Privilege, Integer> privilegeLongestDepthMap = resolver.getLongestDepthMap();
+        PrincipalManager principalManager = ((JackrabbitSession) jcrSession).getPrincipalManager();
+        Map<String, JackrabbitAccessControlList> aclKeyToAclMap = new LinkedHashMap<>();
+        Set<String> modifiedAclKeys = new HashSet<>();
+        Set<String> desiredPrincipalNames = new HashSet<>();
+        ReconcileCounts counts = new ReconcileCounts();
+        for (AceChange desiredAce : desiredAces) {
+            Principal principal = principalManager.getPrincipal(desiredAce.getPrincipalId());
+            if (principal == null) {
+                throw new RepositoryException("Invalid principalId was submitted: " + desiredAce.getPrincipalId());
+            }
+            if (!desiredPrincipalNames.add(principal.getName())) {
+                throw new IllegalArgumentException(
+                        "The desired ACEs have more than one item for the principal: " + principal.getName());
+            }
+            String aclKey = getAclKey(resourcePath, principal);
+            JackrabbitAccessControlList acl = getCachedAcl(acm, resourcePath, principal, aclKey, aclKeyToAclMap);
+
+            Collection<LocalPrivilege> localPrivileges = desiredAce.getLocalPrivileges();
+            if (localPrivileges == null) {
+                // the privilege values are the complete state, so start from an empty state
+                Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap = new LocalPrivilegeMap(resolver);
+                applyPrivilegeValues(
+                        acm,
+                        vf,
+                        srMap,
+                        desiredAce.getPrivileges(),
+                        Collections.emptySet(),
+                        desiredAce.getRestrictions(),
+                        privilegeToLocalPrivilegesMap);
+                PrivilegesHelper.consolidateAggregates(
+                        jcrSession, resourcePath, privilegeToLocalPrivilegesMap, privilegeLongestDepthMap);
+                localPrivileges = privilegeToLocalPrivilegesMap.values();
+            }
+            if (applyAce(
+                    resourcePath, principal, localPrivileges, desiredAce.getOrder(), acl, privilegeLongestDepthMap)) {
+                modifiedAclKeys.add(aclKey);
+                if (localPrivileges.stream().anyMatch(lp -> lp.isAllow() || lp.isDeny())) {
+                    counts.modified++;
+                } else {
+                    counts.removed++;
+                }
+            } else {
+                counts.unchanged++;
+            }
+        }
+
+        // remove the ACEs of the principals that are not in the desired state
+        for (Entry<String, JackrabbitAccessControlList> entry : aclKeyToAclMap.entrySet()) {
+            JackrabbitAccessControlList acl = entry.getValue();
+            Set<String> removedPrincipalNames = new HashSet<>();
+            for (AccessControlEntry ace : acl.getAccessControlEntries()) {
+                Principal principal = ace.getPrincipal();
+                if (!desiredPrincipalNames.contains(principal.getName())
+                        && getJackrabbitAccessControlEntry(ace, resourcePath, principal) != null) {
+                    acl.removeAccessControlEntry(ace);
+                    modifiedAclKeys.add(entry.getKey());
+                    if (removedPrincipalNames.add(principal.getName())) {
+                        counts.removed++;
+                    }
+                }
+            }
+        }
+
+        for (Entry<String, JackrabbitAccessControlList> entry : aclKeyToAclMap.entrySet()) {
+            if (modifiedAclKeys.contains(entry.getKey())) {
+                JackrabbitAccessControlList acl = entry.getValue();
+                acm.setPolicy(acl.getPath(), acl);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Save the session.  If the save fails, the changes that were not saved yet
+     * are reverted and the resources are reported as failed.
+     *
+     * @param jcrSession the JCR session
+     * @param unsaved the counts of the reconciled resources that were not saved yet
+     * @param totals the counts of the saved resources
+     * @param failures the resources that were not reconciled
+     */
+    private static void saveReconciled(
+            @NotNull Session jcrSession,
+            @NotNull Map<String, ReconcileCounts> unsaved,
+            @NotNull ReconcileCounts totals,
+            @NotNull Map<String, String> failures)
+            throws RepositoryException {
+        if (unsaved.isEmpty()) {
+            return;
+        }
+        try {
+            jcrSession.save();
+            unsaved.values().forEach(totals::add);
+        } catch (RepositoryException re) {
+            jcrSession.refresh(false);
+            for (String resourcePath : unsaved.keySet()) {
+                failures.put(resourcePath, re.getMessage());
+            }
+        }
+        unsaved.clear();
+    }
+
+    /**
+     * Apply the changes for one resource.  Each ACL is loaded once and stored
+     * once after all of the changes were applied to it, or not at all if none
+     * of the changes modified it.
+     *
+     * @param jcrSession the JCR session
+     * @param acm the access control manager
+     * @param resolver the privileges resolver
+     * @param resourcePath the resource path
+     * @param changes the changes for the resource
+     * @return for each of the changes, true if it modified the ACL
+     */
+    private boolean[] applyChanges(
+            @NotNull Session jcrSession,
+            @NotNull AccessControlManager acm,
+            @NotNull PrivilegesIndex.Resolver resolver,
+            @NotNull String resourcePath,
+            @NotNull List<AceChange> changes)
+            throws RepositoryException {
+        validateResourcePath(jcrSession, resourcePath);
+
+        Map<String, RestrictionDefinition> srMap = buildRestrictionNameToDefinitionMap(resourcePath);
+        ValueFactory vf = jcrSession.getValueFactory();
+        Map<Privilege, Integer> privilegeLongestDepthMap = resolver.getLongestDepthMap();
+        PrincipalManager principalManager = ((JackrabbitSession) jcrSession).getPrincipalManager();
+        Map<String, JackrabbitAccessControlList> aclKeyToAclMap = new LinkedHashMap<>();
+        Set<String> modifiedAclKeys = new HashSet<>();
+        boolean[] modified = new boolean[changes.size()];
+        for (int i = 0; i < modified.length; i++) {
+            AceChange change = changes.get(i);
+            Principal principal = principalManager.getPrincipal(change.getPrincipalId());
+            if (principal == null) {
+                throw new RepositoryException("Invalid principalId was submitted: " + change.getPrincipalId());
+            }
+            String aclKey = getAclKey(resourcePath, principal);
+            JackrabbitAccessControlList acl = getCachedAcl(acm, resourcePath, principal, aclKey, aclKeyToAclMap);
+
+            Collection<LocalPrivilege> localPrivileges = change.getLocalPrivileges();
+            if (localPrivileges == null) {
+                // merge the privilege values into the state of the ACE in the ACL
+                Map<Privilege, LocalPrivilege> privilegeToLocalPrivilegesMap = new LocalPrivilegeMap(resolver);
+                loadStoredAce(acl, resourcePath, principal, srMap, privilegeToLocalPrivilegesMap);
+                applyPrivilegeValues(
+                        acm,
+                        vf,
+                        srMap,
+                        change.getPrivileges(),
+                        Collections.emptySet(),
+                        change.getRestrictions(),
+                        privilegeToLocalPrivilegesMap);
+                PrivilegesHelper.consolidateAggregates(
+                        jcrSession, resourcePath, privilegeToLocalPrivilegesMap, privilegeLongestDepthMap);
+                localPrivileges = privilegeToLocalPrivilegesMap.values();
+            }
+            modified[i] = applyAce(
+                    resourcePath, principal, localPrivileges, change.getOrder(), acl, privilegeLongestDepthMap);
+            if (modified[i]) {
+                modifiedAclKeys.add(aclKey);
+            }
+        }
+
+        for (Entry<String, JackrabbitAccessControlList> entry : aclKeyToAclMap.entrySet()) {
+            if (modifiedAclKeys.contains(entry.getKey())) {
+                JackrabbitAccessControlList acl = entry.getValue();
+                acm.setPolicy(acl.getPath(), acl);
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Returns the ACL for the key, loading it the first time
+     *
+     * @param acm the access control manager
+     * @param resourcePath the resource path
+     * @param principal the principal
+     * @param aclKey the key of the ACL
+     * @param aclKeyToAclMap the ACLs that were already loaded
+     * @return the ACL
+     */
+    private @NotNull JackrabbitAccessControlList getCachedAcl(
+            @NotNull AccessControlManager acm,
+            @NotNull String resourcePath,
+            @NotNull Principal principal,
+            @NotNull String aclKey,
+            @NotNull Map<String, JackrabbitAccessControlList> aclKeyToAclMap)
+            throws RepositoryException {
+        JackrabbitAccessControlList acl = aclKeyToAclMap.get(aclKey);
+        if (acl == null) {
+            acl = getAcl(acm, resourcePath, principal);
+            if (acl == null) {
+                throw new IllegalStateException("No access control list is available so unable to process");
+            }
+            aclKeyToAclMap.put(aclKey, acl);
+        }
+        return acl;
+    }
+
+    /**
+     * Save the session.  If the save fails, the changes that were not saved yet
+     * are reverted and reported as failed.
+     *
+     * @param jcrSession the JCR session
+     * @param changes the changes of the batch
+     * @param results the results of the changes of the batch
+     * @param unsavedIndexes the indexes of the applied changes that were not saved yet
+     */
+    private static void saveChanges(
+            @NotNull Session jcrSession,
+            @NotNull List<AceChange> changes,
+            @NotNull AceChangeResult[] results,
+            @NotNull List<Integer> unsavedIndexes)
+            throws RepositoryException {
+        try {
+            jcrSession.save();
+        } catch (RepositoryException re) {
+            jcrSession.refresh(false);
+            for (int i : unsavedIndexes) {
+                results[i] = new AceChangeResult(changes.get(i), AceChangeResult.Status.FAILED, re.getMessage());
+            }
+        }
+        unsavedIndexes.clear();
+    }
+
+    /**
+     * Replace the ACEs for the specified principal in the ACL with the ones for the
+     * supplied privileges.  The ACL is not stored.
+     * <p>
+     * Only the stored entries that differ from the target entries are removed, only the
+     * missing target entries are added and only the entries that are out of place are
+     * moved, so the cost depends on the size of the change and not on the size of the ACL.
+     * </p>
+     * <p>
+     * The entries are compared with the entries before the change, so the caller can
+     * skip storing the ACL when the submitted state is the same as the stored state.
+     * </p>
+     *
+     * @param resourcePath the path of the resource
+     * @param principal the principal whose aces should be replaced
+     * @param localPrivileges collection of privileges to apply
+     * @param order where the access control entry should go in the list (may be null)
+     * @param acl the access control list to update
+     * @param privilegeLongestDepthMap the map of privileges to their longest depth
+     * @return true if the entries of the ACL were changed
+     */
+    private boolean applyAce(
+            @NotNull String resourcePath,
+            @NotNull Principal principal,
+            @NotNull Collection<LocalPrivilege> localPrivileges,
+            @Nullable String order,
+            @NotNull JackrabbitAccessControlList acl,
+            @NotNull Map<Privilege, Integer> privilegeLongestDepthMap)
+            throws RepositoryException {
         // build a list of each of the LocalPrivileges that have the same restrictions
         Map<Set<LocalRestriction>, List<LocalPrivilege>> allowRestrictionsToLocalPrivilegesMap = new HashMap<>();
         Map<Set<LocalRestriction>, List<LocalPrivilege>> denyRestrictionsToLocalPrivilegesMap = new HashMap<>();
@@ -1260,17 +2228,80 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
             }
         }
 
-        try {
-            // Get or create the ACL for the node.
-            AccessControlManager acm = jcrSession.getAccessControlManager();
-            JackrabbitAccessControlList acl = getAcl(acm, resourcePath, principal);
+        // the target entries in the order they are added
+        List<Entry<Set<LocalRestriction>, List<LocalPrivilege>>> targetEntries = new ArrayList<>();
+        targetEntries.addAll(sortByShallowestDepth(denyRestrictionsToLocalPrivilegesMap, privilegeLongestDepthMap));
+        int denyCount = targetEntries.size();
+        targetEntries.addAll(sortByShallowestDepth(allowRestrictionsToLocalPrivilegesMap, privilegeLongestDepthMap));
 
-            // remove all the old aces for the principal
-            order = removeAces(resourcePath, order, principal, acl);
+        AccessControlEntry[] storedEntries = acl.getAccessControlEntries();
+        if (order == null || order.length() == 0) {
+            // order not specified, so keep track of the original ACE position.
+            order = getCurrentOrder(resourcePath, principal, storedEntries);
+        }
 
-            // now add all the new aces that we have collected
-            Map<Privilege, Integer> privilegeLongestDepthMap =
-                    PrivilegesHelper.buildPrivilegeLongestDepthMap(acm.privilegeFromName(PrivilegeConstants.JCR_ALL));
+        // keep the stored entries that are the same as a target entry and remove the others
+        List<AccessControlEntry> otherEntries = new ArrayList<>();
+        AccessControlEntry[] principalEntries = new AccessControlEntry[targetEntries.size()];
+        Set<AccessControlEntry> keptEntries = new HashSet<>();
+        for (AccessControlEntry ace : storedEntries) {
+            JackrabbitAccessControlEntry jrEntry = getJackrabbitAccessControlEntry(ace, resourcePath, principal);
+            if (jrEntry == null) {
+                otherEntries.add(ace);
+                continue;
+            }
+            int idx = -1;
+            for (int i = 0; i < targetEntries.size() && idx == -1; i++) {
+                if (principalEntries[i] == null && isSameEntry(jrEntry, i < denyCount, targetEntries.get(i))) {
+                    idx = i;
+                }
+            }
+            if (idx == -1) {
+                acl.removeAccessControlEntry(ace);
+            } else {
+                principalEntries[idx] = ace;
+                keptEntries.add(ace);
+            }
+        }
+
+        // add the target entries that were not found
+        for (int i = 0; i < targetEntries.size(); i++) {
+            if (principalEntries[i] == null) {
+                Entry<Set<LocalRestriction>, List<LocalPrivilege>> entry = targetEntries.get(i);
+                addAces(
+                        resourcePath,
+                        principal,
+                        Collections.singletonMap(entry.getKey(), entry.getValue()),
+                        i >= denyCount,
+                        acl,
+                        privilegeLongestDepthMap);
+            }
+        }
+
+        AccessControlEntry[] currentEntries = acl.getAccessControlEntries();
+        int addedCount = targetEntries.size() - keptEntries.size();
+        int keptCount = currentEntries.length - addedCount;
+        boolean appended = keptCount == otherEntries.size() + keptEntries.size();
+        for (int i = 0; appended && i < keptCount; i++) {
+            AccessControlEntry ace = currentEntries[i];
+            appended = keptEntries.contains(ace)
+                    || getJackrabbitAccessControlEntry(ace, resourcePath, principal) == null;
+        }
+        List<AccessControlEntry> targetOrder = new ArrayList<>(otherEntries);
+        if (appended) {
+            // the added entries were appended in the order of the target entries
+            int next = keptCount;
+            for (int i = 0; i < principalEntries.length; i++) {
+                targetOrder.add(principalEntries[i] == null ? currentEntries[next++] : principalEntries[i]);
+            }
+        } else {
+            // the repository merged the added entries with the stored ones, so
+            // fall back to replacing all the entries for the principal
+            for (AccessControlEntry ace : currentEntries) {
+                if (getJackrabbitAccessControlEntry(ace, resourcePath, principal) != null) {
+                    acl.removeAccessControlEntry(ace);
+                }
+            }
             addAces(
                     resourcePath,
                     principal,
@@ -1285,22 +2316,77 @@ public class ModifyAceServlet extends AbstractAccessPostServlet implements Modif
                     true,
                     acl,
                     privilegeLongestDepthMap);
+            currentEntries = acl.getAccessControlEntries();
+            targetOrder.addAll(Arrays.asList(currentEntries).subList(otherEntries.size(), currentEntries.length));
+        }
 
-            // reorder the aces
-            reorderAccessControlEntries(acl, principal, order);
+        // move the entries to the requested position
+        AceOrderHelper.orderEntries(
+                acl, currentEntries, AceOrderHelper.reorderedEntries(targetOrder, principal, order));
 
-            // Store the actual changes.
-            acm.setPolicy(acl.getPath(), acl);
+        return !Arrays.equals(storedEntries, acl.getAccessControlEntries());
+    }
 
-            if (changes != null) {
-                changes.add(Modification.onModified(principal.getName()));
+    /**
+     * Checks if the stored entry is the same as the entry that would be added
+     * for the target privileges.
+     *
+     * @param jrEntry the stored entry
+     * @param isDeny true for a 'deny' target entry, false for an 'allow' target entry
+     * @param target the target restrictions mapped to the LocalPrivilege items with those restrictions
+     * @return true if the stored entry can be kept
+     */
+    private static boolean isSameEntry(
+            @NotNull JackrabbitAccessControlEntry jrEntry,
+            boolean isDeny,
+            @NotNull Entry<Set<LocalRestriction>, List<LocalPrivilege>> target)
+            throws RepositoryException {
+        if (jrEntry.isAllow() == isDeny) {
+            return false;
+        }
+        Set<Privilege> privileges = new HashSet<>();
+        for (LocalPrivilege localPrivilege : target.getValue()) {
+            privileges.add(localPrivilege.getPrivilege());
+        }
+        if (!toNonAggregateNames(jrEntry.getPrivileges())
+                .equals(toNonAggregateNames(privileges.toArray(new Privilege[privileges.size()])))) {
+            return false;
+        }
+        Set<LocalRestriction> restrictions = target.getKey();
+        String[] restrictionNames = jrEntry.getRestrictionNames();
+        if (restrictionNames.length != restrictions.size()) {
+            return false;
+        }
+        for (LocalRestriction restriction : restrictions) {
+            Value[] values =
+                    restriction.isMultiValue() ? restriction.getValues() : new Value[] {restriction.getValue()};
+            if (!Arrays.asList(restrictionNames).contains(restriction.getName())
+                    || !Arrays.equals(values, jrEntry.getRestrictions(restriction.getName()))) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            if (autoSave && jcrSession.hasPendingChanges()) {
-                jcrSession.save();
+    /**
+     * Expand the privileges to the names of the non-aggregate privileges they contain
+     *
+     * @param privileges the privileges to expand
+     * @return the set of non-aggregate privilege names
+     */
+    private static @NotNull Set<String> toNonAggregateNames(@NotNull Privilege[] privileges) {
+        Set<String> names = new HashSet<>();
+        for (Privilege privilege : privileges) {
+            if (privilege.isAggregate()) {
+                for (Privilege p : privilege.getAggregatePrivileges()) {
+                    if (!p.isAggregate()) {
+                        names.add(p.getName());
+                    }
+                }
+            } else {
+                names.add(privilege.getName());
             }
-        } catch (RepositoryException re) {
-            throw new RepositoryException("Failed to create ace.", re);
         }
+        return names;
     }
 }
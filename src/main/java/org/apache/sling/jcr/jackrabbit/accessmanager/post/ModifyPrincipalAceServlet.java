@@ -182,6 +182,14 @@ public class ModifyPrincipalAceServlet extends ModifyAceServlet implements Modif
         modifyAce(jcrSession, resourcePath, principalId, localPrivileges, null, autoSave, null);
     }
 
+    /**
+     * Override since the principal ACL holds the entries of the principal for all the paths
+     */
+    @Override
+    protected @NotNull String getAclKey(@NotNull String resourcePath, @NotNull Principal principal) {
+        return principal.getName();
+    }
+
     /**
      * Override to ensure that we get the policy that implements {@link PrincipalAccessControlList}
      */
@@ -222,22 +230,38 @@ public class ModifyPrincipalAceServlet extends ModifyAceServlet implements Modif
             @NotNull JackrabbitAccessControlList acl)
             throws RepositoryException {
         AccessControlEntry[] existingAccessControlEntries = acl.getAccessControlEntries();
-        for (int j = 0; j < existingAccessControlEntries.length; j++) {
-            AccessControlEntry ace = existingAccessControlEntries[j];
+        if (order == null || order.length() == 0) {
+            // order not specified, so keep track of the original ACE position.
+            String currentOrder = getCurrentOrder(resourcePath, principal, existingAccessControlEntries);
+            if (currentOrder != null) {
+                order = currentOrder;
+            }
+        }
+        for (AccessControlEntry ace : existingAccessControlEntries) {
             @Nullable
             JackrabbitAccessControlEntry jrEntry = getJackrabbitAccessControlEntry(ace, resourcePath, principal);
             if (jrEntry != null) {
-                if (order == null || order.length() == 0) {
-                    // order not specified, so keep track of the original ACE position.
-                    order = String.valueOf(j);
-                }
-
                 acl.removeAccessControlEntry(ace);
             }
         }
         return order;
     }
 
+    /**
+     * Override to ensure that we only consider the entries that have an effectivePath that matches
+     * the current resourcePath
+     */
+    @Override
+    protected @Nullable String getCurrentOrder(
+            @NotNull String resourcePath, @NotNull Principal principal, @NotNull AccessControlEntry[] entries) {
+        for (int j = 0; j < entries.length; j++) {
+            if (getJackrabbitAccessControlEntry(entries[j], resourcePath, principal) != null) {
+                return String.valueOf(j);
+            }
+        }
+        return null;
+    }
+
     /**
      * Override to ensure we do not add enty that denies privileges which is not allowed in a principal ACE
      */
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests to verify the default methods of the GetAcl, GetAce,
+ * GetEffectiveAcl, GetEffectiveAce and GetPrincipalAce services
+ * for an old impl that does not provide an implementation
+ * for those methods
+ */
+public class GetPrivilegesTest {
+
+    private final Session jcrSession = Mockito.mock(Session.class);
+
+    @Test(expected = UnsupportedRepositoryOperationException.class)
+    public void testGetAclPrivileges() throws RepositoryException {
+        GetAcl getAcl = (session, resourcePath) -> null;
+        getAcl.getAclPrivileges(jcrSession, "resourcePath");
+    }
+
+    @Test(expected = UnsupportedRepositoryOperationException.class)
+    public void testGetAcePrivileges() throws RepositoryException {
+        GetAce getAce = (session, resourcePath, principalId) -> null;
+        getAce.getAcePrivileges(jcrSession, "resourcePath", "principalId");
+    }
+
+    @Test(expected = UnsupportedRepositoryOperationException.class)
+    public void testGetEffectiveAclPrivileges() throws RepositoryException {
+        GetEffectiveAcl getEffectiveAcl = (session, resourcePath) -> null;
+        getEffectiveAcl.getEffectiveAclPrivileges(jcrSession, "resourcePath");
+    }
+
+    @Test(expected = UnsupportedRepositoryOperationException.class)
+    public void testGetEffectiveAcePrivileges() throws RepositoryException {
+        GetEffectiveAce getEffectiveAce = (session, resourcePath, principalId) -> null;
+        getEffectiveAce.getEffectiveAcePrivileges(jcrSession, "resourcePath", "principalId");
+    }
+
+    @Test(expected = UnsupportedRepositoryOperationException.class)
+    public void testGetPrincipalAcePrivileges() throws RepositoryException {
+        GetPrincipalAce getPrincipalAce = (session, resourcePath, principalId) -> null;
+        getPrincipalAce.getPrincipalAcePrivileges(jcrSession, "resourcePath", "principalId");
+    }
+}
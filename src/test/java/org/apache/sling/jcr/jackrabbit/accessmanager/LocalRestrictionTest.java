@@ -155,6 +155,16 @@ public class LocalRestrictionTest {
 
         LocalRestriction lr3 = new LocalRestriction(rd(AccessControlConstants.REP_ITEM_NAMES), new Value[0]);
         assertArrayEquals(new Value[0], lr3.getValues());
+
+        // changing the arrays does not change the restriction or its cached hash code
+        Value[] values = vals("item1", "item2");
+        LocalRestriction lr4 = new LocalRestriction(rd(AccessControlConstants.REP_ITEM_NAMES), values);
+        int hashCode = lr4.hashCode();
+        values[0] = val("item3");
+        lr4.getValues()[1] = val("item3");
+        assertArrayEquals(vals("item1", "item2"), lr4.getValues());
+        assertEquals(hashCode, lr4.hashCode());
+        assertEquals(lr1, lr4);
     }
 
     /**
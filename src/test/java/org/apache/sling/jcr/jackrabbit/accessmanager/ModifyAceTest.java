@@ -115,6 +115,33 @@ public class ModifyAceTest {
                 false);
     }
 
+    @Test(expected = UnsupportedRepositoryOperationException.class)
+    public void testModifyAces() throws RepositoryException {
+        modifyAce.modifyAces(
+                Mockito.mock(Session.class),
+                List.of(new AceChange("resourcePath", "principalId", Map.of("privilege1", "granted"), "order")),
+                0);
+    }
+
+    @Test(expected = UnsupportedRepositoryOperationException.class)
+    public void testReconcileAces() throws RepositoryException {
+        modifyAce.reconcileAces(
+                Mockito.mock(Session.class),
+                List.of(new AceChange("resourcePath", "principalId", Map.of("privilege1", "granted"), null))
+                        .iterator(),
+                0);
+    }
+
+    @Test
+    public void testOrderAce() throws RepositoryException {
+        modifyAce = Mockito.spy(modifyAce);
+        assertThrows(UnsupportedRepositoryOperationException.class, () -> {
+            modifyAce.orderAce(Mockito.mock(Session.class), "resourcePath", "principalId", "first");
+        });
+        Mockito.verify(modifyAce, times(1))
+                .orderAce(any(Session.class), anyString(), anyString(), anyString(), anyBoolean());
+    }
+
     protected static class ModifyAceOldImpl implements ModifyAce {
 
         @Override
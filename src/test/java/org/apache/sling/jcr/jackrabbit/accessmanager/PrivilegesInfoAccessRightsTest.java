@@ -107,12 +107,20 @@ public class PrivilegesInfoAccessRightsTest {
         assertEquals("Custom", accessRights.getPrivilegeSetDisplayName(Locale.getDefault()));
     }
 
+    @Test
+    public void testGetPrivilegeSetDisplayNameForOther4() {
+        // two different objects for the same privilege
+        accessRights.getGranted().add(mockPrivilege(PrivilegeConstants.JCR_READ));
+        accessRights.getGranted().add(mockPrivilege(PrivilegeConstants.JCR_READ));
+        assertEquals("Custom", accessRights.getPrivilegeSetDisplayName(Locale.getDefault()));
+    }
+
     @Test
     public void testGetPrivilegeSetDisplayNameForNonRootLocale() {
         assertEquals("None", accessRights.getPrivilegeSetDisplayName(Locale.ROOT));
-        // call again to use the cached resourceBundle field
+        // call again to use the cached resource bundle
         assertEquals("None", accessRights.getPrivilegeSetDisplayName(Locale.ROOT));
-        // try again with a different locale to recalculate the resourceBundle field
+        // try again with a different locale to use a different resource bundle
         assertEquals("None", accessRights.getPrivilegeSetDisplayName(Locale.ENGLISH));
     }
 
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.AccessControlPolicy;
+import javax.jcr.security.Privilege;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the capabilities of many paths
+ */
+public class PrivilegesInfoCapabilitiesTest {
+
+    private static final int ALL = PrivilegesInfo.CAN_ADD_CHILDREN
+            | PrivilegesInfo.CAN_DELETE_CHILDREN
+            | PrivilegesInfo.CAN_DELETE
+            | PrivilegesInfo.CAN_MODIFY_PROPERTIES
+            | PrivilegesInfo.CAN_READ_ACCESS_CONTROL
+            | PrivilegesInfo.CAN_MODIFY_ACCESS_CONTROL;
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private final PrivilegesInfo privilegesInfo = new PrivilegesInfo();
+
+    private Session session;
+    private User user;
+
+    @Before
+    public void before() throws RepositoryException {
+        session = context.resourceResolver().adaptTo(Session.class);
+        session.getRootNode().addNode("content").addNode("a");
+        session.getNode("/content").addNode("b");
+        user = ((JackrabbitSession) session).getUserManager().createUser("testuser", "testpwd");
+        session.save();
+        allow("/", Privilege.JCR_READ);
+        allow("/content", Privilege.JCR_MODIFY_PROPERTIES);
+        allow("/content/a", Privilege.JCR_REMOVE_NODE, Privilege.JCR_REMOVE_CHILD_NODES);
+    }
+
+    private void allow(String path, String... privilegeNames) throws RepositoryException {
+        AccessControlManager acm = session.getAccessControlManager();
+        AccessControlPolicy[] policies = acm.getPolicies(path);
+        JackrabbitAccessControlList acl = policies.length > 0
+                ? (JackrabbitAccessControlList) policies[0]
+                : (JackrabbitAccessControlList) acm.getApplicablePolicies(path).nextAccessControlPolicy();
+        List<Privilege> privileges = new ArrayList<>();
+        for (String privilegeName : privilegeNames) {
+            privileges.add(acm.privilegeFromName(privilegeName));
+        }
+        acl.addEntry(user.getPrincipal(), privileges.toArray(new Privilege[0]), true);
+        acm.setPolicy(path, acl);
+        session.save();
+    }
+
+    @Test
+    public void testGetCapabilities() throws RepositoryException {
+        List<String> paths = List.of("/content/b", "/content/a", "/content", "/missing");
+        assertEquals(
+                Map.of("/content/b", ALL, "/content/a", ALL, "/content", ALL, "/missing", 0),
+                privilegesInfo.getCapabilities(session, paths));
+
+        Session userSession = session.getRepository().login(new SimpleCredentials("testuser", "testpwd".toCharArray()));
+        try {
+            Map<String, Integer> capabilities = privilegesInfo.getCapabilities(userSession, paths);
+            // in the order of the paths
+            assertEquals(paths, new ArrayList<>(capabilities.keySet()));
+            assertEquals(PrivilegesInfo.CAN_MODIFY_PROPERTIES, capabilities.get("/content/b").intValue());
+            // the parent does not allow to delete children
+            assertEquals(
+                    PrivilegesInfo.CAN_MODIFY_PROPERTIES | PrivilegesInfo.CAN_DELETE_CHILDREN,
+                    capabilities.get("/content/a").intValue());
+            assertEquals(0, capabilities.get("/missing").intValue());
+
+            // the same as checking each capability separately
+            for (Map.Entry<String, Integer> entry : capabilities.entrySet()) {
+                String path = entry.getKey();
+                int mask = entry.getValue();
+                assertEquals(
+                        privilegesInfo.canAddChildren(userSession, path),
+                        (mask & PrivilegesInfo.CAN_ADD_CHILDREN) != 0);
+                assertEquals(
+                        privilegesInfo.canDeleteChildren(userSession, path),
+                        (mask & PrivilegesInfo.CAN_DELETE_CHILDREN) != 0);
+                assertEquals(privilegesInfo.canDelete(userSession, path), (mask & PrivilegesInfo.CAN_DELETE) != 0);
+                assertEquals(
+                        privilegesInfo.canModifyProperties(userSession, path),
+                        (mask & PrivilegesInfo.CAN_MODIFY_PROPERTIES) != 0);
+                assertEquals(
+                        privilegesInfo.canReadAccessControl(userSession, path),
+                        (mask & PrivilegesInfo.CAN_READ_ACCESS_CONTROL) != 0);
+                assertEquals(
+                        privilegesInfo.canModifyAccessControl(userSession, path),
+                        (mask & PrivilegesInfo.CAN_MODIFY_ACCESS_CONTROL) != 0);
+            }
+        } finally {
+            userSession.logout();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.security.AccessControlEntry;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants;
+import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionDefinition;
+import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionDefinitionImpl;
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.jackrabbit.value.ValueFactoryImpl;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class AccessControlDigestTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private AccessControlManager acm;
+
+    @Before
+    public void before() throws RepositoryException {
+        Session session = context.resourceResolver().adaptTo(Session.class);
+        session.getRootNode().addNode("content");
+        acm = session.getAccessControlManager();
+    }
+
+    private JackrabbitAccessControlList acl() throws RepositoryException {
+        return (JackrabbitAccessControlList)
+                acm.getApplicablePolicies("/content").nextAccessControlPolicy();
+    }
+
+    private Privilege[] privs(String... privilegeNames) throws RepositoryException {
+        Privilege[] privileges = new Privilege[privilegeNames.length];
+        for (int i = 0; i < privilegeNames.length; i++) {
+            privileges[i] = acm.privilegeFromName(privilegeNames[i]);
+        }
+        return privileges;
+    }
+
+    private String digest(JackrabbitAccessControlList acl) throws RepositoryException {
+        Map<String, List<AccessControlEntry>> map = new TreeMap<>();
+        map.put(acl.getPath(), Arrays.asList(acl.getAccessControlEntries()));
+        return new AccessControlDigest().update(map).digest();
+    }
+
+    @Test
+    public void testDigestFollowsEntries() throws RepositoryException {
+        JackrabbitAccessControlList acl1 = acl();
+        acl1.addEntry(EveryonePrincipal.getInstance(), privs(PrivilegeConstants.JCR_READ), true);
+        JackrabbitAccessControlList acl2 = acl();
+        acl2.addEntry(EveryonePrincipal.getInstance(), privs(PrivilegeConstants.JCR_READ), true);
+        assertEquals(digest(acl1), digest(acl2));
+
+        // allow vs. deny
+        JackrabbitAccessControlList acl3 = acl();
+        acl3.addEntry(EveryonePrincipal.getInstance(), privs(PrivilegeConstants.JCR_READ), false);
+        assertNotEquals(digest(acl1), digest(acl3));
+
+        // different privileges
+        JackrabbitAccessControlList acl4 = acl();
+        acl4.addEntry(EveryonePrincipal.getInstance(), privs(PrivilegeConstants.JCR_WRITE), true);
+        assertNotEquals(digest(acl1), digest(acl4));
+
+        // restrictions
+        JackrabbitAccessControlList acl5 = acl();
+        acl5.addEntry(
+                EveryonePrincipal.getInstance(),
+                privs(PrivilegeConstants.JCR_READ),
+                true,
+                Map.of(AccessControlConstants.REP_GLOB, (Value)
+                        ValueFactoryImpl.getInstance().createValue("/a")));
+        assertNotEquals(digest(acl1), digest(acl5));
+    }
+
+    @Test
+    public void testDigestFollowsRestrictionDefinitions() {
+        RestrictionDefinition glob = new RestrictionDefinitionImpl(AccessControlConstants.REP_GLOB, Type.STRING, false);
+        RestrictionDefinition ntNames =
+                new RestrictionDefinitionImpl(AccessControlConstants.REP_NT_NAMES, Type.NAMES, false);
+        // the order of the definitions does not matter
+        assertEquals(
+                new AccessControlDigest().update(List.of(glob, ntNames)).digest(),
+                new AccessControlDigest().update(List.of(ntNames, glob)).digest());
+        assertNotEquals(
+                new AccessControlDigest().update(List.of(glob)).digest(),
+                new AccessControlDigest().update(List.of(glob, ntNames)).digest());
+
+        // a different type or mandatory flag
+        RestrictionDefinition globs =
+                new RestrictionDefinitionImpl(AccessControlConstants.REP_GLOB, Type.STRINGS, false);
+        RestrictionDefinition mandatoryGlob =
+                new RestrictionDefinitionImpl(AccessControlConstants.REP_GLOB, Type.STRING, true);
+        assertNotEquals(
+                new AccessControlDigest().update(List.of(glob)).digest(),
+                new AccessControlDigest().update(List.of(globs)).digest());
+        assertNotEquals(
+                new AccessControlDigest().update(List.of(glob)).digest(),
+                new AccessControlDigest().update(List.of(mandatoryGlob)).digest());
+    }
+
+    @Test
+    public void testDigestFollowsOrder() throws RepositoryException {
+        JackrabbitAccessControlList acl1 = acl();
+        acl1.addEntry(EveryonePrincipal.getInstance(), privs(PrivilegeConstants.JCR_READ), true);
+        acl1.addEntry(EveryonePrincipal.getInstance(), privs(PrivilegeConstants.JCR_WRITE), false);
+        JackrabbitAccessControlList acl2 = acl();
+        acl2.addEntry(EveryonePrincipal.getInstance(), privs(PrivilegeConstants.JCR_WRITE), false);
+        acl2.addEntry(EveryonePrincipal.getInstance(), privs(PrivilegeConstants.JCR_READ), true);
+        assertNotEquals(digest(acl1), digest(acl2));
+
+        // the extra state is part of the digest
+        assertNotEquals(
+                new AccessControlDigest().update(1).digest(),
+                new AccessControlDigest().update(2).digest());
+        assertNotEquals(
+                new AccessControlDigest().update("a").update("bc").digest(),
+                new AccessControlDigest().update("ab").update("c").digest());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.Privilege;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.sling.api.resource.ResourceNotFoundException;
+import org.apache.sling.jcr.jackrabbit.accessmanager.GetAcl;
+import org.apache.sling.jcr.jackrabbit.accessmanager.GetEffectiveAce;
+import org.apache.sling.jcr.jackrabbit.accessmanager.GetEffectiveAcl;
+import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrincipalPrivileges;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrivilegesInfo;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrivilegesInfo.AccessRights;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class AccessManagerServicesTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private Session session;
+
+    @Before
+    public void before() {
+        session = context.resourceResolver().adaptTo(Session.class);
+    }
+
+    @Test
+    public void testTrackedServices() throws RepositoryException {
+        Principal principal = EveryonePrincipal.getInstance();
+        Privilege read = session.getAccessControlManager().privilegeFromName(Privilege.JCR_READ);
+        LocalPrivilege localPrivilege = new LocalPrivilege(read);
+        localPrivilege.setAllow(true);
+        GetAcl getAcl = Mockito.mock(GetAcl.class);
+        Mockito.when(getAcl.getAclPrivileges(session, "/"))
+                .thenReturn(Map.of(
+                        principal,
+                        new PrincipalPrivileges(principal, 0, Map.of(read, localPrivilege), Set.of(), Set.of())));
+        context.registerService(GetAcl.class, getAcl);
+
+        AccessManagerServices services = context.registerInjectActivateService(new AccessManagerServices());
+        assertSame(services, AccessManagerServices.getInstance());
+        assertSame(getAcl, services.getService(GetAcl.class));
+        assertNull(services.getService(GetEffectiveAcl.class));
+        assertThrows(IllegalArgumentException.class, () -> services.getService(Session.class));
+
+        Map<Principal, AccessRights> map = new PrivilegesInfo().getDeclaredAccessRights(session, "/");
+        assertEquals(1, map.size());
+        assertTrue(map.get(principal).getGranted().contains(read));
+        assertTrue(new PrivilegesInfo().getEffectiveAccessRights(session, "/").isEmpty());
+
+        services.deactivate();
+        assertNull(AccessManagerServices.getInstance());
+    }
+
+    @Test
+    public void testAccessRightsForPrincipal() throws RepositoryException {
+        Principal principal = EveryonePrincipal.getInstance();
+        Privilege write = session.getAccessControlManager().privilegeFromName(Privilege.JCR_WRITE);
+        LocalPrivilege localPrivilege = new LocalPrivilege(write);
+        localPrivilege.setDeny(true);
+        GetEffectiveAce getEffectiveAce = Mockito.mock(GetEffectiveAce.class);
+        Mockito.when(getEffectiveAce.getEffectiveAcePrivileges(session, "/", EveryonePrincipal.NAME))
+                .thenReturn(new PrincipalPrivileges(principal, -1, Map.of(write, localPrivilege), Set.of(), Set.of()));
+        Mockito.when(getEffectiveAce.getEffectiveAcePrivileges(session, "/content", EveryonePrincipal.NAME))
+                .thenThrow(new ResourceNotFoundException("/content", "No access control entries were found"));
+        context.registerService(GetEffectiveAce.class, getEffectiveAce);
+        context.registerInjectActivateService(new AccessManagerServices());
+
+        PrivilegesInfo privilegesInfo = new PrivilegesInfo();
+        AccessRights rights = privilegesInfo.getEffectiveAccessRightsForPrincipal(session, "/", EveryonePrincipal.NAME);
+        assertTrue(rights.getDenied().contains(write));
+        assertTrue(rights.getGranted().isEmpty());
+        assertNull(privilegesInfo.getEffectiveAccessRightsForPrincipal(session, "/content", EveryonePrincipal.NAME));
+        assertNull(privilegesInfo.getEffectiveAccessRightsForPrincipal(session, "/", "unknown"));
+        // the ACL service is not used for a single principal
+        assertNull(privilegesInfo.getDeclaredAccessRightsForPrincipal(session, "/", EveryonePrincipal.NAME));
+    }
+}
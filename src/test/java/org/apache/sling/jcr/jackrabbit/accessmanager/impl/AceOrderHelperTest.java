@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.security.AccessControlEntry;
+import javax.jcr.security.Privilege;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.nullable;
+
+/**
+ * Tests for the order of the entries of an access control list
+ */
+public class AceOrderHelperTest {
+
+    private static final class TestPrincipal implements Principal {
+        private final String name;
+
+        TestPrincipal(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final class TestEntry implements AccessControlEntry {
+        private final Principal principal;
+
+        TestEntry(Principal principal) {
+            this.principal = principal;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return principal;
+        }
+
+        @Override
+        public Privilege[] getPrivileges() {
+            return new Privilege[0];
+        }
+    }
+
+    /**
+     * An ACL backed by a list, that counts the entries moved by orderBefore
+     */
+    private static final class TestAcl {
+        private final List<AccessControlEntry> entries;
+        private final JackrabbitAccessControlList acl = Mockito.mock(JackrabbitAccessControlList.class);
+        private int moves;
+
+        TestAcl(List<AccessControlEntry> entries) {
+            this.entries = new ArrayList<>(entries);
+            try {
+                stub();
+            } catch (RepositoryException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void stub() throws RepositoryException {
+            Mockito.when(acl.getAccessControlEntries())
+                    .thenAnswer(invocation -> this.entries.toArray(new AccessControlEntry[0]));
+            Mockito.doAnswer(invocation -> {
+                        orderBefore(invocation.getArgument(0), invocation.getArgument(1));
+                        moves++;
+                        return null;
+                    })
+                    .when(acl)
+                    .orderBefore(any(), nullable(AccessControlEntry.class));
+        }
+
+        void orderBefore(AccessControlEntry src, AccessControlEntry dest) {
+            entries.remove(src);
+            entries.add(dest == null ? entries.size() : entries.indexOf(dest), src);
+        }
+    }
+
+    private final List<Principal> principals = new ArrayList<>();
+
+    /**
+     * Build an ACL with the entries of the principals in random order
+     */
+    private List<AccessControlEntry> entries(int size, int principalCount, long seed) {
+        principals.clear();
+        for (int i = 0; i < principalCount; i++) {
+            principals.add(new TestPrincipal("principal" + i));
+        }
+        Random random = new Random(seed);
+        List<AccessControlEntry> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            entries.add(new TestEntry(principals.get(random.nextInt(principalCount))));
+        }
+        return entries;
+    }
+
+    /**
+     * The previous implementation, that moves each entry of the principal
+     */
+    private static List<AccessControlEntry> reorderEachEntry(
+            List<AccessControlEntry> entries, Principal principal, String order) {
+        TestAcl testAcl = new TestAcl(entries);
+        AccessControlEntry[] accessControlEntries = entries.toArray(new AccessControlEntry[0]);
+        AccessControlEntry beforeEntry = null;
+        if ("first".equals(order)) {
+            beforeEntry = accessControlEntries[0];
+        } else if (order.startsWith("before ")) {
+            for (AccessControlEntry ace : accessControlEntries) {
+                if (order.substring(7).equals(ace.getPrincipal().getName())) {
+                    beforeEntry = ace;
+                    break;
+                }
+            }
+        } else if (order.startsWith("after ")) {
+            for (int i = accessControlEntries.length - 1; i >= 0; i--) {
+                if (order.substring(6).equals(accessControlEntries[i].getPrincipal().getName())) {
+                    beforeEntry = i < accessControlEntries.length - 1 ? accessControlEntries[i + 1] : null;
+                    break;
+                }
+            }
+        } else if (!"last".equals(order)) {
+            int index = Integer.parseInt(order);
+            Map<Principal, Integer> principalToIndex = new HashMap<>();
+            for (int i = 0; i < accessControlEntries.length; i++) {
+                principalToIndex.putIfAbsent(accessControlEntries[i].getPrincipal(), i);
+            }
+            Integer[] sortedIndexes = principalToIndex.values().stream().sorted().toArray(Integer[]::new);
+            if (index >= 0 && index < sortedIndexes.length - 1) {
+                beforeEntry = accessControlEntries[sortedIndexes[index]];
+            }
+        }
+        if (beforeEntry != null) {
+            for (AccessControlEntry ace : accessControlEntries) {
+                if (principal.equals(ace.getPrincipal()) && ace != beforeEntry) {
+                    testAcl.orderBefore(ace, beforeEntry);
+                }
+            }
+        }
+        return testAcl.entries;
+    }
+
+    /**
+     * Move the entries of the principal to the position of the order with the fewest moves
+     */
+    private static int reorder(TestAcl testAcl, Principal principal, String order) throws RepositoryException {
+        AccessControlEntry[] entries = testAcl.acl.getAccessControlEntries();
+        return AceOrderHelper.orderEntries(
+                testAcl.acl, entries, AceOrderHelper.reorderedEntries(Arrays.asList(entries), principal, order));
+    }
+
+    private void assertReorder(List<AccessControlEntry> entries, Principal principal, String order)
+            throws RepositoryException {
+        TestAcl testAcl = new TestAcl(entries);
+        int moved = reorder(testAcl, principal, order);
+        assertEquals(moved, testAcl.moves);
+        assertEquals(AceOrderHelper.reorderedEntries(entries, principal, order), testAcl.entries);
+
+        // never more moves than the entries of the principal
+        long principalEntries =
+                entries.stream().filter(e -> principal.equals(e.getPrincipal())).count();
+        assertTrue(moved <= principalEntries);
+    }
+
+    @Test
+    public void testReorderedEntries() {
+        List<AccessControlEntry> entries = entries(6, 3, 1);
+        Principal p0 = entries.get(0).getPrincipal();
+        Principal p1 = entries.stream()
+                .map(AccessControlEntry::getPrincipal)
+                .filter(p -> !p.equals(p0))
+                .findFirst()
+                .get();
+        String p1Name = p1.getName();
+
+        List<AccessControlEntry> first = AceOrderHelper.reorderedEntries(entries, p1, "first");
+        assertEquals(p1, first.get(0).getPrincipal());
+        assertEquals(entries.size(), first.size());
+
+        List<AccessControlEntry> last = AceOrderHelper.reorderedEntries(entries, p1, "last");
+        assertEquals(entries, last);
+        assertEquals(entries, AceOrderHelper.reorderedEntries(entries, p1, null));
+
+        List<AccessControlEntry> before = AceOrderHelper.reorderedEntries(entries, p0, "before " + p1Name);
+        int firstP1 = before.indexOf(entries.stream()
+                .filter(e -> p1.equals(e.getPrincipal()))
+                .findFirst()
+                .get());
+        assertEquals(p0, before.get(firstP1 - 1).getPrincipal());
+
+        assertThrows(
+                IllegalArgumentException.class, () -> AceOrderHelper.reorderedEntries(entries, p0, "before missing"));
+        assertThrows(
+                IllegalArgumentException.class, () -> AceOrderHelper.reorderedEntries(entries, p0, "after missing"));
+        assertThrows(IllegalArgumentException.class, () -> AceOrderHelper.reorderedEntries(entries, p0, "middle"));
+        assertThrows(IndexOutOfBoundsException.class, () -> AceOrderHelper.reorderedEntries(entries, p0, "7"));
+    }
+
+    @Test
+    public void testSameAsMovingEachEntry() throws RepositoryException {
+        for (long seed = 0; seed < 50; seed++) {
+            List<AccessControlEntry> entries = entries(20, 4, seed);
+            for (Principal principal : principals) {
+                if (entries.stream().noneMatch(e -> principal.equals(e.getPrincipal()))) {
+                    continue;
+                }
+                List<String> orders = new ArrayList<>(Arrays.asList("first", "last", "0", "1", "2", "3"));
+                for (Principal other : principals) {
+                    if (entries.stream().anyMatch(e -> other.equals(e.getPrincipal()))) {
+                        orders.add("before " + other.getName());
+                        if (!other.equals(entries.get(entries.size() - 1).getPrincipal())) {
+                            orders.add("after " + other.getName());
+                        }
+                    }
+                }
+                for (String order : orders) {
+                    assertEquals(
+                            order,
+                            reorderEachEntry(entries, principal, order),
+                            AceOrderHelper.reorderedEntries(entries, principal, order));
+                    assertReorder(entries, principal, order);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOrderEntries() throws RepositoryException {
+        List<AccessControlEntry> entries = entries(10, 10, 1);
+        TestAcl testAcl = new TestAcl(entries);
+        assertEquals(
+                0, AceOrderHelper.orderEntries(testAcl.acl, entries.toArray(new AccessControlEntry[0]), entries));
+
+        // one entry out of place is one move
+        List<AccessControlEntry> target = new ArrayList<>(entries);
+        target.add(target.remove(2));
+        assertEquals(1, AceOrderHelper.orderEntries(testAcl.acl, testAcl.acl.getAccessControlEntries(), target));
+        assertEquals(target, testAcl.entries);
+
+        // the reverse order keeps one entry in place
+        List<AccessControlEntry> reversed = new ArrayList<>(target);
+        Collections.reverse(reversed);
+        assertEquals(
+                entries.size() - 1,
+                AceOrderHelper.orderEntries(testAcl.acl, testAcl.acl.getAccessControlEntries(), reversed));
+        assertEquals(reversed, testAcl.entries);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> AceOrderHelper.orderEntries(
+                        testAcl.acl, testAcl.acl.getAccessControlEntries(), entries.subList(1, entries.size())));
+    }
+
+    /**
+     * Large ACLs, where each orderBefore is linear in the size of the list, so the number
+     * of moves is the cost of the reorder
+     */
+    @Test
+    public void testLargeAcls() throws RepositoryException {
+        for (int size : new int[] {1_000, 10_000, 50_000}) {
+            List<AccessControlEntry> entries = entries(size, size / 2, size);
+            // a principal with two entries at the end, like a new deny + allow
+            Principal principal = new TestPrincipal("moved");
+            entries.add(new TestEntry(principal));
+            entries.add(new TestEntry(principal));
+            String middle = entries.get(size / 2).getPrincipal().getName();
+            for (String order : List.of("first", "before " + middle, "after " + middle, String.valueOf(size / 4))) {
+                TestAcl testAcl = new TestAcl(entries);
+                reorder(testAcl, principal, order);
+                assertEquals(order, 2, testAcl.moves);
+                assertEquals(order, reorderEachEntry(entries, principal, order), testAcl.entries);
+            }
+
+            // already in place
+            TestAcl testAcl = new TestAcl(entries);
+            reorder(testAcl, principal, "last");
+            assertEquals(0, testAcl.moves);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.AccessDeniedException;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+import javax.jcr.nodetype.NodeTypeManager;
+import javax.jcr.nodetype.NodeTypeTemplate;
+import javax.jcr.security.AccessControlEntry;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.AccessControlPolicy;
+import javax.jcr.security.Privilege;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlEntry;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.api.security.principal.ItemBasedPrincipal;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfiguration;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class DeclaredAclTrieTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private Session session;
+    private User user;
+    private DeclaredAclTrie trie;
+
+    @Before
+    public void before() throws RepositoryException {
+        session = context.resourceResolver().adaptTo(Session.class);
+        session.getRootNode().addNode("content").addNode("child1");
+        session.getNode("/content").addNode("child2");
+        user = ((JackrabbitSession) session).getUserManager().createUser("testuser", "testpwd");
+        session.save();
+        trie = new DeclaredAclTrie();
+        trie.configure(100);
+    }
+
+    private void allow(String path, String... privilegeNames) throws RepositoryException {
+        AccessControlManager acm = session.getAccessControlManager();
+        AccessControlPolicy[] policies = acm.getPolicies(path);
+        JackrabbitAccessControlList acl = policies.length > 0
+                ? (JackrabbitAccessControlList) policies[0]
+                : (JackrabbitAccessControlList) acm.getApplicablePolicies(path).nextAccessControlPolicy();
+        Privilege[] privileges = new Privilege[privilegeNames.length];
+        for (int i = 0; i < privilegeNames.length; i++) {
+            privileges[i] = acm.privilegeFromName(privilegeNames[i]);
+        }
+        acl.addEntry(user.getPrincipal(), privileges, true);
+        acm.setPolicy(path, acl);
+        session.save();
+    }
+
+    private Map<String, List<AccessControlEntry>> userEntries(String path) throws RepositoryException {
+        Principal principal = user.getPrincipal();
+        return trie.getEffectiveEntries(session, path, ace -> principal.equals(ace.getPrincipal()));
+    }
+
+    @Test
+    public void testEffectiveEntries() throws RepositoryException {
+        allow("/content", Privilege.JCR_READ);
+        allow("/content/child1", Privilege.JCR_WRITE);
+
+        Map<String, List<AccessControlEntry>> entries = userEntries("/content/child1");
+        assertNotNull(entries);
+        assertEquals(List.of("/content", "/content/child1"), List.copyOf(entries.keySet()));
+        JackrabbitAccessControlEntry entry =
+                (JackrabbitAccessControlEntry) entries.get("/content/child1").get(0);
+        assertTrue(entry.isAllow());
+        assertEquals(user.getPrincipal(), entry.getPrincipal());
+        assertArrayEquals(
+                new Privilege[] {session.getAccessControlManager().privilegeFromName(Privilege.JCR_WRITE)},
+                entry.getPrivileges());
+
+        // the sibling only adds its own level
+        int size = trie.size();
+        entries = userEntries("/content/child2");
+        assertNotNull(entries);
+        assertEquals(List.of("/content"), List.copyOf(entries.keySet()));
+        assertEquals(size + 1, trie.size());
+    }
+
+    @Test
+    public void testInvalidateOnPolicyChange() throws RepositoryException {
+        allow("/content", Privilege.JCR_READ);
+        assertEquals(List.of("/content"), List.copyOf(userEntries("/content/child1").keySet()));
+
+        allow("/content/child1", Privilege.JCR_WRITE);
+        // not observed yet, so the trie still has the old entries
+        assertEquals(List.of("/content"), List.copyOf(userEntries("/content/child1").keySet()));
+
+        trie.onChange(List.of(new ResourceChange(ChangeType.ADDED, "/content/child1/rep:policy", false)));
+        assertEquals(
+                List.of("/content", "/content/child1"),
+                List.copyOf(userEntries("/content/child1").keySet()));
+
+        trie.onChange(List.of(new ResourceChange(ChangeType.CHANGED, "/content/rep:policy/allow", false)));
+        // only the root is left
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    public void testDisabledByPrincipalPolicy() throws RepositoryException {
+        assertNotNull(userEntries("/content"));
+        trie.onChange(List.of(
+                new ResourceChange(ChangeType.ADDED, "/home/users/system/test/rep:principalPolicy/entry0", true)));
+        assertEquals(0, trie.size());
+        assertNull(userEntries("/content"));
+
+        // configuring again enables it
+        trie.configure(100);
+        assertNotNull(userEntries("/content"));
+    }
+
+    @Test
+    public void testNotUsedWithPrincipalBasedAuthorization() throws RepositoryException {
+        assertNotNull(userEntries("/content"));
+        AuthorizationConfiguration configuration = Mockito.mock(AuthorizationConfiguration.class);
+        trie.bindPrincipalBasedConfiguration(configuration);
+        assertEquals(0, trie.size());
+        assertNull(userEntries("/content"));
+
+        trie.unbindPrincipalBasedConfiguration(configuration);
+        assertNotNull(userEntries("/content"));
+
+        // the node types of the principal based policies are registered
+        NodeTypeManager ntm = session.getWorkspace().getNodeTypeManager();
+        NodeTypeTemplate ntt = ntm.createNodeTypeTemplate();
+        ntt.setName(PrincipalAceHelper.NT_REP_PRINCIPAL_POLICY);
+        ntm.registerNodeType(ntt, false);
+        assertNull(userEntries("/content"));
+        assertEquals(0, trie.size());
+    }
+
+    @Test
+    public void testEviction() throws RepositoryException {
+        trie.configure(3);
+        userEntries("/content/child1");
+        assertEquals(3, trie.size());
+        userEntries("/content/child2");
+        assertEquals(3, trie.size());
+    }
+
+    @Test
+    public void testEvictionOfAncestors() throws RepositoryException {
+        allow("/content", Privilege.JCR_READ);
+        allow("/content/child1", Privilege.JCR_WRITE);
+
+        // the ancestors are evicted while the levels are read, the result is still complete
+        trie.configure(1);
+        Map<String, List<AccessControlEntry>> entries = userEntries("/content/child1");
+        assertNotNull(entries);
+        assertEquals(List.of("/content", "/content/child1"), List.copyOf(entries.keySet()));
+        assertTrue(trie.size() <= 1);
+    }
+
+    @Test
+    public void testRestrictionValueTypes() throws RepositoryException {
+        AccessControlManager acm = session.getAccessControlManager();
+        JackrabbitAccessControlList acl = (JackrabbitAccessControlList)
+                acm.getApplicablePolicies("/content").nextAccessControlPolicy();
+        ValueFactory vf = session.getValueFactory();
+        acl.addEntry(
+                user.getPrincipal(),
+                new Privilege[] {acm.privilegeFromName(Privilege.JCR_READ)},
+                true,
+                Map.of("rep:glob", vf.createValue("*.txt")),
+                Map.of("rep:ntNames", new Value[] {
+                    vf.createValue("nt:file", PropertyType.NAME), vf.createValue("nt:folder", PropertyType.NAME)
+                }));
+        acm.setPolicy("/content", acl);
+        session.save();
+
+        JackrabbitAccessControlEntry entry = (JackrabbitAccessControlEntry)
+                userEntries("/content").get("/content").get(0);
+        assertEquals(PropertyType.STRING, entry.getRestriction("rep:glob").getType());
+        Value[] ntNames = entry.getRestrictions("rep:ntNames");
+        assertEquals(2, ntNames.length);
+        for (Value value : ntNames) {
+            assertEquals(PropertyType.NAME, value.getType());
+        }
+    }
+
+    @Test
+    public void testPrincipalResolvedForEachRequest() throws RepositoryException {
+        allow("/content", Privilege.JCR_READ);
+        assertTrue(userEntries("/content").get("/content").get(0).getPrincipal() instanceof ItemBasedPrincipal);
+
+        // the entry is still in the trie, but the principal is no longer known
+        user.remove();
+        session.save();
+        Principal principal = trie.getEffectiveEntries(session, "/content", ace -> true)
+                .get("/content")
+                .get(0)
+                .getPrincipal();
+        assertEquals("testuser", principal.getName());
+        assertFalse(principal instanceof ItemBasedPrincipal);
+    }
+
+    @Test
+    public void testReaderMustReadAccessControl() throws RepositoryException {
+        allow("/", Privilege.JCR_READ);
+        assertNotNull(userEntries("/content"));
+
+        Session userSession = session.getRepository().login(new SimpleCredentials("testuser", "testpwd".toCharArray()));
+        try {
+            assertThrows(
+                    AccessDeniedException.class,
+                    () -> trie.getEffectiveEntries(userSession, "/content", ace -> true));
+        } finally {
+            userSession.logout();
+        }
+    }
+}
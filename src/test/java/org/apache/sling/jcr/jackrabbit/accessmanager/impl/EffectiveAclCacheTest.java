@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.nodetype.NodeTypeManager;
+import javax.jcr.nodetype.NodeTypeTemplate;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.util.List;
+import java.util.Set;
+
+import jakarta.json.Json;
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfiguration;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class EffectiveAclCacheTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private Session session;
+    private EffectiveAclCache cache;
+
+    @Before
+    public void before() throws RepositoryException {
+        session = context.resourceResolver().adaptTo(Session.class);
+        session.getRootNode().addNode("content").addNode("child");
+        session.getRootNode().addNode("other");
+        session.save();
+        cache = new EffectiveAclCache();
+        cache.configure(100, 0, true);
+    }
+
+    private EffectiveAclCache.CachedAcl acl(String... declaredAtPaths) {
+        return new EffectiveAclCache.CachedAcl(
+                Json.createObjectBuilder().build(), "validator", Set.of(declaredAtPaths));
+    }
+
+    private void put(String path, EffectiveAclCache.CachedAcl cachedAcl) throws RepositoryException {
+        cache.put(session, path, cachedAcl, cache.stamp());
+    }
+
+    @Test
+    public void testInvalidateOnPolicyChange() throws RepositoryException {
+        EffectiveAclCache.CachedAcl content = acl("/content");
+        EffectiveAclCache.CachedAcl child = acl("/content");
+        EffectiveAclCache.CachedAcl other = acl();
+        put("/content", content);
+        put("/content/child", child);
+        put("/other", other);
+        assertSame(content, cache.get(session, "/content"));
+        assertSame(child, cache.get(session, "/content/child"));
+        assertEquals(3, cache.size());
+
+        cache.onChange(List.of(new ResourceChange(ChangeType.CHANGED, "/content/rep:policy/allow", false)));
+        assertNull(cache.get(session, "/content"));
+        assertNull(cache.get(session, "/content/child"));
+        assertSame(other, cache.get(session, "/other"));
+
+        // a change of a principal policy can affect any path
+        cache.onChange(List.of(
+                new ResourceChange(ChangeType.ADDED, "/home/users/system/test/rep:principalPolicy/entry0", true)));
+        assertEquals(0, cache.size());
+
+        put("/content/child", child);
+        cache.onChange(List.of(new ResourceChange(ChangeType.REMOVED, "/rep:policy", false)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testStaleStampIsNotCached() throws RepositoryException {
+        long stamp = cache.stamp();
+        cache.invalidate("/content");
+        cache.put(session, "/content", acl("/content"), stamp);
+        assertNull(cache.get(session, "/content"));
+    }
+
+    @Test
+    public void testEviction() throws RepositoryException {
+        cache.configure(2, 0, true);
+        put("/content", acl());
+        put("/content/child", acl());
+        // touch the oldest so the other one is least recently used
+        cache.get(session, "/content");
+        put("/other", acl());
+        assertEquals(2, cache.size());
+        assertNull(cache.get(session, "/content/child"));
+
+        cache.configure(2, 0, false);
+        put("/content", acl());
+        put("/content/child", acl());
+        cache.get(session, "/content");
+        put("/other", acl());
+        assertNull(cache.get(session, "/content"));
+    }
+
+    @Test
+    public void testTimeToLive() throws RepositoryException, InterruptedException {
+        cache.configure(2, 1, true);
+        put("/content", acl());
+        Thread.sleep(10);
+        assertNull(cache.get(session, "/content"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testReaderMustReadAccessControl() throws RepositoryException {
+        User user = ((JackrabbitSession) session).getUserManager().createUser("testuser", "testpwd");
+        AccessControlManager acm = session.getAccessControlManager();
+        JackrabbitAccessControlList acl =
+                (JackrabbitAccessControlList) acm.getApplicablePolicies("/").nextAccessControlPolicy();
+        acl.addEntry(user.getPrincipal(), new Privilege[] {acm.privilegeFromName(Privilege.JCR_READ)}, true);
+        acm.setPolicy("/", acl);
+        session.save();
+
+        EffectiveAclCache.CachedAcl cachedAcl = acl("/");
+        put("/content", cachedAcl);
+        assertSame(cachedAcl, cache.get(session, "/content"));
+
+        Session userSession = session.getRepository().login(new SimpleCredentials("testuser", "testpwd".toCharArray()));
+        try {
+            // not allowed to read the access control
+            assertNull(cache.get(userSession, "/content"));
+
+            // and what the user calculates may not be complete so it is not cached
+            cache.invalidateAll();
+            cache.put(userSession, "/content", cachedAcl, cache.stamp());
+            assertEquals(0, cache.size());
+        } finally {
+            userSession.logout();
+        }
+    }
+
+    @Test
+    public void testNotCachedWithPrincipalBasedAuthorization() throws RepositoryException {
+        put("/content", acl());
+        AuthorizationConfiguration configuration = Mockito.mock(AuthorizationConfiguration.class);
+        cache.bindPrincipalBasedConfiguration(configuration);
+        assertEquals(0, cache.size());
+        put("/content", acl());
+        assertEquals(0, cache.size());
+
+        cache.unbindPrincipalBasedConfiguration(configuration);
+        put("/content", acl());
+        assertEquals(1, cache.size());
+
+        // the node types of the principal based policies are registered
+        NodeTypeManager ntm = session.getWorkspace().getNodeTypeManager();
+        NodeTypeTemplate ntt = ntm.createNodeTypeTemplate();
+        ntt.setName(PrincipalAceHelper.NT_REP_PRINCIPAL_POLICY);
+        ntm.registerNodeType(ntt, false);
+        put("/other", acl());
+        assertEquals(0, cache.size());
+    }
+}
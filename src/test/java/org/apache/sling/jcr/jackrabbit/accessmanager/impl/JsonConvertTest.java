@@ -25,14 +25,19 @@ import javax.jcr.ValueFactory;
 import javax.jcr.security.AccessControlManager;
 import javax.jcr.security.Privilege;
 
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.security.Principal;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import jakarta.json.Json;
@@ -42,6 +47,7 @@ import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
 import jakarta.json.JsonString;
 import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonGenerator;
 import org.apache.jackrabbit.oak.security.authorization.restriction.RestrictionProviderImpl;
 import org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.CompositeRestrictionProvider;
@@ -52,6 +58,7 @@ import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
 import org.apache.jackrabbit.value.ValueFactoryImpl;
 import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
 import org.apache.sling.jcr.jackrabbit.accessmanager.LocalRestriction;
+import org.apache.sling.jcr.jackrabbit.accessmanager.post.DeclarationType;
 import org.apache.sling.testing.mock.sling.ResourceResolverType;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.jetbrains.annotations.NotNull;
@@ -174,6 +181,71 @@ public class JsonConvertTest {
         assertEquals("item2", ((JsonArray) itemNamesRestrictionObj5).getString(1));
     }
 
+    private String toJsonString(Consumer<JsonGenerator> writer) {
+        StringWriter stringWriter = new StringWriter();
+        try (JsonGenerator generator = Json.createGenerator(stringWriter)) {
+            generator.writeStartObject();
+            writer.accept(generator);
+            generator.writeEnd();
+        }
+        return stringWriter.toString();
+    }
+
+    /**
+     * Test method for {@link org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert#writePrincipal(jakarta.json.stream.JsonGenerator, java.security.Principal, java.util.Map, int)}.
+     */
+    @Test
+    public void testWritePrincipalMatchesConvertToJson() throws RepositoryException {
+        Principal principal = new PrincipalImpl("testuser");
+        LocalPrivilege lp1 = new LocalPrivilege(priv(PrivilegeConstants.JCR_READ));
+        lp1.setAllow(true);
+        LocalPrivilege lp2 = new LocalPrivilege(priv(PrivilegeConstants.JCR_WRITE));
+        lp2.setDeny(true);
+        LocalPrivilege lp3 = new LocalPrivilege(priv(PrivilegeConstants.JCR_READ_ACCESS_CONTROL));
+        LocalPrivilege lp4 = new LocalPrivilege(priv(PrivilegeConstants.JCR_NODE_TYPE_MANAGEMENT));
+        lp4.setAllow(true);
+        lp4.setAllowRestrictions(
+                Collections.singleton(new LocalRestriction(rd(AccessControlConstants.REP_GLOB), val("/hello"))));
+        lp4.setDeny(true);
+        lp4.setDenyRestrictions(Collections.singleton(
+                new LocalRestriction(rd(AccessControlConstants.REP_ITEM_NAMES), vals("item1", "item2"))));
+        Map<Privilege, LocalPrivilege> entry = new LinkedHashMap<>();
+        entry.put(lp1.getPrivilege(), lp1);
+        entry.put(lp2.getPrivilege(), lp2);
+        entry.put(lp3.getPrivilege(), lp3);
+        entry.put(lp4.getPrivilege(), lp4);
+
+        for (int order : new int[] {-1, 2}) {
+            JsonObject expected =
+                    JsonConvert.convertToJson(principal, entry, order).build();
+            String actual = toJsonString(generator -> JsonConvert.writePrincipal(generator, principal, entry, order));
+            assertEquals(expected.toString(), actual);
+        }
+
+        // no privileges at all
+        assertEquals(
+                JsonConvert.convertToJson(principal, Collections.emptyMap(), 0)
+                        .build()
+                        .toString(),
+                toJsonString(generator -> JsonConvert.writePrincipal(generator, principal, Collections.emptyMap(), 0)));
+    }
+
+    /**
+     * Test method for {@link org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert#writeDeclaredAt(jakarta.json.stream.JsonGenerator, java.util.Map)}.
+     */
+    @Test
+    public void testWriteDeclaredAtMatchesAddDeclaredAt() {
+        Map<DeclarationType, Set<String>> declaredAt = new LinkedHashMap<>();
+        declaredAt.put(DeclarationType.NODE, new LinkedHashSet<>(List.of("/content", "/content/child")));
+        declaredAt.put(DeclarationType.PRINCIPAL, Collections.singleton("/home/users/testuser"));
+
+        JsonObjectBuilder expected = Json.createObjectBuilder();
+        JsonConvert.addDeclaredAt(expected, declaredAt);
+        assertEquals(
+                expected.build().toString(),
+                toJsonString(generator -> JsonConvert.writeDeclaredAt(generator, declaredAt)));
+    }
+
     /**
      * Test method for {@link org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert#addRestrictions(jakarta.json.JsonObjectBuilder, java.lang.String, java.util.Set)}.
      */
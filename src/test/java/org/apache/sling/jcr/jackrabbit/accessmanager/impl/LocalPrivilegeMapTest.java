@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LocalPrivilegeMapTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private AccessControlManager acm;
+    private PrivilegesIndex index;
+    private LocalPrivilegeMap map;
+
+    @Before
+    public void before() throws RepositoryException {
+        Session session = context.resourceResolver().adaptTo(Session.class);
+        acm = session.getAccessControlManager();
+        index = PrivilegesIndex.getInstance(session);
+        map = new LocalPrivilegeMap(index.resolver(acm));
+    }
+
+    private Privilege priv(String privilegeName) throws RepositoryException {
+        return acm.privilegeFromName(privilegeName);
+    }
+
+    @Test
+    public void testMapBehavesLikeHashMap() throws RepositoryException {
+        Map<Privilege, LocalPrivilege> expected = new HashMap<>();
+        for (String name :
+                List.of(PrivilegeConstants.JCR_WRITE, PrivilegeConstants.JCR_READ, PrivilegeConstants.REP_WRITE)) {
+            LocalPrivilege lp = new LocalPrivilege(priv(name));
+            lp.setAllow(true);
+            assertNull(map.put(lp.getPrivilege(), lp));
+            expected.put(lp.getPrivilege(), lp);
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(3, map.size());
+        assertTrue(map.containsKey(priv(PrivilegeConstants.JCR_READ)));
+        assertFalse(map.containsKey(priv(PrivilegeConstants.JCR_ALL)));
+        assertFalse(map.containsKey("not a privilege"));
+
+        LocalPrivilege replaced = new LocalPrivilege(priv(PrivilegeConstants.JCR_READ));
+        LocalPrivilege old = map.put(replaced.getPrivilege(), replaced);
+        assertSame(expected.get(priv(PrivilegeConstants.JCR_READ)), old);
+        assertSame(replaced, map.get(priv(PrivilegeConstants.JCR_READ)));
+        assertEquals(3, map.size());
+
+        assertSame(replaced, map.remove(priv(PrivilegeConstants.JCR_READ)));
+        assertNull(map.remove(priv(PrivilegeConstants.JCR_READ)));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testIterationInIndexOrder() throws RepositoryException {
+        for (String name :
+                List.of(PrivilegeConstants.REP_READ_NODES, PrivilegeConstants.JCR_ALL, PrivilegeConstants.JCR_READ)) {
+            map.computeIfAbsent(priv(name), LocalPrivilege::new);
+        }
+        int previous = -1;
+        for (Privilege privilege : map.keySet()) {
+            int idx = index.indexOf(privilege);
+            assertTrue(idx > previous);
+            previous = idx;
+        }
+
+        Iterator<Entry<Privilege, LocalPrivilege>> it = map.entrySet().iterator();
+        assertEquals(PrivilegeConstants.JCR_ALL, it.next().getKey().getName());
+        it.remove();
+        assertEquals(2, map.size());
+        assertFalse(map.containsKey(priv(PrivilegeConstants.JCR_ALL)));
+    }
+
+    @Test
+    public void testGetByPosition() throws RepositoryException {
+        LocalPrivilege read = map.computeIfAbsent(priv(PrivilegeConstants.JCR_READ), LocalPrivilege::new);
+        read.setAllow(true);
+
+        int readIdx = index.indexOf(PrivilegeConstants.JCR_READ);
+        assertSame(read, map.get(readIdx));
+        assertNull(map.get(index.indexOf(PrivilegeConstants.JCR_WRITE)));
+
+        // the leaves of jcr:read contain the leaves of its direct children
+        for (int childIdx : index.getDirectChildren(readIdx)) {
+            assertTrue(PrivilegeBits.containsAll(index.getLeafBits(readIdx), index.getLeafBits(childIdx)));
+        }
+    }
+
+    @Test
+    public void testNextSetBit() {
+        long[] bits = PrivilegeBits.of(130, 0, 63, 64, 129);
+        assertEquals(0, PrivilegeBits.nextSetBit(bits, 0));
+        assertEquals(63, PrivilegeBits.nextSetBit(bits, 1));
+        assertEquals(64, PrivilegeBits.nextSetBit(bits, 64));
+        assertEquals(129, PrivilegeBits.nextSetBit(bits, 65));
+        assertEquals(-1, PrivilegeBits.nextSetBit(bits, 130));
+        assertEquals(4, PrivilegeBits.cardinality(bits));
+        PrivilegeBits.clear(bits, 63);
+        assertEquals(64, PrivilegeBits.nextSetBit(bits, 1));
+        assertTrue(PrivilegeBits.isEmpty(PrivilegeBits.newBits(130)));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.security.authorization.restriction.RestrictionProviderImpl;
+import org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants;
+import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionDefinition;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.jackrabbit.value.ValueFactoryImpl;
+import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
+import org.apache.sling.jcr.jackrabbit.accessmanager.LocalRestriction;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class LocalRestrictionSetTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private AccessControlManager acm;
+    private RestrictionDefinition globDefinition;
+
+    @Before
+    public void before() throws RepositoryException {
+        Session session = context.resourceResolver().adaptTo(Session.class);
+        acm = session.getAccessControlManager();
+        globDefinition = new RestrictionProviderImpl()
+                .getSupportedRestrictions("/").stream()
+                        .filter(rd -> AccessControlConstants.REP_GLOB.equals(rd.getName()))
+                        .findFirst()
+                        .orElseThrow();
+    }
+
+    private LocalRestriction glob(String value) {
+        return new LocalRestriction(
+                globDefinition, ValueFactoryImpl.getInstance().createValue(value));
+    }
+
+    @Test
+    public void testCopyOf() {
+        Set<LocalRestriction> set1 = new HashSet<>();
+        set1.add(glob("/hello"));
+        Set<LocalRestriction> set2 = new HashSet<>();
+        set2.add(glob("/hello"));
+
+        LocalRestrictionSet copy1 = LocalRestrictionSet.copyOf(set1);
+        LocalRestrictionSet copy2 = LocalRestrictionSet.copyOf(set2);
+        // equal, but not shared beyond the callers that pass the same instance
+        assertNotSame(copy1, copy2);
+        assertEquals(copy1, copy2);
+        assertSame(copy1, LocalRestrictionSet.copyOf(copy1));
+        assertEquals(set1, copy1);
+        assertEquals(copy1, set1);
+        assertEquals(set1.hashCode(), copy1.hashCode());
+
+        LocalRestrictionSet other = LocalRestrictionSet.copyOf(Collections.singleton(glob("/other")));
+        assertNotEquals(copy1, other);
+        assertSame(LocalRestrictionSet.EMPTY, LocalRestrictionSet.copyOf(Collections.emptySet()));
+    }
+
+    @Test
+    public void testImmutable() {
+        LocalRestrictionSet copy = LocalRestrictionSet.copyOf(Collections.singleton(glob("/hello")));
+        assertThrows(UnsupportedOperationException.class, () -> copy.add(glob("/other")));
+        assertThrows(UnsupportedOperationException.class, () -> copy.removeIf(r -> true));
+        assertThrows(UnsupportedOperationException.class, copy::clear);
+        assertEquals(1, copy.size());
+    }
+
+    @Test
+    public void testSharedByLocalPrivileges() throws RepositoryException {
+        LocalPrivilege lp1 = new LocalPrivilege(acm.privilegeFromName(PrivilegeConstants.JCR_READ));
+        LocalPrivilege lp2 = new LocalPrivilege(acm.privilegeFromName(PrivilegeConstants.JCR_WRITE));
+        LocalRestrictionSet restrictions = LocalRestrictionSet.copyOf(new HashSet<>(Set.of(glob("/hello"))));
+        lp1.setAllowRestrictions(restrictions);
+        lp2.setAllowRestrictions(restrictions);
+        assertSame(lp1.getAllowRestrictions(), lp2.getAllowRestrictions());
+        assertTrue(lp1.sameAllowRestrictions(lp2.getAllowRestrictions()));
+
+        // changing one of them must not change the other
+        lp1.unsetAllowRestrictions(Collections.singleton(AccessControlConstants.REP_GLOB));
+        assertTrue(lp1.getAllowRestrictions().isEmpty());
+        assertEquals(1, lp2.getAllowRestrictions().size());
+        assertFalse(lp1.sameAllowRestrictions(lp2.getAllowRestrictions()));
+
+        lp2.clearAllowRestrictions();
+        assertSame(lp1.getAllowRestrictions(), lp2.getAllowRestrictions());
+    }
+}
@@ -914,4 +914,63 @@ public class PrivilegesHelperTest {
                 merged.get(priv(PrivilegeConstants.REP_ADD_PROPERTIES)).getDenyRestrictions();
         assertTrue(modifyDenyRestrictions.isEmpty());
     }
+
+    @Test
+    public void testExpandWithIndexMatchesHierarchyWalk() throws RepositoryException {
+        Session session = context.resourceResolver().adaptTo(Session.class);
+        PrivilegesIndex.Resolver resolver = PrivilegesIndex.getInstance(session).resolver(acm);
+        Map<Privilege, LocalPrivilege> walked = new HashMap<>();
+        Map<Privilege, LocalPrivilege> indexed = new LocalPrivilegeMap(resolver);
+        LocalRestriction restriction = new LocalRestriction(rd(AccessControlConstants.REP_GLOB), val("/hello"));
+
+        for (Map<Privilege, LocalPrivilege> merged : Arrays.asList(walked, indexed)) {
+            PrivilegesHelper.allow(
+                    merged, Collections.emptySet(), Collections.singleton(priv(PrivilegeConstants.JCR_ALL)));
+            PrivilegesHelper.deny(
+                    merged, Collections.emptySet(), Collections.singleton(priv(PrivilegeConstants.JCR_WRITE)));
+            PrivilegesHelper.undeny(merged, Collections.singleton(priv(PrivilegeConstants.JCR_REMOVE_NODE)));
+            PrivilegesHelper.allowRestriction(
+                    merged, restriction, Collections.singleton(priv(PrivilegeConstants.JCR_READ)));
+            PrivilegesHelper.none(merged, Collections.singleton(priv(PrivilegeConstants.JCR_LOCK_MANAGEMENT)));
+        }
+
+        assertEquals(walked, indexed);
+        for (LocalPrivilege lp : indexed.values()) {
+            assertFalse(lp.getPrivilege().isAggregate());
+        }
+        assertEquals(
+                Collections.singleton(restriction),
+                indexed.get(priv(PrivilegeConstants.REP_READ_NODES)).getAllowRestrictions());
+    }
+
+    @Test
+    public void testConsolidateAggregatesWithIndexMatchesHierarchyWalk() throws RepositoryException {
+        Session jcrSession = context.resourceResolver().adaptTo(Session.class);
+        PrivilegesIndex.Resolver resolver =
+                PrivilegesIndex.getInstance(jcrSession).resolver(acm);
+        LocalRestriction glob = new LocalRestriction(rd(AccessControlConstants.REP_GLOB), val("/hello"));
+        LocalRestriction itemNames =
+                new LocalRestriction(rd(AccessControlConstants.REP_ITEM_NAMES), vals("item1", "item2"));
+
+        Map<Privilege, LocalPrivilege> walked = new HashMap<>();
+        Map<Privilege, LocalPrivilege> indexed = new LocalPrivilegeMap(resolver);
+        for (Map<Privilege, LocalPrivilege> merged : Arrays.asList(walked, indexed)) {
+            PrivilegesHelper.allow(
+                    merged, Collections.emptySet(), Collections.singleton(priv(PrivilegeConstants.JCR_ALL)));
+            PrivilegesHelper.deny(
+                    merged, Collections.emptySet(), Collections.singleton(priv(PrivilegeConstants.JCR_WRITE)));
+            PrivilegesHelper.allow(
+                    merged,
+                    Collections.emptySet(),
+                    Collections.singleton(priv(PrivilegeConstants.JCR_ADD_CHILD_NODES)));
+            PrivilegesHelper.allowRestriction(
+                    merged, glob, Collections.singleton(priv(PrivilegeConstants.JCR_READ_ACCESS_CONTROL)));
+            PrivilegesHelper.denyRestriction(
+                    merged, itemNames, Collections.singleton(priv(PrivilegeConstants.JCR_READ)));
+            PrivilegesHelper.consolidateAggregates(jcrSession, "/", merged, privilegeLongestDepthMap);
+        }
+        assertEquals(walked, indexed);
+        assertTrue(indexed.containsKey(priv(PrivilegeConstants.JCR_READ)));
+        assertFalse(indexed.containsKey(priv(PrivilegeConstants.JCR_ALL)));
+    }
 }
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.impl;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.jackrabbit.api.JackrabbitWorkspace;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PrivilegesIndexTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private Session session;
+    private AccessControlManager acm;
+
+    @Before
+    public void before() throws RepositoryException {
+        session = context.resourceResolver().adaptTo(Session.class);
+        acm = session.getAccessControlManager();
+    }
+
+    private Privilege priv(String privilegeName) throws RepositoryException {
+        return acm.privilegeFromName(privilegeName);
+    }
+
+    private Set<String> names(PrivilegesIndex index, int[] positions) {
+        return IntStream.of(positions).mapToObj(index::getName).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testLongestDepthMatchesHelper() throws RepositoryException {
+        Map<Privilege, Integer> expected =
+                PrivilegesHelper.buildPrivilegeLongestDepthMap(priv(PrivilegeConstants.JCR_ALL));
+        PrivilegesIndex index = PrivilegesIndex.getInstance(session);
+        Map<Privilege, Integer> actual = index.resolver(acm).getLongestDepthMap();
+
+        assertEquals(expected.size(), index.size());
+        assertEquals(expected, actual);
+        for (Map.Entry<Privilege, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testTopologicalOrder() throws RepositoryException {
+        PrivilegesIndex index = PrivilegesIndex.getInstance(session);
+        assertEquals(0, index.indexOf(PrivilegeConstants.JCR_ALL));
+        for (int i = 0; i < index.size(); i++) {
+            for (int child : index.getDirectChildren(i)) {
+                assertTrue(child > i);
+                assertEquals(index.getLongestDepth(i) + 1, index.getLongestDepth(child));
+            }
+        }
+
+        int[] aggregates = index.getAggregatesDeepestFirst();
+        for (int i = 1; i < aggregates.length; i++) {
+            assertTrue(index.getLongestDepth(aggregates[i - 1]) >= index.getLongestDepth(aggregates[i]));
+        }
+    }
+
+    @Test
+    public void testDirectChildren() throws RepositoryException {
+        PrivilegesIndex index = PrivilegesIndex.getInstance(session);
+        int jcrRead = index.indexOf(PrivilegeConstants.JCR_READ);
+        assertEquals(
+                Set.of(PrivilegeConstants.REP_READ_NODES, PrivilegeConstants.REP_READ_PROPERTIES),
+                names(index, index.getDirectChildren(jcrRead)));
+
+        int jcrReadNodes = index.indexOf(PrivilegeConstants.REP_READ_NODES);
+        assertEquals(0, index.getDirectChildren(jcrReadNodes).length);
+    }
+
+    @Test
+    public void testLeaves() throws RepositoryException {
+        PrivilegesIndex index = PrivilegesIndex.getInstance(session);
+        Set<String> expected = Stream.of(priv(PrivilegeConstants.JCR_ALL).getAggregatePrivileges())
+                .filter(p -> !p.isAggregate())
+                .map(Privilege::getName)
+                .collect(Collectors.toSet());
+        int jcrAll = index.indexOf(PrivilegeConstants.JCR_ALL);
+        assertEquals(expected, names(index, index.getLeaves(jcrAll)));
+
+        int jcrWrite = index.indexOf(PrivilegeConstants.JCR_WRITE);
+        for (int leaf : index.getLeaves(jcrWrite)) {
+            assertFalse(index.isAggregate(leaf));
+        }
+
+        int jcrLockManagement = index.indexOf(PrivilegeConstants.JCR_LOCK_MANAGEMENT);
+        assertEquals(Set.of(PrivilegeConstants.JCR_LOCK_MANAGEMENT), names(index, index.getLeaves(jcrLockManagement)));
+    }
+
+    @Test
+    public void testResolver() throws RepositoryException {
+        PrivilegesIndex index = PrivilegesIndex.getInstance(session);
+        PrivilegesIndex.Resolver resolver = index.resolver(acm);
+        assertSame(index, resolver.getIndex());
+        int jcrRead = resolver.indexOf(priv(PrivilegeConstants.JCR_READ));
+        assertEquals(priv(PrivilegeConstants.JCR_READ), resolver.getPrivilege(jcrRead));
+        int jcrWrite = index.indexOf(PrivilegeConstants.JCR_WRITE);
+        assertEquals(priv(PrivilegeConstants.JCR_WRITE), resolver.getPrivilege(jcrWrite));
+        assertEquals(-1, index.indexOf("not_a_privilege"));
+    }
+
+    @Test
+    public void testSharedUntilPrivilegeRegistered() throws RepositoryException {
+        PrivilegesIndex index = PrivilegesIndex.getInstance(session);
+        assertSame(index, PrivilegesIndex.getInstance(session));
+
+        ((JackrabbitWorkspace) session.getWorkspace())
+                .getPrivilegeManager()
+                .registerPrivilege("customPrivilege", false, new String[0]);
+
+        PrivilegesIndex index2 = PrivilegesIndex.getInstance(session);
+        assertNotSame(index, index2);
+        assertEquals(-1, index.indexOf("customPrivilege"));
+        int customPrivilege = index2.indexOf("customPrivilege");
+        assertTrue(customPrivilege != -1);
+        assertEquals(2, index2.getLongestDepth(customPrivilege));
+        assertSame(index2, PrivilegesIndex.getInstance(session));
+    }
+
+    private static Privilege mockPrivilege(String name, Privilege... declaredAggregates) {
+        Privilege privilege = Mockito.mock(Privilege.class);
+        Mockito.when(privilege.getName()).thenReturn(name);
+        Mockito.when(privilege.isAggregate()).thenReturn(declaredAggregates.length > 0);
+        Mockito.when(privilege.getDeclaredAggregatePrivileges()).thenReturn(declaredAggregates);
+        Mockito.when(privilege.getAggregatePrivileges()).thenReturn(declaredAggregates);
+        return privilege;
+    }
+
+    @Test
+    public void testRebuiltWhenJcrAllAggregatesChange() throws RepositoryException {
+        // the same jcr:all instance, so the hash code does not change
+        Privilege read = mockPrivilege("read");
+        Privilege write = mockPrivilege("write");
+        Privilege jcrAll = mockPrivilege(PrivilegeConstants.JCR_ALL, read);
+        Session mockSession = Mockito.mock(Session.class);
+        AccessControlManager acm = Mockito.mock(AccessControlManager.class);
+        Mockito.when(mockSession.getAccessControlManager()).thenReturn(acm);
+        Mockito.when(mockSession.getRepository()).thenReturn(Mockito.mock(Repository.class));
+        Mockito.when(acm.privilegeFromName(PrivilegeConstants.JCR_ALL)).thenReturn(jcrAll);
+
+        PrivilegesIndex index = PrivilegesIndex.getInstance(mockSession);
+        assertSame(index, PrivilegesIndex.getInstance(mockSession));
+        assertEquals(-1, index.indexOf("write"));
+
+        Mockito.when(jcrAll.getDeclaredAggregatePrivileges()).thenReturn(new Privilege[] {read, write});
+        PrivilegesIndex index2 = PrivilegesIndex.getInstance(mockSession);
+        assertNotSame(index, index2);
+        assertTrue(index2.indexOf("write") != -1);
+    }
+
+    @Test
+    public void testSupportedPrivilegesCachedByNodeTypes() throws RepositoryException {
+        Node root = session.getRootNode();
+        Node node1 = root.addNode("node1", "nt:unstructured");
+        Node node2 = root.addNode("node2", "nt:unstructured");
+        Node node3 = root.addNode("node3", "nt:folder");
+        session.save();
+
+        PrivilegesIndex index = PrivilegesIndex.getInstance(session);
+        long[] bits1 = PrivilegesHelper.getSupportedPrivilegeBits(session, node1.getPath(), index);
+        assertSame(bits1, PrivilegesHelper.getSupportedPrivilegeBits(session, node2.getPath(), index));
+        assertNotSame(bits1, PrivilegesHelper.getSupportedPrivilegeBits(session, node3.getPath(), index));
+        assertEquals("nt:folder", PrivilegesIndex.toSupportedKey(node3));
+
+        // non-existing paths and the repository level share an entry
+        long[] notANodeBits = PrivilegesHelper.getSupportedPrivilegeBits(session, "/not_a_node", index);
+        assertSame(notANodeBits, PrivilegesHelper.getSupportedPrivilegeBits(session, null, index));
+        assertTrue(PrivilegeBits.get(notANodeBits, index.indexOf(PrivilegeConstants.JCR_ALL)));
+
+        // registering a privilege starts with a new index and cache
+        ((JackrabbitWorkspace) session.getWorkspace())
+                .getPrivilegeManager()
+                .registerPrivilege("customPrivilege2", false, new String[0]);
+        PrivilegesIndex index2 = PrivilegesIndex.getInstance(session);
+        long[] bits2 = PrivilegesHelper.getSupportedPrivilegeBits(session, node1.getPath(), index2);
+        assertNotSame(bits1, bits2);
+        assertTrue(PrivilegeBits.get(bits2, index2.indexOf("customPrivilege2")));
+    }
+}
@@ -59,6 +59,8 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCookieStore;
@@ -462,6 +464,33 @@ public abstract class AccessManagerClientTestSupport extends AccessManagerTestSu
         });
     }
 
+    /**
+     * Post the JSON as the body of the request
+     *
+     * @param creds the credentials of the user
+     * @param url the url to post to
+     * @param jsonBody the JSON body of the request
+     * @param expectedStatusCode the expected status of the response
+     * @return the content of the JSON response
+     */
+    protected String getAuthenticatedJsonPostContent(
+            Credentials creds, String url, String jsonBody, int expectedStatusCode) throws IOException {
+        return (String) doAuthenticatedWork(creds, () -> {
+            HttpPost postRequest = new HttpPost(url);
+            postRequest.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+            try (CloseableHttpResponse response = httpClient.execute(postRequest, httpContext)) {
+                verifyHttpStatus(response, null, expectedStatusCode);
+                final Header h = response.getFirstHeader("Content-Type");
+                assertNotNull("Expected a Content-Type header for " + url, h);
+                assertTrue(
+                        "Expected Content-Type that starts with '" + CONTENT_TYPE_JSON + "' for " + url + ", got '"
+                                + h.getValue() + "'",
+                        h.getValue().startsWith(CONTENT_TYPE_JSON));
+                return EntityUtils.toString(response.getEntity());
+            }
+        });
+    }
+
     protected void maybeRemoveAuthorizable(String id) throws RepositoryException {
         UserManager userManager = ((JackrabbitSession) adminSession).getUserManager();
         Authorizable authorizable = userManager.getAuthorizable(id);
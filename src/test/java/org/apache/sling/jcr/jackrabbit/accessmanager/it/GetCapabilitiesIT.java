@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.it;
+
+import javax.jcr.RepositoryException;
+
+import java.io.IOException;
+import java.util.List;
+
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrivilegesInfo;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests for the 'caps' Sling Get Operation
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class GetCapabilitiesIT extends AccessManagerClientTestSupport {
+
+    private static final int ALL_CAPABILITIES = PrivilegesInfo.CAN_ADD_CHILDREN
+            | PrivilegesInfo.CAN_DELETE_CHILDREN
+            | PrivilegesInfo.CAN_DELETE
+            | PrivilegesInfo.CAN_MODIFY_PROPERTIES
+            | PrivilegesInfo.CAN_READ_ACCESS_CONTROL
+            | PrivilegesInfo.CAN_MODIFY_ACCESS_CONTROL;
+
+    private String testFolderPath;
+
+    private void createTestTree() throws IOException, JsonException, RepositoryException {
+        testUserId = createTestUser();
+        testFolderUrl = createTestFolder(
+                null,
+                "sling-tests",
+                "{ \"jcr:primaryType\": \"nt:unstructured\", \"child1\" : { \"propOne\" : true }, \"child2\" : { \"propTwo\" : true } }");
+        testFolderPath = testFolderUrl.substring(baseServerUri.toString().length());
+
+        List<NameValuePair> postParams = new AcePostParamsBuilder(testUserId)
+                .withPrivilege(PrivilegeConstants.JCR_READ, PrivilegeValues.ALLOW)
+                .withPrivilege(PrivilegeConstants.JCR_READ_ACCESS_CONTROL, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl, postParams);
+
+        List<NameValuePair> postParams2 = new AcePostParamsBuilder(testUserId)
+                .withPrivilege(PrivilegeConstants.JCR_WRITE, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl + "/child1", postParams2);
+    }
+
+    private JsonObject getCapabilities(Credentials creds, String url) throws IOException {
+        String json = getAuthenticatedContent(creds, url, CONTENT_TYPE_JSON, HttpServletResponse.SC_OK);
+        assertNotNull(json);
+        return parseJson(json);
+    }
+
+    @Test
+    public void testCapabilitiesForUser() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        Credentials creds = new UsernamePasswordCredentials(testUserId, "testPwd");
+        JsonObject jsonObject = getCapabilities(creds, testFolderUrl + ".caps.json");
+
+        // the resource is first and then each of the children
+        assertEquals(
+                List.of(testFolderPath, testFolderPath + "/child1", testFolderPath + "/child2"),
+                List.copyOf(jsonObject.keySet()));
+        assertEquals(PrivilegesInfo.CAN_READ_ACCESS_CONTROL, jsonObject.getInt(testFolderPath));
+        // can not delete child1 without jcr:removeChildNodes on the parent
+        assertEquals(
+                PrivilegesInfo.CAN_ADD_CHILDREN
+                        | PrivilegesInfo.CAN_DELETE_CHILDREN
+                        | PrivilegesInfo.CAN_MODIFY_PROPERTIES
+                        | PrivilegesInfo.CAN_READ_ACCESS_CONTROL,
+                jsonObject.getInt(testFolderPath + "/child1"));
+        assertEquals(PrivilegesInfo.CAN_READ_ACCESS_CONTROL, jsonObject.getInt(testFolderPath + "/child2"));
+
+        // the tidy variant has the same content
+        assertEquals(jsonObject, getCapabilities(creds, testFolderUrl + ".tidy.caps.json"));
+    }
+
+    @Test
+    public void testCapabilitiesForAdmin() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        JsonObject jsonObject = getCapabilities(creds, testFolderUrl + ".caps.json");
+        assertEquals(3, jsonObject.size());
+        for (String path : jsonObject.keySet()) {
+            assertEquals(ALL_CAPABILITIES, jsonObject.getInt(path));
+        }
+    }
+
+    @Test
+    public void testCapabilitiesNotFound() throws IOException {
+        testFolderUrl = createTestFolder();
+
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        assertAuthenticatedHttpStatus(
+                creds,
+                testFolderUrl + "/missing.caps.json",
+                HttpServletResponse.SC_NOT_FOUND,
+                "Did not expect capabilities for a missing resource");
+    }
+}
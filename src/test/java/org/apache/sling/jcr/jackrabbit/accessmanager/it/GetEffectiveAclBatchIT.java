@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.it;
+
+import javax.jcr.RepositoryException;
+
+import java.io.IOException;
+import java.util.List;
+
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests for the 'eacls' Sling Get Operation
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class GetEffectiveAclBatchIT extends AccessManagerClientTestSupport {
+
+    private String testFolderPath;
+
+    private void createTestTree() throws IOException, JsonException, RepositoryException {
+        testUserId = createTestUser();
+        testFolderUrl = createTestFolder(
+                null,
+                "sling-tests",
+                "{ \"jcr:primaryType\": \"nt:unstructured\", \"child1\" : { \"propOne\" : true }, \"child2\" : { \"propTwo\" : true } }");
+        testFolderPath = testFolderUrl.substring(baseServerUri.toString().length());
+
+        List<NameValuePair> postParams = new AcePostParamsBuilder(testUserId)
+                .withPrivilege(PrivilegeConstants.JCR_READ, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl, postParams);
+
+        List<NameValuePair> postParams2 = new AcePostParamsBuilder(testUserId)
+                .withPrivilege(PrivilegeConstants.JCR_WRITE, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl + "/child2", postParams2);
+    }
+
+    private JsonObject getEffectiveAcl(String url) throws IOException {
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String json = getAuthenticatedContent(creds, url, CONTENT_TYPE_JSON, HttpServletResponse.SC_OK);
+        assertNotNull(json);
+        return parseJson(json);
+    }
+
+    private void assertBatch(JsonObject jsonObject) throws IOException {
+        // the missing path is not included and the others are in the order they were supplied
+        assertEquals(List.of(testFolderPath + "/child2", testFolderPath + "/child1"), List.copyOf(jsonObject.keySet()));
+
+        // each value is the same as the eacl of the resource
+        assertEquals(
+                getEffectiveAcl(testFolderUrl + "/child1.eacl.json"),
+                jsonObject.getJsonObject(testFolderPath + "/child1"));
+        JsonObject privilegesObject = jsonObject
+                .getJsonObject(testFolderPath + "/child2")
+                .getJsonObject(testUserId)
+                .getJsonObject("privileges");
+        assertNotNull(privilegesObject);
+        assertEquals(2, privilegesObject.size());
+        assertPrivilege(privilegesObject, true, PrivilegeValues.ALLOW, PrivilegeConstants.JCR_READ);
+        assertPrivilege(privilegesObject, true, PrivilegeValues.ALLOW, PrivilegeConstants.JCR_WRITE);
+    }
+
+    @Test
+    public void testBatchGet() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        // relative paths are relative to the resource of the request
+        JsonObject jsonObject = getEffectiveAcl(
+                testFolderUrl + ".eacls.json?path=child2&path=" + testFolderPath + "/child1&path=missing");
+        assertBatch(jsonObject);
+
+        // the tidy variant has the same content
+        assertEquals(
+                jsonObject,
+                getEffectiveAcl(testFolderUrl
+                        + ".tidy.eacls.json?path=child2&path=" + testFolderPath + "/child1&path=missing"));
+    }
+
+    @Test
+    public void testBatchPost() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        List<NameValuePair> postParams = List.of(
+                new BasicNameValuePair("path", "child2"),
+                new BasicNameValuePair("path", testFolderPath + "/child1"),
+                new BasicNameValuePair("path", "missing"));
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String json = getAuthenticatedPostContent(
+                creds, testFolderUrl + ".eacls.json", CONTENT_TYPE_JSON, postParams, HttpServletResponse.SC_OK);
+        assertNotNull(json);
+        assertBatch(parseJson(json));
+    }
+
+    /**
+     * POST is only registered for the batch selector
+     */
+    @Test
+    public void testPostWithoutBatchSelector() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        assertAuthenticatedPostStatus(
+                creds,
+                testFolderUrl + ".eacl.json",
+                HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                List.of(),
+                "Expected POST to be rejected for the eacl selector");
+        assertAuthenticatedPostStatus(
+                creds,
+                testFolderUrl + ".tidy.eacl.json",
+                HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                List.of(),
+                "Expected POST to be rejected for the tidy.eacl selector");
+
+        // GET is still allowed for the single resource
+        JsonObject jsonObject = getEffectiveAcl(testFolderUrl + ".eacl.json");
+        assertNotNull(jsonObject.getJsonObject(testUserId));
+    }
+
+    @Test
+    public void testBatchNoReadAccess() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        // the test user can read the content but not the access control
+        Credentials creds = new UsernamePasswordCredentials(testUserId, "testPwd");
+        String json = getAuthenticatedContent(
+                creds,
+                testFolderUrl + ".eacls.json?path=child1&path=child2",
+                CONTENT_TYPE_JSON,
+                HttpServletResponse.SC_OK);
+        assertNotNull(json);
+        assertEquals(0, parseJson(json).size());
+    }
+}
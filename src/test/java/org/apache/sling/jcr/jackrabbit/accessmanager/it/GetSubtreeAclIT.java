@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.it;
+
+import javax.jcr.RepositoryException;
+
+import java.io.IOException;
+import java.util.List;
+
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the 'tacl' Sling Get Operation
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class GetSubtreeAclIT extends AccessManagerClientTestSupport {
+
+    private String testFolderPath;
+
+    private void createTestTree() throws IOException, JsonException, RepositoryException {
+        testUserId = createTestUser();
+        testFolderUrl = createTestFolder(
+                null,
+                "sling-tests",
+                "{ \"jcr:primaryType\": \"nt:unstructured\", \"child\" : { \"grandchild\" : { \"propOne\" : true } }, \"other\" : { \"propTwo\" : true } }");
+        testFolderPath = testFolderUrl.substring(baseServerUri.toString().length());
+
+        List<NameValuePair> postParams = new AcePostParamsBuilder(testUserId)
+                .withPrivilege(PrivilegeConstants.JCR_READ, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl, postParams);
+
+        List<NameValuePair> postParams2 = new AcePostParamsBuilder(testUserId)
+                .withPrivilege(PrivilegeConstants.JCR_WRITE, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl + "/child", postParams2);
+
+        List<NameValuePair> postParams3 = new AcePostParamsBuilder(testUserId)
+                .withPrivilege(PrivilegeConstants.JCR_LOCK_MANAGEMENT, PrivilegeValues.DENY)
+                .build();
+        addOrUpdateAce(testFolderUrl + "/child/grandchild", postParams3);
+    }
+
+    private JsonObject getSubtreeAcl(String query) throws IOException {
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String getUrl = testFolderUrl + ".tacl.json" + (query == null ? "" : "?" + query);
+        String json = getAuthenticatedContent(creds, getUrl, CONTENT_TYPE_JSON, HttpServletResponse.SC_OK);
+        assertNotNull(json);
+        return parseJson(json);
+    }
+
+    @Test
+    public void testSubtreeAclDefaultDepth() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        // the resource and its children, skipping the nodes without a policy
+        JsonObject jsonObject = getSubtreeAcl(null);
+        assertEquals(List.of(testFolderPath, testFolderPath + "/child"), List.copyOf(jsonObject.keySet()));
+
+        // each value is the same as the acl of the node
+        assertEquals(getAcl(testFolderUrl), jsonObject.getJsonObject(testFolderPath));
+        JsonObject privilegesObject = jsonObject
+                .getJsonObject(testFolderPath + "/child")
+                .getJsonObject(testUserId)
+                .getJsonObject("privileges");
+        assertNotNull(privilegesObject);
+        assertEquals(1, privilegesObject.size());
+        assertPrivilege(privilegesObject, true, PrivilegeValues.ALLOW, PrivilegeConstants.JCR_WRITE);
+    }
+
+    @Test
+    public void testSubtreeAclDepth() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        JsonObject jsonObject = getSubtreeAcl("depth=0");
+        assertEquals(List.of(testFolderPath), List.copyOf(jsonObject.keySet()));
+
+        jsonObject = getSubtreeAcl("depth=infinity");
+        assertEquals(
+                List.of(testFolderPath, testFolderPath + "/child", testFolderPath + "/child/grandchild"),
+                List.copyOf(jsonObject.keySet()));
+        assertFalse(jsonObject.containsKey(testFolderPath + "/other"));
+        JsonObject privilegesObject = jsonObject
+                .getJsonObject(testFolderPath + "/child/grandchild")
+                .getJsonObject(testUserId)
+                .getJsonObject("privileges");
+        assertPrivilege(privilegesObject, true, PrivilegeValues.DENY, PrivilegeConstants.JCR_LOCK_MANAGEMENT);
+    }
+
+    @Test
+    public void testSubtreeAclInvalidDepth() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        assertAuthenticatedHttpStatus(
+                creds,
+                testFolderUrl + ".tacl.json?depth=-1",
+                HttpServletResponse.SC_BAD_REQUEST,
+                "Expected a negative depth to be rejected");
+        assertAuthenticatedHttpStatus(
+                creds,
+                testFolderUrl + ".tacl.json?depth=deep",
+                HttpServletResponse.SC_BAD_REQUEST,
+                "Expected an invalid depth to be rejected");
+    }
+
+    @Test
+    public void testSubtreeAclSkipsUnreadableNodes() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        // the second user can read the tree but not the acl of the grandchild
+        testUserId2 = createTestUser();
+        List<NameValuePair> postParams = new AcePostParamsBuilder(testUserId2)
+                .withPrivilege(PrivilegeConstants.JCR_READ, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl, postParams);
+        List<NameValuePair> postParams2 = new AcePostParamsBuilder(testUserId2)
+                .withPrivilege(PrivilegeConstants.JCR_READ_ACCESS_CONTROL, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl + "/child", postParams2);
+        List<NameValuePair> postParams3 = new AcePostParamsBuilder(testUserId2)
+                .withPrivilege(PrivilegeConstants.JCR_READ_ACCESS_CONTROL, PrivilegeValues.DENY)
+                .build();
+        addOrUpdateAce(testFolderUrl + "/child/grandchild", postParams3);
+
+        Credentials creds = new UsernamePasswordCredentials(testUserId2, "testPwd");
+        String json = getAuthenticatedContent(
+                creds, testFolderUrl + "/child.tacl.json?depth=infinity", CONTENT_TYPE_JSON, HttpServletResponse.SC_OK);
+        assertNotNull(json);
+        JsonObject jsonObject = parseJson(json);
+        assertTrue(jsonObject.containsKey(testFolderPath + "/child"));
+        assertFalse(jsonObject.containsKey(testFolderPath + "/child/grandchild"));
+    }
+}
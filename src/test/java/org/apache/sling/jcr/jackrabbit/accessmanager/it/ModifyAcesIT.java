@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.it;
+
+import javax.jcr.RepositoryException;
+
+import java.io.IOException;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the 'modifyAces' Sling POST Operation
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class ModifyAcesIT extends AccessManagerClientTestSupport {
+
+    private String testFolderPath;
+
+    private void createTestTree() throws IOException, JsonException, RepositoryException {
+        testUserId = createTestUser();
+        testUserId2 = createTestUser();
+        testFolderUrl = createTestFolder(
+                null,
+                "sling-tests",
+                "{ \"jcr:primaryType\": \"nt:unstructured\", \"child\" : { \"propOne\" : true } }");
+        testFolderPath = testFolderUrl.substring(baseServerUri.toString().length());
+    }
+
+    private JsonObject modifyAces(JsonArray changes, int expectedStatus) throws IOException {
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String json = getAuthenticatedJsonPostContent(
+                creds, testFolderUrl + ".modifyAces.json", changes.toString(), expectedStatus);
+        assertNotNull(json);
+        return parseJson(json);
+    }
+
+    private void assertChange(JsonObject change, String expectedType, String expectedPath, String expectedPrincipal) {
+        assertEquals(expectedType, change.getString("type"));
+        JsonArray argument = change.getJsonArray("argument");
+        assertEquals(expectedPath, argument.getString(0));
+        assertEquals(expectedPrincipal, argument.getString(1));
+    }
+
+    @Test
+    public void testModifyAces() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        // the path is optional and relative paths are relative to the resource of the request
+        JsonArray changes = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder()
+                        .add("principalId", testUserId)
+                        .add("privileges", Json.createObjectBuilder().add(PrivilegeConstants.JCR_READ, "allow")))
+                .add(Json.createObjectBuilder()
+                        .add("path", "child")
+                        .add("principalId", testUserId2)
+                        .add("privileges", Json.createObjectBuilder().add(PrivilegeConstants.JCR_WRITE, "deny"))
+                        .add("order", "first"))
+                .build();
+        JsonObject jsonObject = modifyAces(changes, HttpServletResponse.SC_OK);
+        JsonArray changesArray = jsonObject.getJsonArray("changes");
+        assertNotNull(changesArray);
+        assertEquals(2, changesArray.size());
+        assertChange(changesArray.getJsonObject(0), "modified", testFolderPath, testUserId);
+        assertChange(changesArray.getJsonObject(1), "modified", testFolderPath + "/child", testUserId2);
+
+        JsonObject privilegesObject = getAcePrivleges(testFolderUrl, testUserId);
+        assertEquals(1, privilegesObject.size());
+        assertPrivilege(privilegesObject, true, PrivilegeValues.ALLOW, PrivilegeConstants.JCR_READ);
+
+        JsonObject childAce = getAce(testFolderUrl + "/child", testUserId2);
+        assertEquals(0, childAce.getInt("order"));
+        JsonObject childPrivilegesObject = childAce.getJsonObject("privileges");
+        assertEquals(1, childPrivilegesObject.size());
+        assertPrivilege(childPrivilegesObject, true, PrivilegeValues.DENY, PrivilegeConstants.JCR_WRITE);
+
+        // submitting the same state again does not change anything
+        JsonObject jsonObject2 = modifyAces(changes, HttpServletResponse.SC_OK);
+        JsonArray changesArray2 = jsonObject2.getJsonArray("changes");
+        assertEquals(2, changesArray2.size());
+        assertChange(changesArray2.getJsonObject(0), "unchanged", testFolderPath, testUserId);
+        assertChange(changesArray2.getJsonObject(1), "unchanged", testFolderPath + "/child", testUserId2);
+    }
+
+    @Test
+    public void testModifyAcesWithRestrictions() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        JsonArray changes = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder()
+                        .add("principalId", testUserId)
+                        .add("privileges", Json.createObjectBuilder().add(PrivilegeConstants.JCR_READ, "allow"))
+                        .add(
+                                "restrictions",
+                                Json.createObjectBuilder().add(AccessControlConstants.REP_GLOB, "/hello")))
+                .build();
+        JsonObject jsonObject = modifyAces(changes, HttpServletResponse.SC_OK);
+        JsonArray changesArray = jsonObject.getJsonArray("changes");
+        assertEquals(1, changesArray.size());
+        assertChange(changesArray.getJsonObject(0), "modified", testFolderPath, testUserId);
+
+        JsonObject privilegesObject = getAcePrivleges(testFolderUrl, testUserId);
+        assertEquals(1, privilegesObject.size());
+        VerifyAce verifyRestrictions = jsonValue -> {
+            assertNotNull(jsonValue);
+            assertTrue(jsonValue instanceof JsonObject);
+            JsonValue repGlobValue = ((JsonObject) jsonValue).get(AccessControlConstants.REP_GLOB);
+            assertNotNull(repGlobValue);
+            assertTrue(repGlobValue instanceof JsonString);
+            assertEquals("/hello", ((JsonString) repGlobValue).getString());
+        };
+        assertPrivilege(privilegesObject, true, PrivilegeValues.ALLOW, PrivilegeConstants.JCR_READ, verifyRestrictions);
+    }
+
+    /**
+     * No change is applied when one of the items is not valid
+     */
+    @Test
+    public void testModifyAcesInvalidItem() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+        addOrUpdateAce(
+                testFolderUrl,
+                new AcePostParamsBuilder(testUserId2)
+                        .withPrivilege(PrivilegeConstants.JCR_READ, PrivilegeValues.ALLOW)
+                        .build());
+
+        // the privileges of the second item are not an object
+        JsonArray changes = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder()
+                        .add("principalId", testUserId)
+                        .add("privileges", Json.createObjectBuilder().add(PrivilegeConstants.JCR_READ, "allow")))
+                .add(Json.createObjectBuilder()
+                        .add("principalId", testUserId2)
+                        .add("privileges", PrivilegeConstants.JCR_WRITE))
+                .build();
+        modifyAces(changes, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+
+        JsonObject aclObject = getAcl(testFolderUrl);
+        assertFalse(aclObject.containsKey(testUserId));
+        JsonObject privilegesObject = getAcePrivleges(testFolderUrl, testUserId2);
+        assertEquals(1, privilegesObject.size());
+        assertPrivilege(privilegesObject, true, PrivilegeValues.ALLOW, PrivilegeConstants.JCR_READ);
+    }
+}
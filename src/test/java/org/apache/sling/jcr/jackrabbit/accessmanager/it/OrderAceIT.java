@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.it;
+
+import javax.jcr.RepositoryException;
+
+import java.io.IOException;
+import java.util.List;
+
+import jakarta.json.JsonArray;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests for the 'orderAce' Sling POST Operation
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class OrderAceIT extends AccessManagerClientTestSupport {
+
+    private void createTestFolderWithTwoAces() throws IOException, JsonException, RepositoryException {
+        testUserId = createTestUser();
+        testUserId2 = createTestUser();
+        testFolderUrl = createTestFolder();
+
+        List<NameValuePair> postParams = new AcePostParamsBuilder(testUserId)
+                .withPrivilege(PrivilegeConstants.JCR_READ, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl, postParams);
+
+        List<NameValuePair> postParams2 = new AcePostParamsBuilder(testUserId2)
+                .withPrivilege(PrivilegeConstants.JCR_WRITE, PrivilegeValues.ALLOW)
+                .withPrivilege(PrivilegeConstants.JCR_LOCK_MANAGEMENT, PrivilegeValues.DENY)
+                .build();
+        addOrUpdateAce(testFolderUrl, postParams2);
+    }
+
+    private JsonObject orderAce(String principalId, String order, int expectedStatus) throws IOException {
+        List<NameValuePair> postParams = List.of(
+                new BasicNameValuePair("principalId", principalId), new BasicNameValuePair("order", order));
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String json = getAuthenticatedPostContent(
+                creds, testFolderUrl + ".orderAce.json", CONTENT_TYPE_JSON, postParams, expectedStatus);
+        assertNotNull(json);
+        return parseJson(json);
+    }
+
+    private void assertOrder(String principalId, int expectedOrder) throws IOException {
+        JsonObject aceObject = getAce(testFolderUrl, principalId);
+        assertEquals(expectedOrder, aceObject.getInt("order"));
+    }
+
+    private void assertSingleChange(JsonObject jsonObject, String expectedType, String expectedArgument) {
+        JsonArray changesArray = jsonObject.getJsonArray("changes");
+        assertNotNull(changesArray);
+        assertEquals(1, changesArray.size());
+        JsonObject change = changesArray.getJsonObject(0);
+        assertEquals(expectedType, change.getString("type"));
+        assertEquals(expectedArgument, change.getString("argument"));
+    }
+
+    @Test
+    public void testOrderAceFirst() throws IOException, JsonException, RepositoryException {
+        createTestFolderWithTwoAces();
+        assertOrder(testUserId, 0);
+        assertOrder(testUserId2, 1);
+
+        JsonObject jsonObject = orderAce(testUserId2, "first", HttpServletResponse.SC_OK);
+        assertSingleChange(jsonObject, "modified", testUserId2);
+        assertOrder(testUserId2, 0);
+        assertOrder(testUserId, 1);
+
+        // the privileges are not changed by the move
+        JsonObject privilegesObject = getAcePrivleges(testFolderUrl, testUserId2);
+        assertEquals(2, privilegesObject.size());
+        assertPrivilege(privilegesObject, true, PrivilegeValues.ALLOW, PrivilegeConstants.JCR_WRITE);
+        assertPrivilege(privilegesObject, true, PrivilegeValues.DENY, PrivilegeConstants.JCR_LOCK_MANAGEMENT);
+
+        // the entries are already at the requested position
+        JsonObject jsonObject2 = orderAce(testUserId2, "first", HttpServletResponse.SC_OK);
+        assertSingleChange(jsonObject2, "unchanged", testUserId2);
+        assertOrder(testUserId2, 0);
+    }
+
+    @Test
+    public void testOrderAceAfter() throws IOException, JsonException, RepositoryException {
+        createTestFolderWithTwoAces();
+
+        JsonObject jsonObject = orderAce(testUserId, "after " + testUserId2, HttpServletResponse.SC_OK);
+        assertSingleChange(jsonObject, "modified", testUserId);
+        assertOrder(testUserId2, 0);
+        assertOrder(testUserId, 1);
+
+        JsonObject jsonObject2 = orderAce(testUserId, "before " + testUserId2, HttpServletResponse.SC_OK);
+        assertSingleChange(jsonObject2, "modified", testUserId);
+        assertOrder(testUserId, 0);
+        assertOrder(testUserId2, 1);
+    }
+
+    @Test
+    public void testOrderAceMissingOrder() throws IOException, JsonException, RepositoryException {
+        createTestFolderWithTwoAces();
+
+        orderAce(testUserId2, "", HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        assertOrder(testUserId, 0);
+        assertOrder(testUserId2, 1);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.it;
+
+import javax.jcr.RepositoryException;
+
+import java.io.IOException;
+import java.util.List;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the 'reconcileAces' Sling POST Operation
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class ReconcileAcesIT extends AccessManagerClientTestSupport {
+
+    private String testFolderPath;
+
+    private void createTestTree() throws IOException, JsonException, RepositoryException {
+        testUserId = createTestUser();
+        testUserId2 = createTestUser();
+        testFolderUrl = createTestFolder(
+                null,
+                "sling-tests",
+                "{ \"jcr:primaryType\": \"nt:unstructured\", \"child\" : { \"propOne\" : true } }");
+        testFolderPath = testFolderUrl.substring(baseServerUri.toString().length());
+
+        List<NameValuePair> postParams = new AcePostParamsBuilder(testUserId)
+                .withPrivilege(PrivilegeConstants.JCR_READ, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl, postParams);
+
+        List<NameValuePair> postParams2 = new AcePostParamsBuilder(testUserId2)
+                .withPrivilege(PrivilegeConstants.JCR_WRITE, PrivilegeValues.ALLOW)
+                .build();
+        addOrUpdateAce(testFolderUrl, postParams2);
+    }
+
+    private JsonObject reconcileAces(JsonArray desiredAces) throws IOException {
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String json = getAuthenticatedJsonPostContent(
+                creds, testFolderUrl + ".reconcileAces.json", desiredAces.toString(), HttpServletResponse.SC_OK);
+        assertNotNull(json);
+        return parseJson(json);
+    }
+
+    private void assertCounts(JsonObject jsonObject, int unchanged, int modified, int removed, int failed) {
+        assertEquals(unchanged, jsonObject.getInt("unchanged"));
+        assertEquals(modified, jsonObject.getInt("modified"));
+        assertEquals(removed, jsonObject.getInt("removed"));
+        assertEquals(failed, jsonObject.getInt("failed"));
+    }
+
+    @Test
+    public void testReconcileAces() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        // the folder only keeps the first user and the child gets the second user
+        JsonArray desiredAces = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder()
+                        .add("principalId", testUserId)
+                        .add("privileges", Json.createObjectBuilder().add(PrivilegeConstants.JCR_READ, "allow")))
+                .add(Json.createObjectBuilder()
+                        .add("path", "child")
+                        .add("principalId", testUserId2)
+                        .add("privileges", Json.createObjectBuilder().add(PrivilegeConstants.JCR_WRITE, "allow"))
+                        .add(
+                                "restrictions",
+                                Json.createObjectBuilder().add(AccessControlConstants.REP_GLOB, "/hello")))
+                .build();
+        JsonObject jsonObject = reconcileAces(desiredAces);
+        assertCounts(jsonObject, 1, 1, 1, 0);
+
+        JsonObject aclObject = getAcl(testFolderUrl);
+        assertEquals(1, aclObject.size());
+        assertTrue(aclObject.containsKey(testUserId));
+        assertFalse(aclObject.containsKey(testUserId2));
+
+        JsonObject privilegesObject = getAcePrivleges(testFolderUrl + "/child", testUserId2);
+        assertEquals(1, privilegesObject.size());
+        VerifyAce verifyRestrictions = jsonValue -> {
+            assertNotNull(jsonValue);
+            assertTrue(jsonValue instanceof JsonObject);
+            JsonValue repGlobValue = ((JsonObject) jsonValue).get(AccessControlConstants.REP_GLOB);
+            assertNotNull(repGlobValue);
+            assertTrue(repGlobValue instanceof JsonString);
+            assertEquals("/hello", ((JsonString) repGlobValue).getString());
+        };
+        assertPrivilege(
+                privilegesObject, true, PrivilegeValues.ALLOW, PrivilegeConstants.JCR_WRITE, verifyRestrictions);
+
+        // the stored state is the desired state now
+        JsonObject jsonObject2 = reconcileAces(desiredAces);
+        assertCounts(jsonObject2, 2, 0, 0, 0);
+    }
+
+    @Test
+    public void testReconcileAcesMissingResource() throws IOException, JsonException, RepositoryException {
+        createTestTree();
+
+        JsonArray desiredAces = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder()
+                        .add("path", "missing")
+                        .add("principalId", testUserId)
+                        .add("privileges", Json.createObjectBuilder().add(PrivilegeConstants.JCR_READ, "allow")))
+                .add(Json.createObjectBuilder()
+                        .add("principalId", testUserId)
+                        .add("privileges", Json.createObjectBuilder().add(PrivilegeConstants.JCR_READ, "allow")))
+                .add(Json.createObjectBuilder()
+                        .add("principalId", testUserId2)
+                        .add("privileges", Json.createObjectBuilder().add(PrivilegeConstants.JCR_WRITE, "allow")))
+                .build();
+        JsonObject jsonObject = reconcileAces(desiredAces);
+        assertCounts(jsonObject, 2, 0, 0, 1);
+
+        // the resource that was not reconciled is reported as a failed change
+        JsonArray changesArray = jsonObject.getJsonArray("changes");
+        assertNotNull(changesArray);
+        assertEquals(1, changesArray.size());
+        JsonObject change = changesArray.getJsonObject(0);
+        assertEquals("failed", change.getString("type"));
+        assertEquals(testFolderPath + "/missing", change.getJsonArray("argument").getString(0));
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.post;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonReader;
+import jakarta.servlet.ServletException;
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.wrappers.JavaxToJakartaRequestWrapper;
+import org.apache.sling.api.wrappers.JavaxToJakartaResponseWrapper;
+import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert;
+import org.apache.sling.servlethelpers.MockSlingHttpServletRequest;
+import org.apache.sling.servlethelpers.MockSlingHttpServletResponse;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the filtering and paging of the ACL
+ */
+public class GetAclServletTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private final GetAclServlet servlet = new GetAclServlet();
+
+    private Session jcrSession;
+
+    private MockSlingHttpServletResponse response;
+
+    @Before
+    public void before() throws RepositoryException {
+        ResourceResolver rr = context.resourceResolver();
+        jcrSession = rr.adaptTo(Session.class);
+        jcrSession.getRootNode().addNode("content");
+        jcrSession.save();
+
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        JackrabbitAccessControlList acl = (JackrabbitAccessControlList)
+                acm.getApplicablePolicies("/content").nextAccessControlPolicy();
+        UserManager userManager = ((JackrabbitSession) jcrSession).getUserManager();
+        for (int i = 0; i < 5; i++) {
+            User user = userManager.createUser("user" + i, "testPwd");
+            // the odd users can write and the even users can read
+            String privilegeName = i % 2 == 0 ? Privilege.JCR_READ : Privilege.JCR_WRITE;
+            acl.addEntry(user.getPrincipal(), new Privilege[] {acm.privilegeFromName(privilegeName)}, true);
+        }
+        acl.addEntry(
+                EveryonePrincipal.getInstance(), new Privilege[] {acm.privilegeFromName(Privilege.JCR_ALL)}, false);
+        acm.setPolicy("/content", acl);
+        jcrSession.save();
+    }
+
+    private JsonObject doGet(Map<String, Object> parameters) throws ServletException, IOException {
+        return doGet(servlet, parameters);
+    }
+
+    private JsonObject doGet(GetAclServlet servlet, Map<String, Object> parameters)
+            throws ServletException, IOException {
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, doGetStatus(servlet, parameters));
+        try (JsonReader reader = Json.createReader(new StringReader(response.getOutputAsString()))) {
+            return reader.readObject();
+        }
+    }
+
+    private int doGetStatus(GetAclServlet servlet, Map<String, Object> parameters)
+            throws ServletException, IOException {
+        MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(context.resourceResolver());
+        request.setResource(context.resourceResolver().getResource("/content"));
+        request.setParameterMap(parameters);
+        response = new MockSlingHttpServletResponse();
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        servlet.doGet(JavaxToJakartaRequestWrapper.toJakartaRequest(request), jakartaResponse);
+        return jakartaResponse.getStatus();
+    }
+
+    private void assertBadRequest(Map<String, Object> parameters, String expectedMessage)
+            throws ServletException, IOException {
+        assertEquals(SlingJakartaHttpServletResponse.SC_BAD_REQUEST, doGetStatus(servlet, parameters));
+        assertEquals(expectedMessage, response.getStatusMessage());
+    }
+
+    @Test
+    public void testNoFilter() throws ServletException, IOException, RepositoryException {
+        assertEquals(servlet.getAcl(jcrSession, "/content"), doGet(Map.of()));
+        assertNull(response.getHeader(AbstractGetAclServlet.HEADER_CONTINUATION));
+    }
+
+    @Test
+    public void testCustomizedJson() throws ServletException, IOException {
+        GetAclServlet customServlet = new GetAclServlet() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected JsonObjectBuilder convertToJson(
+                    List<Entry<Principal, Map<Privilege, LocalPrivilege>>> entrySetList,
+                    Map<Principal, Map<DeclarationType, Set<String>>> declaredAtPaths) {
+                return super.convertToJson(entrySetList, declaredAtPaths).add("custom", true);
+            }
+
+            @Override
+            protected boolean isStreamingSupported() {
+                return false;
+            }
+        };
+        JsonObject json = doGet(customServlet, Map.of());
+        assertTrue(json.getBoolean("custom"));
+        assertNotNull(json.getJsonObject("user0"));
+        assertNull(response.getHeader("ETag"));
+    }
+
+    @Test
+    public void testPrivilegeOrder() throws RepositoryException {
+        jcrSession.getNode("/content").addNode("ordered");
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        JackrabbitAccessControlList acl = (JackrabbitAccessControlList)
+                acm.getApplicablePolicies("/content/ordered").nextAccessControlPolicy();
+        // added with the deepest privilege first
+        for (String privilegeName : new String[] {
+            Privilege.JCR_MODIFY_PROPERTIES, PrivilegeConstants.REP_READ_NODES, Privilege.JCR_LOCK_MANAGEMENT
+        }) {
+            acl.addEntry(
+                    EveryonePrincipal.getInstance(), new Privilege[] {acm.privilegeFromName(privilegeName)}, true);
+        }
+        acm.setPolicy("/content/ordered", acl);
+        jcrSession.save();
+
+        // the privileges are in the order of the privileges index, which has the
+        //  aggregates before their children
+        JsonObject privileges = servlet.getAcl(jcrSession, "/content/ordered")
+                .getJsonObject(EveryonePrincipal.NAME)
+                .getJsonObject(JsonConvert.KEY_PRIVILEGES);
+        assertEquals(
+                List.of(
+                        PrivilegeConstants.JCR_LOCK_MANAGEMENT,
+                        PrivilegeConstants.REP_READ_NODES,
+                        PrivilegeConstants.JCR_MODIFY_PROPERTIES),
+                new ArrayList<>(privileges.keySet()));
+    }
+
+    @Test
+    public void testPrincipalPrefix() throws ServletException, IOException, RepositoryException {
+        JsonObject json = doGet(Map.of(AbstractGetAclServlet.PARAM_PRINCIPAL_PREFIX, "user"));
+        assertEquals(List.of("user0", "user1", "user2", "user3", "user4"), new ArrayList<>(json.keySet()));
+
+        // the principals are the same as without the filter
+        JsonObject all = servlet.getAcl(jcrSession, "/content");
+        assertEquals(all.getJsonObject("user3"), json.getJsonObject("user3"));
+    }
+
+    @Test
+    public void testPrivilegeFilter() throws ServletException, IOException {
+        // the entries that deny jcr:all also deny jcr:write
+        JsonObject json = doGet(Map.of(AbstractGetAclServlet.PARAM_PRIVILEGE, Privilege.JCR_WRITE));
+        assertEquals(List.of("user1", "user3", "everyone"), new ArrayList<>(json.keySet()));
+        // the order is the position in the filtered principals
+        assertEquals(2, json.getJsonObject("everyone").getInt(JsonConvert.KEY_ORDER));
+    }
+
+    @Test
+    public void testInvalidPrivilege() throws ServletException, IOException {
+        assertBadRequest(Map.of(AbstractGetAclServlet.PARAM_PRIVILEGE, "invalid"), "Invalid privilege: invalid");
+    }
+
+    @Test
+    public void testOffsetAndLimit() throws ServletException, IOException {
+        JsonObject json =
+                doGet(Map.of(AbstractGetAclServlet.PARAM_OFFSET, "4", AbstractGetAclServlet.PARAM_LIMIT, "10"));
+        assertEquals(List.of("user4", "everyone"), new ArrayList<>(json.keySet()));
+        assertEquals(4, json.getJsonObject("user4").getInt(JsonConvert.KEY_ORDER));
+        assertNull(response.getHeader(AbstractGetAclServlet.HEADER_CONTINUATION));
+    }
+
+    @Test
+    public void testETagOfEachPage() throws ServletException, IOException {
+        doGet(Map.of(AbstractGetAclServlet.PARAM_OFFSET, "0", AbstractGetAclServlet.PARAM_LIMIT, "2"));
+        String firstPage = response.getHeader("ETag");
+        doGet(Map.of(AbstractGetAclServlet.PARAM_OFFSET, "2", AbstractGetAclServlet.PARAM_LIMIT, "2"));
+        String secondPage = response.getHeader("ETag");
+        doGet(Map.of(AbstractGetAclServlet.PARAM_PRINCIPAL_PREFIX, "user"));
+        String filtered = response.getHeader("ETag");
+        doGet(Map.of());
+        String all = response.getHeader("ETag");
+        assertNotNull(firstPage);
+        assertNotEquals(firstPage, secondPage);
+        assertNotEquals(all, filtered);
+        assertNotEquals(all, firstPage);
+
+        // the same page has the same entity tag
+        doGet(Map.of(AbstractGetAclServlet.PARAM_OFFSET, "2", AbstractGetAclServlet.PARAM_LIMIT, "2"));
+        assertEquals(secondPage, response.getHeader("ETag"));
+    }
+
+    @Test
+    public void testContinuation() throws ServletException, IOException {
+        List<String> names = new ArrayList<>();
+        JsonObject json = doGet(
+                Map.of(AbstractGetAclServlet.PARAM_PRINCIPAL_PREFIX, "user", AbstractGetAclServlet.PARAM_LIMIT, "2"));
+        names.addAll(json.keySet());
+        String continuation = response.getHeader(AbstractGetAclServlet.HEADER_CONTINUATION);
+        while (continuation != null) {
+            json = doGet(Map.of(
+                    AbstractGetAclServlet.PARAM_PRINCIPAL_PREFIX,
+                    "user",
+                    AbstractGetAclServlet.PARAM_LIMIT,
+                    "2",
+                    AbstractGetAclServlet.PARAM_CONTINUATION,
+                    continuation));
+            names.addAll(json.keySet());
+            continuation = response.getHeader(AbstractGetAclServlet.HEADER_CONTINUATION);
+        }
+        assertEquals(List.of("user0", "user1", "user2", "user3", "user4"), names);
+    }
+
+    @Test
+    public void testContinuationForOtherFilter() throws ServletException, IOException {
+        doGet(Map.of(AbstractGetAclServlet.PARAM_LIMIT, "2"));
+        String continuation = response.getHeader(AbstractGetAclServlet.HEADER_CONTINUATION);
+        assertNotNull(continuation);
+
+        // the token can not be used with a different page size
+        Map<String, Object> parameters =
+                Map.of(AbstractGetAclServlet.PARAM_LIMIT, "3", AbstractGetAclServlet.PARAM_CONTINUATION, continuation);
+        assertBadRequest(parameters, "Invalid continuation token for the supplied parameters");
+        assertBadRequest(
+                Map.of(AbstractGetAclServlet.PARAM_CONTINUATION, "not a token"),
+                "Invalid continuation token for the supplied parameters");
+    }
+
+    @Test
+    public void testInvalidLimit() throws ServletException, IOException {
+        assertBadRequest(Map.of(AbstractGetAclServlet.PARAM_LIMIT, "-1"), "Invalid limit: -1");
+        assertBadRequest(Map.of(AbstractGetAclServlet.PARAM_LIMIT, "many"), "Invalid limit: many");
+    }
+
+    @Test
+    public void testInvalidOffset() throws ServletException, IOException {
+        assertBadRequest(Map.of(AbstractGetAclServlet.PARAM_OFFSET, "-3"), "Invalid offset: -3");
+        assertBadRequest(Map.of(AbstractGetAclServlet.PARAM_OFFSET, "first"), "Invalid offset: first");
+    }
+}
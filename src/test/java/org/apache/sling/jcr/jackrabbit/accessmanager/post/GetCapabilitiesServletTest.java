@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.post;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.servlet.ServletException;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.wrappers.JavaxToJakartaRequestWrapper;
+import org.apache.sling.api.wrappers.JavaxToJakartaResponseWrapper;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrivilegesInfo;
+import org.apache.sling.servlethelpers.MockSlingHttpServletRequest;
+import org.apache.sling.servlethelpers.MockSlingHttpServletResponse;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the capabilities of a resource and its children
+ */
+public class GetCapabilitiesServletTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private final GetCapabilitiesServlet servlet = new GetCapabilitiesServlet();
+
+    private Session jcrSession;
+
+    @Before
+    public void before() throws RepositoryException {
+        ResourceResolver rr = context.resourceResolver();
+        jcrSession = rr.adaptTo(Session.class);
+        jcrSession.getRootNode().addNode("content").addNode("a").addNode("deep");
+        jcrSession.getNode("/content").addNode("b");
+        jcrSession.save();
+        // the policy node is not a child to report
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        JackrabbitAccessControlList acl =
+                (JackrabbitAccessControlList) acm.getApplicablePolicies("/content").nextAccessControlPolicy();
+        acl.addEntry(
+                EveryonePrincipal.getInstance(), new Privilege[] {acm.privilegeFromName(Privilege.JCR_READ)}, true);
+        acm.setPolicy("/content", acl);
+        jcrSession.save();
+        context.currentResource(rr.getResource("/content"));
+    }
+
+    @Test
+    public void testCapabilities() throws ServletException, IOException {
+        MockSlingHttpServletRequest request = context.request();
+        MockSlingHttpServletResponse response = context.response();
+        SlingJakartaHttpServletRequest jakartaRequest = JavaxToJakartaRequestWrapper.toJakartaRequest(request);
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        servlet.doGet(jakartaRequest, jakartaResponse);
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, jakartaResponse.getStatus());
+
+        JsonObject json;
+        try (JsonReader reader = Json.createReader(new StringReader(response.getOutputAsString()))) {
+            json = reader.readObject();
+        }
+        assertEquals(List.of("/content", "/content/a", "/content/b"), new ArrayList<>(json.keySet()));
+        // the same as the batched check of the paths
+        Map<String, Integer> capabilities = new PrivilegesInfo().getCapabilities(jcrSession, json.keySet());
+        for (Map.Entry<String, Integer> entry : capabilities.entrySet()) {
+            assertEquals(entry.getValue().intValue(), json.getInt(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testInternalJson() throws RepositoryException {
+        JsonObject json = servlet.internalJson(jcrSession, "/content/a", null);
+        assertEquals(List.of("/content/a", "/content/a/deep"), new ArrayList<>(json.keySet()));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.post;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.servlet.ServletException;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.wrappers.JavaxToJakartaRequestWrapper;
+import org.apache.sling.api.wrappers.JavaxToJakartaResponseWrapper;
+import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
+import org.apache.sling.jcr.jackrabbit.accessmanager.PrincipalPrivileges;
+import org.apache.sling.jcr.jackrabbit.accessmanager.impl.JsonConvert;
+import org.apache.sling.servlethelpers.MockRequestPathInfo;
+import org.apache.sling.servlethelpers.MockSlingHttpServletRequest;
+import org.apache.sling.servlethelpers.MockSlingHttpServletResponse;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the effective ACL of many resources
+ */
+public class GetEffectiveAclServletTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private final GetEffectiveAclServlet servlet = new GetEffectiveAclServlet();
+
+    private Session jcrSession;
+
+    @Before
+    public void before() throws RepositoryException {
+        ResourceResolver rr = context.resourceResolver();
+        jcrSession = rr.adaptTo(Session.class);
+        Node content = jcrSession.getRootNode().addNode("content");
+        content.addNode("a");
+        content.addNode("b");
+        content.addNode("c");
+        jcrSession.save();
+        addEntry("/content", Privilege.JCR_READ, true);
+        addEntry("/content/c", Privilege.JCR_WRITE, false);
+    }
+
+    private void addEntry(String path, String privilegeName, boolean isAllow) throws RepositoryException {
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        JackrabbitAccessControlList acl =
+                (JackrabbitAccessControlList) acm.getApplicablePolicies(path).nextAccessControlPolicy();
+        acl.addEntry(EveryonePrincipal.getInstance(), new Privilege[] {acm.privilegeFromName(privilegeName)}, isAllow);
+        acm.setPolicy(path, acl);
+        jcrSession.save();
+    }
+
+    @Test
+    public void testGetEffectiveAcls() throws RepositoryException {
+        Map<String, JsonObject> map = servlet.getEffectiveAcls(
+                jcrSession, List.of("/content/c", "/content/a", "/content/missing", "/content/b"));
+        // in the order of the paths and without the missing resource
+        assertEquals(List.of("/content/c", "/content/a", "/content/b"), new ArrayList<>(map.keySet()));
+        for (Map.Entry<String, JsonObject> entry : map.entrySet()) {
+            assertEquals(servlet.getEffectiveAcl(jcrSession, entry.getKey()), entry.getValue());
+        }
+        // the siblings with the same entries share the result
+        assertSame(map.get("/content/a"), map.get("/content/b"));
+    }
+
+    @Test
+    public void testGetEffectiveAclPrivileges() throws RepositoryException {
+        Map<Principal, PrincipalPrivileges> map = servlet.getEffectiveAclPrivileges(jcrSession, "/content/c");
+        assertEquals(1, map.size());
+        PrincipalPrivileges pp = map.get(EveryonePrincipal.getInstance());
+        assertEquals(0, pp.getOrder());
+        assertEquals(Set.of("/content", "/content/c"), pp.getDeclaredAtNodes());
+        assertEquals(Set.of(), pp.getDeclaredAtPrincipals());
+
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        LocalPrivilege read = pp.getPrivileges().get(acm.privilegeFromName(Privilege.JCR_READ));
+        assertTrue(read.isAllow());
+        assertFalse(read.isDeny());
+        LocalPrivilege write = pp.getPrivileges().get(acm.privilegeFromName(Privilege.JCR_WRITE));
+        assertFalse(write.isAllow());
+        assertTrue(write.isDeny());
+
+        // the JSON is made from the same data
+        JsonObject json = servlet.getEffectiveAcl(jcrSession, "/content/c")
+                .getJsonObject(EveryonePrincipal.NAME)
+                .getJsonObject(JsonConvert.KEY_PRIVILEGES);
+        assertTrue(json.getJsonObject(PrivilegeConstants.JCR_READ).containsKey(JsonConvert.KEY_ALLOW));
+        assertTrue(json.getJsonObject(PrivilegeConstants.JCR_WRITE).containsKey(JsonConvert.KEY_DENY));
+    }
+
+    private JsonObject doBatch(boolean post) throws ServletException, IOException, RepositoryException {
+        return doBatch(post, SlingJakartaHttpServletResponse.SC_OK);
+    }
+
+    private JsonObject doBatch(boolean post, int expectedStatus)
+            throws ServletException, IOException, RepositoryException {
+        MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(context.resourceResolver());
+        request.setResource(context.resourceResolver().getResource("/content"));
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setSelectorString(GetEffectiveAclServlet.SELECTOR_BATCH);
+        request.setParameterMap(Map.of(GetEffectiveAclServlet.PARAM_PATH, new String[] {"a", "/content/c", "missing"}));
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        SlingJakartaHttpServletRequest jakartaRequest = JavaxToJakartaRequestWrapper.toJakartaRequest(request);
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        if (post) {
+            servlet.doPost(jakartaRequest, jakartaResponse);
+        } else {
+            servlet.doGet(jakartaRequest, jakartaResponse);
+        }
+        assertEquals(expectedStatus, jakartaResponse.getStatus());
+        if (expectedStatus != SlingJakartaHttpServletResponse.SC_OK) {
+            return null;
+        }
+        try (JsonReader reader = Json.createReader(new StringReader(response.getOutputAsString()))) {
+            return reader.readObject();
+        }
+    }
+
+    @Test
+    public void testBatchGet() throws ServletException, IOException, RepositoryException {
+        JsonObject json = doBatch(false);
+        assertEquals(List.of("/content/a", "/content/c"), new ArrayList<>(json.keySet()));
+        assertEquals(servlet.getEffectiveAcl(jcrSession, "/content/a"), json.getJsonObject("/content/a"));
+        assertEquals(servlet.getEffectiveAcl(jcrSession, "/content/c"), json.getJsonObject("/content/c"));
+    }
+
+    @Test
+    public void testBatchPost() throws ServletException, IOException, RepositoryException {
+        JsonObject json = doBatch(true);
+        assertEquals(List.of("/content/a", "/content/c"), new ArrayList<>(json.keySet()));
+    }
+
+    @Test
+    public void testPostWithoutBatchSelector() throws ServletException, IOException {
+        for (String selectors : new String[] {"eacl", "tidy.eacl"}) {
+            MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(context.resourceResolver());
+            request.setResource(context.resourceResolver().getResource("/content/a"));
+            ((MockRequestPathInfo) request.getRequestPathInfo()).setSelectorString(selectors);
+            MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+            SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+            servlet.doPost(JavaxToJakartaRequestWrapper.toJakartaRequest(request), jakartaResponse);
+            assertEquals(SlingJakartaHttpServletResponse.SC_METHOD_NOT_ALLOWED, jakartaResponse.getStatus());
+            assertEquals("GET", response.getHeader("Allow"));
+        }
+    }
+
+    @Test
+    public void testBatchTooLarge() throws ServletException, IOException, RepositoryException {
+        servlet.configure(2);
+        doBatch(false, SlingJakartaHttpServletResponse.SC_BAD_REQUEST);
+        doBatch(true, SlingJakartaHttpServletResponse.SC_BAD_REQUEST);
+
+        servlet.configure(3);
+        assertEquals(2, doBatch(false).size());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.post;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.servlet.ServletException;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.wrappers.JavaxToJakartaRequestWrapper;
+import org.apache.sling.api.wrappers.JavaxToJakartaResponseWrapper;
+import org.apache.sling.servlethelpers.MockSlingHttpServletRequest;
+import org.apache.sling.servlethelpers.MockSlingHttpServletResponse;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the subtree ACL dump
+ */
+public class GetSubtreeAclServletTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private final GetSubtreeAclServlet servlet = new GetSubtreeAclServlet();
+
+    private Session jcrSession;
+
+    @Before
+    public void before() throws RepositoryException {
+        ResourceResolver rr = context.resourceResolver();
+        jcrSession = rr.adaptTo(Session.class);
+        jcrSession.getRootNode().addNode("content").addNode("a").addNode("b").addNode("c");
+        jcrSession.save();
+        addEntry("/content", Privilege.JCR_READ, true);
+        addEntry("/content/a/b", Privilege.JCR_WRITE, false);
+        addEntry("/content/a/b/c", Privilege.JCR_LOCK_MANAGEMENT, true);
+        context.currentResource(rr.getResource("/content"));
+    }
+
+    private void addEntry(String path, String privilegeName, boolean isAllow) throws RepositoryException {
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        JackrabbitAccessControlList acl =
+                (JackrabbitAccessControlList) acm.getApplicablePolicies(path).nextAccessControlPolicy();
+        acl.addEntry(EveryonePrincipal.getInstance(), new Privilege[] {acm.privilegeFromName(privilegeName)}, isAllow);
+        acm.setPolicy(path, acl);
+        jcrSession.save();
+    }
+
+    private JsonObject doGet(String depth) throws ServletException, IOException {
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, doGetStatus(depth));
+        try (JsonReader reader = Json.createReader(new StringReader(context.response().getOutputAsString()))) {
+            return reader.readObject();
+        }
+    }
+
+    private int doGetStatus(String depth) throws ServletException, IOException {
+        MockSlingHttpServletRequest request = context.request();
+        if (depth != null) {
+            request.setParameterMap(Map.of(GetSubtreeAclServlet.PARAM_DEPTH, depth));
+        }
+        MockSlingHttpServletResponse response = context.response();
+        SlingJakartaHttpServletRequest jakartaRequest = JavaxToJakartaRequestWrapper.toJakartaRequest(request);
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        servlet.doGet(jakartaRequest, jakartaResponse);
+        return jakartaResponse.getStatus();
+    }
+
+    @Test
+    public void testWholeSubtree() throws ServletException, IOException, RepositoryException {
+        JsonObject json = doGet(GetSubtreeAclServlet.DEPTH_INFINITY);
+        assertEquals(3, json.size());
+        for (String path : new String[] {"/content", "/content/a/b", "/content/a/b/c"}) {
+            // same as the ACL of the node
+            assertEquals(servlet.getAcl(jcrSession, path), json.getJsonObject(path));
+        }
+    }
+
+    @Test
+    public void testDefaultDepth() throws ServletException, IOException {
+        // only the resource and its children
+        JsonObject json = doGet(null);
+        assertEquals(1, json.size());
+        assertTrue(json.containsKey("/content"));
+        assertEquals(json, doGet(String.valueOf(GetSubtreeAclServlet.DEFAULT_DEPTH)));
+    }
+
+    @Test
+    public void testDepthZero() throws ServletException, IOException {
+        JsonObject json = doGet("0");
+        assertEquals(1, json.size());
+        assertTrue(json.containsKey("/content"));
+    }
+
+    @Test
+    public void testDepth() throws ServletException, IOException {
+        // the node at depth 3 is not included
+        JsonObject json = doGet("2");
+        assertEquals(2, json.size());
+        assertTrue(json.containsKey("/content"));
+        assertTrue(json.containsKey("/content/a/b"));
+    }
+
+    @Test
+    public void testNegativeDepth() throws ServletException, IOException {
+        assertEquals(SlingJakartaHttpServletResponse.SC_BAD_REQUEST, doGetStatus("-1"));
+        assertEquals("Invalid depth: -1", context.response().getStatusMessage());
+    }
+
+    @Test
+    public void testInvalidDepth() throws ServletException, IOException {
+        assertEquals(SlingJakartaHttpServletResponse.SC_BAD_REQUEST, doGetStatus("deep"));
+        assertEquals("Invalid depth: deep", context.response().getStatusMessage());
+    }
+}
@@ -0,0 +1,679 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.accessmanager.post;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlEntry;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.AccessControlPolicy;
+import javax.jcr.security.Privilege;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.servlet.ServletException;
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlEntry;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.oak.security.authorization.restriction.RestrictionProviderImpl;
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.wrappers.JavaxToJakartaRequestWrapper;
+import org.apache.sling.api.wrappers.JavaxToJakartaResponseWrapper;
+import org.apache.sling.jcr.jackrabbit.accessmanager.AceChange;
+import org.apache.sling.jcr.jackrabbit.accessmanager.AceChangeResult;
+import org.apache.sling.jcr.jackrabbit.accessmanager.AceReconcileResult;
+import org.apache.sling.jcr.jackrabbit.accessmanager.LocalPrivilege;
+import org.apache.sling.jcr.jackrabbit.accessmanager.it.CustomRestrictionProviderImpl;
+import org.apache.sling.servlethelpers.MockRequestPathInfo;
+import org.apache.sling.servlethelpers.MockSlingHttpServletRequest;
+import org.apache.sling.servlethelpers.MockSlingHttpServletResponse;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+/**
+ * Tests for the batch changes of the ModifyAceServlet
+ */
+public class ModifyAceServletTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    private ModifyAceServlet servlet = new ModifyAceServlet();
+
+    private Session jcrSession;
+    private Principal userPrincipal;
+
+    @Before
+    public void before() throws RepositoryException {
+        ResourceResolver rr = context.resourceResolver();
+        jcrSession = rr.adaptTo(Session.class);
+        jcrSession.getRootNode().addNode("content").addNode("a");
+        jcrSession.getNode("/content").addNode("b");
+        jcrSession.getNode("/content").addNode("c");
+        userPrincipal = ((JackrabbitSession) jcrSession)
+                .getUserManager()
+                .createUser("testuser", "testpwd")
+                .getPrincipal();
+        jcrSession.save();
+        servlet.bindRestrictionProvider(new CustomRestrictionProviderImpl());
+        servlet.bindRestrictionProvider(new RestrictionProviderImpl());
+        context.currentResource(rr.getResource("/content"));
+    }
+
+    private AccessControlEntry[] entries(String path) throws RepositoryException {
+        AccessControlPolicy[] policies = jcrSession.getAccessControlManager().getPolicies(path);
+        return policies.length == 0
+                ? new AccessControlEntry[0]
+                : ((JackrabbitAccessControlList) policies[0]).getAccessControlEntries();
+    }
+
+    @Test
+    public void testModifyAces() throws RepositoryException {
+        AccessControlManager acm = jcrSession.getAccessControlManager();
+        LocalPrivilege write = new LocalPrivilege(acm.privilegeFromName(Privilege.JCR_WRITE));
+        write.setAllow(true);
+        List<AceChange> changes = List.of(
+                new AceChange("/content/a", EveryonePrincipal.NAME, Map.of(Privilege.JCR_READ, "allow"), null),
+                new AceChange("/content/b", "testuser", List.of(write), null),
+                new AceChange("/content/a", "testuser", Map.of(Privilege.JCR_READ, "allow"), "first"),
+                new AceChange("/content/c", EveryonePrincipal.NAME, Map.of(Privilege.JCR_READ, "allow"), null),
+                new AceChange("/content/c", "unknown", Map.of(Privilege.JCR_READ, "allow"), null),
+                new AceChange("/content/missing", "testuser", Map.of(Privilege.JCR_READ, "allow"), null));
+
+        servlet = Mockito.spy(servlet);
+        List<AceChangeResult> results = servlet.modifyAces(jcrSession, changes, 2);
+        assertFalse(jcrSession.hasPendingChanges());
+
+        // in the order of the changes
+        assertEquals(changes.size(), results.size());
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals(changes.get(i), results.get(i).getChange());
+            AceChangeResult.Status expected =
+                    i < 3 ? AceChangeResult.Status.MODIFIED : AceChangeResult.Status.FAILED;
+            assertEquals(expected, results.get(i).getStatus());
+        }
+
+        // the ACL of each path is loaded once
+        Mockito.verify(servlet, times(1)).getAcl(any(AccessControlManager.class), eq("/content/a"), any());
+
+        AccessControlEntry[] entries = entries("/content/a");
+        assertEquals(2, entries.length);
+        assertEquals(userPrincipal, entries[0].getPrincipal());
+        assertEquals(EveryonePrincipal.getInstance(), entries[1].getPrincipal());
+        assertEquals(1, entries("/content/b").length);
+        // nothing was applied for the path with a failed change
+        assertEquals(0, entries("/content/c").length);
+    }
+
+    @Test
+    public void testModifyAceUnchanged() throws RepositoryException {
+        servlet.modifyAce(jcrSession, "/content/a", "testuser", Map.of(Privilege.JCR_READ, "allow"), null, true);
+        servlet.modifyAce(
+                jcrSession, "/content/a", EveryonePrincipal.NAME, Map.of(Privilege.JCR_WRITE, "allow"), null, true);
+
+        // the same state and position does not store the ACL again
+        servlet.modifyAce(jcrSession, "/content/a", "testuser", Map.of(Privilege.JCR_READ, "allow"), "0", false);
+        assertFalse(jcrSession.hasPendingChanges());
+        servlet.modifyAce(jcrSession, "/content/a", EveryonePrincipal.NAME, Map.of(), null, false);
+        assertFalse(jcrSession.hasPendingChanges());
+        // no empty policy is created when there is nothing to store
+        servlet.modifyAce(jcrSession, "/content/b", "testuser", Map.of(Privilege.JCR_READ, "none"), null, false);
+        assertFalse(jcrSession.hasPendingChanges());
+        assertFalse(jcrSession.nodeExists("/content/b/rep:policy"));
+
+        // a new position is a change
+        servlet.modifyAce(jcrSession, "/content/a", EveryonePrincipal.NAME, Map.of(), "first", false);
+        assertTrue(jcrSession.hasPendingChanges());
+        assertEquals(EveryonePrincipal.getInstance(), entries("/content/a")[0].getPrincipal());
+    }
+
+    /**
+     * Spy on the ACL that the servlet changes
+     */
+    private JackrabbitAccessControlList[] spyAcl() throws RepositoryException {
+        JackrabbitAccessControlList[] acl = new JackrabbitAccessControlList[1];
+        servlet = Mockito.spy(servlet);
+        Mockito.doAnswer(invocation -> {
+                    acl[0] = Mockito.spy((JackrabbitAccessControlList) invocation.callRealMethod());
+                    return acl[0];
+                })
+                .when(servlet)
+                .getAcl(any(AccessControlManager.class), any(), any());
+        return acl;
+    }
+
+    @Test
+    public void testModifyAceKeepsUnchangedEntries() throws RepositoryException {
+        servlet.modifyAce(
+                jcrSession,
+                "/content/a",
+                "testuser",
+                Map.of(Privilege.JCR_READ, "allow", Privilege.JCR_WRITE, "deny"),
+                null,
+                true);
+        servlet.modifyAce(
+                jcrSession, "/content/a", EveryonePrincipal.NAME, Map.of(Privilege.JCR_READ, "allow"), null, true);
+        AccessControlEntry[] before = entries("/content/a");
+        assertEquals(3, before.length);
+
+        // only the allow entry of the principal changes
+        JackrabbitAccessControlList[] acl = spyAcl();
+        servlet.modifyAce(
+                jcrSession,
+                "/content/a",
+                "testuser",
+                Map.of(Privilege.JCR_READ_ACCESS_CONTROL, "allow"),
+                null,
+                false);
+        Mockito.verify(acl[0], times(1)).removeAccessControlEntry(any());
+        // the added entry is moved from the end to the position of the removed one
+        Mockito.verify(acl[0], times(1)).orderBefore(any(), any());
+
+        AccessControlEntry[] after = entries("/content/a");
+        assertEquals(3, after.length);
+        assertEquals(before[0], after[0]);
+        assertEquals(userPrincipal, after[1].getPrincipal());
+        assertTrue(((JackrabbitAccessControlEntry) after[1]).isAllow());
+        assertEquals(2, after[1].getPrivileges().length);
+        assertEquals(before[2], after[2]);
+    }
+
+    @Test
+    public void testModifyAceMovesFewestEntries() throws RepositoryException {
+        ((JackrabbitSession) jcrSession).getUserManager().createUser("testuser2", "testpwd");
+        for (String principalId : List.of("testuser", "testuser2", EveryonePrincipal.NAME)) {
+            servlet.modifyAce(
+                    jcrSession,
+                    "/content/a",
+                    principalId,
+                    Map.of(Privilege.JCR_READ, "allow", Privilege.JCR_WRITE, "deny"),
+                    null,
+                    true);
+        }
+        AccessControlEntry[] before = entries("/content/a");
+        assertEquals(6, before.length);
+
+        // the two entries of the principal move, the others stay in place
+        JackrabbitAccessControlList[] acl = spyAcl();
+        servlet.modifyAce(jcrSession, "/content/a", EveryonePrincipal.NAME, Map.of(), "first", false);
+        Mockito.verify(acl[0], never()).removeAccessControlEntry(any());
+        Mockito.verify(acl[0], never()).addEntry(any(), any(), anyBoolean(), any(), any());
+        Mockito.verify(acl[0], times(2)).orderBefore(any(), any());
+
+        AccessControlEntry[] after = entries("/content/a");
+        assertEquals(List.of(before[4], before[5], before[0], before[1], before[2], before[3]), List.of(after));
+    }
+
+    @Test
+    public void testOrderAce() throws RepositoryException {
+        for (String principalId : List.of("testuser", EveryonePrincipal.NAME)) {
+            servlet.modifyAce(
+                    jcrSession,
+                    "/content/a",
+                    principalId,
+                    Map.of(Privilege.JCR_READ, "allow", Privilege.JCR_WRITE, "deny"),
+                    null,
+                    true);
+        }
+        AccessControlEntry[] before = entries("/content/a");
+        assertEquals(4, before.length);
+
+        JackrabbitAccessControlList[] acl = spyAcl();
+        servlet.orderAce(jcrSession, "/content/a", "testuser", "last", false);
+        Mockito.verify(acl[0], never()).removeAccessControlEntry(any());
+        Mockito.verify(acl[0], never()).addEntry(any(), any(), anyBoolean(), any(), any());
+        Mockito.verify(acl[0], times(2)).orderBefore(any(), any());
+        assertTrue(jcrSession.hasPendingChanges());
+        assertEquals(List.of(before[2], before[3], before[0], before[1]), List.of(entries("/content/a")));
+        jcrSession.save();
+
+        // already at the requested position
+        servlet.orderAce(jcrSession, "/content/a", "testuser", "1", false);
+        assertFalse(jcrSession.hasPendingChanges());
+
+        servlet.orderAce(jcrSession, "/content/a", "testuser", "first", true);
+        assertFalse(jcrSession.hasPendingChanges());
+        assertEquals(List.of(before), List.of(entries("/content/a")));
+
+        assertThrows(
+                RepositoryException.class, () -> servlet.orderAce(jcrSession, "/content/a", "testuser", null, false));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> servlet.orderAce(jcrSession, "/content/a", "testuser", "before unknown", false));
+    }
+
+    @Test
+    public void testOrderAceWithoutAcl() throws RepositoryException {
+        servlet.modifyAce(jcrSession, "/content/a", "testuser", Map.of(Privilege.JCR_READ, "allow"), null, true);
+        ModifyAceServlet noAclServlet = new ModifyAceServlet() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected @NotNull Principal validateArgs(Session jcrSession, String resourcePath, String principalId) {
+                return userPrincipal;
+            }
+
+            @Override
+            protected JackrabbitAccessControlList getAcl(
+                    @NotNull AccessControlManager acm, String resourcePath, Principal principal) {
+                return null;
+            }
+        };
+        IllegalStateException e = assertThrows(
+                IllegalStateException.class,
+                () -> noAclServlet.orderAce(jcrSession, "/content/a", "testuser", "first", false));
+        assertEquals("No access control list is available so unable to process", e.getMessage());
+    }
+
+    @Test
+    public void testOrderAceRequest() throws ServletException, IOException, RepositoryException {
+        servlet.modifyAce(jcrSession, "/content", "testuser", Map.of(Privilege.JCR_READ, "allow"), null, true);
+        servlet.modifyAce(
+                jcrSession, "/content", EveryonePrincipal.NAME, Map.of(Privilege.JCR_READ, "allow"), null, true);
+
+        MockSlingHttpServletRequest request = context.request();
+        MockSlingHttpServletResponse response = context.response();
+        request.setMethod("POST");
+        request.addHeader("Accept", "application/json");
+        request.setParameterMap(Map.of("principalId", EveryonePrincipal.NAME, "order", "first"));
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setSelectorString(ModifyAceServlet.SELECTOR_ORDER);
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setExtension("json");
+        SlingJakartaHttpServletRequest jakartaRequest = JavaxToJakartaRequestWrapper.toJakartaRequest(request);
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        servlet.doPost(jakartaRequest, jakartaResponse);
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, jakartaResponse.getStatus());
+
+        JsonObject json;
+        try (JsonReader reader = Json.createReader(new StringReader(response.getOutputAsString()))) {
+            json = reader.readObject();
+        }
+        JsonArray changes = json.getJsonArray("changes");
+        assertEquals(1, changes.size());
+        assertEquals("modified", changes.getJsonObject(0).getString("type"));
+
+        assertFalse(jcrSession.hasPendingChanges());
+        AccessControlEntry[] entries = entries("/content");
+        assertEquals(EveryonePrincipal.getInstance(), entries[0].getPrincipal());
+        assertEquals(userPrincipal, entries[1].getPrincipal());
+    }
+
+    @Test
+    public void testReconcileAces() throws RepositoryException {
+        servlet.modifyAce(jcrSession, "/content/a", "testuser", Map.of(Privilege.JCR_READ, "allow"), null, true);
+        servlet.modifyAce(
+                jcrSession, "/content/a", EveryonePrincipal.NAME, Map.of(Privilege.JCR_WRITE, "allow"), null, true);
+        servlet.modifyAce(
+                jcrSession, "/content/b", EveryonePrincipal.NAME, Map.of(Privilege.JCR_READ, "allow"), null, true);
+
+        List<AceChange> desiredAces = List.of(
+                new AceChange("/content/a", "testuser", Map.of(Privilege.JCR_READ, "allow"), null),
+                new AceChange("/content/b", "testuser", Map.of(Privilege.JCR_READ, "allow"), null),
+                new AceChange("/content/c", EveryonePrincipal.NAME, Map.of(), null),
+                new AceChange("/content/missing", "testuser", Map.of(Privilege.JCR_READ, "allow"), null));
+        AceReconcileResult result = servlet.reconcileAces(jcrSession, desiredAces.iterator(), 1);
+        assertFalse(jcrSession.hasPendingChanges());
+        assertEquals(2, result.getUnchanged());
+        assertEquals(1, result.getModified());
+        assertEquals(2, result.getRemoved());
+        assertEquals(List.of("/content/missing"), List.copyOf(result.getFailures().keySet()));
+
+        for (String path : List.of("/content/a", "/content/b")) {
+            AccessControlEntry[] entries = entries(path);
+            assertEquals(1, entries.length);
+            assertEquals(userPrincipal, entries[0].getPrincipal());
+        }
+        assertFalse(jcrSession.nodeExists("/content/c/rep:policy"));
+
+        // a second run with the same desired state changes nothing
+        servlet = Mockito.spy(servlet);
+        result = servlet.reconcileAces(jcrSession, desiredAces.iterator(), 0);
+        assertFalse(jcrSession.hasPendingChanges());
+        assertEquals(3, result.getUnchanged());
+        assertEquals(0, result.getModified());
+        assertEquals(0, result.getRemoved());
+        Mockito.verify(servlet, never()).addAces(any(), any(), any(), anyBoolean(), any(), any());
+
+        // the desired ACEs of a resource must be grouped together
+        result = servlet.reconcileAces(
+                jcrSession,
+                List.of(desiredAces.get(0), desiredAces.get(1), desiredAces.get(0)).iterator(),
+                0);
+        assertEquals(List.of("/content/a"), List.copyOf(result.getFailures().keySet()));
+    }
+
+    @Test
+    public void testReconcileAcesWithRestrictions() throws RepositoryException {
+        List<AceChange> desiredAces = List.of(new AceChange(
+                "/content/a",
+                "testuser",
+                Map.of(Privilege.JCR_READ, "allow", Privilege.JCR_WRITE, "allow"),
+                Map.of("rep:glob", new String[] {"*.txt"}, "jcr:write@rep:glob@Allow", new String[] {"/docs"}),
+                null));
+        AceReconcileResult result = servlet.reconcileAces(jcrSession, desiredAces.iterator(), 0);
+        assertEquals(1, result.getModified());
+        jcrSession.save();
+        assertEquals(Set.of("*.txt", "/docs"), globs("/content/a"));
+
+        // a second run with the same desired state stores nothing
+        result = servlet.reconcileAces(jcrSession, desiredAces.iterator(), 0);
+        assertEquals(1, result.getUnchanged());
+        assertEquals(0, result.getModified());
+        assertTrue(result.getFailures().isEmpty());
+        assertFalse(jcrSession.hasPendingChanges());
+        assertEquals(Set.of("*.txt", "/docs"), globs("/content/a"));
+
+        // a desired state without the restrictions replaces the restricted ACEs
+        result = servlet.reconcileAces(
+                jcrSession,
+                List.of(new AceChange("/content/a", "testuser", Map.of(Privilege.JCR_READ, "allow"), null))
+                        .iterator(),
+                0);
+        assertEquals(1, result.getModified());
+        AccessControlEntry[] entries = entries("/content/a");
+        assertEquals(1, entries.length);
+        assertEquals(0, ((JackrabbitAccessControlEntry) entries[0]).getRestrictionNames().length);
+    }
+
+    @Test
+    public void testModifyAcesRequestWithRestrictions() throws ServletException, IOException, RepositoryException {
+        MockSlingHttpServletRequest request = context.request();
+        MockSlingHttpServletResponse response = context.response();
+        request.setMethod("POST");
+        request.addHeader("Accept", "application/json");
+        request.setContentType("application/json");
+        String body = "[{\"path\": \"a\", \"principalId\": \"testuser\","
+                + " \"privileges\": {\"jcr:read\": \"allow\"},"
+                + " \"restrictions\": {\"rep:glob\": \"*.txt\", \"rep:ntNames\": [\"nt:file\", \"nt:folder\"]}}]";
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setSelectorString(ModifyAceServlet.SELECTOR_BATCH);
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setExtension("json");
+        SlingJakartaHttpServletRequest jakartaRequest = JavaxToJakartaRequestWrapper.toJakartaRequest(request);
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        servlet.doPost(jakartaRequest, jakartaResponse);
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, jakartaResponse.getStatus());
+
+        AccessControlEntry[] entries = entries("/content/a");
+        assertEquals(1, entries.length);
+        JackrabbitAccessControlEntry entry = (JackrabbitAccessControlEntry) entries[0];
+        assertEquals("*.txt", entry.getRestriction("rep:glob").getString());
+        assertEquals(2, entry.getRestrictions("rep:ntNames").length);
+    }
+
+    private Set<String> globs(String path) throws RepositoryException {
+        return Stream.of(entries(path))
+                .map(entry -> {
+                    try {
+                        return ((JackrabbitAccessControlEntry) entry)
+                                .getRestriction("rep:glob")
+                                .getString();
+                    } catch (RepositoryException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testReconcileAcesRequest() throws ServletException, IOException, RepositoryException {
+        servlet.modifyAce(
+                jcrSession, "/content/a", EveryonePrincipal.NAME, Map.of(Privilege.JCR_WRITE, "allow"), null, true);
+
+        MockSlingHttpServletRequest request = context.request();
+        MockSlingHttpServletResponse response = context.response();
+        request.setMethod("POST");
+        request.addHeader("Accept", "application/json");
+        request.setContentType("application/json");
+        String body = "[{\"path\": \"a\", \"principalId\": \"testuser\","
+                + " \"privileges\": {\"jcr:read\": \"allow\"}},"
+                + " {\"path\": \"b\", \"principalId\": \"unknown\"}]";
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setSelectorString(ModifyAceServlet.SELECTOR_RECONCILE);
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setExtension("json");
+        SlingJakartaHttpServletRequest jakartaRequest = JavaxToJakartaRequestWrapper.toJakartaRequest(request);
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        servlet.doPost(jakartaRequest, jakartaResponse);
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, jakartaResponse.getStatus());
+
+        JsonObject json;
+        try (JsonReader reader = Json.createReader(new StringReader(response.getOutputAsString()))) {
+            json = reader.readObject();
+        }
+        assertEquals(0, json.getInt(ModifyAceServlet.PROP_UNCHANGED));
+        assertEquals(1, json.getInt(ModifyAceServlet.PROP_MODIFIED));
+        assertEquals(1, json.getInt(ModifyAceServlet.PROP_REMOVED));
+        assertEquals(1, json.getInt(ModifyAceServlet.PROP_FAILED));
+        JsonArray changes = json.getJsonArray("changes");
+        assertEquals(1, changes.size());
+        assertEquals("failed", changes.getJsonObject(0).getString("type"));
+        assertEquals("/content/b", changes.getJsonObject(0).getJsonArray("argument").getString(0));
+
+        AccessControlEntry[] entries = entries("/content/a");
+        assertEquals(1, entries.length);
+        assertEquals(userPrincipal, entries[0].getPrincipal());
+    }
+
+    @Test
+    public void testReconcileAcesMalformedRequest() throws ServletException, IOException, RepositoryException {
+        MockSlingHttpServletRequest request = context.request();
+        MockSlingHttpServletResponse response = context.response();
+        request.setMethod("POST");
+        request.addHeader("Accept", "application/json");
+        request.setContentType("application/json");
+        request.setParameterMap(Map.of(ModifyAceServlet.PARAM_SAVE_THRESHOLD, "1"));
+        String body = "[{\"path\": \"a\", \"principalId\": \"testuser\","
+                + " \"privileges\": {\"jcr:read\": \"allow\"}},"
+                + " {\"path\": \"b\", \"principalId\": \"testuser\","
+                + " \"privileges\": {\"jcr:read\": \"allow\"}},"
+                + " {\"path\": ";
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setSelectorString(ModifyAceServlet.SELECTOR_RECONCILE);
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setExtension("json");
+        SlingJakartaHttpServletRequest jakartaRequest = JavaxToJakartaRequestWrapper.toJakartaRequest(request);
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        servlet.doPost(jakartaRequest, jakartaResponse);
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, jakartaResponse.getStatus());
+
+        JsonObject json;
+        try (JsonReader reader = Json.createReader(new StringReader(response.getOutputAsString()))) {
+            json = reader.readObject();
+        }
+        // the resource before the malformed item may not be complete, so only the first one is reconciled
+        assertEquals(1, json.getInt(ModifyAceServlet.PROP_MODIFIED));
+        assertEquals(1, json.getInt(ModifyAceServlet.PROP_FAILED));
+        JsonArray changes = json.getJsonArray("changes");
+        assertEquals(1, changes.size());
+        assertEquals("/content/b", changes.getJsonObject(0).getJsonArray("argument").getString(0));
+        assertEquals(1, entries("/content/a").length);
+        assertFalse(jcrSession.nodeExists("/content/b/rep:policy"));
+
+        // nothing is reconciled when the first item can not be read
+        assertThrows(
+                RepositoryException.class,
+                () -> servlet.reconcileAces(
+                        jcrSession,
+                        new Iterator<AceChange>() {
+                            @Override
+                            public boolean hasNext() {
+                                return true;
+                            }
+
+                            @Override
+                            public AceChange next() {
+                                throw new ClassCastException("not an object");
+                            }
+                        },
+                        1));
+    }
+
+    @Test
+    public void testModifyAcesUnchanged() throws RepositoryException {
+        List<AceChange> changes = List.of(
+                new AceChange("/content/a", EveryonePrincipal.NAME, Map.of(Privilege.JCR_READ, "allow"), null),
+                new AceChange("/content/b", "testuser", Map.of(Privilege.JCR_WRITE, "deny"), null));
+        List<AceChangeResult> results = servlet.modifyAces(jcrSession, changes, 0);
+        assertTrue(results.stream().allMatch(r -> r.getStatus() == AceChangeResult.Status.MODIFIED));
+        jcrSession.save();
+
+        // a second run with the same input stores nothing
+        results = servlet.modifyAces(jcrSession, changes, 0);
+        assertTrue(results.stream().allMatch(r -> r.getStatus() == AceChangeResult.Status.UNCHANGED));
+        assertFalse(jcrSession.hasPendingChanges());
+    }
+
+    @Test
+    public void testModifyAcesRequest() throws ServletException, IOException, RepositoryException {
+        MockSlingHttpServletRequest request = context.request();
+        MockSlingHttpServletResponse response = context.response();
+        request.setMethod("POST");
+        request.addHeader("Accept", "application/json");
+        request.setContentType("application/json");
+        String body = "[{\"path\": \"a\", \"principalId\": \"everyone\","
+                + " \"privileges\": {\"jcr:read\": \"allow\"}},"
+                + " {\"path\": \"/content/b\", \"principalId\": \"testuser\","
+                + " \"privileges\": {\"jcr:write\": \"deny\"}},"
+                + " {\"path\": \"b\", \"principalId\": \"unknown\"}]";
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setSelectorString(ModifyAceServlet.SELECTOR_BATCH);
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setExtension("json");
+        SlingJakartaHttpServletRequest jakartaRequest = JavaxToJakartaRequestWrapper.toJakartaRequest(request);
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        servlet.doPost(jakartaRequest, jakartaResponse);
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, jakartaResponse.getStatus());
+
+        JsonObject json;
+        try (JsonReader reader = Json.createReader(new StringReader(response.getOutputAsString()))) {
+            json = reader.readObject();
+        }
+        JsonArray changes = json.getJsonArray("changes");
+        assertEquals(3, changes.size());
+        assertEquals("modified", changes.getJsonObject(0).getString("type"));
+        assertEquals("failed", changes.getJsonObject(1).getString("type"));
+        assertEquals("failed", changes.getJsonObject(2).getString("type"));
+
+        assertEquals(1, entries("/content/a").length);
+        assertEquals(0, entries("/content/b").length);
+    }
+
+    /**
+     * Post a batch request that must fail and return the error message
+     */
+    private String postInvalidBatch(String selector, Map<String, Object> parameters, String body)
+            throws ServletException, IOException {
+        MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(context.resourceResolver());
+        request.setResource(context.currentResource());
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        request.setMethod("POST");
+        request.addHeader("Accept", "application/json");
+        request.setContentType("application/json");
+        request.setParameterMap(parameters);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setSelectorString(selector);
+        ((MockRequestPathInfo) request.getRequestPathInfo()).setExtension("json");
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+        servlet.doPost(JavaxToJakartaRequestWrapper.toJakartaRequest(request), jakartaResponse);
+        assertEquals(SlingJakartaHttpServletResponse.SC_INTERNAL_SERVER_ERROR, jakartaResponse.getStatus());
+        try (JsonReader reader = Json.createReader(new StringReader(response.getOutputAsString()))) {
+            return reader.readObject().getJsonObject("error").getString("message");
+        }
+    }
+
+    @Test
+    public void testInvalidBatchRequests() throws ServletException, IOException, RepositoryException {
+        String valid = "{\"path\": \"a\", \"principalId\": \"testuser\","
+                + " \"privileges\": {\"jcr:read\": \"allow\"}}";
+        for (String selector : List.of(ModifyAceServlet.SELECTOR_BATCH, ModifyAceServlet.SELECTOR_RECONCILE)) {
+            for (String saveThreshold : List.of("many", "-1")) {
+                assertEquals(
+                        "Invalid saveThreshold: " + saveThreshold,
+                        postInvalidBatch(
+                                selector,
+                                Map.of(ModifyAceServlet.PARAM_SAVE_THRESHOLD, saveThreshold),
+                                "[" + valid + "]"));
+            }
+        }
+
+        assertEquals(
+                "Invalid change: Expected a JSON object but was: 5",
+                postInvalidBatch(ModifyAceServlet.SELECTOR_BATCH, Map.of(), "[" + valid + ", 5]"));
+        assertEquals(
+                "Invalid change: Expected a JSON object for the privileges of /content/b",
+                postInvalidBatch(
+                        ModifyAceServlet.SELECTOR_BATCH,
+                        Map.of(),
+                        "[" + valid + ", {\"path\": \"b\", \"privileges\": [\"jcr:read\"]}]"));
+        assertEquals(
+                "Invalid change: Expected a string for the privilege jcr:read of /content/b but was: true",
+                postInvalidBatch(
+                        ModifyAceServlet.SELECTOR_BATCH,
+                        Map.of(),
+                        "[" + valid + ", {\"path\": \"b\", \"privileges\": {\"jcr:read\": true}}]"));
+        assertEquals(
+                "Invalid change: Expected a string or an array of strings for the restriction rep:glob"
+                        + " of /content/b but was: 1",
+                postInvalidBatch(
+                        ModifyAceServlet.SELECTOR_BATCH,
+                        Map.of(),
+                        "[" + valid + ", {\"path\": \"b\", \"restrictions\": {\"rep:glob\": 1}}]"));
+        assertEquals(
+                "Invalid change: Invalid restriction jcr:read@rep:glob of /content/b",
+                postInvalidBatch(
+                        ModifyAceServlet.SELECTOR_BATCH,
+                        Map.of(),
+                        "[" + valid + ", {\"path\": \"b\", \"restrictions\": {\"jcr:read@rep:glob\": \"*\"}}]"));
+
+        // the first item of a reconcile request can not be read
+        assertEquals(
+                "Failed to read the desired ACEs: Expected a JSON object but was: 5",
+                postInvalidBatch(ModifyAceServlet.SELECTOR_RECONCILE, Map.of(), "[5, " + valid + "]"));
+
+        // nothing was changed
+        assertFalse(jcrSession.nodeExists("/content/a/rep:policy"));
+    }
+}